@@ -6,42 +6,51 @@ import fr.xephi.authme.permission.PermissionsManager;
 import fr.xephi.authme.permission.PlayerStatePermission;
 import fr.xephi.authme.settings.NewSetting;
 import fr.xephi.authme.settings.properties.ProtectionSettings;
+import fr.xephi.authme.task.JobGroup;
+import fr.xephi.authme.task.TaskScheduler;
 import fr.xephi.authme.util.BukkitService;
+import fr.xephi.authme.util.SlidingWindowCounter;
 import org.bukkit.entity.Player;
 
 import javax.inject.Inject;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static fr.xephi.authme.util.BukkitService.TICKS_PER_MINUTE;
-import static fr.xephi.authme.util.BukkitService.TICKS_PER_SECOND;
 
 /**
  * The AntiBot Service Management class.
  */
 public class AntiBot {
 
+    /** Number of seconds over which joining players are counted. */
+    private static final int JOIN_WINDOW_SECONDS = 15;
+
     private final NewSetting settings;
     private final Messages messages;
     private final PermissionsManager permissionsManager;
     private final BukkitService bukkitService;
-    public final CopyOnWriteArrayList<String> antibotKicked = new CopyOnWriteArrayList<String>();
-    private final CopyOnWriteArrayList<String> antibotPlayers = new CopyOnWriteArrayList<String>();
+    private final TaskScheduler taskScheduler;
+    public final Set<String> antibotKicked = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final SlidingWindowCounter joinCounter = new SlidingWindowCounter(JOIN_WINDOW_SECONDS);
     private AntiBotStatus antiBotStatus = AntiBotStatus.DISABLED;
 
     @Inject
     AntiBot(NewSetting settings, Messages messages, PermissionsManager permissionsManager,
-            BukkitService bukkitService) {
+            BukkitService bukkitService, TaskScheduler taskScheduler) {
         this.settings = settings;
         this.messages = messages;
         this.permissionsManager = permissionsManager;
         this.bukkitService = bukkitService;
+        this.taskScheduler = taskScheduler;
 
         setupAntiBotService();
     }
 
     private void setupAntiBotService() {
         if (settings.getProperty(ProtectionSettings.ENABLE_ANTIBOT)) {
-            bukkitService.scheduleSyncDelayedTask(new Runnable() {
+            taskScheduler.runSyncLater(JobGroup.ANTIBOT, new Runnable() {
                 @Override
                 public void run() {
                     antiBotStatus = AntiBotStatus.LISTENING;
@@ -71,12 +80,12 @@ public class AntiBot {
         }
 
         final int duration = settings.getProperty(ProtectionSettings.ANTIBOT_DURATION);
-        bukkitService.scheduleSyncDelayedTask(new Runnable() {
+        taskScheduler.runSyncLater(JobGroup.ANTIBOT, new Runnable() {
             @Override
             public void run() {
                 if (antiBotStatus == AntiBotStatus.ACTIVE) {
                     antiBotStatus = AntiBotStatus.LISTENING;
-                    antibotPlayers.clear();
+                    joinCounter.reset();
                     antibotKicked.clear();
                     for (String s : messages.retrieve(MessageKey.ANTIBOT_AUTO_DISABLED_MESSAGE)) {
                         bukkitService.broadcastMessage(s.replace("%m", Integer.toString(duration)));
@@ -91,7 +100,7 @@ public class AntiBot {
      *
      * @param player the player who joined the server
      */
-    public void handlePlayerJoin(final Player player) {
+    public void handlePlayerJoin(Player player) {
         if (antiBotStatus == AntiBotStatus.ACTIVE || antiBotStatus == AntiBotStatus.DISABLED) {
             return;
         }
@@ -99,17 +108,10 @@ public class AntiBot {
             return;
         }
 
-        antibotPlayers.add(player.getName().toLowerCase());
-        if (antibotPlayers.size() > settings.getProperty(ProtectionSettings.ANTIBOT_SENSIBILITY)) {
+        int joinCount = joinCounter.increment(System.currentTimeMillis());
+        if (joinCount > settings.getProperty(ProtectionSettings.ANTIBOT_SENSIBILITY)) {
             activateAntiBot();
-            return;
         }
-        bukkitService.scheduleSyncDelayedTask(new Runnable() {
-            @Override
-            public void run() {
-                antibotPlayers.remove(player.getName().toLowerCase());
-            }
-        }, 15 * TICKS_PER_SECOND);
     }
 
     public enum AntiBotStatus {
@@ -2,9 +2,14 @@ package fr.xephi.authme;
 
 import fr.xephi.authme.api.API;
 import fr.xephi.authme.api.NewAPI;
+import fr.xephi.authme.backup.BackupCause;
+import fr.xephi.authme.backup.BackupService;
+import fr.xephi.authme.cache.OnlineIpIndex;
 import fr.xephi.authme.cache.auth.PlayerAuth;
 import fr.xephi.authme.cache.auth.PlayerCache;
-import fr.xephi.authme.cache.backup.JsonCache;
+import fr.xephi.authme.cache.auth.SessionManager;
+import fr.xephi.authme.cache.auth.SessionStore;
+import fr.xephi.authme.cache.backup.LimboPlayerStorage;
 import fr.xephi.authme.cache.limbo.LimboCache;
 import fr.xephi.authme.cache.limbo.LimboPlayer;
 import fr.xephi.authme.command.CommandHandler;
@@ -50,11 +55,12 @@ import fr.xephi.authme.settings.properties.RestrictionSettings;
 import fr.xephi.authme.settings.properties.SecuritySettings;
 import fr.xephi.authme.settings.properties.SettingsFieldRetriever;
 import fr.xephi.authme.settings.propertymap.PropertyMap;
-import fr.xephi.authme.task.PurgeTask;
+import fr.xephi.authme.task.JobGroup;
+import fr.xephi.authme.task.PurgeService;
+import fr.xephi.authme.task.TaskScheduler;
 import fr.xephi.authme.util.BukkitService;
-import fr.xephi.authme.util.CollectionUtils;
 import fr.xephi.authme.util.FileUtils;
-import fr.xephi.authme.util.GeoLiteAPI;
+import fr.xephi.authme.util.GeoIpService;
 import fr.xephi.authme.util.MigrationService;
 import fr.xephi.authme.util.StringUtils;
 import fr.xephi.authme.util.Utils;
@@ -75,10 +81,10 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
-import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import static fr.xephi.authme.settings.properties.EmailSettings.MAIL_ACCOUNT;
@@ -99,10 +105,6 @@ public class AuthMe extends JavaPlugin {
 
     // Private Instances
     private static AuthMe plugin;
-    /*
-     *  Maps and stuff
-     */
-    public final ConcurrentHashMap<String, BukkitTask> sessions = new ConcurrentHashMap<>();
 
     /*
      * Public instances
@@ -124,13 +126,14 @@ public class AuthMe extends JavaPlugin {
     private PermissionsManager permsMan;
     private NewSetting newSettings;
     private Messages messages;
-    private JsonCache playerBackup;
     private PasswordSecurity passwordSecurity;
     private DataSource database;
     private PluginHooks pluginHooks;
     private SpawnLoader spawnLoader;
     private boolean autoPurging;
     private BukkitService bukkitService;
+    private TaskScheduler taskScheduler;
+    private GeoIpService geoIpService;
     private AuthMeServiceInitializer initializer;
 
     /**
@@ -247,6 +250,7 @@ public class AuthMe extends JavaPlugin {
 
         permsMan         = initializer.get(PermissionsManager.class);
         bukkitService    = initializer.get(BukkitService.class);
+        taskScheduler    = initializer.get(TaskScheduler.class);
         pluginHooks      = initializer.get(PluginHooks.class);
         passwordSecurity = initializer.get(PasswordSecurity.class);
         spawnLoader      = initializer.get(SpawnLoader.class);
@@ -263,7 +267,7 @@ public class AuthMe extends JavaPlugin {
         setupConsoleFilter();
 
         // Download and load GeoIp.dat file if absent
-        GeoLiteAPI.isDataAvailable();
+        geoIpService = initializer.get(GeoIpService.class);
 
         // Set up the mail API
         setupMailApi();
@@ -274,11 +278,7 @@ public class AuthMe extends JavaPlugin {
         // End of Hooks
 
         // Do a backup on start
-        new PerformBackup(this, newSettings).doBackup(PerformBackup.BackupCause.START);
-
-
-        // Setup the inventory backup
-        playerBackup = new JsonCache();
+        initializer.get(BackupService.class).doBackup(BackupCause.START);
 
 
         // Set up the BungeeCord hook
@@ -362,20 +362,34 @@ public class AuthMe extends JavaPlugin {
 
     private void reloadSupportHook() {
         if (database != null) {
-            int playersOnline = bukkitService.getOnlinePlayers().size();
-            if (playersOnline < 1) {
+            Collection<? extends Player> onlinePlayers = bukkitService.getOnlinePlayers();
+            if (onlinePlayers.isEmpty()) {
                 database.purgeLogged();
             } else if (Settings.reloadSupport) {
-                for (PlayerAuth auth : database.getLoggedPlayers()) {
-                    if (auth == null) {
-                        continue;
+                // Resume the sessions which were saved when the plugin was disabled
+                SessionManager sessionManager = initializer.get(SessionManager.class);
+                for (Player player : onlinePlayers) {
+                    String name = player.getName().toLowerCase();
+                    if (sessionManager.isSessionFromIp(name, Utils.getPlayerIp(player))) {
+                        sessionManager.cancelSessionExpiry(name);
+                        PlayerAuth auth = database.getAuth(name);
+                        if (auth != null) {
+                            PlayerCache.getInstance().addPlayer(auth);
+                        }
                     }
-                    auth.setLastLogin(new Date().getTime());
-                    database.updateSession(auth);
-                    PlayerCache.getInstance().addPlayer(auth);
                 }
             }
         }
+
+        // Rebuild the IP index for the players who are already online
+        OnlineIpIndex onlineIpIndex = initializer.get(OnlineIpIndex.class);
+        for (Player player : bukkitService.getOnlinePlayers()) {
+            String name = player.getName();
+            onlineIpIndex.addOnlinePlayer(name, Utils.getPlayerIp(player));
+            if (PlayerCache.getInstance().isAuthenticated(name)) {
+                onlineIpIndex.setLogged(name);
+            }
+        }
     }
 
     /**
@@ -439,22 +453,66 @@ public class AuthMe extends JavaPlugin {
         // Save player data
         BukkitService bukkitService = initializer.getIfAvailable(BukkitService.class);
         LimboCache limboCache = initializer.getIfAvailable(LimboCache.class);
+        SessionManager sessionManager = initializer.getIfAvailable(SessionManager.class);
+        LimboPlayerStorage limboPlayerStorage = initializer.getIfAvailable(LimboPlayerStorage.class);
+        if (limboPlayerStorage != null) {
+            limboPlayerStorage.disableAsyncFlush();
+        }
+        SessionStore sessionStore = initializer.getIfAvailable(SessionStore.class);
+        if (sessionStore != null) {
+            sessionStore.disableAsyncFlush();
+        }
 
-        if (bukkitService != null && limboCache != null) {
-            Collection<? extends Player> players = bukkitService.getOnlinePlayers();
-            for (Player player : players) {
-                savePlayer(player, limboCache);
+        Thread quitLocationSaver = null;
+        if (bukkitService != null && limboCache != null && sessionManager != null) {
+            final List<PlayerAuth> quitLocations = new ArrayList<>();
+            Map<String, String> sessionIps = new HashMap<>();
+            for (Player player : bukkitService.getOnlinePlayers()) {
+                savePlayer(player, limboCache, quitLocations, sessionIps);
+            }
+            if (!sessionIps.isEmpty()) {
+                sessionManager.persistSessions(sessionIps);
             }
+            if (!quitLocations.isEmpty() && database != null) {
+                quitLocationSaver = saveQuitLocations(quitLocations);
+            }
+        }
+
+        // Write the pending limbo and session changes since no more async tasks can be scheduled
+        if (limboPlayerStorage != null) {
+            limboPlayerStorage.flush();
+        }
+        if (sessionStore != null) {
+            sessionStore.flush();
+        }
+
+        // Stop the background jobs; the running ones are awaited before the data source is closed
+        final TaskScheduler scheduler = initializer.getIfAvailable(TaskScheduler.class);
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler.logStatistics();
         }
 
         // Do backup on stop if enabled
-        if (newSettings != null) {
-            new PerformBackup(this, newSettings).doBackup(PerformBackup.BackupCause.STOP);
+        BackupService backupService = initializer.getIfAvailable(BackupService.class);
+        if (backupService != null) {
+            backupService.doBackup(BackupCause.STOP);
         }
         final AuthMe pluginInstance = this;
+        final Thread pendingQuitLocationSaver = quitLocationSaver;
         new Thread(new Runnable() {
             @Override
             public void run() {
+                if (pendingQuitLocationSaver != null) {
+                    try {
+                        pendingQuitLocationSaver.join();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                if (scheduler != null && !scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
+                    getLogger().info("Background jobs did not finish within 5 seconds");
+                }
                 List<Integer> pendingTasks = new ArrayList<>();
                 for (BukkitTask pendingTask : getServer().getScheduler().getPendingTasks()) {
                     if (pendingTask.getOwner().equals(pluginInstance) && !pendingTask.isSync()) {
@@ -603,17 +661,31 @@ public class AuthMe extends JavaPlugin {
     }
 
     // Save Player Data
-    private void savePlayer(Player player, LimboCache limboCache) {
+    /**
+     * Restores the state of the given player before the server stops. The quit location and the session
+     * of authenticated players are added to the given collections so that they can be saved in one go.
+     *
+     * @param player the player to save
+     * @param limboCache the limbo cache
+     * @param quitLocations the list to add the player's quit location to
+     * @param sessionIps the map to add the player's IP address to, by name, if his session should be kept
+     */
+    private void savePlayer(Player player, LimboCache limboCache, List<PlayerAuth> quitLocations,
+                            Map<String, String> sessionIps) {
         if (safeIsNpc(player) || Utils.isUnrestricted(player)) {
             return;
         }
         String name = player.getName().toLowerCase();
-        if (PlayerCache.getInstance().isAuthenticated(name) && !player.isDead() && Settings.isSaveQuitLocationEnabled) {
-            final PlayerAuth auth = PlayerAuth.builder()
-                .name(player.getName().toLowerCase())
-                .realName(player.getName())
-                .location(player.getLocation()).build();
-            database.updateQuitLoc(auth);
+        if (PlayerCache.getInstance().isAuthenticated(name)) {
+            if (!player.isDead() && Settings.isSaveQuitLocationEnabled) {
+                quitLocations.add(PlayerAuth.builder()
+                    .name(name)
+                    .realName(player.getName())
+                    .location(player.getLocation()).build());
+            }
+            if (Settings.isSessionsEnabled || Settings.reloadSupport) {
+                sessionIps.put(name, Utils.getPlayerIp(player));
+            }
         }
         if (limboCache.hasLimboPlayer(name)) {
             LimboPlayer limbo = limboCache.getLimboPlayer(name);
@@ -621,17 +693,46 @@ public class AuthMe extends JavaPlugin {
                 player.teleport(limbo.getLoc());
             }
 
-            Utils.addNormal(player, limbo.getGroup());
+            // The plugin is stopping, so a group which is still being resolved cannot be restored anymore
+            if (limbo.isCaptured() && !StringUtils.isEmpty(limbo.getGroup())) {
+                Utils.addNormal(player, limbo.getGroup());
+            }
             player.setOp(limbo.isOperator());
             limbo.getTimeoutTask().cancel();
             limboCache.deleteLimboPlayer(name);
-            if (this.playerBackup.doesCacheExist(player)) {
-                this.playerBackup.removeCache(player);
-            }
         }
         PlayerCache.getInstance().removePlayer(name);
     }
 
+    /**
+     * Saves the given quit locations in a separate thread, waiting for it to finish for at most the
+     * configured amount of time so that a slow database cannot hold up the shutdown indefinitely.
+     *
+     * @param quitLocations the quit locations to save
+     * @return the thread saving the quit locations
+     */
+    private Thread saveQuitLocations(final List<PlayerAuth> quitLocations) {
+        Thread saver = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                database.updateQuitLoc(quitLocations);
+            }
+        }, "AuthMe-ShutdownPersistence");
+        saver.start();
+
+        final int timeout = newSettings == null ? 10 : newSettings.getProperty(PluginSettings.SHUTDOWN_SAVE_TIMEOUT);
+        try {
+            saver.join(TimeUnit.SECONDS.toMillis(timeout));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (saver.isAlive()) {
+            ConsoleLogger.showError("Saving the quit location of " + quitLocations.size()
+                + " players takes longer than " + timeout + " seconds; continuing the shutdown in the background");
+        }
+        return saver;
+    }
+
     private boolean safeIsNpc(Player player) {
         return pluginHooks != null && pluginHooks.isNpc(player) || player.hasMetadata("NPC");
     }
@@ -648,15 +749,7 @@ public class AuthMe extends JavaPlugin {
         Calendar calendar = Calendar.getInstance();
         calendar.add(Calendar.DATE, -newSettings.getProperty(PurgeSettings.DAYS_BEFORE_REMOVE_PLAYER));
         long until = calendar.getTimeInMillis();
-        Set<String> cleared = database.autoPurgeDatabase(until);
-        if (CollectionUtils.isEmpty(cleared)) {
-            return;
-        }
-
-        ConsoleLogger.info("AutoPurging the Database: " + cleared.size() + " accounts removed!");
-        ConsoleLogger.info("Purging user accounts...");
-        new PurgeTask(plugin, Bukkit.getConsoleSender(), cleared, true, Bukkit.getOfflinePlayers())
-                .runTaskTimer(plugin, 0, 1);
+        initializer.get(PurgeService.class).purgeInactiveAccounts(Bukkit.getConsoleSender(), until, true);
     }
 
     // Return the spawn location of a player
@@ -669,16 +762,14 @@ public class AuthMe extends JavaPlugin {
         if (!newSettings.getProperty(RECALL_PLAYERS)) {
             return;
         }
-        Bukkit.getScheduler().runTaskTimerAsynchronously(this, new Runnable() {
+        // Only the logged in players without email are visited, so the task needs no database access
+        taskScheduler.runSyncRepeating(JobGroup.RECALL_EMAIL, new Runnable() {
             @Override
             public void run() {
-                for (PlayerAuth auth : database.getLoggedPlayers()) {
-                    String email = auth.getEmail();
-                    if (StringUtils.isEmpty(email) || "your@email.com".equalsIgnoreCase(email)) {
-                        Player player = bukkitService.getPlayerExact(auth.getRealName());
-                        if (player != null) {
-                            messages.send(player, MessageKey.ADD_EMAIL_MESSAGE);
-                        }
+                for (String name : PlayerCache.getInstance().getNamesWithoutEmail()) {
+                    Player player = bukkitService.getPlayerExact(name);
+                    if (player != null) {
+                        messages.send(player, MessageKey.ADD_EMAIL_MESSAGE);
                     }
                 }
             }
@@ -699,7 +790,7 @@ public class AuthMe extends JavaPlugin {
             .replace("{WORLD}", player.getWorld().getName())
             .replace("{SERVER}", server.getServerName())
             .replace("{VERSION}", server.getBukkitVersion())
-            .replace("{COUNTRY}", GeoLiteAPI.getCountryName(ipAddress));
+            .replace("{COUNTRY}", geoIpService.getCountryName(ipAddress));
     }
 
 
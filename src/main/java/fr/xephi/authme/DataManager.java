@@ -1,9 +1,11 @@
 package fr.xephi.authme;
 
 import fr.xephi.authme.hooks.PluginHooks;
+import fr.xephi.authme.initialization.DataFolder;
 import fr.xephi.authme.permission.PermissionsManager;
 import fr.xephi.authme.settings.NewSetting;
 import fr.xephi.authme.settings.properties.PurgeSettings;
+import fr.xephi.authme.task.PurgeReport;
 import fr.xephi.authme.util.BukkitService;
 import fr.xephi.authme.util.Utils;
 import org.bukkit.OfflinePlayer;
@@ -11,11 +13,25 @@ import org.bukkit.Server;
 
 import javax.inject.Inject;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Set;
 
 import static fr.xephi.authme.util.StringUtils.makePath;
-import java.util.Set;
 
 /**
+ * Removes the data of purged players from the server and from third-party plugins.
+ * <p>
+ * Files named exactly after a player, such as the .dat files and the Essentials user data, are deleted
+ * directly by name, so the cost of the purge grows with the number of purged players only. Folders whose
+ * files may have several suffixes or a different case are read once with a {@link DirectoryStream}
+ * instead, matching the name of each file against a hash set of the purged players. In a dry run,
+ * matching files are only counted in the {@link PurgeReport}.
  */
 public class DataManager {
 
@@ -29,117 +45,141 @@ public class DataManager {
     private NewSetting settings;
     @Inject
     private PermissionsManager permissionsManager;
+    @Inject
+    @DataFolder
+    private File dataFolder;
 
     DataManager() { }
 
-    public void purgeAntiXray(Set<String> cleared) {
-        int i = 0;
-        File dataFolder = new File("." + File.separator + "plugins" + File.separator + "AntiXRayData"
-            + File.separator + "PlayerData");
-        if (!dataFolder.exists() || !dataFolder.isDirectory()) {
-            return;
-        }
+    public void purgeAntiXray(Set<String> cleared, PurgeReport report) {
+        File folder = new File(getPluginsFolder(), makePath("AntiXRayData", "PlayerData"));
+        purgeFolder(folder, "AntiXRayData", cleared, report, "");
+    }
 
-        for (String file : dataFolder.list()) {
-            if (cleared.contains(file.toLowerCase())) {
-                File playerFile = new File(dataFolder, file);
-                if (playerFile.exists() && playerFile.delete()) {
-                    i++;
-                }
-            }
-        }
+    public void purgeLimitedCreative(Set<String> cleared, PurgeReport report) {
+        File folder = new File(getPluginsFolder(), makePath("LimitedCreative", "inventories"));
+        purgeFolder(folder, "LimitedCreative", cleared, report, "_creative.yml", "_adventure.yml", ".yml");
+    }
 
-        ConsoleLogger.info("AutoPurge: Removed " + i + " AntiXRayData Files");
+    public void purgeDat(Set<OfflinePlayer> cleared, PurgeReport report) {
+        File folder = new File(server.getWorldContainer(),
+            makePath(settings.getProperty(PurgeSettings.DEFAULT_WORLD), "players"));
+        purgeFiles(folder, ".dat", toFileNames(cleared), ".dat", report);
     }
 
-    public synchronized void purgeLimitedCreative(Set<String> cleared) {
-        int i = 0;
-        File dataFolder = new File("." + File.separator + "plugins" + File.separator + "LimitedCreative"
-            + File.separator + "inventories");
-        if (!dataFolder.exists() || !dataFolder.isDirectory()) {
+    public void purgeEssentials(Set<OfflinePlayer> cleared, PurgeReport report) {
+        File essentialsDataFolder = pluginHooks.getEssentialsDataFolder();
+        if (essentialsDataFolder == null) {
+            ConsoleLogger.info("Cannot purge Essentials: plugin is not loaded");
             return;
         }
-        for (String file : dataFolder.list()) {
-            String name = file;
-            int idx;
-            idx = file.lastIndexOf("_creative.yml");
-            if (idx != -1) {
-                name = name.substring(0, idx);
-            } else {
-                idx = file.lastIndexOf("_adventure.yml");
-                if (idx != -1) {
-                    name = name.substring(0, idx);
-                } else {
-                    idx = file.lastIndexOf(".yml");
-                    if (idx != -1) {
-                        name = name.substring(0, idx);
-                    }
-                }
-            }
-            if (name.equals(file)) {
-                continue;
-            }
-            if (cleared.contains(name.toLowerCase())) {
-                File dataFile = new File(dataFolder, file);
-                if (dataFile.exists() && dataFile.delete()) {
-                    i++;
-                }
-            }
+        purgeFiles(new File(essentialsDataFolder, "userdata"), "Essentials", toFileNames(cleared), ".yml", report);
+    }
+
+    // TODO: What is this method for? Is it correct?
+    // TODO: Make it work with OfflinePlayers group data.
+    public synchronized void purgePermissions(Set<OfflinePlayer> cleared) {
+        for (OfflinePlayer offlinePlayer : cleared) {
+            String name = offlinePlayer.getName();
+            permissionsManager.removeAllGroups(bukkitService.getPlayerExact(name));
         }
-        ConsoleLogger.info("AutoPurge: Removed " + i + " LimitedCreative Survival, Creative and Adventure files");
     }
 
-    public synchronized void purgeDat(Set<OfflinePlayer> cleared) {
-        int i = 0;
-        File dataFolder = new File(server.getWorldContainer()
-                , makePath(settings.getProperty(PurgeSettings.DEFAULT_WORLD), "players"));
+    /**
+     * Deletes the file named after each target with the given suffix from the folder.
+     *
+     * @param folder the folder to purge
+     * @param category the type of data in the folder, for the report
+     * @param targets the file names to purge, without the suffix
+     * @param suffix the suffix of the files
+     * @param report the report to record the removed files in
+     */
+    private static void purgeFiles(File folder, String category, Set<String> targets, String suffix,
+                                   PurgeReport report) {
+        report.addCategory(category);
+        if (targets.isEmpty() || !folder.isDirectory()) {
+            return;
+        }
 
-        for (OfflinePlayer offlinePlayer : cleared) {
-            File playerFile = new File(dataFolder, Utils.getUUIDorName(offlinePlayer) + ".dat");
-            if (playerFile.delete()) {
-                i++;
+        long files = 0;
+        for (String target : targets) {
+            File file = new File(folder, target + suffix);
+            if (file.isFile() && purgeFile(file.toPath(), category, report)) {
+                ++files;
             }
         }
-
-        ConsoleLogger.info("AutoPurge: Removed " + i + " .dat Files");
+        logPurgedFiles(category, files, report);
     }
 
     /**
-     * Method purgeEssentials.
+     * Deletes the files of the folder whose lowercase name, without the first matching suffix, is among
+     * the targets. Files which end with none of the suffixes are skipped; pass an empty suffix to match
+     * whole file names.
      *
-     * @param cleared List of String
+     * @param folder the folder to purge
+     * @param category the type of data in the folder, for the report
+     * @param targets the lowercase names to purge
+     * @param report the report to record the removed files in
+     * @param suffixes the suffixes to strip from the file names, in order of precedence
      */
-    public void purgeEssentials(Set<OfflinePlayer> cleared) {
-        int i = 0;
-        File essentialsDataFolder = pluginHooks.getEssentialsDataFolder();
-        if (essentialsDataFolder == null) {
-            ConsoleLogger.info("Cannot purge Essentials: plugin is not loaded");
+    private static void purgeFolder(File folder, String category, Set<String> targets, PurgeReport report,
+                                    String... suffixes) {
+        report.addCategory(category);
+        if (targets.isEmpty() || !folder.isDirectory()) {
             return;
         }
 
-        final File userDataFolder = new File(essentialsDataFolder, "userdata");
-        if (!userDataFolder.exists() || !userDataFolder.isDirectory()) {
-            return;
+        long files = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder.toPath())) {
+            for (Path path : stream) {
+                String key = stripSuffix(path.getFileName().toString(), suffixes);
+                if (key != null && targets.contains(key.toLowerCase()) && purgeFile(path, category, report)) {
+                    ++files;
+                }
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            ConsoleLogger.logException("Could not read folder '" + folder + "' to purge:", e);
         }
+        logPurgedFiles(category, files, report);
+    }
 
-        for (OfflinePlayer offlinePlayer : cleared) {
-            File playerFile = new File(userDataFolder, Utils.getUUIDorName(offlinePlayer) + ".yml");
-            if (playerFile.exists() && playerFile.delete()) {
-                i++;
+    private static boolean purgeFile(Path path, String category, PurgeReport report) {
+        try {
+            long size = Files.readAttributes(path, BasicFileAttributes.class).size();
+            if (!report.isDryRun()) {
+                Files.delete(path);
             }
+            report.addFile(category, size);
+            return true;
+        } catch (IOException e) {
+            ConsoleLogger.showError("Could not purge file '" + path + "': " + e.getMessage());
+            return false;
         }
+    }
 
-        ConsoleLogger.info("AutoPurge: Removed " + i + " EssentialsFiles");
+    private static void logPurgedFiles(String category, long files, PurgeReport report) {
+        ConsoleLogger.info("AutoPurge: " + (report.isDryRun() ? "Would remove " : "Removed ")
+            + files + " " + category + " files");
     }
 
-    // TODO: What is this method for? Is it correct?
-    // TODO: Make it work with OfflinePlayers group data.
-    public synchronized void purgePermissions(Set<OfflinePlayer> cleared) {
-        for (OfflinePlayer offlinePlayer : cleared) {
-            String name = offlinePlayer.getName();
-            permissionsManager.removeAllGroups(bukkitService.getPlayerExact(name));
+    private static String stripSuffix(String fileName, String... suffixes) {
+        for (String suffix : suffixes) {
+            if (fileName.endsWith(suffix) && fileName.length() > suffix.length()) {
+                return fileName.substring(0, fileName.length() - suffix.length());
+            }
+        }
+        return null;
+    }
+
+    private static Set<String> toFileNames(Set<OfflinePlayer> players) {
+        Set<String> fileNames = new HashSet<>(players.size() * 4 / 3 + 1);
+        for (OfflinePlayer player : players) {
+            fileNames.add(Utils.getUUIDorName(player));
         }
+        return fileNames;
+    }
 
-        ConsoleLogger.info("AutoPurge: Removed permissions from " + cleared.size() + " player(s).");
+    private File getPluginsFolder() {
+        return dataFolder.getParentFile();
     }
 }
@@ -0,0 +1,11 @@
+package fr.xephi.authme.backup;
+
+/**
+ * Possible backup causes.
+ */
+public enum BackupCause {
+    START,
+    STOP,
+    COMMAND,
+    OTHER
+}
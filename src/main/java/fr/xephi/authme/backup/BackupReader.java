@@ -0,0 +1,129 @@
+package fr.xephi.authme.backup;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import fr.xephi.authme.cache.auth.PlayerAuth;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the accounts of a backup file written by {@link BackupWriter} one line at a time,
+ * so that the file never needs to be held in memory as a whole.
+ */
+final class BackupReader implements Closeable {
+
+    private final BufferedReader reader;
+    private final JsonParser parser = new JsonParser();
+    private long line;
+
+    /**
+     * Constructor.
+     *
+     * @param file the file to read, decompressed if its name ends with ".gz"
+     * @throws IOException if the file could not be opened
+     */
+    BackupReader(File file) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            if (file.getName().endsWith(".gz")) {
+                in = new GZIPInputStream(in);
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        reader = new BufferedReader(new InputStreamReader(in, Charsets.UTF_8));
+    }
+
+    /**
+     * Reads the next account of the backup.
+     *
+     * @return the next account, or null if the end of the file has been reached
+     * @throws IOException if the file could not be read or contains an invalid line
+     */
+    PlayerAuth next() throws IOException {
+        String text;
+        while ((text = reader.readLine()) != null) {
+            ++line;
+            if (!text.trim().isEmpty()) {
+                try {
+                    return fromJson(parser.parse(text).getAsJsonObject());
+                } catch (JsonParseException | IllegalStateException | UnsupportedOperationException
+                    | NumberFormatException e) {
+                    throw new IOException("Invalid account on line " + line, e);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Skips the given number of lines, e.g. to resume a restore which was interrupted.
+     *
+     * @param lines the number of lines to skip
+     * @throws IOException if the file could not be read
+     */
+    void skip(long lines) throws IOException {
+        while (line < lines && reader.readLine() != null) {
+            ++line;
+        }
+    }
+
+    /**
+     * @return the number of lines read so far
+     */
+    long getLine() {
+        return line;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private static PlayerAuth fromJson(JsonObject json) {
+        String name = getString(json, "name");
+        if (name == null) {
+            throw new JsonParseException("Account has no name");
+        }
+        return PlayerAuth.builder()
+            .name(name)
+            .realName(getString(json, "realName"))
+            .password(Strings.nullToEmpty(getString(json, "password")), getString(json, "salt"))
+            .ip(getString(json, "ip"))
+            .lastLogin(getLong(json, "lastLogin"))
+            .email(getString(json, "email"))
+            .locWorld(getString(json, "world"))
+            .locX(getDouble(json, "x"))
+            .locY(getDouble(json, "y"))
+            .locZ(getDouble(json, "z"))
+            .build();
+    }
+
+    private static String getString(JsonObject json, String key) {
+        JsonElement element = json.get(key);
+        return element == null || element.isJsonNull() ? null : element.getAsString();
+    }
+
+    private static long getLong(JsonObject json, String key) {
+        JsonElement element = json.get(key);
+        return element == null || element.isJsonNull() ? 0 : element.getAsLong();
+    }
+
+    private static double getDouble(JsonObject json, String key) {
+        JsonElement element = json.get(key);
+        return element == null || element.isJsonNull() ? 0 : element.getAsDouble();
+    }
+}
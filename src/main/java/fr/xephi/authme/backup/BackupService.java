@@ -0,0 +1,233 @@
+package fr.xephi.authme.backup;
+
+import com.google.common.annotations.VisibleForTesting;
+import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.cache.auth.PlayerAuth;
+import fr.xephi.authme.datasource.AuthConsumer;
+import fr.xephi.authme.datasource.DataSource;
+import fr.xephi.authme.initialization.DataFolder;
+import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.BackupSettings;
+import fr.xephi.authme.task.JobGroup;
+import fr.xephi.authme.task.TaskScheduler;
+import fr.xephi.authme.util.StringUtils;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Backs up the accounts of the data source to gzip-compressed files with one JSON object per account.
+ * <p>
+ * The accounts are streamed from the data source straight into the file at a limited speed, so that
+ * they are never all held in memory. A backup is only kept if all accounts could be read. With incremental
+ * backups enabled, only the accounts which logged in since the previous backup are written, except for
+ * a full backup at the configured interval. Changes which do not update the last login of an account,
+ * as well as deleted accounts, are therefore only reflected by the next full backup.
+ */
+public class BackupService {
+
+    static final String BACKUP_FOLDER = "backups";
+    static final String FULL_TYPE = "full";
+    static final String INCREMENTAL_TYPE = "incremental";
+
+    private static final String DATE_PATTERN = "yyyy-MM-dd_HH-mm-ss";
+    private static final String FILE_EXTENSION = ".ndjson.gz";
+
+    /** Pattern of the backup file names, with the date as first group and the type as second group. */
+    static final Pattern FILE_NAME_PATTERN = Pattern.compile(
+        "backup_(\\d{4}-\\d{2}-\\d{2}_\\d{2}-\\d{2}-\\d{2})_(" + FULL_TYPE + "|" + INCREMENTAL_TYPE + ")"
+            + Pattern.quote(FILE_EXTENSION));
+
+    private final File backupFolder;
+    private final DataSource dataSource;
+    private final TaskScheduler taskScheduler;
+    private final NewSetting settings;
+    private final AtomicBoolean isRunning = new AtomicBoolean();
+
+    @Inject
+    BackupService(@DataFolder File dataFolder, DataSource dataSource, TaskScheduler taskScheduler,
+                  NewSetting settings) {
+        this.backupFolder = new File(dataFolder, BACKUP_FOLDER);
+        this.dataSource = dataSource;
+        this.taskScheduler = taskScheduler;
+        this.settings = settings;
+    }
+
+    /**
+     * Performs a backup for the given reason if the configuration allows it. The backup is written
+     * in the background, except on shutdown, where the task scheduler no longer accepts jobs: an
+     * incremental backup is then written right away without speed limit, so that shutdown only waits
+     * for the accounts which logged in during the session. A full backup is never written on shutdown.
+     *
+     * @param cause The cause of the backup.
+     */
+    public void doBackup(final BackupCause cause) {
+        if (!settings.getProperty(BackupSettings.ENABLED)) {
+            // Print a warning if the backup was requested via command or by another plugin
+            if (cause == BackupCause.COMMAND || cause == BackupCause.OTHER) {
+                ConsoleLogger.showError("Can't perform a Backup: disabled in configuration. Cause of the Backup: "
+                    + cause.name());
+            }
+            return;
+        }
+
+        // Check whether a backup should be made at the specified point in time
+        if (BackupCause.START.equals(cause) && !settings.getProperty(BackupSettings.ON_SERVER_START)
+            || BackupCause.STOP.equals(cause) && !settings.getProperty(BackupSettings.ON_SERVER_STOP)) {
+            return;
+        }
+
+        if (BackupCause.STOP.equals(cause)) {
+            long now = System.currentTimeMillis();
+            if (getIncrementalStart(now, true) < 0) {
+                ConsoleLogger.info("Skipping the backup on shutdown: a full backup is due, which is deferred"
+                    + " to the next backup after the server has started");
+                return;
+            }
+            logResult(performBackup(now, true), cause);
+            return;
+        }
+        taskScheduler.runAsyncDedicated(JobGroup.BACKUP, "Backup", new Runnable() {
+            @Override
+            public void run() {
+                logResult(performBackup(System.currentTimeMillis(), false), cause);
+            }
+        });
+    }
+
+    /**
+     * Writes a backup of the accounts to the backup folder.
+     *
+     * @param now the current time, which the backup file is named after
+     * @param isShutdown true to only write an incremental backup, without speed limit
+     * @return true if the backup was written, false otherwise
+     */
+    @VisibleForTesting
+    boolean performBackup(long now, boolean isShutdown) {
+        if (!isRunning.compareAndSet(false, true)) {
+            ConsoleLogger.showError("Skipping backup: another backup is still being written");
+            return false;
+        }
+        try {
+            if (!backupFolder.exists() && !backupFolder.mkdirs()) {
+                ConsoleLogger.showError("Could not create the backup folder '" + backupFolder + "'");
+                return false;
+            }
+            // Name the file after the time before the query, so that the next incremental backup
+            // includes the accounts which logged in while this one was being written
+            long since = getIncrementalStart(now, isShutdown);
+            if (isShutdown && since < 0) {
+                ConsoleLogger.showError("Skipping backup: a full backup cannot be written on shutdown");
+                return false;
+            }
+            String type = since < 0 ? FULL_TYPE : INCREMENTAL_TYPE;
+            long maxBytesPerSecond = isShutdown
+                ? 0 : settings.getProperty(BackupSettings.MAX_KILOBYTES_PER_SECOND) * 1024L;
+            int accounts = writeBackup(new File(backupFolder, toFileName(now, type)), since, maxBytesPerSecond);
+            if (accounts < 0) {
+                ConsoleLogger.showError("Could not read the accounts to back up from the data source");
+                return false;
+            }
+            ConsoleLogger.info("Wrote " + type + " backup of " + accounts + " accounts");
+            return true;
+        } catch (IOException e) {
+            ConsoleLogger.showError("Encountered an error during backup: " + StringUtils.formatException(e));
+            ConsoleLogger.writeStackTrace(e);
+            return false;
+        } finally {
+            isRunning.set(false);
+        }
+    }
+
+    /**
+     * Returns the time from which the accounts should be backed up, or -1 if a full backup is due. On shutdown,
+     * a full backup is only due if incremental backups are disabled or no full backup exists yet.
+     */
+    private long getIncrementalStart(long now, boolean isShutdown) {
+        if (!settings.getProperty(BackupSettings.INCREMENTAL)) {
+            return -1;
+        }
+        long lastBackup = -1;
+        long lastFullBackup = -1;
+        File[] files = backupFolder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Matcher matcher = FILE_NAME_PATTERN.matcher(file.getName());
+                if (matcher.matches()) {
+                    long time = parseDate(matcher.group(1));
+                    lastBackup = Math.max(lastBackup, time);
+                    if (FULL_TYPE.equals(matcher.group(2))) {
+                        lastFullBackup = Math.max(lastFullBackup, time);
+                    }
+                }
+            }
+        }
+        long fullBackupInterval = TimeUnit.HOURS.toMillis(
+            settings.getProperty(BackupSettings.FULL_BACKUP_INTERVAL_HOURS));
+        if (lastFullBackup < 0 || !isShutdown && now - lastFullBackup >= fullBackupInterval) {
+            return -1;
+        }
+        return lastBackup;
+    }
+
+    /**
+     * Writes the accounts which logged in since the given time to the given file.
+     *
+     * @return the number of accounts written, or -1 if the accounts could not be read
+     */
+    private int writeBackup(File file, long since, long maxBytesPerSecond) throws IOException {
+        // Write to a temporary file so that an interrupted backup is never taken for a complete one
+        File partFile = new File(file.getPath() + ".part");
+        int accounts = -1;
+        try {
+            try (final BackupWriter writer = new BackupWriter(partFile, maxBytesPerSecond)) {
+                boolean isComplete = dataSource.exportAuths(since, new AuthConsumer() {
+                    @Override
+                    public void accept(PlayerAuth auth) throws IOException {
+                        writer.write(auth);
+                    }
+                });
+                if (!isComplete) {
+                    return -1;
+                }
+                accounts = writer.getAccounts();
+            }
+        } finally {
+            if (accounts < 0) {
+                Files.deleteIfExists(partFile.toPath());
+            }
+        }
+        Files.move(partFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return accounts;
+    }
+
+    private static void logResult(boolean isSuccessful, BackupCause cause) {
+        if (isSuccessful) {
+            ConsoleLogger.info("A backup has been performed successfully. Cause of the Backup: " + cause.name());
+        } else {
+            ConsoleLogger.showError("Error while performing a backup! Cause of the Backup: " + cause.name());
+        }
+    }
+
+    static String toFileName(long time, String type) {
+        return "backup_" + new SimpleDateFormat(DATE_PATTERN).format(new Date(time)) + "_" + type + FILE_EXTENSION;
+    }
+
+    private static long parseDate(String date) {
+        try {
+            return new SimpleDateFormat(DATE_PATTERN).parse(date).getTime();
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package fr.xephi.authme.backup;
+
+import com.google.common.base.Charsets;
+import com.google.gson.JsonObject;
+import fr.xephi.authme.cache.auth.PlayerAuth;
+import fr.xephi.authme.security.crypts.HashedPassword;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes accounts to a gzip-compressed backup file with one JSON object per line.
+ */
+final class BackupWriter implements Closeable {
+
+    private final Writer writer;
+    private int accounts;
+
+    /**
+     * Constructor.
+     *
+     * @param file the file to write to
+     * @param maxBytesPerSecond the maximum number of bytes to write to the disk per second, 0 for no limit
+     * @throws IOException if the file could not be opened
+     */
+    BackupWriter(File file, long maxBytesPerSecond) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        if (maxBytesPerSecond > 0) {
+            out = new ThrottledOutputStream(out, maxBytesPerSecond);
+        }
+        try {
+            writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(out), Charsets.UTF_8));
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the given account to the backup.
+     *
+     * @param auth the account to write
+     * @throws IOException if the account could not be written
+     */
+    void write(PlayerAuth auth) throws IOException {
+        writer.write(toJson(auth).toString());
+        writer.write('\n');
+        ++accounts;
+    }
+
+    /**
+     * @return the number of accounts written so far
+     */
+    int getAccounts() {
+        return accounts;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private static JsonObject toJson(PlayerAuth auth) {
+        JsonObject json = new JsonObject();
+        json.addProperty("name", auth.getNickname());
+        json.addProperty("realName", auth.getRealName());
+        HashedPassword password = auth.getPassword();
+        if (password != null) {
+            json.addProperty("password", password.getHash());
+            json.addProperty("salt", password.getSalt());
+        }
+        json.addProperty("ip", auth.getIp());
+        json.addProperty("lastLogin", auth.getLastLogin());
+        json.addProperty("email", auth.getEmail());
+        json.addProperty("world", auth.getWorld());
+        json.addProperty("x", auth.getQuitLocX());
+        json.addProperty("y", auth.getQuitLocY());
+        json.addProperty("z", auth.getQuitLocZ());
+        return json;
+    }
+}
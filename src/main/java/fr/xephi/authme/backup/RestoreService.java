@@ -0,0 +1,315 @@
+package fr.xephi.authme.backup;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.cache.auth.PlayerAuth;
+import fr.xephi.authme.datasource.DataSource;
+import fr.xephi.authme.datasource.DataSourceType;
+import fr.xephi.authme.initialization.DataFolder;
+import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.BackupSettings;
+import fr.xephi.authme.task.JobGroup;
+import fr.xephi.authme.task.TaskScheduler;
+import fr.xephi.authme.util.StringUtils;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+
+/**
+ * Restores the accounts of backup files written by the {@link BackupService}.
+ * <p>
+ * A backup file is read and parsed line by line on a thread of its own, which hands batches of accounts
+ * to a dedicated pool with one thread per configured connection. Each batch is saved in its own transaction. The number of lines which have been fully saved is kept
+ * in a checkpoint file next to the backup, so that running the restore again after a failure
+ * resumes where it stopped. The checkpoints are removed once all files have been restored.
+ */
+public class RestoreService {
+
+    /** File name argument to restore the latest full backup and the incremental backups made after it. */
+    static final String LATEST = "latest";
+    static final String CHECKPOINT_EXTENSION = ".checkpoint";
+
+    private final File backupFolder;
+    private final DataSource dataSource;
+    private final TaskScheduler taskScheduler;
+    private final NewSetting settings;
+    private final AtomicBoolean isRunning = new AtomicBoolean();
+
+    @Inject
+    RestoreService(@DataFolder File dataFolder, DataSource dataSource, TaskScheduler taskScheduler,
+                   NewSetting settings) {
+        this.backupFolder = new File(dataFolder, BackupService.BACKUP_FOLDER);
+        this.dataSource = dataSource;
+        this.taskScheduler = taskScheduler;
+        this.settings = settings;
+    }
+
+    /**
+     * Restores the given backup in the background and reports the result to the sender.
+     *
+     * @param sender the sender who requested the restore
+     * @param fileName the name of the file in the backup folder, or "latest"
+     */
+    public void restore(final CommandSender sender, String fileName) {
+        if (dataSource.getType() == DataSourceType.FILE) {
+            sender.sendMessage(ChatColor.RED + "Restoring a backup is not supported for the flat file backend");
+            return;
+        }
+        final List<File> files = findBackupFiles(fileName);
+        if (files.isEmpty()) {
+            sender.sendMessage(ChatColor.RED + "Could not find the backup '" + fileName + "' in the backup folder");
+            return;
+        }
+        if (!isRunning.compareAndSet(false, true)) {
+            sender.sendMessage(ChatColor.RED + "A backup is already being restored");
+            return;
+        }
+
+        sender.sendMessage("Restoring " + files.size() + " backup file(s) in the background...");
+        boolean isStarted = taskScheduler.runAsyncDedicated(JobGroup.BACKUP, "Restore", new Runnable() {
+            @Override
+            public void run() {
+                String result;
+                try {
+                    long accounts = restoreFiles(files);
+                    ConsoleLogger.info("Restored " + accounts + " accounts from " + files.size() + " backup file(s)");
+                    result = ChatColor.GREEN + "Restored " + accounts + " accounts from the backup";
+                } catch (IOException | RuntimeException e) {
+                    ConsoleLogger.logException("Could not restore the backup:", e);
+                    result = ChatColor.RED + "Could not restore the backup: " + StringUtils.formatException(e)
+                        + ". Run the command again to resume the restore";
+                } finally {
+                    isRunning.set(false);
+                }
+
+                final String message = result;
+                taskScheduler.runSync(JobGroup.BACKUP, new Runnable() {
+                    @Override
+                    public void run() {
+                        sender.sendMessage(message);
+                    }
+                });
+            }
+        });
+        if (!isStarted) {
+            isRunning.set(false);
+            sender.sendMessage(ChatColor.RED + "Could not start the restore");
+        }
+    }
+
+    /**
+     * Restores the given backup files one after the other.
+     *
+     * @param files the files to restore
+     * @return the number of accounts saved
+     * @throws IOException if a file could not be read or a batch of accounts could not be saved
+     */
+    @VisibleForTesting
+    long restoreFiles(List<File> files) throws IOException {
+        // SQLite only allows one writer at a time, so parallel transactions would just wait on each other
+        int connections = dataSource.getType() == DataSourceType.SQLITE
+            ? 1 : Math.max(1, settings.getProperty(BackupSettings.RESTORE_CONNECTIONS));
+        int batchSize = Math.max(1, settings.getProperty(BackupSettings.RESTORE_BATCH_SIZE));
+        ExecutorService executor = Executors.newFixedThreadPool(connections,
+            new ThreadFactoryBuilder().setNameFormat("AuthMe-Restore-%d").setDaemon(true).build());
+        try {
+            long accounts = 0;
+            for (File file : files) {
+                accounts += restoreFile(file, executor, connections, batchSize);
+            }
+            for (File file : files) {
+                Files.deleteIfExists(getCheckpointFile(file).toPath());
+            }
+            return accounts;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long restoreFile(File file, ExecutorService executor, int connections, int batchSize)
+        throws IOException {
+        File checkpointFile = getCheckpointFile(file);
+        ImportProgress progress = new ImportProgress(checkpointFile, readCheckpoint(checkpointFile));
+        // Only read ahead as many batches as there are connections to save them
+        Semaphore permits = new Semaphore(connections);
+        try (BackupReader reader = new BackupReader(file)) {
+            reader.skip(progress.getLine());
+            List<PlayerAuth> batch = new ArrayList<>(batchSize);
+            PlayerAuth auth;
+            while (!progress.hasFailed() && (auth = reader.next()) != null) {
+                batch.add(auth);
+                if (batch.size() >= batchSize) {
+                    submitBatch(executor, permits, progress, batch, reader.getLine());
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty() && !progress.hasFailed()) {
+                submitBatch(executor, permits, progress, batch, reader.getLine());
+            }
+        } finally {
+            // Wait for the submitted batches to be saved
+            permits.acquireUninterruptibly(connections);
+        }
+
+        if (progress.hasFailed()) {
+            throw new IOException("Could not save the accounts after line " + progress.getLine()
+                + " of '" + file.getName() + "'");
+        }
+        return progress.getAccounts();
+    }
+
+    private void submitBatch(ExecutorService executor, final Semaphore permits, final ImportProgress progress,
+                             final List<PlayerAuth> batch, final long endLine) {
+        permits.acquireUninterruptibly();
+        final int index = progress.addBatch();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    boolean isSaved = false;
+                    try {
+                        isSaved = dataSource.importAuths(batch);
+                    } finally {
+                        progress.finishBatch(index, endLine, batch.size(), isSaved);
+                        permits.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            progress.finishBatch(index, endLine, batch.size(), false);
+            permits.release();
+        }
+    }
+
+    private List<File> findBackupFiles(String fileName) {
+        if (LATEST.equalsIgnoreCase(fileName)) {
+            return findLatestBackupFiles();
+        }
+        File file = new File(backupFolder, fileName);
+        // Only accept files directly in the backup folder
+        if (file.isFile() && backupFolder.equals(file.getParentFile())) {
+            return Collections.singletonList(file);
+        }
+        return Collections.emptyList();
+    }
+
+    private List<File> findLatestBackupFiles() {
+        String[] names = backupFolder.list();
+        if (names == null) {
+            return Collections.emptyList();
+        }
+        // The file names start with the date, so sorting them puts the backups in chronological order
+        Arrays.sort(names);
+        List<File> files = new ArrayList<>();
+        for (String name : names) {
+            Matcher matcher = BackupService.FILE_NAME_PATTERN.matcher(name);
+            if (matcher.matches()) {
+                if (BackupService.FULL_TYPE.equals(matcher.group(2))) {
+                    files.clear();
+                    files.add(new File(backupFolder, name));
+                } else if (!files.isEmpty()) {
+                    files.add(new File(backupFolder, name));
+                }
+            }
+        }
+        return files;
+    }
+
+    private static File getCheckpointFile(File backupFile) {
+        return new File(backupFile.getPath() + CHECKPOINT_EXTENSION);
+    }
+
+    private static long readCheckpoint(File checkpointFile) throws IOException {
+        if (!checkpointFile.exists()) {
+            return 0;
+        }
+        String content = new String(Files.readAllBytes(checkpointFile.toPath()), Charsets.UTF_8).trim();
+        try {
+            return Long.parseLong(content);
+        } catch (NumberFormatException e) {
+            // Saving the accounts again does no harm, so start from the beginning
+            ConsoleLogger.showError("Ignoring invalid checkpoint '" + content + "' in '" + checkpointFile + "'");
+            return 0;
+        }
+    }
+
+    /**
+     * Keeps track of the batches of one backup file. As the batches may finish in any order,
+     * the checkpoint only advances to the end of a batch once all previous batches have been saved.
+     */
+    private static final class ImportProgress {
+
+        private final File checkpointFile;
+        private final Map<Integer, Long> finishedBatches = new HashMap<>();
+        private int batches;
+        private int nextBatch;
+        private long line;
+        private long accounts;
+        private boolean hasFailed;
+
+        ImportProgress(File checkpointFile, long line) {
+            this.checkpointFile = checkpointFile;
+            this.line = line;
+        }
+
+        synchronized int addBatch() {
+            return batches++;
+        }
+
+        synchronized void finishBatch(int batch, long endLine, int size, boolean isSaved) {
+            if (!isSaved) {
+                hasFailed = true;
+                return;
+            }
+            accounts += size;
+            finishedBatches.put(batch, endLine);
+            long previousLine = line;
+            while (finishedBatches.containsKey(nextBatch)) {
+                line = finishedBatches.remove(nextBatch);
+                ++nextBatch;
+            }
+            if (line != previousLine) {
+                writeCheckpoint();
+            }
+        }
+
+        private void writeCheckpoint() {
+            try {
+                Files.write(checkpointFile.toPath(), Long.toString(line).getBytes(Charsets.UTF_8));
+            } catch (IOException e) {
+                ConsoleLogger.showError("Could not write the restore checkpoint to '" + checkpointFile + "': "
+                    + StringUtils.formatException(e));
+            }
+        }
+
+        synchronized boolean hasFailed() {
+            return hasFailed;
+        }
+
+        synchronized long getLine() {
+            return line;
+        }
+
+        synchronized long getAccounts() {
+            return accounts;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package fr.xephi.authme.backup;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Output stream which sleeps whenever more bytes have been written than the given rate allows,
+ * so that a large backup does not saturate the disk of the server.
+ */
+final class ThrottledOutputStream extends FilterOutputStream {
+
+    /** Don't sleep for less than this, as short sleeps are imprecise. */
+    private static final long MIN_SLEEP_MILLIS = 10;
+
+    private final long bytesPerSecond;
+    private final long startNanos = System.nanoTime();
+    private long bytesWritten;
+
+    /**
+     * Constructor.
+     *
+     * @param out the stream to write to
+     * @param bytesPerSecond the maximum number of bytes to write per second
+     */
+    ThrottledOutputStream(OutputStream out, long bytesPerSecond) {
+        super(out);
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        ++bytesWritten;
+        throttle();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        bytesWritten += len;
+        throttle();
+    }
+
+    private void throttle() throws IOException {
+        long expectedMillis = bytesWritten * 1000 / bytesPerSecond;
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        long sleepMillis = expectedMillis - elapsedMillis;
+        if (sleepMillis >= MIN_SLEEP_MILLIS) {
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while writing the backup");
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package fr.xephi.authme.cache;
+
+import fr.xephi.authme.initialization.SettingsDependent;
+import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.RestrictionSettings;
+import fr.xephi.authme.util.IpAddress;
+
+import javax.inject.Inject;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory index of the online players by IP address. Keeps track of which online players
+ * are logged in so that per-IP limits can be verified without iterating over all online
+ * players or querying the data source.
+ * <p>
+ * The players are indexed by network, as configured with {@link RestrictionSettings#IPV4_NETWORK_PREFIX}
+ * and {@link RestrictionSettings#IPV6_NETWORK_PREFIX}, so that players who switch between the addresses
+ * of one network are still counted together.
+ */
+public class OnlineIpIndex implements SettingsDependent {
+
+    private final Map<String, String> ipByName = new HashMap<>();
+    private final Map<String, Set<String>> onlineNamesByIp = new HashMap<>();
+    private final Map<String, Set<String>> loggedNamesByIp = new HashMap<>();
+    private int ipv4Prefix;
+    private int ipv6Prefix;
+
+    @Inject
+    OnlineIpIndex(NewSetting settings) {
+        loadSettings(settings);
+    }
+
+    @Override
+    public synchronized void loadSettings(NewSetting settings) {
+        ipv4Prefix = settings.getProperty(RestrictionSettings.IPV4_NETWORK_PREFIX);
+        ipv6Prefix = settings.getProperty(RestrictionSettings.IPV6_NETWORK_PREFIX);
+
+        // Index the players again in case the networks have changed
+        Set<String> loggedNames = new HashSet<>();
+        for (Set<String> names : loggedNamesByIp.values()) {
+            loggedNames.addAll(names);
+        }
+        onlineNamesByIp.clear();
+        loggedNamesByIp.clear();
+        for (Map.Entry<String, String> entry : ipByName.entrySet()) {
+            String network = toNetwork(entry.getValue());
+            addToIndex(onlineNamesByIp, network, entry.getKey());
+            if (loggedNames.contains(entry.getKey())) {
+                addToIndex(loggedNamesByIp, network, entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Registers the player as being online with the given IP address.
+     *
+     * @param name the name of the player
+     * @param ip the IP address of the player
+     */
+    public synchronized void addOnlinePlayer(String name, String ip) {
+        final String lowerName = name.toLowerCase();
+        final String network = toNetwork(ip);
+        String previousIp = ipByName.put(lowerName, ip);
+        if (previousIp != null) {
+            String previousNetwork = toNetwork(previousIp);
+            if (!previousNetwork.equals(network)) {
+                removeFromIndex(onlineNamesByIp, previousNetwork, lowerName);
+                removeFromIndex(loggedNamesByIp, previousNetwork, lowerName);
+            }
+        }
+        addToIndex(onlineNamesByIp, network, lowerName);
+    }
+
+    /**
+     * Removes the player from the index, e.g. when he leaves the server.
+     *
+     * @param name the name of the player
+     */
+    public synchronized void removeOnlinePlayer(String name) {
+        final String lowerName = name.toLowerCase();
+        String ip = ipByName.remove(lowerName);
+        if (ip != null) {
+            String network = toNetwork(ip);
+            removeFromIndex(onlineNamesByIp, network, lowerName);
+            removeFromIndex(loggedNamesByIp, network, lowerName);
+        }
+    }
+
+    /**
+     * Marks the online player as logged in. Has no effect if the player is not online.
+     *
+     * @param name the name of the player
+     */
+    public synchronized void setLogged(String name) {
+        final String lowerName = name.toLowerCase();
+        String ip = ipByName.get(lowerName);
+        if (ip != null) {
+            addToIndex(loggedNamesByIp, toNetwork(ip), lowerName);
+        }
+    }
+
+    /**
+     * Marks the online player as not logged in.
+     *
+     * @param name the name of the player
+     */
+    public synchronized void setUnlogged(String name) {
+        final String lowerName = name.toLowerCase();
+        String ip = ipByName.get(lowerName);
+        if (ip != null) {
+            removeFromIndex(loggedNamesByIp, toNetwork(ip), lowerName);
+        }
+    }
+
+    /**
+     * Returns the number of online players in the network of the given IP address.
+     *
+     * @param ip the IP address to look up
+     * @return number of online players using the IP address' network
+     */
+    public synchronized int countOnlinePlayers(String ip) {
+        return size(onlineNamesByIp.get(toNetwork(ip)));
+    }
+
+    /**
+     * Returns the number of logged in players in the network of the given IP address, not counting
+     * the given player.
+     *
+     * @param ip the IP address to look up
+     * @param excludedName the name of the player to ignore
+     * @return number of logged in players in the IP address' network, other than the excluded player
+     */
+    public synchronized int countLoggedPlayers(String ip, String excludedName) {
+        Set<String> names = loggedNamesByIp.get(toNetwork(ip));
+        int count = size(names);
+        if (count > 0 && names.contains(excludedName.toLowerCase())) {
+            --count;
+        }
+        return count;
+    }
+
+    private String toNetwork(String ip) {
+        return IpAddress.toNetworkKey(ip, ipv4Prefix, ipv6Prefix);
+    }
+
+    private static void addToIndex(Map<String, Set<String>> index, String ip, String name) {
+        Set<String> names = index.get(ip);
+        if (names == null) {
+            names = new HashSet<>();
+            index.put(ip, names);
+        }
+        names.add(name);
+    }
+
+    private static void removeFromIndex(Map<String, Set<String>> index, String ip, String name) {
+        Set<String> names = index.get(ip);
+        if (names != null && names.remove(name) && names.isEmpty()) {
+            index.remove(ip);
+        }
+    }
+
+    private static int size(Set<String> names) {
+        return names == null ? 0 : names.size();
+    }
+}
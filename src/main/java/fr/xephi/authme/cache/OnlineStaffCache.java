@@ -0,0 +1,84 @@
+package fr.xephi.authme.cache;
+
+import fr.xephi.authme.initialization.Reloadable;
+import fr.xephi.authme.permission.AdminPermission;
+import fr.xephi.authme.permission.PermissionsManager;
+import fr.xephi.authme.util.BukkitService;
+import org.bukkit.entity.Player;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the names of the online players who may see the other accounts of players
+ * ({@link AdminPermission#SEE_OTHER_ACCOUNTS}), so that the permission does not have to be
+ * checked for every online player whenever someone logs in.
+ * <p>
+ * Bukkit does not fire any event when a player's permissions change, so the permission is
+ * verified again whenever the player joins or logs in, and for all players on reload.
+ */
+public class OnlineStaffCache implements Reloadable {
+
+    private final Set<String> staffNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final PermissionsManager permissionsManager;
+    private final BukkitService bukkitService;
+
+    @Inject
+    OnlineStaffCache(PermissionsManager permissionsManager, BukkitService bukkitService) {
+        this.permissionsManager = permissionsManager;
+        this.bukkitService = bukkitService;
+    }
+
+    /**
+     * Verifies whether the given player may see other accounts and updates the cache accordingly.
+     *
+     * @param player the player to process
+     */
+    public void refresh(Player player) {
+        final String name = player.getName().toLowerCase();
+        if (permissionsManager.hasPermission(player, AdminPermission.SEE_OTHER_ACCOUNTS)) {
+            staffNames.add(name);
+        } else {
+            staffNames.remove(name);
+        }
+    }
+
+    /**
+     * Removes the player from the cache, e.g. when he leaves the server.
+     *
+     * @param name the name of the player
+     */
+    public void remove(String name) {
+        staffNames.remove(name.toLowerCase());
+    }
+
+    /**
+     * Returns the online players who may see the other accounts of players.
+     *
+     * @return the online staff members
+     */
+    public List<Player> getOnlineStaff() {
+        List<Player> staff = new ArrayList<>(staffNames.size());
+        for (String name : staffNames) {
+            Player player = bukkitService.getPlayerExact(name);
+            if (player != null && player.isOnline()) {
+                staff.add(player);
+            }
+        }
+        return staff;
+    }
+
+    @PostConstruct
+    @Override
+    public void reload() {
+        staffNames.clear();
+        for (Player player : bukkitService.getOnlinePlayers()) {
+            refresh(player);
+        }
+    }
+}
@@ -4,8 +4,12 @@ import fr.xephi.authme.initialization.SettingsDependent;
 import fr.xephi.authme.output.MessageKey;
 import fr.xephi.authme.output.Messages;
 import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.RestrictionSettings;
 import fr.xephi.authme.settings.properties.SecuritySettings;
+import fr.xephi.authme.task.JobGroup;
+import fr.xephi.authme.task.TaskScheduler;
 import fr.xephi.authme.util.BukkitService;
+import fr.xephi.authme.util.IpAddress;
 import fr.xephi.authme.util.Utils;
 import org.bukkit.entity.Player;
 
@@ -14,7 +18,9 @@ import java.util.Date;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Manager for handling tempbans
+ * Manager for handling tempbans. Failed logins are counted per network (see
+ * {@link RestrictionSettings#IPV4_NETWORK_PREFIX}), so that the count cannot be evaded by switching
+ * between the addresses of one network; the tempban itself applies to the address of the player.
  */
 // TODO Gnat008 20160613: Figure out the best way to remove entries based on time
 public class TempbanManager implements SettingsDependent {
@@ -23,16 +29,21 @@ public class TempbanManager implements SettingsDependent {
 
     private final ConcurrentHashMap<String, Integer> ipLoginFailureCounts;
     private final BukkitService bukkitService;
+    private final TaskScheduler taskScheduler;
     private final Messages messages;
 
     private boolean isEnabled;
     private int threshold;
     private int length;
+    private int ipv4Prefix;
+    private int ipv6Prefix;
 
     @Inject
-    TempbanManager(BukkitService bukkitService, Messages messages, NewSetting settings) {
+    TempbanManager(BukkitService bukkitService, TaskScheduler taskScheduler, Messages messages,
+                   NewSetting settings) {
         this.ipLoginFailureCounts = new ConcurrentHashMap<>();
         this.bukkitService = bukkitService;
+        this.taskScheduler = taskScheduler;
         this.messages = messages;
         loadSettings(settings);
     }
@@ -44,12 +55,13 @@ public class TempbanManager implements SettingsDependent {
      */
     public void increaseCount(String address) {
         if (isEnabled) {
-            Integer count = ipLoginFailureCounts.get(address);
+            String network = toNetwork(address);
+            Integer count = ipLoginFailureCounts.get(network);
 
             if (count == null) {
-                ipLoginFailureCounts.put(address, 1);
+                ipLoginFailureCounts.put(network, 1);
             } else {
-                ipLoginFailureCounts.put(address, count + 1);
+                ipLoginFailureCounts.put(network, count + 1);
             }
         }
     }
@@ -61,7 +73,7 @@ public class TempbanManager implements SettingsDependent {
      */
     public void resetCount(String address) {
         if (isEnabled) {
-            ipLoginFailureCounts.remove(address);
+            ipLoginFailureCounts.remove(toNetwork(address));
         }
     }
 
@@ -73,7 +85,7 @@ public class TempbanManager implements SettingsDependent {
      */
     public boolean shouldTempban(String address) {
         if (isEnabled) {
-            Integer count = ipLoginFailureCounts.get(address);
+            Integer count = ipLoginFailureCounts.get(toNetwork(address));
             return count != null && count >= threshold;
         }
 
@@ -95,7 +107,7 @@ public class TempbanManager implements SettingsDependent {
             long newTime = expires.getTime() + (length * MINUTE_IN_MILLISECONDS);
             expires.setTime(newTime);
 
-            bukkitService.scheduleSyncDelayedTask(new Runnable() {
+            taskScheduler.runSync(JobGroup.TEMPBAN, new Runnable() {
                 @Override
                 public void run() {
                     bukkitService.banIp(ip, reason, expires, "AuthMe");
@@ -112,5 +124,11 @@ public class TempbanManager implements SettingsDependent {
         this.isEnabled = settings.getProperty(SecuritySettings.TEMPBAN_ON_MAX_LOGINS);
         this.threshold = settings.getProperty(SecuritySettings.MAX_LOGIN_TEMPBAN);
         this.length = settings.getProperty(SecuritySettings.TEMPBAN_LENGTH);
+        this.ipv4Prefix = settings.getProperty(RestrictionSettings.IPV4_NETWORK_PREFIX);
+        this.ipv6Prefix = settings.getProperty(RestrictionSettings.IPV6_NETWORK_PREFIX);
+    }
+
+    private String toNetwork(String address) {
+        return IpAddress.toNetworkKey(address, ipv4Prefix, ipv6Prefix);
     }
 }
@@ -0,0 +1,70 @@
+package fr.xephi.authme.cache.auth;
+
+/**
+ * Data loaded for a player while he is connecting to the server. The context is created in the
+ * pre-login stage and is passed on to the join and login processes so that the player's data
+ * does not have to be fetched from the data source multiple times.
+ */
+public class JoinContext {
+
+    private final String name;
+    private final PlayerAuth auth;
+    private final long creationTime;
+    private volatile boolean preLoginVerified;
+
+    /**
+     * Constructor.
+     *
+     * @param name the name of the player (lowercase)
+     * @param auth the auth of the player, or null if he is not registered
+     * @param creationTime timestamp (in milliseconds) at which the auth was loaded
+     */
+    public JoinContext(String name, PlayerAuth auth, long creationTime) {
+        this.name = name;
+        this.auth = auth;
+        this.creationTime = creationTime;
+    }
+
+    /**
+     * @return the player's name (lowercase)
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the player's auth as loaded from the data source, or null if not registered
+     */
+    public PlayerAuth getAuth() {
+        return auth;
+    }
+
+    /**
+     * @return true if the player is registered, false otherwise
+     */
+    public boolean isRegistered() {
+        return auth != null;
+    }
+
+    /**
+     * @return timestamp (in milliseconds) at which the context was created
+     */
+    public long getCreationTime() {
+        return creationTime;
+    }
+
+    /**
+     * @return true if the checks depending on the data source or GeoIP have been successfully
+     * performed in the pre-login stage, false otherwise
+     */
+    public boolean isPreLoginVerified() {
+        return preLoginVerified;
+    }
+
+    /**
+     * Marks the context as having passed the checks of the pre-login stage.
+     */
+    public void setPreLoginVerified() {
+        this.preLoginVerified = true;
+    }
+}
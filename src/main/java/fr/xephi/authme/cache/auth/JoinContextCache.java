@@ -0,0 +1,107 @@
+package fr.xephi.authme.cache.auth;
+
+import fr.xephi.authme.datasource.DataSource;
+
+import javax.inject.Inject;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the {@link JoinContext} of connecting players. The player's auth is loaded once when he
+ * connects and is then shared between the login listeners, the join process and the login process.
+ * <p>
+ * Contexts are only valid for a short time so that changes made to the data source in the meantime
+ * (e.g. by an admin) are not shadowed by stale data.
+ */
+public class JoinContextCache {
+
+    /** Number of milliseconds a context remains valid after it has been created. */
+    private static final long CONTEXT_LIFETIME = 30000;
+
+    private final ConcurrentHashMap<String, JoinContext> contexts = new ConcurrentHashMap<>();
+    private final DataSource dataSource;
+
+    @Inject
+    JoinContextCache(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Loads the player's auth from the data source and saves it as new join context.
+     *
+     * @param name the name of the player
+     * @return the created context
+     */
+    public JoinContext load(String name) {
+        final String lowerName = name.toLowerCase();
+        final long now = System.currentTimeMillis();
+        removeExpiredContexts(now);
+
+        JoinContext context = new JoinContext(lowerName, dataSource.getAuth(lowerName), now);
+        contexts.put(lowerName, context);
+        return context;
+    }
+
+    /**
+     * Returns the join context of the player, loading it from the data source if no valid context exists.
+     *
+     * @param name the name of the player
+     * @return the player's join context
+     */
+    public JoinContext getOrLoad(String name) {
+        JoinContext context = get(name);
+        return context == null ? load(name) : context;
+    }
+
+    /**
+     * Returns the join context of the player if it exists and is still valid.
+     *
+     * @param name the name of the player
+     * @return the player's join context, or null if not available
+     */
+    public JoinContext get(String name) {
+        JoinContext context = contexts.get(name.toLowerCase());
+        if (context != null && isExpired(context, System.currentTimeMillis())) {
+            contexts.remove(context.getName(), context);
+            return null;
+        }
+        return context;
+    }
+
+    /**
+     * Removes the join context of the player and returns its auth. Only returns an auth if the context
+     * was still valid and the player was registered when the context was created.
+     *
+     * @param name the name of the player
+     * @return the player's auth, or null if not available
+     */
+    public PlayerAuth consumeAuth(String name) {
+        JoinContext context = contexts.remove(name.toLowerCase());
+        if (context == null || isExpired(context, System.currentTimeMillis())) {
+            return null;
+        }
+        return context.getAuth();
+    }
+
+    /**
+     * Removes the join context of the given player, e.g. after he has left the server or his data has changed.
+     *
+     * @param name the name of the player
+     */
+    public void invalidate(String name) {
+        contexts.remove(name.toLowerCase());
+    }
+
+    private void removeExpiredContexts(long now) {
+        Iterator<JoinContext> iterator = contexts.values().iterator();
+        while (iterator.hasNext()) {
+            if (isExpired(iterator.next(), now)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static boolean isExpired(JoinContext context, long now) {
+        return now - context.getCreationTime() > CONTEXT_LIFETIME;
+    }
+}
@@ -1,7 +1,10 @@
 package fr.xephi.authme.cache.auth;
 
 import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.util.StringUtils;
 
+import java.util.Collections;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -10,9 +13,11 @@ public class PlayerCache {
 
     private volatile static PlayerCache singleton;
     private final ConcurrentHashMap<String, PlayerAuth> cache;
+    private final Set<String> namesWithoutEmail;
 
     private PlayerCache() {
         cache = new ConcurrentHashMap<>();
+        namesWithoutEmail = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
     }
 
     /**
@@ -36,6 +41,7 @@ public class PlayerCache {
     public void addPlayer(PlayerAuth auth) {
         ConsoleLogger.debug("ADDED PLAYER TO CACHE " + auth.getNickname());
         cache.put(auth.getNickname().toLowerCase(), auth);
+        updateEmailIndex(auth);
     }
 
     /**
@@ -46,6 +52,7 @@ public class PlayerCache {
     public void updatePlayer(PlayerAuth auth) {
         ConsoleLogger.debug("UPDATE PLAYER " + auth.getNickname());
         cache.put(auth.getNickname(), auth);
+        updateEmailIndex(auth);
     }
 
     /**
@@ -56,6 +63,7 @@ public class PlayerCache {
     public void removePlayer(String user) {
         ConsoleLogger.debug("REMOVE PLAYER " + user);
         cache.remove(user.toLowerCase());
+        namesWithoutEmail.remove(user.toLowerCase());
     }
 
     /**
@@ -89,6 +97,16 @@ public class PlayerCache {
         return cache.size();
     }
 
+    /**
+     * Return the names of the logged in players who have not set a valid email address yet.
+     * The set is kept up to date as players log in, change their email and log out.
+     *
+     * @return the lowercase names of the logged in players without email (unmodifiable view)
+     */
+    public Set<String> getNamesWithoutEmail() {
+        return Collections.unmodifiableSet(namesWithoutEmail);
+    }
+
     /**
      * Method getCache.
      *
@@ -98,4 +116,17 @@ public class PlayerCache {
         return this.cache;
     }
 
+    private void updateEmailIndex(PlayerAuth auth) {
+        final String name = auth.getNickname().toLowerCase();
+        if (hasValidEmail(auth.getEmail())) {
+            namesWithoutEmail.remove(name);
+        } else {
+            namesWithoutEmail.add(name);
+        }
+    }
+
+    private static boolean hasValidEmail(String email) {
+        return !StringUtils.isEmpty(email) && !"your@email.com".equalsIgnoreCase(email);
+    }
+
 }
@@ -0,0 +1,227 @@
+package fr.xephi.authme.cache.auth;
+
+import fr.xephi.authme.datasource.DataSource;
+import fr.xephi.authme.initialization.SettingsDependent;
+import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.PluginSettings;
+import fr.xephi.authme.task.JobGroup;
+import fr.xephi.authme.task.ScheduledJob;
+import fr.xephi.authme.task.TaskScheduler;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+import static fr.xephi.authme.util.BukkitService.TICKS_PER_SECOND;
+
+/**
+ * Keeps track of the sessions of players who have left the server. A session remains valid for the
+ * configured timeout after the player has left; once it has expired the player is logged out.
+ * <p>
+ * All pending sessions are kept in a single queue ordered by expiry date, which is checked periodically
+ * by one asynchronous job. The players whose sessions have expired since the last check are logged out
+ * together with a single update to the data source.
+ * <p>
+ * Sessions are also saved in the {@link SessionStore} so that they can be resumed after a restart.
+ */
+public class SessionManager implements SettingsDependent {
+
+    /** Interval in ticks at which expired sessions are looked for. */
+    private static final long REAPER_INTERVAL = 5 * TICKS_PER_SECOND;
+
+    private final DelayQueue<ExpiringSession> expiringSessions = new DelayQueue<>();
+    private final ConcurrentHashMap<String, ExpiringSession> pendingSessions = new ConcurrentHashMap<>();
+    private final TaskScheduler taskScheduler;
+    private final DataSource dataSource;
+    private final PlayerCache playerCache;
+    private final SessionStore sessionStore;
+
+    private long sessionTimeoutMillis;
+    private ScheduledJob reaperTask;
+
+    @Inject
+    SessionManager(TaskScheduler taskScheduler, DataSource dataSource, PlayerCache playerCache,
+                   SessionStore sessionStore, NewSetting settings) {
+        this.taskScheduler = taskScheduler;
+        this.dataSource = dataSource;
+        this.playerCache = playerCache;
+        this.sessionStore = sessionStore;
+        loadSettings(settings);
+    }
+
+    /**
+     * Schedules the session of the given player to expire after the configured timeout.
+     *
+     * @param name the name of the player
+     * @param ip the IP address of the player
+     */
+    public void scheduleSessionExpiry(String name, String ip) {
+        final String lowerName = name.toLowerCase();
+        ExpiringSession session = new ExpiringSession(lowerName, System.currentTimeMillis() + sessionTimeoutMillis);
+        pendingSessions.put(lowerName, session);
+        expiringSessions.add(session);
+        sessionStore.save(lowerName, ip, session.expiryTimestamp);
+        startReaper();
+        scheduleCompactionIfNeeded();
+    }
+
+    /**
+     * Saves the session of the given player without scheduling its expiry, e.g. because the plugin
+     * is being disabled. The session can be resumed after the restart until it expires.
+     *
+     * @param name the name of the player
+     * @param ip the IP address of the player
+     */
+    public void persistSession(String name, String ip) {
+        sessionStore.save(name, ip, getPersistedExpiryTimestamp());
+    }
+
+    /**
+     * Saves the sessions of the given players at once, e.g. because the plugin is being disabled.
+     *
+     * @param ipByName the IP address of each player, by name
+     * @see #persistSession(String, String)
+     */
+    public void persistSessions(Map<String, String> ipByName) {
+        if (!ipByName.isEmpty()) {
+            sessionStore.saveAll(ipByName, getPersistedExpiryTimestamp());
+        }
+    }
+
+    /**
+     * Cancels the pending expiry of the given player's session, e.g. because he has joined again.
+     *
+     * @param name the name of the player
+     * @return true if a pending expiry was cancelled, false otherwise
+     */
+    public boolean cancelSessionExpiry(String name) {
+        // The session is removed from the queue lazily when it is polled
+        sessionStore.remove(name);
+        return pendingSessions.remove(name.toLowerCase()) != null;
+    }
+
+    /**
+     * Returns whether the session of the given player is waiting to expire.
+     *
+     * @param name the name of the player
+     * @return true if the player has a pending session, false otherwise
+     */
+    public boolean hasPendingSession(String name) {
+        return pendingSessions.containsKey(name.toLowerCase());
+    }
+
+    /**
+     * Returns whether the given player has a session which has not expired yet, including
+     * sessions which were saved before the last restart.
+     *
+     * @param name the name of the player
+     * @return true if the player has a session, false otherwise
+     */
+    public boolean hasSession(String name) {
+        return sessionStore.hasSession(name);
+    }
+
+    /**
+     * Returns whether the given player has a session which has not expired yet and which
+     * was created from the given IP address.
+     *
+     * @param name the name of the player
+     * @param ip the IP address of the player
+     * @return true if the player may resume his session from the IP address, false otherwise
+     */
+    public boolean isSessionFromIp(String name, String ip) {
+        return sessionStore.isSessionFromIp(name, ip);
+    }
+
+    /**
+     * Logs out all players whose session has expired.
+     */
+    void reapExpiredSessions() {
+        List<ExpiringSession> expired = new ArrayList<>();
+        expiringSessions.drainTo(expired);
+
+        Set<String> names = new HashSet<>();
+        for (ExpiringSession session : expired) {
+            // Skip sessions that have been cancelled or replaced in the meantime
+            if (pendingSessions.remove(session.name, session)) {
+                playerCache.removePlayer(session.name);
+                names.add(session.name);
+            }
+        }
+        if (!names.isEmpty()) {
+            sessionStore.removeAll(names);
+            dataSource.setUnlogged(names);
+        }
+        stopReaperIfIdle();
+        scheduleCompactionIfNeeded();
+    }
+
+    @Override
+    public void loadSettings(NewSetting settings) {
+        sessionTimeoutMillis = TimeUnit.MINUTES.toMillis(settings.getProperty(PluginSettings.SESSIONS_TIMEOUT));
+    }
+
+    private long getPersistedExpiryTimestamp() {
+        // A timeout of zero means that sessions never expire
+        return sessionTimeoutMillis == 0
+            ? Long.MAX_VALUE
+            : System.currentTimeMillis() + sessionTimeoutMillis;
+    }
+
+    private synchronized void startReaper() {
+        if (reaperTask == null) {
+            reaperTask = taskScheduler.runAsyncRepeating(JobGroup.SESSIONS, new Runnable() {
+                @Override
+                public void run() {
+                    reapExpiredSessions();
+                }
+            }, REAPER_INTERVAL, REAPER_INTERVAL);
+        }
+    }
+
+    private synchronized void stopReaperIfIdle() {
+        if (reaperTask != null && expiringSessions.isEmpty()) {
+            reaperTask.cancel();
+            reaperTask = null;
+        }
+    }
+
+    private void scheduleCompactionIfNeeded() {
+        if (sessionStore.needsCompaction()) {
+            taskScheduler.runAsyncCoalesced(JobGroup.SESSIONS, "session-compaction", new Runnable() {
+                @Override
+                public void run() {
+                    sessionStore.compact();
+                }
+            });
+        }
+    }
+
+    private static final class ExpiringSession implements Delayed {
+
+        private final String name;
+        private final long expiryTimestamp;
+
+        ExpiringSession(String name, long expiryTimestamp) {
+            this.name = name;
+            this.expiryTimestamp = expiryTimestamp;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(expiryTimestamp - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.MILLISECONDS), other.getDelay(TimeUnit.MILLISECONDS));
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package fr.xephi.authme.cache.auth;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
+import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.initialization.DataFolder;
+import fr.xephi.authme.task.JobGroup;
+import fr.xephi.authme.task.TaskScheduler;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.inject.Inject;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Persists the sessions of players who have left the server so that they survive restarts.
+ * <p>
+ * Every change is appended as a record of the player name, the HMAC of his IP address and the
+ * expiry timestamp to a single file; a removed session is recorded with an expiry of zero.
+ * The records are buffered and written by an asynchronous job, so that saving a session never
+ * waits for the disk. The file is read the first time a session is looked up and is compacted
+ * once it holds enough obsolete records.
+ * <p>
+ * The IP addresses are authenticated with a random secret which is generated once and kept in a
+ * file of its own, so that the addresses cannot be recovered from the session file alone by hashing
+ * every possible address.
+ */
+public class SessionStore {
+
+    static final String FILE_NAME = "sessions.dat";
+    static final String KEY_FILE_NAME = "sessions.key";
+
+    /** Number of obsolete records after which the file should be rewritten. */
+    static final int COMPACTION_THRESHOLD = 256;
+
+    private static final String SEPARATOR = ";";
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int KEY_LENGTH = 32;
+
+    private final File file;
+    private final File keyFile;
+    private final TaskScheduler taskScheduler;
+    private final Map<String, StoredSession> sessions = new HashMap<>();
+    /** Records which have not been written to the file yet, each followed by a line break. */
+    private final StringBuilder pendingRecords = new StringBuilder();
+    private volatile boolean isAsyncFlushEnabled = true;
+    private boolean isLoaded;
+    private int obsoleteRecords;
+    private Mac ipMac;
+
+    @Inject
+    SessionStore(@DataFolder File dataFolder, TaskScheduler taskScheduler) {
+        this.file = new File(dataFolder, FILE_NAME);
+        this.keyFile = new File(dataFolder, KEY_FILE_NAME);
+        this.taskScheduler = taskScheduler;
+    }
+
+    /**
+     * Saves the session of the given player.
+     *
+     * @param name the name of the player
+     * @param ip the IP address the session belongs to
+     * @param expiryTimestamp the timestamp in milliseconds at which the session expires
+     */
+    public synchronized void save(String name, String ip, long expiryTimestamp) {
+        loadIfNecessary();
+        StoredSession session = new StoredSession(name.toLowerCase(), hashIp(ip), expiryTimestamp);
+        if (sessions.put(session.name, session) != null) {
+            ++obsoleteRecords;
+        }
+        pendingRecords.append(session.toRecord()).append('\n');
+        scheduleFlush();
+    }
+
+    /**
+     * Saves the sessions of the given players.
+     *
+     * @param ipByName the IP address of each player, by name
+     * @param expiryTimestamp the timestamp in milliseconds at which the sessions expire
+     */
+    public synchronized void saveAll(Map<String, String> ipByName, long expiryTimestamp) {
+        loadIfNecessary();
+        for (Map.Entry<String, String> entry : ipByName.entrySet()) {
+            StoredSession session = new StoredSession(
+                entry.getKey().toLowerCase(), hashIp(entry.getValue()), expiryTimestamp);
+            if (sessions.put(session.name, session) != null) {
+                ++obsoleteRecords;
+            }
+            pendingRecords.append(session.toRecord()).append('\n');
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * Removes the session of the given player, if present.
+     *
+     * @param name the name of the player
+     */
+    public synchronized void remove(String name) {
+        loadIfNecessary();
+        final String lowerName = name.toLowerCase();
+        if (sessions.remove(lowerName) != null) {
+            obsoleteRecords += 2;
+            appendRemoval(lowerName);
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Removes the sessions of the given players.
+     *
+     * @param names the names of the players (lowercase)
+     */
+    public synchronized void removeAll(Collection<String> names) {
+        loadIfNecessary();
+        boolean hasRemoved = false;
+        for (String name : names) {
+            if (sessions.remove(name) != null) {
+                obsoleteRecords += 2;
+                appendRemoval(name);
+                hasRemoved = true;
+            }
+        }
+        if (hasRemoved) {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Returns whether the given player has a session which has not expired yet.
+     *
+     * @param name the name of the player
+     * @return true if the player has a valid session, false otherwise
+     */
+    public synchronized boolean hasSession(String name) {
+        return getValidSession(name.toLowerCase()) != null;
+    }
+
+    /**
+     * Returns whether the given player has a session which has not expired yet and which was
+     * created from the given IP address.
+     *
+     * @param name the name of the player
+     * @param ip the IP address to verify
+     * @return true if the player has a valid session for the IP address, false otherwise
+     */
+    public synchronized boolean isSessionFromIp(String name, String ip) {
+        StoredSession session = getValidSession(name.toLowerCase());
+        return session != null && session.ipHash.equals(hashIp(ip));
+    }
+
+    /**
+     * Returns whether the file holds enough obsolete records to warrant a compaction.
+     *
+     * @return true if the file should be compacted, false otherwise
+     */
+    public synchronized boolean needsCompaction() {
+        return obsoleteRecords >= COMPACTION_THRESHOLD;
+    }
+
+    /**
+     * Writes the pending records to the file.
+     */
+    public synchronized void flush() {
+        if (pendingRecords.length() == 0) {
+            return;
+        }
+        try (Writer writer = createWriter(file, true)) {
+            writer.write(pendingRecords.toString());
+        } catch (IOException e) {
+            ConsoleLogger.logException("Could not write to the session file:", e);
+            return;
+        }
+        pendingRecords.setLength(0);
+    }
+
+    /**
+     * Stops scheduling asynchronous flushes, e.g. because the plugin is being disabled. Pending records
+     * must then be written with {@link #flush()}.
+     */
+    public void disableAsyncFlush() {
+        isAsyncFlushEnabled = false;
+    }
+
+    /**
+     * Rewrites the file with only the sessions that are still valid, including the pending changes.
+     */
+    public synchronized void compact() {
+        loadIfNecessary();
+        removeExpiredSessions();
+        File tempFile = new File(file.getParentFile(), FILE_NAME + ".tmp");
+        try (Writer writer = createWriter(tempFile, false)) {
+            for (StoredSession session : sessions.values()) {
+                writer.write(session.toRecord());
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            ConsoleLogger.logException("Could not compact the session file:", e);
+            return;
+        }
+        try {
+            // The original file is only replaced once the compacted version is complete on disk
+            Files.move(tempFile.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            obsoleteRecords = 0;
+            pendingRecords.setLength(0);
+        } catch (IOException e) {
+            ConsoleLogger.logException("Could not replace the session file with its compacted version:", e);
+        }
+    }
+
+    private StoredSession getValidSession(String name) {
+        loadIfNecessary();
+        StoredSession session = sessions.get(name);
+        if (session != null && session.expiryTimestamp <= System.currentTimeMillis()) {
+            sessions.remove(name);
+            ++obsoleteRecords;
+            return null;
+        }
+        return session;
+    }
+
+    private void loadIfNecessary() {
+        if (isLoaded) {
+            return;
+        }
+        isLoaded = true;
+        ipMac = createMac(loadOrCreateKey());
+        if (!file.exists()) {
+            return;
+        }
+
+        try (BufferedReader reader = new BufferedReader(
+            new InputStreamReader(new FileInputStream(file), Charsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                StoredSession session = StoredSession.fromRecord(line);
+                if (session == null) {
+                    ++obsoleteRecords;
+                } else if (session.expiryTimestamp == 0) {
+                    obsoleteRecords += sessions.remove(session.name) == null ? 1 : 2;
+                } else if (sessions.put(session.name, session) != null) {
+                    ++obsoleteRecords;
+                }
+            }
+        } catch (IOException e) {
+            ConsoleLogger.logException("Could not read the session file:", e);
+        }
+        removeExpiredSessions();
+    }
+
+    private String hashIp(String ip) {
+        return BaseEncoding.base16().lowerCase().encode(ipMac.doFinal(ip.getBytes(Charsets.UTF_8)));
+    }
+
+    /**
+     * Returns the secret of the IP hashes, generating and saving a new one if there is none yet.
+     * Sessions saved with a previous secret are then no longer valid for any IP address.
+     */
+    private byte[] loadOrCreateKey() {
+        if (keyFile.exists()) {
+            try {
+                String content = new String(Files.readAllBytes(keyFile.toPath()), Charsets.UTF_8).trim();
+                byte[] key = BaseEncoding.base16().lowerCase().decode(content);
+                if (key.length == KEY_LENGTH) {
+                    return key;
+                }
+                ConsoleLogger.showError("Replacing the invalid session key in '" + keyFile + "'");
+            } catch (IOException | IllegalArgumentException e) {
+                ConsoleLogger.logException("Could not read the session key, generating a new one:", e);
+            }
+        }
+        byte[] key = new byte[KEY_LENGTH];
+        new SecureRandom().nextBytes(key);
+        try {
+            Files.write(keyFile.toPath(), BaseEncoding.base16().lowerCase().encode(key).getBytes(Charsets.UTF_8));
+        } catch (IOException e) {
+            ConsoleLogger.logException("Could not save the session key; sessions will not survive a restart:", e);
+        }
+        return key;
+    }
+
+    private static Mac createMac(byte[] key) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(new SecretKeySpec(key, MAC_ALGORITHM));
+            return mac;
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new UnsupportedOperationException("Your system seems not to support '" + MAC_ALGORITHM + "'", e);
+        }
+    }
+
+    private void removeExpiredSessions() {
+        final long now = System.currentTimeMillis();
+        Iterator<StoredSession> it = sessions.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().expiryTimestamp <= now) {
+                it.remove();
+                ++obsoleteRecords;
+            }
+        }
+    }
+
+    private void appendRemoval(String name) {
+        pendingRecords.append(name).append(SEPARATOR).append(SEPARATOR).append(0).append('\n');
+    }
+
+    private void scheduleFlush() {
+        if (isAsyncFlushEnabled) {
+            // Records added until the job starts are written by the same flush
+            taskScheduler.runAsyncCoalesced(JobGroup.SESSIONS, "session-flush", new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            });
+        }
+    }
+
+    private static Writer createWriter(File file, boolean append) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, append), Charsets.UTF_8));
+    }
+
+    private static final class StoredSession {
+
+        private final String name;
+        private final String ipHash;
+        private final long expiryTimestamp;
+
+        StoredSession(String name, String ipHash, long expiryTimestamp) {
+            this.name = name;
+            this.ipHash = ipHash;
+            this.expiryTimestamp = expiryTimestamp;
+        }
+
+        String toRecord() {
+            return name + SEPARATOR + ipHash + SEPARATOR + expiryTimestamp;
+        }
+
+        static StoredSession fromRecord(String record) {
+            String[] parts = record.split(SEPARATOR, -1);
+            if (parts.length != 3 || parts[0].isEmpty()) {
+                return null;
+            }
+            try {
+                return new StoredSession(parts[0], parts[1], Long.parseLong(parts[2]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
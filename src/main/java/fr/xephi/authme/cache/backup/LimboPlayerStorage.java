@@ -0,0 +1,337 @@
+package fr.xephi.authme.cache.backup;
+
+import com.google.common.base.Charsets;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.initialization.DataFolder;
+import fr.xephi.authme.task.JobGroup;
+import fr.xephi.authme.task.TaskScheduler;
+import fr.xephi.authme.util.FileUtils;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Persists the state of players in limbo (group, OP status and flying) so that it can be restored
+ * if the server stops before the player has logged in.
+ * <p>
+ * All snapshots are kept in memory, keyed by the player's UUID, and every change is appended as a
+ * binary record to a single file. Pending changes are written to disk by an asynchronous job; the
+ * file is rewritten to a temporary file and moved over the original once it holds more obsolete
+ * records than snapshots.
+ */
+public class LimboPlayerStorage {
+
+    static final String FILE_NAME = "limbo.dat";
+
+    /** Minimum number of obsolete records before the file is compacted. */
+    static final int COMPACTION_THRESHOLD = 128;
+
+    private static final String LEGACY_CACHE_FOLDER = "cache";
+    private static final byte RECORD_SAVE = 1;
+    private static final byte RECORD_REMOVE = 0;
+
+    private final File file;
+    private final File legacyCacheFolder;
+    private final TaskScheduler taskScheduler;
+    private final Map<UUID, PlayerData> snapshots = new HashMap<>();
+    private final Map<String, PlayerData> legacySnapshots = new HashMap<>();
+    private final List<PendingRecord> pendingRecords = new ArrayList<>();
+    private final List<File> legacyFilesToDelete = new ArrayList<>();
+
+    private volatile boolean isAsyncFlushEnabled = true;
+    private boolean isLoaded;
+    private int obsoleteRecords;
+
+    @Inject
+    LimboPlayerStorage(@DataFolder File dataFolder, TaskScheduler taskScheduler) {
+        this.file = new File(dataFolder, FILE_NAME);
+        this.legacyCacheFolder = new File(dataFolder, LEGACY_CACHE_FOLDER);
+        this.taskScheduler = taskScheduler;
+    }
+
+    /**
+     * Reads the stored snapshots in the background so that the first join does not wait for it.
+     */
+    @PostConstruct
+    void loadInBackground() {
+        taskScheduler.runAsync(JobGroup.STORAGE, new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        });
+    }
+
+    private synchronized void load() {
+        loadIfNecessary();
+    }
+
+    /**
+     * Returns the stored snapshot of the given player, if available.
+     *
+     * @param uuid the UUID of the player
+     * @param name the name of the player, used to look up snapshots of the former JSON cache
+     * @return the stored snapshot, or null if there is none
+     */
+    public synchronized PlayerData getSnapshot(UUID uuid, String name) {
+        loadIfNecessary();
+        PlayerData snapshot = snapshots.get(uuid);
+        if (snapshot == null) {
+            final String lowerName = name.toLowerCase();
+            snapshot = legacySnapshots.remove(lowerName);
+            if (snapshot != null) {
+                // Migrate the snapshot first: the legacy folder is only deleted once the record has been written
+                saveSnapshot(uuid, snapshot);
+                legacyFilesToDelete.add(new File(legacyCacheFolder, lowerName));
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Saves the snapshot of the given player. The change is written to disk asynchronously.
+     *
+     * @param uuid the UUID of the player
+     * @param snapshot the snapshot to save
+     */
+    public synchronized void saveSnapshot(UUID uuid, PlayerData snapshot) {
+        loadIfNecessary();
+        if (snapshots.put(uuid, snapshot) != null) {
+            ++obsoleteRecords;
+        }
+        pendingRecords.add(new PendingRecord(uuid, snapshot));
+        scheduleFlush();
+    }
+
+    /**
+     * Removes the snapshot of the given player. The change is written to disk asynchronously.
+     *
+     * @param uuid the UUID of the player
+     */
+    public synchronized void removeSnapshot(UUID uuid) {
+        loadIfNecessary();
+        if (snapshots.remove(uuid) != null) {
+            obsoleteRecords += 2;
+            pendingRecords.add(new PendingRecord(uuid, null));
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Writes all pending changes to disk, compacting the file if it holds too many obsolete records.
+     */
+    public synchronized void flush() {
+        if (obsoleteRecords >= COMPACTION_THRESHOLD && obsoleteRecords > snapshots.size()) {
+            compact();
+        } else if (!pendingRecords.isEmpty()) {
+            appendPendingRecords();
+        }
+        if (!pendingRecords.isEmpty()) {
+            // Keep the legacy files until their snapshots have been written successfully
+            return;
+        }
+        for (File legacyFile : legacyFilesToDelete) {
+            FileUtils.purgeDirectory(legacyFile);
+            if (!legacyFile.delete()) {
+                ConsoleLogger.showError("Could not delete the limbo cache folder '" + legacyFile.getName() + "'");
+            }
+        }
+        legacyFilesToDelete.clear();
+    }
+
+    /**
+     * Stops scheduling asynchronous flushes, e.g. because the plugin is being disabled. Pending changes
+     * must then be written with {@link #flush()}.
+     */
+    public void disableAsyncFlush() {
+        isAsyncFlushEnabled = false;
+    }
+
+    private void scheduleFlush() {
+        if (isAsyncFlushEnabled) {
+            // Changes made until the job starts are written by the same flush
+            taskScheduler.runAsyncCoalesced(JobGroup.STORAGE, "limbo-flush", new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            });
+        }
+    }
+
+    private void appendPendingRecords() {
+        try (FileOutputStream fos = new FileOutputStream(file, true);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+            for (PendingRecord record : pendingRecords) {
+                if (record.snapshot == null) {
+                    writeRemoval(out, record.uuid);
+                } else {
+                    writeSnapshot(out, record.uuid, record.snapshot);
+                }
+            }
+            out.flush();
+            fos.getFD().sync();
+            pendingRecords.clear();
+        } catch (IOException e) {
+            ConsoleLogger.logException("Could not write to the limbo player file:", e);
+        }
+    }
+
+    private void compact() {
+        File tempFile = new File(file.getParentFile(), FILE_NAME + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tempFile);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+            for (Map.Entry<UUID, PlayerData> entry : snapshots.entrySet()) {
+                writeSnapshot(out, entry.getKey(), entry.getValue());
+            }
+            out.flush();
+            fos.getFD().sync();
+        } catch (IOException e) {
+            ConsoleLogger.logException("Could not compact the limbo player file:", e);
+            appendPendingRecords();
+            return;
+        }
+
+        try {
+            // The original file is only replaced once the compacted version is complete on disk
+            Files.move(tempFile.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            pendingRecords.clear();
+            obsoleteRecords = 0;
+        } catch (IOException e) {
+            ConsoleLogger.logException("Could not replace the limbo player file:", e);
+            appendPendingRecords();
+        }
+    }
+
+    /**
+     * Reads the stored snapshots unless they have been read already. Must be called while holding
+     * the monitor of this storage, so that no snapshot is read or changed while the file is being read.
+     */
+    private void loadIfNecessary() {
+        if (isLoaded) {
+            return;
+        }
+        try {
+            loadLegacySnapshots();
+            loadSnapshots();
+        } finally {
+            isLoaded = true;
+        }
+    }
+
+    private void loadSnapshots() {
+        if (!file.exists()) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                byte type;
+                try {
+                    type = in.readByte();
+                } catch (EOFException e) {
+                    break;
+                }
+                UUID uuid = new UUID(in.readLong(), in.readLong());
+                if (type == RECORD_REMOVE) {
+                    obsoleteRecords += snapshots.remove(uuid) == null ? 1 : 2;
+                } else if (type == RECORD_SAVE) {
+                    PlayerData snapshot = new PlayerData(in.readUTF(), in.readBoolean(), in.readBoolean());
+                    if (snapshots.put(uuid, snapshot) != null) {
+                        ++obsoleteRecords;
+                    }
+                } else {
+                    throw new IOException("Unknown record type " + type);
+                }
+            }
+        } catch (IOException e) {
+            // E.g. the last record was only partially written because the server crashed
+            ConsoleLogger.logException("Could not fully read the limbo player file; it will be rewritten:", e);
+            obsoleteRecords = COMPACTION_THRESHOLD + snapshots.size();
+        }
+    }
+
+    /**
+     * Reads the snapshots which were saved by previous versions as one JSON file per player.
+     */
+    private void loadLegacySnapshots() {
+        File[] playerFolders = legacyCacheFolder.listFiles();
+        if (playerFolders == null) {
+            return;
+        }
+        for (File playerFolder : playerFolders) {
+            File cacheFile = new File(playerFolder, "cache.json");
+            if (!cacheFile.isFile()) {
+                continue;
+            }
+            try {
+                JsonElement element = new JsonParser().parse(
+                    new String(Files.readAllBytes(cacheFile.toPath()), Charsets.UTF_8));
+                if (element.isJsonObject()) {
+                    legacySnapshots.put(playerFolder.getName().toLowerCase(), fromJson(element.getAsJsonObject()));
+                }
+            } catch (IOException | JsonParseException e) {
+                ConsoleLogger.logException("Could not read limbo cache file '" + cacheFile.getPath() + "':", e);
+            }
+        }
+    }
+
+    private static PlayerData fromJson(JsonObject jsonObject) {
+        JsonElement group = jsonObject.get("group");
+        JsonElement operator = jsonObject.get("operator");
+        JsonElement fly = jsonObject.get("fly");
+        return new PlayerData(
+            group == null || group.isJsonNull() ? "" : group.getAsString(),
+            operator != null && operator.getAsBoolean(),
+            fly != null && fly.getAsBoolean());
+    }
+
+    private static void writeSnapshot(DataOutputStream out, UUID uuid, PlayerData snapshot) throws IOException {
+        out.writeByte(RECORD_SAVE);
+        writeUuid(out, uuid);
+        out.writeUTF(snapshot.getGroup() == null ? "" : snapshot.getGroup());
+        out.writeBoolean(snapshot.getOperator());
+        out.writeBoolean(snapshot.isFlyEnabled());
+    }
+
+    private static void writeRemoval(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeByte(RECORD_REMOVE);
+        writeUuid(out, uuid);
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static final class PendingRecord {
+        private final UUID uuid;
+        private final PlayerData snapshot;
+
+        PendingRecord(UUID uuid, PlayerData snapshot) {
+            this.uuid = uuid;
+            this.snapshot = snapshot;
+        }
+    }
+}
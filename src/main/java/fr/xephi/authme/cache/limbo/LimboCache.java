@@ -1,9 +1,11 @@
 package fr.xephi.authme.cache.limbo;
 
-import fr.xephi.authme.cache.backup.JsonCache;
+import fr.xephi.authme.cache.backup.LimboPlayerStorage;
 import fr.xephi.authme.cache.backup.PlayerData;
 import fr.xephi.authme.permission.PermissionsManager;
 import fr.xephi.authme.settings.SpawnLoader;
+import fr.xephi.authme.task.JobGroup;
+import fr.xephi.authme.task.TaskScheduler;
 import org.bukkit.Location;
 import org.bukkit.entity.Player;
 
@@ -18,45 +20,74 @@ import static com.google.common.base.Preconditions.checkNotNull;
 public class LimboCache {
 
     private final ConcurrentHashMap<String, LimboPlayer> cache = new ConcurrentHashMap<>();
-    private final JsonCache jsonCache = new JsonCache();
 
     @Inject
     private PermissionsManager permissionsManager;
     @Inject
     private SpawnLoader spawnLoader;
+    @Inject
+    private LimboPlayerStorage limboPlayerStorage;
+    @Inject
+    private TaskScheduler taskScheduler;
 
     @Inject
-    LimboCache(PermissionsManager permissionsManager, SpawnLoader spawnLoader) {
+    LimboCache(PermissionsManager permissionsManager, SpawnLoader spawnLoader,
+               LimboPlayerStorage limboPlayerStorage, TaskScheduler taskScheduler) {
         this.permissionsManager = permissionsManager;
         this.spawnLoader = spawnLoader;
+        this.limboPlayerStorage = limboPlayerStorage;
+        this.taskScheduler = taskScheduler;
     }
 
     /**
-     * Add a limbo player.
+     * Add a limbo player. The player's location, OP status and flying state are captured immediately;
+     * his permission group and any snapshot stored before the last restart are resolved asynchronously.
+     * Permission group changes must therefore be applied through {@link LimboPlayer#whenCaptured(Runnable)},
+     * so that the group is resolved before it is changed.
      *
      * @param player Player instance to add.
      */
-    public void addLimboPlayer(Player player) {
-        String name = player.getName().toLowerCase();
+    public void addLimboPlayer(final Player player) {
+        final String name = player.getName().toLowerCase();
         Location location = player.isDead() ? spawnLoader.getSpawnLocation(player) : player.getLocation();
-        boolean operator = player.isOp();
-        boolean flyEnabled = player.getAllowFlight();
-        String playerGroup = "";
+        final boolean operator = player.isOp();
+        final boolean flyEnabled = player.getAllowFlight();
+        final LimboPlayer limboPlayer = new LimboPlayer(name, player.getUniqueId(), location, operator, flyEnabled);
+        cache.put(name, limboPlayer);
+
+        taskScheduler.runAsync(JobGroup.LIMBO, new Runnable() {
+            @Override
+            public void run() {
+                completeCapture(player, limboPlayer, operator, flyEnabled);
+            }
+        });
+    }
+
+    /**
+     * Resolves the permission group of the player and reconciles the limbo player with the stored snapshot.
+     *
+     * @param player the player
+     * @param limboPlayer the limbo player to complete
+     * @param operator the OP status of the player when he was put in limbo
+     * @param flyEnabled whether the player was allowed to fly when he was put in limbo
+     */
+    void completeCapture(Player player, LimboPlayer limboPlayer, boolean operator, boolean flyEnabled) {
+        String playerGroup = null;
         if (permissionsManager.hasGroupSupport()) {
             playerGroup = permissionsManager.getPrimaryGroup(player);
         }
 
-        if (jsonCache.doesCacheExist(player)) {
-            PlayerData cache = jsonCache.readCache(player);
-            if (cache != null) {
-                playerGroup = cache.getGroup();
-                operator = cache.getOperator();
-                flyEnabled = cache.isFlyEnabled();
-            }
+        // Restore the state saved before the server stopped, if the player did not log in back then.
+        // A removal of the limbo player only removes the snapshot once the capture is complete, see below
+        PlayerData snapshot = limboPlayerStorage.getSnapshot(limboPlayer.getUuid(), limboPlayer.getName());
+        if (snapshot != null) {
+            playerGroup = snapshot.getGroup();
+            operator = snapshot.getOperator();
+            flyEnabled = snapshot.isFlyEnabled();
+        } else if (cache.get(limboPlayer.getName()) == limboPlayer) {
+            limboPlayerStorage.saveSnapshot(limboPlayer.getUuid(), new PlayerData(playerGroup, operator, flyEnabled));
         }
-
-
-        cache.put(name, new LimboPlayer(name, location, operator, playerGroup, flyEnabled));
+        limboPlayer.completeCapture(playerGroup, operator, flyEnabled);
     }
 
     /**
@@ -67,9 +98,16 @@ public class LimboCache {
     public void deleteLimboPlayer(String name) {
         checkNotNull(name);
         name = name.toLowerCase();
-        LimboPlayer cachedPlayer = cache.remove(name);
+        final LimboPlayer cachedPlayer = cache.remove(name);
         if (cachedPlayer != null) {
             cachedPlayer.clearTasks();
+            // A pending capture still has to read the stored snapshot, so only remove it once it has
+            cachedPlayer.whenCaptured(new Runnable() {
+                @Override
+                public void run() {
+                    limboPlayerStorage.removeSnapshot(cachedPlayer.getUuid());
+                }
+            });
         }
     }
 
@@ -104,7 +142,11 @@ public class LimboCache {
      */
     public void updateLimboPlayer(Player player) {
         checkNotNull(player);
-        deleteLimboPlayer(player.getName().toLowerCase());
+        // Keep the stored snapshot: it holds the player's state from before he was put in limbo
+        LimboPlayer cachedPlayer = cache.remove(player.getName().toLowerCase());
+        if (cachedPlayer != null) {
+            cachedPlayer.clearTasks();
+        }
         addLimboPlayer(player);
     }
 
@@ -1,31 +1,51 @@
 package fr.xephi.authme.cache.limbo;
 
+import fr.xephi.authme.task.LimboTask;
 import org.bukkit.Location;
-import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
 
 /**
  * Represents a player which is not logged in and keeps track of certain states (like OP status, flying)
  * which may be revoked from the player until he has logged in or registered.
+ * <p>
+ * The permission group is resolved asynchronously after the player has been put in limbo. The getters never
+ * wait for it: actions which need the resolved state are registered with {@link #whenCaptured(Runnable)}.
  */
 public class LimboPlayer {
 
     private final String name;
-    private final boolean fly;
+    private final UUID uuid;
+    private List<Runnable> captureCallbacks;
+    private volatile boolean fly;
     private Location loc = null;
-    private BukkitTask timeoutTask = null;
-    private BukkitTask messageTask = null;
-    private boolean operator = false;
-    private String group;
+    private LimboTask timeoutTask = null;
+    private LimboTask messageTask = null;
+    private volatile boolean operator = false;
+    private volatile String group;
 
-    public LimboPlayer(String name, Location loc, boolean operator,
+    public LimboPlayer(String name, UUID uuid, Location loc, boolean operator,
                        String group, boolean fly) {
         this.name = name;
+        this.uuid = uuid;
         this.loc = loc;
         this.operator = operator;
         this.group = group;
         this.fly = fly;
     }
 
+    /**
+     * Constructor for a limbo player whose permission group and stored snapshot are still being resolved.
+     * Until {@link #completeCapture} is called, the OP status and flying state are the given ones
+     * and the group is null.
+     */
+    LimboPlayer(String name, UUID uuid, Location loc, boolean operator, boolean fly) {
+        this(name, uuid, loc, operator, null, fly);
+        this.captureCallbacks = new ArrayList<>();
+    }
+
     /**
      * Return the name of the player.
      *
@@ -35,6 +55,15 @@ public class LimboPlayer {
         return name;
     }
 
+    /**
+     * Return the UUID of the player.
+     *
+     * @return The player's UUID
+     */
+    public UUID getUuid() {
+        return uuid;
+    }
+
     /**
      * Return the player's original location.
      *
@@ -56,7 +85,7 @@ public class LimboPlayer {
     /**
      * Return the player's permissions group.
      *
-     * @return The permissions group the player belongs to
+     * @return The permissions group the player belongs to, or null if it has not been resolved yet
      */
     public String getGroup() {
         return group;
@@ -66,13 +95,68 @@ public class LimboPlayer {
         return fly;
     }
 
+    /**
+     * Return whether the player's state has been fully captured, i.e. whether his permissions group is known.
+     *
+     * @return True if the state has been captured, false if it is still being resolved
+     */
+    public synchronized boolean isCaptured() {
+        return captureCallbacks == null;
+    }
+
+    /**
+     * Run the given action once the player's state has been captured. If it already has been, the action
+     * is run immediately on the current thread; otherwise it is run by the thread completing the capture.
+     *
+     * @param callback The action to run
+     */
+    public void whenCaptured(Runnable callback) {
+        synchronized (this) {
+            if (captureCallbacks != null) {
+                captureCallbacks.add(callback);
+                return;
+            }
+        }
+        callback.run();
+    }
+
+    /**
+     * Set the state which was resolved asynchronously after the player has been put in limbo.
+     *
+     * @param group The permissions group of the player
+     * @param operator Whether the player is an operator
+     * @param fly Whether the player may fly
+     */
+    void completeCapture(String group, boolean operator, boolean fly) {
+        synchronized (this) {
+            this.group = group;
+            this.operator = operator;
+            this.fly = fly;
+        }
+        // Actions registered while the callbacks run are queued behind them, so that group changes keep their order
+        while (true) {
+            List<Runnable> callbacks;
+            synchronized (this) {
+                callbacks = captureCallbacks;
+                if (callbacks == null || callbacks.isEmpty()) {
+                    captureCallbacks = null;
+                    return;
+                }
+                captureCallbacks = new ArrayList<>();
+            }
+            for (Runnable callback : callbacks) {
+                callback.run();
+            }
+        }
+    }
+
     /**
      * Return the timeout task, which kicks the player if he hasn't registered or logged in
      * after a configurable amount of time.
      *
      * @return The timeout task associated to the player
      */
-    public BukkitTask getTimeoutTask() {
+    public LimboTask getTimeoutTask() {
         return timeoutTask;
     }
 
@@ -82,7 +166,7 @@ public class LimboPlayer {
      *
      * @param timeoutTask The task to set
      */
-    public void setTimeoutTask(BukkitTask timeoutTask) {
+    public void setTimeoutTask(LimboTask timeoutTask) {
         if (this.timeoutTask != null) {
             this.timeoutTask.cancel();
         }
@@ -94,7 +178,7 @@ public class LimboPlayer {
      *
      * @return The task responsible for sending the message regularly
      */
-    public BukkitTask getMessageTask() {
+    public LimboTask getMessageTask() {
         return messageTask;
     }
 
@@ -103,7 +187,7 @@ public class LimboPlayer {
      *
      * @param messageTask The message task to set
      */
-    public void setMessageTask(BukkitTask messageTask) {
+    public void setMessageTask(LimboTask messageTask) {
         if (this.messageTask != null) {
             this.messageTask.cancel();
         }
@@ -10,12 +10,14 @@ import fr.xephi.authme.command.executable.authme.FirstSpawnCommand;
 import fr.xephi.authme.command.executable.authme.ForceLoginCommand;
 import fr.xephi.authme.command.executable.authme.GetEmailCommand;
 import fr.xephi.authme.command.executable.authme.GetIpCommand;
+import fr.xephi.authme.command.executable.authme.JobStatisticsCommand;
 import fr.xephi.authme.command.executable.authme.LastLoginCommand;
 import fr.xephi.authme.command.executable.authme.PurgeBannedPlayersCommand;
 import fr.xephi.authme.command.executable.authme.PurgeCommand;
 import fr.xephi.authme.command.executable.authme.PurgeLastPositionCommand;
 import fr.xephi.authme.command.executable.authme.RegisterAdminCommand;
 import fr.xephi.authme.command.executable.authme.ReloadCommand;
+import fr.xephi.authme.command.executable.authme.RestoreCommand;
 import fr.xephi.authme.command.executable.authme.SetEmailCommand;
 import fr.xephi.authme.command.executable.authme.SetFirstSpawnCommand;
 import fr.xephi.authme.command.executable.authme.SetSpawnCommand;
@@ -219,6 +221,7 @@ public class CommandInitializer {
             .description("Purge old data")
             .detailedDescription("Purge old AuthMeReloaded data longer than the specified amount of days ago.")
             .withArgument("days", "Number of days", false)
+            .withArgument("preview", "'preview' to only show what would be purged", true)
             .permission(AdminPermission.PURGE)
             .executableCommand(PurgeCommand.class)
             .build();
@@ -245,6 +248,18 @@ public class CommandInitializer {
             .executableCommand(PurgeBannedPlayersCommand.class)
             .build();
 
+        // Register the restore command
+        CommandDescription.builder()
+            .parent(AUTHME_BASE)
+            .labels("restore", "import")
+            .description("Restore a backup")
+            .detailedDescription("Restore the accounts from a backup file. Use 'latest' for the latest full backup "
+                + "and the incremental backups made after it. An interrupted restore resumes where it stopped.")
+            .withArgument("file", "Backup file name or 'latest'", false)
+            .permission(AdminPermission.RESTORE)
+            .executableCommand(RestoreCommand.class)
+            .build();
+
         // Register the switchantibot command
         CommandDescription.builder()
             .parent(AUTHME_BASE)
@@ -266,6 +281,16 @@ public class CommandInitializer {
             .executableCommand(ReloadCommand.class)
             .build();
 
+        // Register the jobs command
+        CommandDescription.builder()
+            .parent(AUTHME_BASE)
+            .labels("jobs")
+            .description("Background job statistics")
+            .detailedDescription("Show the number of runs and the timings of AuthMe's background jobs.")
+            .permission(AdminPermission.JOB_STATISTICS)
+            .executableCommand(JobStatisticsCommand.class)
+            .build();
+
         // Register the version command
         CommandDescription.builder()
             .parent(AUTHME_BASE)
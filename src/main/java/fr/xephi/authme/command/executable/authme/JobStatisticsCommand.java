@@ -0,0 +1,29 @@
+package fr.xephi.authme.command.executable.authme;
+
+import fr.xephi.authme.command.ExecutableCommand;
+import fr.xephi.authme.task.TaskScheduler;
+import org.bukkit.command.CommandSender;
+
+import javax.inject.Inject;
+import java.util.List;
+
+/**
+ * Admin command to show the statistics of the background jobs.
+ */
+public class JobStatisticsCommand implements ExecutableCommand {
+
+    @Inject
+    private TaskScheduler taskScheduler;
+
+    @Override
+    public void executeCommand(CommandSender sender, List<String> arguments) {
+        List<String> summary = taskScheduler.getStatisticsSummary();
+        if (summary.isEmpty()) {
+            sender.sendMessage("No background jobs have run yet");
+            return;
+        }
+        for (String line : summary) {
+            sender.sendMessage(line);
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package fr.xephi.authme.command.executable.authme;
 
-import fr.xephi.authme.AuthMe;
 import fr.xephi.authme.command.ExecutableCommand;
 import fr.xephi.authme.datasource.DataSource;
-import fr.xephi.authme.task.PurgeTask;
+import fr.xephi.authme.task.JobGroup;
+import fr.xephi.authme.task.PurgeService;
+import fr.xephi.authme.task.SenderReference;
+import fr.xephi.authme.task.TaskScheduler;
 import fr.xephi.authme.util.BukkitService;
 import org.bukkit.ChatColor;
 import org.bukkit.OfflinePlayer;
@@ -24,26 +26,43 @@ public class PurgeBannedPlayersCommand implements ExecutableCommand {
     private DataSource dataSource;
 
     @Inject
-    private AuthMe plugin;
+    private BukkitService bukkitService;
 
     @Inject
-    private BukkitService bukkitService;
+    private PurgeService purgeService;
+
+    @Inject
+    private TaskScheduler taskScheduler;
 
     @Override
     public void executeCommand(CommandSender sender, List<String> arguments) {
         // Get the list of banned players
-        Set<String> namedBanned = new HashSet<>();
+        final Set<String> namedBanned = new HashSet<>();
         Set<OfflinePlayer> bannedPlayers = bukkitService.getBannedPlayers();
         for (OfflinePlayer offlinePlayer : bannedPlayers) {
             namedBanned.add(offlinePlayer.getName().toLowerCase());
         }
+        final OfflinePlayer[] offlinePlayers = bannedPlayers.toArray(new OfflinePlayer[bannedPlayers.size()]);
 
-        //todo: note this should may run async because it may executes a SQL-Query
-        // Purge the banned players
-        dataSource.purgeBanned(namedBanned);
-
-        // Show a status message
-        sender.sendMessage(ChatColor.GOLD + "Purging user accounts...");
-        new PurgeTask(plugin, sender, namedBanned, bannedPlayers).runTaskTimer(plugin, 0, 1);
+        // Purge the banned players from the database off the main thread, then purge their data
+        sender.sendMessage(ChatColor.GOLD + "Deleting the accounts of " + namedBanned.size() + " banned players...");
+        final SenderReference senderReference = new SenderReference(sender);
+        taskScheduler.runAsync(JobGroup.PURGE, new Runnable() {
+            @Override
+            public void run() {
+                final int deleted = dataSource.purgeBanned(namedBanned);
+                taskScheduler.runSync(JobGroup.PURGE, new Runnable() {
+                    @Override
+                    public void run() {
+                        CommandSender commandSender = senderReference.get();
+                        if (commandSender != null) {
+                            commandSender.sendMessage(ChatColor.GOLD + "Deleted " + deleted + " user accounts");
+                            commandSender.sendMessage(ChatColor.GOLD + "Purging user accounts...");
+                        }
+                        purgeService.purgePlayers(commandSender, namedBanned, offlinePlayers, false);
+                    }
+                });
+            }
+        });
     }
 }
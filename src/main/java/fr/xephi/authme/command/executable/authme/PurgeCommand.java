@@ -1,20 +1,24 @@
 package fr.xephi.authme.command.executable.authme;
 
-import fr.xephi.authme.AuthMe;
+import fr.xephi.authme.cache.auth.PlayerAuth;
 import fr.xephi.authme.command.ExecutableCommand;
 import fr.xephi.authme.datasource.DataSource;
-import fr.xephi.authme.task.PurgeTask;
+import fr.xephi.authme.task.JobGroup;
+import fr.xephi.authme.task.PurgeService;
+import fr.xephi.authme.task.TaskScheduler;
 import org.bukkit.ChatColor;
 import org.bukkit.command.CommandSender;
 
 import javax.inject.Inject;
 import java.util.Calendar;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 /**
  * Command for purging the data of players which have not been since for a given number
  * of days. Depending on the settings, this removes player data in third-party plugins as well.
+ * With the "preview" argument, nothing is removed and the sender is only told what would be purged.
  */
 public class PurgeCommand implements ExecutableCommand {
 
@@ -24,7 +28,10 @@ public class PurgeCommand implements ExecutableCommand {
     private DataSource dataSource;
 
     @Inject
-    private AuthMe plugin;
+    private PurgeService purgeService;
+
+    @Inject
+    private TaskScheduler taskScheduler;
 
     @Override
     public void executeCommand(CommandSender sender, List<String> arguments) {
@@ -52,13 +59,35 @@ public class PurgeCommand implements ExecutableCommand {
         calendar.add(Calendar.DATE, -days);
         long until = calendar.getTimeInMillis();
 
-        //todo: note this should may run async because it may executes a SQL-Query
-        // Purge the data, get the purged values
-        Set<String> purged = dataSource.autoPurgeDatabase(until);
+        if (arguments.size() > 1 && "preview".equalsIgnoreCase(arguments.get(1))) {
+            previewPurge(sender, until);
+            return;
+        }
+
+        sender.sendMessage(ChatColor.GOLD + "Deleting the inactive accounts from the database...");
+        purgeService.purgeInactiveAccounts(sender, until, false);
+    }
 
-        // Show a status message
-        sender.sendMessage(ChatColor.GOLD + "Deleted " + purged.size() + " user accounts");
-        sender.sendMessage(ChatColor.GOLD + "Purging user accounts...");
-        new PurgeTask(plugin, sender, purged).runTaskTimer(plugin, 0, 1);
+    private void previewPurge(final CommandSender sender, final long until) {
+        sender.sendMessage(ChatColor.GOLD + "Looking up the accounts to purge...");
+        taskScheduler.runAsync(JobGroup.PURGE, new Runnable() {
+            @Override
+            public void run() {
+                final Set<String> candidates = new HashSet<>();
+                for (PlayerAuth auth : dataSource.getAllAuths()) {
+                    if (auth.getLastLogin() < until) {
+                        candidates.add(auth.getNickname());
+                    }
+                }
+                taskScheduler.runSync(JobGroup.PURGE, new Runnable() {
+                    @Override
+                    public void run() {
+                        sender.sendMessage(ChatColor.GOLD + "Purging would delete " + candidates.size()
+                            + " user accounts");
+                        purgeService.previewPurge(sender, candidates);
+                    }
+                });
+            }
+        });
     }
 }
@@ -0,0 +1,22 @@
+package fr.xephi.authme.command.executable.authme;
+
+import fr.xephi.authme.backup.RestoreService;
+import fr.xephi.authme.command.ExecutableCommand;
+import org.bukkit.command.CommandSender;
+
+import javax.inject.Inject;
+import java.util.List;
+
+/**
+ * Command for restoring the accounts of a backup file.
+ */
+public class RestoreCommand implements ExecutableCommand {
+
+    @Inject
+    private RestoreService restoreService;
+
+    @Override
+    public void executeCommand(CommandSender sender, List<String> arguments) {
+        restoreService.restore(sender, arguments.get(0));
+    }
+}
@@ -1,6 +1,8 @@
 package fr.xephi.authme.command.executable.authme;
 
 import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.cache.OnlineIpIndex;
+import fr.xephi.authme.cache.auth.JoinContextCache;
 import fr.xephi.authme.cache.auth.PlayerCache;
 import fr.xephi.authme.cache.limbo.LimboCache;
 import fr.xephi.authme.command.CommandService;
@@ -50,6 +52,12 @@ public class UnregisterAdminCommand implements ExecutableCommand {
     @Inject
     private AuthGroupHandler authGroupHandler;
 
+    @Inject
+    private JoinContextCache joinContextCache;
+
+    @Inject
+    private OnlineIpIndex onlineIpIndex;
+
 
     @Override
     public void executeCommand(final CommandSender sender, List<String> arguments) {
@@ -72,11 +80,14 @@ public class UnregisterAdminCommand implements ExecutableCommand {
         // Unregister the player
         Player target = bukkitService.getPlayerExact(playerNameLowerCase);
         playerCache.removePlayer(playerNameLowerCase);
-        authGroupHandler.setGroup(target, AuthGroupType.UNREGISTERED);
+        joinContextCache.invalidate(playerNameLowerCase);
+        onlineIpIndex.setUnlogged(playerNameLowerCase);
         if (target != null && target.isOnline()) {
             if (commandService.getProperty(RegistrationSettings.FORCE)) {
                 applyUnregisteredEffectsAndTasks(target);
             }
+            // After the limbo player has been added, so that the player's real group is resolved first
+            authGroupHandler.setGroup(target, AuthGroupType.UNREGISTERED);
             commandService.send(target, MessageKey.UNREGISTERED_SUCCESS);
         }
 
@@ -98,7 +109,7 @@ public class UnregisterAdminCommand implements ExecutableCommand {
 
         limboCache.addLimboPlayer(target);
         limboPlayerTaskManager.registerTimeoutTask(target);
-        limboPlayerTaskManager.registerMessageTask(target.getName(), false);
+        limboPlayerTaskManager.registerMessageTask(target, false);
 
         final int timeout = commandService.getProperty(RestrictionSettings.TIMEOUT) * TICKS_PER_SECOND;
         if (commandService.getProperty(RegistrationSettings.APPLY_BLIND_EFFECT)) {
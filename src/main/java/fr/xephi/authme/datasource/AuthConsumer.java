@@ -0,0 +1,20 @@
+package fr.xephi.authme.datasource;
+
+import fr.xephi.authme.cache.auth.PlayerAuth;
+
+import java.io.IOException;
+
+/**
+ * Receives the players read by {@link DataSource#exportAuths(long, AuthConsumer)}.
+ */
+public interface AuthConsumer {
+
+    /**
+     * Processes the given player.
+     *
+     * @param auth the player read from the data source
+     * @throws IOException if the player could not be processed, which aborts the export
+     */
+    void accept(PlayerAuth auth) throws IOException;
+
+}
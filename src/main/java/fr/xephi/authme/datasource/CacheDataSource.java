@@ -4,6 +4,7 @@ import com.google.common.base.Optional;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
@@ -14,6 +15,7 @@ import fr.xephi.authme.cache.auth.PlayerAuth;
 import fr.xephi.authme.cache.auth.PlayerCache;
 import fr.xephi.authme.security.crypts.HashedPassword;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -25,6 +27,7 @@ public class CacheDataSource implements DataSource {
 
     private final DataSource source;
     private final LoadingCache<String, Optional<PlayerAuth>> cachedAuths;
+    private final LoadingCache<String, List<String>> cachedAccountsByIp;
     private final ListeningExecutorService executorService;
 
     /**
@@ -60,6 +63,14 @@ public class CacheDataSource implements DataSource {
                     });
                 }
             });
+        cachedAccountsByIp = CacheBuilder.newBuilder()
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .build(new CacheLoader<String, List<String>>() {
+                @Override
+                public List<String> load(String ip) {
+                    return ImmutableList.copyOf(source.getAllAuthsByIp(ip));
+                }
+            });
     }
 
     public LoadingCache<String, Optional<PlayerAuth>> getCachedAuths() {
@@ -96,6 +107,7 @@ public class CacheDataSource implements DataSource {
     public boolean saveAuth(PlayerAuth auth) {
         boolean result = source.saveAuth(auth);
         if (result) {
+            invalidateAccountsByIp(auth.getNickname(), auth.getIp());
             cachedAuths.refresh(auth.getNickname());
         }
         return result;
@@ -124,6 +136,7 @@ public class CacheDataSource implements DataSource {
     public boolean updateSession(PlayerAuth auth) {
         boolean result = source.updateSession(auth);
         if (result) {
+            invalidateAccountsByIp(auth.getNickname(), auth.getIp());
             cachedAuths.refresh(auth.getNickname());
         }
         return result;
@@ -138,21 +151,45 @@ public class CacheDataSource implements DataSource {
         return result;
     }
 
+    @Override
+    public void updateQuitLoc(List<PlayerAuth> auths) {
+        source.updateQuitLoc(auths);
+        for (PlayerAuth auth : auths) {
+            cachedAuths.invalidate(auth.getNickname());
+        }
+    }
+
     @Override
     public Set<String> autoPurgeDatabase(long until) {
         Set<String> cleared = source.autoPurgeDatabase(until);
         for (String name : cleared) {
             cachedAuths.invalidate(name);
         }
+        if (!cleared.isEmpty()) {
+            cachedAccountsByIp.invalidateAll();
+        }
 
         return cleared;
     }
 
+    @Override
+    public long purgeInactiveChunk(long until, long afterId, int limit, List<String> purgedNames) {
+        List<String> cleared = new ArrayList<>();
+        long lastId = source.purgeInactiveChunk(until, afterId, limit, cleared);
+        if (!cleared.isEmpty()) {
+            cachedAuths.invalidateAll(cleared);
+            cachedAccountsByIp.invalidateAll();
+            purgedNames.addAll(cleared);
+        }
+        return lastId;
+    }
+
     @Override
     public boolean removeAuth(String name) {
         name = name.toLowerCase();
         boolean result = source.removeAuth(name);
         if (result) {
+            invalidateAccountsByIp(name, null);
             cachedAuths.invalidate(name);
         }
         return result;
@@ -162,6 +199,7 @@ public class CacheDataSource implements DataSource {
     public void close() {
         source.close();
         cachedAuths.invalidateAll();
+        cachedAccountsByIp.invalidateAll();
         executorService.shutdown();
         try {
             executorService.awaitTermination(5, TimeUnit.SECONDS);
@@ -181,7 +219,7 @@ public class CacheDataSource implements DataSource {
 
     @Override
     public List<String> getAllAuthsByIp(final String ip) {
-        return source.getAllAuthsByIp(ip);
+        return cachedAccountsByIp.getUnchecked(ip);
     }
 
     @Override
@@ -190,9 +228,13 @@ public class CacheDataSource implements DataSource {
     }
 
     @Override
-    public void purgeBanned(final Set<String> banned) {
-        source.purgeBanned(banned);
-        cachedAuths.invalidateAll(banned);
+    public int purgeBanned(final Set<String> banned) {
+        int deleted = source.purgeBanned(banned);
+        if (deleted > 0) {
+            cachedAuths.invalidateAll(banned);
+            cachedAccountsByIp.invalidateAll();
+        }
+        return deleted;
     }
 
     @Override
@@ -215,6 +257,11 @@ public class CacheDataSource implements DataSource {
         source.setUnlogged(user.toLowerCase());
     }
 
+    @Override
+    public void setUnlogged(Set<String> users) {
+        source.setUnlogged(users);
+    }
+
     @Override
     public void purgeLogged() {
         source.purgeLogged();
@@ -239,6 +286,7 @@ public class CacheDataSource implements DataSource {
     public boolean updateIp(String user, String ip) {
         boolean result = source.updateIp(user, ip);
         if (result) {
+            invalidateAccountsByIp(user, ip);
             cachedAuths.refresh(user);
         }
         return result;
@@ -249,8 +297,47 @@ public class CacheDataSource implements DataSource {
         return source.getAllAuths();
     }
 
+    @Override
+    public boolean importAuths(List<PlayerAuth> auths) {
+        boolean result = source.importAuths(auths);
+        if (result) {
+            for (PlayerAuth auth : auths) {
+                cachedAuths.invalidate(auth.getNickname());
+            }
+            cachedAccountsByIp.invalidateAll();
+        }
+        return result;
+    }
+
+    @Override
+    public boolean exportAuths(long since, AuthConsumer consumer) throws IOException {
+        return source.exportAuths(since, consumer);
+    }
+
     @Override
     public List<PlayerAuth> getLoggedPlayers() {
         return new ArrayList<>(PlayerCache.getInstance().getCache().values());
     }
+
+    /**
+     * Invalidates the cached accounts of the previous IP address of the given player
+     * as well as those of his new IP address.
+     *
+     * @param user the name of the player
+     * @param newIp the new IP address of the player (nullable)
+     */
+    private void invalidateAccountsByIp(String user, String newIp) {
+        Optional<PlayerAuth> previousAuth = cachedAuths.getIfPresent(user.toLowerCase());
+        if (previousAuth == null) {
+            // The previous IP of the player is unknown
+            cachedAccountsByIp.invalidateAll();
+            return;
+        }
+        if (previousAuth.isPresent() && previousAuth.get().getIp() != null) {
+            cachedAccountsByIp.invalidate(previousAuth.get().getIp());
+        }
+        if (newIp != null) {
+            cachedAccountsByIp.invalidate(newIp);
+        }
+    }
 }
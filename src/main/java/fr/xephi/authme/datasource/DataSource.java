@@ -4,6 +4,7 @@ import fr.xephi.authme.cache.auth.PlayerAuth;
 import fr.xephi.authme.initialization.Reloadable;
 import fr.xephi.authme.security.crypts.HashedPassword;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Set;
 
@@ -12,6 +13,9 @@ import java.util.Set;
  */
 public interface DataSource extends Reloadable {
 
+    /** Returned by {@link #purgeInactiveChunk} if the records could not be purged. */
+    long PURGE_FAILED = -2;
+
     /**
      * Return whether there is a record for the given username.
      *
@@ -78,6 +82,20 @@ public interface DataSource extends Reloadable {
      */
     Set<String> autoPurgeDatabase(long until);
 
+    /**
+     * Purge one chunk of the records whose last login was longer ago than the given time, taking the
+     * records in order of their ID. Passing the returned ID for the next call resumes the purge where
+     * the previous chunk stopped, so that the table is never locked for the whole purge.
+     *
+     * @param until The minimum last login
+     * @param afterId The ID after which to start looking for records, 0 to start from the beginning
+     * @param limit The maximum number of records to purge
+     * @param purgedNames The list to add the names of the removed accounts to
+     * @return The ID of the last removed record, -1 if no record was removed, or {@link #PURGE_FAILED}
+     *         if the records could not be purged
+     */
+    long purgeInactiveChunk(long until, long afterId, int limit, List<String> purgedNames);
+
     /**
      * Remove a user record from the database.
      *
@@ -94,6 +112,13 @@ public interface DataSource extends Reloadable {
      */
     boolean updateQuitLoc(PlayerAuth auth);
 
+    /**
+     * Update the quit location of multiple PlayerAuth entries in one transaction.
+     *
+     * @param auths The entries whose quit location should be updated
+     */
+    void updateQuitLoc(List<PlayerAuth> auths);
+
     /**
      * Return all usernames associated with the given IP address.
      *
@@ -127,8 +152,9 @@ public interface DataSource extends Reloadable {
      * Purge all given players, i.e. delete all players whose name is in the list.
      *
      * @param banned the list of players to delete
+     * @return the number of deleted records
      */
-    void purgeBanned(Set<String> banned);
+    int purgeBanned(Set<String> banned);
 
     /**
      * Return the data source type.
@@ -159,6 +185,13 @@ public interface DataSource extends Reloadable {
      */
     void setUnlogged(String user);
 
+    /**
+     * Set the given players as NOT logged in.
+     *
+     * @param users The names of the players to change
+     */
+    void setUnlogged(Set<String> users);
+
     /**
      * Set all players who are marked as logged in as NOT logged in.
      */
@@ -203,6 +236,27 @@ public interface DataSource extends Reloadable {
      */
     List<PlayerAuth> getAllAuths();
 
+    /**
+     * Save the given players in one transaction, replacing the records of the players which
+     * already exist. Only the columns of AuthMe's own table are written, except for the password
+     * of hash algorithms which keep it in a table of their own, such as XenForo's.
+     *
+     * @param auths The players to save
+     * @return True if all players were saved, false if none was
+     */
+    boolean importAuths(List<PlayerAuth> auths);
+
+    /**
+     * Pass the players whose last login is at or after the given time to the consumer one at a time,
+     * without loading them all into memory.
+     *
+     * @param since The minimum last login, or -1 for all players
+     * @param consumer The consumer to pass the players to
+     * @return True if all players were read, false if the data source could not be read
+     * @throws IOException If the consumer failed, which aborts the export
+     */
+    boolean exportAuths(long since, AuthConsumer consumer) throws IOException;
+
     /**
      * Reload the data source.
      */
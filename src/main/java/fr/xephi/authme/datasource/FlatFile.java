@@ -228,6 +228,13 @@ public class FlatFile implements DataSource {
         return true;
     }
 
+    @Override
+    public void updateQuitLoc(List<PlayerAuth> auths) {
+        for (PlayerAuth auth : auths) {
+            updateQuitLoc(auth);
+        }
+    }
+
     @Override
     public Set<String> autoPurgeDatabase(long until) {
         BufferedReader br = null;
@@ -262,6 +269,17 @@ public class FlatFile implements DataSource {
         return cleared;
     }
 
+    @Override
+    public long purgeInactiveChunk(long until, long afterId, int limit, List<String> purgedNames) {
+        // Records have no ID: the whole file is rewritten once anyway, so purge everything in one chunk
+        if (afterId > 0) {
+            return -1;
+        }
+        Set<String> cleared = autoPurgeDatabase(until);
+        purgedNames.addAll(cleared);
+        return cleared.isEmpty() ? -1 : cleared.size();
+    }
+
     @Override
     public synchronized boolean removeAuth(String user) {
         if (!isAuthAvailable(user)) {
@@ -417,20 +435,20 @@ public class FlatFile implements DataSource {
     }
 
     @Override
-    public void purgeBanned(Set<String> banned) {
+    public int purgeBanned(Set<String> banned) {
         BufferedReader br = null;
         BufferedWriter bw = null;
         ArrayList<String> lines = new ArrayList<>();
+        int deleted = 0;
         try {
             br = new BufferedReader(new FileReader(source));
             String line;
             while ((line = br.readLine()) != null) {
                 String[] args = line.split(":");
-                try {
-                    if (banned.contains(args[0])) {
-                        lines.add(line);
-                    }
-                } catch (NullPointerException | ArrayIndexOutOfBoundsException ignored) {
+                if (banned.contains(args[0].toLowerCase())) {
+                    ++deleted;
+                } else {
+                    lines.add(line);
                 }
             }
             bw = new BufferedWriter(new FileWriter(source));
@@ -440,11 +458,12 @@ public class FlatFile implements DataSource {
 
         } catch (IOException ex) {
             ConsoleLogger.showError(ex.getMessage());
-
+            return 0;
         } finally {
             silentClose(br);
             silentClose(bw);
         }
+        return deleted;
     }
 
     @Override
@@ -465,6 +484,10 @@ public class FlatFile implements DataSource {
     public void setUnlogged(String user) {
     }
 
+    @Override
+    public void setUnlogged(Set<String> users) {
+    }
+
     @Override
     public void purgeLogged() {
     }
@@ -519,6 +542,42 @@ public class FlatFile implements DataSource {
         return auths;
     }
 
+    @Override
+    public boolean importAuths(List<PlayerAuth> auths) {
+        throw new UnsupportedOperationException("Flat file no longer supported");
+    }
+
+    @Override
+    public boolean exportAuths(long since, AuthConsumer consumer) throws IOException {
+        BufferedReader br;
+        try {
+            br = new BufferedReader(new FileReader(source));
+        } catch (FileNotFoundException ex) {
+            ConsoleLogger.logException("Error while exporting auths from flatfile:", ex);
+            return false;
+        }
+        try {
+            while (true) {
+                String line;
+                try {
+                    line = br.readLine();
+                } catch (IOException ex) {
+                    ConsoleLogger.logException("Error while exporting auths from flatfile:", ex);
+                    return false;
+                }
+                if (line == null) {
+                    return true;
+                }
+                PlayerAuth auth = buildAuthFromArray(line.split(":"));
+                if (auth != null && auth.getLastLogin() >= since) {
+                    consumer.accept(auth);
+                }
+            }
+        } finally {
+            silentClose(br);
+        }
+    }
+
     @Override
     public List<PlayerAuth> getLoggedPlayers() {
         throw new UnsupportedOperationException("Flat file no longer supported");
@@ -16,6 +16,7 @@ import fr.xephi.authme.settings.properties.HooksSettings;
 import fr.xephi.authme.settings.properties.SecuritySettings;
 import fr.xephi.authme.util.StringUtils;
 
+import java.io.IOException;
 import java.sql.Blob;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
@@ -310,17 +311,7 @@ public class MySQL implements DataSource {
                 auth = buildAuthFromResultSet(rs);
             }
             if (hashAlgorithm == HashAlgorithm.XFBCRYPT) {
-                try (PreparedStatement pst2 = con.prepareStatement(
-                    "SELECT data FROM xf_user_authenticate WHERE " + col.ID + "=?;")) {
-                    pst2.setInt(1, id);
-                    try (ResultSet rs = pst2.executeQuery()) {
-                        if (rs.next()) {
-                            Blob blob = rs.getBlob("data");
-                            byte[] bytes = blob.getBytes(1, (int) blob.length());
-                            auth.setPassword(new HashedPassword(XFBCRYPT.getHashFromBlob(bytes)));
-                        }
-                    }
-                }
+                loadXfBCryptPassword(con, id, auth);
             }
             return auth;
         } catch (SQLException ex) {
@@ -635,6 +626,67 @@ public class MySQL implements DataSource {
         return list;
     }
 
+    @Override
+    public long purgeInactiveChunk(long until, long afterId, int limit, List<String> purgedNames) {
+        int chunkSize = Math.min(limit, SqlDataSourceUtils.MAX_IN_CLAUSE_SIZE);
+        String select = "SELECT " + col.ID + "," + col.NAME + " FROM " + tableName
+            + " WHERE " + col.ID + ">? AND " + col.LAST_LOGIN + "<? ORDER BY " + col.ID + " LIMIT ?;";
+        List<Long> ids = new ArrayList<>(chunkSize);
+        List<String> names = new ArrayList<>(chunkSize);
+        try (Connection con = getConnection()) {
+            try (PreparedStatement selectPst = con.prepareStatement(select)) {
+                selectPst.setLong(1, afterId);
+                selectPst.setLong(2, until);
+                selectPst.setInt(3, chunkSize);
+                try (ResultSet rs = selectPst.executeQuery()) {
+                    while (rs.next()) {
+                        ids.add(rs.getLong(col.ID));
+                        names.add(rs.getString(col.NAME));
+                    }
+                }
+            }
+            if (ids.isEmpty()) {
+                return -1;
+            }
+            // Check the last login again so that a player who logged in since the select is kept
+            String delete = "DELETE FROM " + tableName + " WHERE " + col.ID + " IN ("
+                + SqlDataSourceUtils.createPlaceholders(ids.size()) + ") AND " + col.LAST_LOGIN + "<?;";
+            try (PreparedStatement deletePst = con.prepareStatement(delete)) {
+                int index = 1;
+                for (Long id : ids) {
+                    deletePst.setLong(index++, id);
+                }
+                deletePst.setLong(index, until);
+                if (deletePst.executeUpdate() < ids.size()) {
+                    names.removeAll(getNamesById(con, ids));
+                }
+            }
+            purgedNames.addAll(names);
+            return ids.get(ids.size() - 1);
+        } catch (SQLException ex) {
+            logSqlException(ex);
+        }
+        return PURGE_FAILED;
+    }
+
+    private List<String> getNamesById(Connection con, List<Long> ids) throws SQLException {
+        String sql = "SELECT " + col.NAME + " FROM " + tableName + " WHERE " + col.ID + " IN ("
+            + SqlDataSourceUtils.createPlaceholders(ids.size()) + ");";
+        List<String> names = new ArrayList<>();
+        try (PreparedStatement pst = con.prepareStatement(sql)) {
+            int index = 1;
+            for (Long id : ids) {
+                pst.setLong(index++, id);
+            }
+            try (ResultSet rs = pst.executeQuery()) {
+                while (rs.next()) {
+                    names.add(rs.getString(col.NAME));
+                }
+            }
+        }
+        return names;
+    }
+
     @Override
     public boolean removeAuth(String user) {
         user = user.toLowerCase();
@@ -687,6 +739,35 @@ public class MySQL implements DataSource {
         return false;
     }
 
+    @Override
+    public void updateQuitLoc(List<PlayerAuth> auths) {
+        String sql = "UPDATE " + tableName
+            + " SET " + col.LASTLOC_X + " =?, " + col.LASTLOC_Y + "=?, " + col.LASTLOC_Z + "=?, " + col.LASTLOC_WORLD + "=?"
+            + " WHERE " + col.NAME + "=?;";
+        try (Connection con = getConnection()) {
+            con.setAutoCommit(false);
+            try (PreparedStatement pst = con.prepareStatement(sql)) {
+                for (PlayerAuth auth : auths) {
+                    pst.setDouble(1, auth.getQuitLocX());
+                    pst.setDouble(2, auth.getQuitLocY());
+                    pst.setDouble(3, auth.getQuitLocZ());
+                    pst.setString(4, auth.getWorld());
+                    pst.setString(5, auth.getNickname());
+                    pst.addBatch();
+                }
+                pst.executeBatch();
+                con.commit();
+            } catch (SQLException ex) {
+                con.rollback();
+                throw ex;
+            } finally {
+                con.setAutoCommit(true);
+            }
+        } catch (SQLException ex) {
+            logSqlException(ex);
+        }
+    }
+
     @Override
     public boolean updateEmail(PlayerAuth auth) {
         String sql = "UPDATE " + tableName + " SET " + col.EMAIL + " =? WHERE " + col.NAME + "=?;";
@@ -742,16 +823,34 @@ public class MySQL implements DataSource {
     }
 
     @Override
-    public void purgeBanned(Set<String> banned) {
-        String sql = "DELETE FROM " + tableName + " WHERE " + col.NAME + "=?;";
-        try (Connection con = getConnection(); PreparedStatement pst = con.prepareStatement(sql)) {
-            for (String name : banned) {
-                pst.setString(1, name);
-                pst.executeUpdate();
+    public int purgeBanned(Set<String> banned) {
+        int deleted = 0;
+        try (Connection con = getConnection()) {
+            con.setAutoCommit(false);
+            try {
+                for (List<String> chunk : SqlDataSourceUtils.toLowercaseChunks(banned)) {
+                    String sql = "DELETE FROM " + tableName + " WHERE " + col.NAME
+                        + " IN (" + SqlDataSourceUtils.createPlaceholders(chunk.size()) + ");";
+                    try (PreparedStatement pst = con.prepareStatement(sql)) {
+                        int index = 1;
+                        for (String name : chunk) {
+                            pst.setString(index++, name);
+                        }
+                        deleted += pst.executeUpdate();
+                    }
+                }
+                con.commit();
+            } catch (SQLException ex) {
+                con.rollback();
+                throw ex;
+            } finally {
+                con.setAutoCommit(true);
             }
         } catch (SQLException ex) {
             logSqlException(ex);
+            return 0;
         }
+        return deleted;
     }
 
     @Override
@@ -797,6 +896,26 @@ public class MySQL implements DataSource {
         }
     }
 
+    @Override
+    public void setUnlogged(Set<String> users) {
+        try (Connection con = getConnection()) {
+            for (List<String> chunk : SqlDataSourceUtils.toLowercaseChunks(users)) {
+                String sql = "UPDATE " + tableName + " SET " + col.IS_LOGGED + "=? WHERE " + col.NAME
+                    + " IN (" + SqlDataSourceUtils.createPlaceholders(chunk.size()) + ");";
+                try (PreparedStatement pst = con.prepareStatement(sql)) {
+                    pst.setInt(1, 0);
+                    int index = 2;
+                    for (String name : chunk) {
+                        pst.setString(index++, name);
+                    }
+                    pst.executeUpdate();
+                }
+            }
+        } catch (SQLException ex) {
+            logSqlException(ex);
+        }
+    }
+
     @Override
     public void purgeLogged() {
         String sql = "UPDATE " + tableName + " SET " + col.IS_LOGGED + "=? WHERE " + col.IS_LOGGED + "=?;";
@@ -862,17 +981,7 @@ public class MySQL implements DataSource {
             while (rs.next()) {
                 PlayerAuth pAuth = buildAuthFromResultSet(rs);
                 if (hashAlgorithm == HashAlgorithm.XFBCRYPT) {
-                    try (PreparedStatement pst = con.prepareStatement("SELECT data FROM xf_user_authenticate WHERE " + col.ID + "=?;")) {
-                        int id = rs.getInt(col.ID);
-                        pst.setInt(1, id);
-                        ResultSet rs2 = pst.executeQuery();
-                        if (rs2.next()) {
-                            Blob blob = rs2.getBlob("data");
-                            byte[] bytes = blob.getBytes(1, (int) blob.length());
-                            pAuth.setPassword(new HashedPassword(XFBCRYPT.getHashFromBlob(bytes)));
-                        }
-                        rs2.close();
-                    }
+                    loadXfBCryptPassword(con, rs.getInt(col.ID), pAuth);
                 }
                 auths.add(pAuth);
             }
@@ -884,6 +993,86 @@ public class MySQL implements DataSource {
         return auths;
     }
 
+    @Override
+    public boolean importAuths(List<PlayerAuth> auths) {
+        boolean useSalt = !col.SALT.isEmpty();
+        String sql = "INSERT INTO " + tableName + "("
+            + col.NAME + "," + col.REAL_NAME + "," + col.PASSWORD + "," + col.IP + "," + col.LAST_LOGIN + ","
+            + col.LASTLOC_X + "," + col.LASTLOC_Y + "," + col.LASTLOC_Z + "," + col.LASTLOC_WORLD + ","
+            + col.EMAIL + (useSalt ? "," + col.SALT : "")
+            + ") VALUES (?,?,?,?,?,?,?,?,?,?" + (useSalt ? ",?" : "") + ")"
+            + " ON DUPLICATE KEY UPDATE " + col.REAL_NAME + "=VALUES(" + col.REAL_NAME + "),"
+            + col.PASSWORD + "=VALUES(" + col.PASSWORD + ")," + col.IP + "=VALUES(" + col.IP + "),"
+            + col.LAST_LOGIN + "=VALUES(" + col.LAST_LOGIN + ")," + col.LASTLOC_X + "=VALUES(" + col.LASTLOC_X + "),"
+            + col.LASTLOC_Y + "=VALUES(" + col.LASTLOC_Y + ")," + col.LASTLOC_Z + "=VALUES(" + col.LASTLOC_Z + "),"
+            + col.LASTLOC_WORLD + "=VALUES(" + col.LASTLOC_WORLD + ")," + col.EMAIL + "=VALUES(" + col.EMAIL + ")"
+            + (useSalt ? "," + col.SALT + "=VALUES(" + col.SALT + ")" : "");
+        try (Connection con = getConnection()) {
+            con.setAutoCommit(false);
+            try (PreparedStatement pst = con.prepareStatement(sql)) {
+                for (PlayerAuth auth : auths) {
+                    pst.setString(1, auth.getNickname());
+                    pst.setString(2, auth.getRealName());
+                    pst.setString(3, auth.getPassword().getHash());
+                    pst.setString(4, auth.getIp());
+                    pst.setLong(5, auth.getLastLogin());
+                    pst.setDouble(6, auth.getQuitLocX());
+                    pst.setDouble(7, auth.getQuitLocY());
+                    pst.setDouble(8, auth.getQuitLocZ());
+                    pst.setString(9, auth.getWorld());
+                    pst.setString(10, auth.getEmail());
+                    if (useSalt) {
+                        pst.setString(11, auth.getPassword().getSalt());
+                    }
+                    pst.addBatch();
+                }
+                pst.executeBatch();
+                if (hashAlgorithm == HashAlgorithm.XFBCRYPT) {
+                    importXfBCryptPasswords(con, auths);
+                }
+                con.commit();
+            } catch (SQLException ex) {
+                con.rollback();
+                throw ex;
+            } finally {
+                con.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException ex) {
+            logSqlException(ex);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean exportAuths(long since, AuthConsumer consumer) throws IOException {
+        String sql = "SELECT * FROM " + tableName + (since < 0 ? ";" : " WHERE " + col.LAST_LOGIN + ">=?;");
+        // No other query can run on a connection while it streams a result, so XenForo's passwords
+        // are read on a second one
+        try (Connection con = getConnection();
+             Connection xfCon = hashAlgorithm == HashAlgorithm.XFBCRYPT ? getConnection() : null;
+             PreparedStatement pst = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                 ResultSet.CONCUR_READ_ONLY)) {
+            enableStreaming(pst);
+            if (since >= 0) {
+                pst.setLong(1, since);
+            }
+            try (ResultSet rs = pst.executeQuery()) {
+                while (rs.next()) {
+                    PlayerAuth auth = buildAuthFromResultSet(rs);
+                    if (xfCon != null) {
+                        loadXfBCryptPassword(xfCon, rs.getInt(col.ID), auth);
+                    }
+                    consumer.accept(auth);
+                }
+            }
+            return true;
+        } catch (SQLException ex) {
+            logSqlException(ex);
+        }
+        return false;
+    }
+
     @Override
     public List<PlayerAuth> getLoggedPlayers() {
         List<PlayerAuth> auths = new ArrayList<>();
@@ -894,17 +1083,7 @@ public class MySQL implements DataSource {
             while (rs.next()) {
                 PlayerAuth pAuth = buildAuthFromResultSet(rs);
                 if (hashAlgorithm == HashAlgorithm.XFBCRYPT) {
-                    try (PreparedStatement pst = con.prepareStatement("SELECT data FROM xf_user_authenticate WHERE " + col.ID + "=?;")) {
-                        int id = rs.getInt(col.ID);
-                        pst.setInt(1, id);
-                        ResultSet rs2 = pst.executeQuery();
-                        if (rs2.next()) {
-                            Blob blob = rs2.getBlob("data");
-                            byte[] bytes = blob.getBytes(1, (int) blob.length());
-                            pAuth.setPassword(new HashedPassword(XFBCRYPT.getHashFromBlob(bytes)));
-                        }
-                        rs2.close();
-                    }
+                    loadXfBCryptPassword(con, rs.getInt(col.ID), pAuth);
                 }
                 auths.add(pAuth);
             }
@@ -914,6 +1093,71 @@ public class MySQL implements DataSource {
         return auths;
     }
 
+    /**
+     * Writes the passwords of the given players to XenForo's authentication table, which XenForo and
+     * {@link #getAuth} read the password from, as {@link #saveAuth} does for a new player.
+     *
+     * @param con Connection to the database, in the transaction of the import
+     * @param auths The imported players
+     */
+    private void importXfBCryptPasswords(Connection con, List<PlayerAuth> auths) throws SQLException {
+        String selectSql = "SELECT " + col.ID + " FROM " + tableName + " WHERE " + col.NAME + "=?;";
+        String upsertSql = "INSERT INTO xf_user_authenticate (user_id, scheme_class, data) VALUES (?,?,?)"
+            + " ON DUPLICATE KEY UPDATE scheme_class=VALUES(scheme_class), data=VALUES(data);";
+        try (PreparedStatement selectPst = con.prepareStatement(selectSql);
+             PreparedStatement upsertPst = con.prepareStatement(upsertSql)) {
+            for (PlayerAuth auth : auths) {
+                selectPst.setString(1, auth.getNickname());
+                try (ResultSet rs = selectPst.executeQuery()) {
+                    if (rs.next()) {
+                        Blob blob = con.createBlob();
+                        blob.setBytes(1, XFBCRYPT.serializeHash(auth.getPassword().getHash()).getBytes());
+                        upsertPst.setInt(1, rs.getInt(col.ID));
+                        upsertPst.setString(2, XFBCRYPT.SCHEME_CLASS);
+                        upsertPst.setBlob(3, blob);
+                        upsertPst.addBatch();
+                    }
+                }
+            }
+            upsertPst.executeBatch();
+        }
+    }
+
+    /**
+     * Makes MySQL's driver stream the rows of the statement's result instead of reading them all into memory.
+     *
+     * @param pst The statement to stream the result of
+     */
+    private static void enableStreaming(PreparedStatement pst) {
+        try {
+            pst.setFetchSize(Integer.MIN_VALUE);
+        } catch (SQLException e) {
+            // Other drivers, such as H2 used for testing, reject the value: keep their default fetch size
+            ConsoleLogger.debug("Could not enable streaming of the result: " + StringUtils.formatException(e));
+        }
+    }
+
+    /**
+     * Sets the password of the given player to the one in XenForo's authentication table, if there is one.
+     *
+     * @param con Connection to the database
+     * @param id The ID of the player
+     * @param auth The player to set the password of
+     */
+    private void loadXfBCryptPassword(Connection con, int id, PlayerAuth auth) throws SQLException {
+        String sql = "SELECT data FROM xf_user_authenticate WHERE " + col.ID + "=?;";
+        try (PreparedStatement pst = con.prepareStatement(sql)) {
+            pst.setInt(1, id);
+            try (ResultSet rs = pst.executeQuery()) {
+                if (rs.next()) {
+                    Blob blob = rs.getBlob("data");
+                    byte[] bytes = blob.getBytes(1, (int) blob.length());
+                    auth.setPassword(new HashedPassword(XFBCRYPT.getHashFromBlob(bytes)));
+                }
+            }
+        }
+    }
+
     private PlayerAuth buildAuthFromResultSet(ResultSet row) throws SQLException {
         String salt = col.SALT.isEmpty() ? null : row.getString(col.SALT);
         int group = col.GROUP.isEmpty() ? -1 : row.getInt(col.GROUP);
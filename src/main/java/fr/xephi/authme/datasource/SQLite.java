@@ -1,5 +1,6 @@
 package fr.xephi.authme.datasource;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
@@ -25,9 +26,18 @@ import fr.xephi.authme.util.StringUtils;
  */
 public class SQLite implements DataSource {
 
+    /**
+     * The internal row ID of SQLite. The ID column of the table created by AuthMe is not filled in by
+     * SQLite, so the row ID is used to go through the records in order instead.
+     */
+    private static final String ROWID = "rowid";
+    /** Number of players read at a time by {@link #exportAuths(long, AuthConsumer)}. */
+    private static final int EXPORT_PAGE_SIZE = 1000;
+
     private final String database;
     private final String tableName;
     private final Columns col;
+    /** Shared by all methods, which are synchronized so that no statement runs inside another one's transaction. */
     private Connection con;
 
     /**
@@ -132,7 +142,7 @@ public class SQLite implements DataSource {
     }
 
     @Override
-    public void reload() {
+    public synchronized void reload() {
         close(con);
         try {
             this.connect();
@@ -143,7 +153,7 @@ public class SQLite implements DataSource {
     }
 
     @Override
-    public boolean isAuthAvailable(String user) {
+    public synchronized boolean isAuthAvailable(String user) {
         PreparedStatement pst = null;
         ResultSet rs = null;
         try {
@@ -161,7 +171,7 @@ public class SQLite implements DataSource {
     }
 
     @Override
-    public HashedPassword getPassword(String user) {
+    public synchronized HashedPassword getPassword(String user) {
         boolean useSalt = !col.SALT.isEmpty();
         String sql = "SELECT " + col.PASSWORD
             + (useSalt ? ", " + col.SALT : "")
@@ -181,7 +191,7 @@ public class SQLite implements DataSource {
     }
 
     @Override
-    public PlayerAuth getAuth(String user) {
+    public synchronized PlayerAuth getAuth(String user) {
         PreparedStatement pst = null;
         ResultSet rs = null;
         try {
@@ -201,7 +211,7 @@ public class SQLite implements DataSource {
     }
 
     @Override
-    public boolean saveAuth(PlayerAuth auth) {
+    public synchronized boolean saveAuth(PlayerAuth auth) {
         PreparedStatement pst = null;
         try {
             HashedPassword password = auth.getPassword();
@@ -242,12 +252,12 @@ public class SQLite implements DataSource {
     }
 
     @Override
-    public boolean updatePassword(PlayerAuth auth) {
+    public synchronized boolean updatePassword(PlayerAuth auth) {
         return updatePassword(auth.getNickname(), auth.getPassword());
     }
 
     @Override
-    public boolean updatePassword(String user, HashedPassword password) {
+    public synchronized boolean updatePassword(String user, HashedPassword password) {
         user = user.toLowerCase();
         PreparedStatement pst = null;
         try {
@@ -274,7 +284,7 @@ public class SQLite implements DataSource {
     }
 
     @Override
-    public boolean updateSession(PlayerAuth auth) {
+    public synchronized boolean updateSession(PlayerAuth auth) {
         PreparedStatement pst = null;
         try {
             pst = con.prepareStatement("UPDATE " + tableName + " SET " + col.IP + "=?, " + col.LAST_LOGIN + "=?, " + col.REAL_NAME + "=? WHERE " + col.NAME + "=?;");
@@ -293,7 +303,7 @@ public class SQLite implements DataSource {
     }
 
     @Override
-    public Set<String> autoPurgeDatabase(long until) {
+    public synchronized Set<String> autoPurgeDatabase(long until) {
         Set<String> list = new HashSet<>();
         String select = "SELECT " + col.NAME + " FROM " + tableName + " WHERE " + col.LAST_LOGIN + "<?;";
         String delete = "DELETE FROM " + tableName + " WHERE " + col.LAST_LOGIN + "<?;";
@@ -315,7 +325,68 @@ public class SQLite implements DataSource {
     }
 
     @Override
-    public boolean removeAuth(String user) {
+    public synchronized long purgeInactiveChunk(long until, long afterId, int limit, List<String> purgedNames) {
+        int chunkSize = Math.min(limit, SqlDataSourceUtils.MAX_IN_CLAUSE_SIZE);
+        String select = "SELECT " + ROWID + "," + col.NAME + " FROM " + tableName
+            + " WHERE " + ROWID + ">? AND " + col.LAST_LOGIN + "<? ORDER BY " + ROWID + " LIMIT ?;";
+        List<Long> ids = new ArrayList<>(chunkSize);
+        List<String> names = new ArrayList<>(chunkSize);
+        try {
+            try (PreparedStatement selectPst = con.prepareStatement(select)) {
+                selectPst.setLong(1, afterId);
+                selectPst.setLong(2, until);
+                selectPst.setInt(3, chunkSize);
+                try (ResultSet rs = selectPst.executeQuery()) {
+                    while (rs.next()) {
+                        ids.add(rs.getLong(1));
+                        names.add(rs.getString(2));
+                    }
+                }
+            }
+            if (ids.isEmpty()) {
+                return -1;
+            }
+            // Check the last login again so that a player who logged in since the select is kept
+            String delete = "DELETE FROM " + tableName + " WHERE " + ROWID + " IN ("
+                + SqlDataSourceUtils.createPlaceholders(ids.size()) + ") AND " + col.LAST_LOGIN + "<?;";
+            try (PreparedStatement deletePst = con.prepareStatement(delete)) {
+                int index = 1;
+                for (Long id : ids) {
+                    deletePst.setLong(index++, id);
+                }
+                deletePst.setLong(index, until);
+                if (deletePst.executeUpdate() < ids.size()) {
+                    names.removeAll(getNamesById(con, ids));
+                }
+            }
+            purgedNames.addAll(names);
+            return ids.get(ids.size() - 1);
+        } catch (SQLException ex) {
+            logSqlException(ex);
+        }
+        return PURGE_FAILED;
+    }
+
+    private List<String> getNamesById(Connection con, List<Long> ids) throws SQLException {
+        String sql = "SELECT " + col.NAME + " FROM " + tableName + " WHERE " + ROWID + " IN ("
+            + SqlDataSourceUtils.createPlaceholders(ids.size()) + ");";
+        List<String> names = new ArrayList<>();
+        try (PreparedStatement pst = con.prepareStatement(sql)) {
+            int index = 1;
+            for (Long id : ids) {
+                pst.setLong(index++, id);
+            }
+            try (ResultSet rs = pst.executeQuery()) {
+                while (rs.next()) {
+                    names.add(rs.getString(col.NAME));
+                }
+            }
+        }
+        return names;
+    }
+
+    @Override
+    public synchronized boolean removeAuth(String user) {
         PreparedStatement pst = null;
         try {
             pst = con.prepareStatement("DELETE FROM " + tableName + " WHERE " + col.NAME + "=?;");
@@ -331,7 +402,7 @@ public class SQLite implements DataSource {
     }
 
     @Override
-    public boolean updateQuitLoc(PlayerAuth auth) {
+    public synchronized boolean updateQuitLoc(PlayerAuth auth) {
         PreparedStatement pst = null;
         try {
             pst = con.prepareStatement("UPDATE " + tableName + " SET " + col.LASTLOC_X + "=?, " + col.LASTLOC_Y + "=?, " + col.LASTLOC_Z + "=?, " + col.LASTLOC_WORLD + "=? WHERE " + col.NAME + "=?;");
@@ -351,7 +422,35 @@ public class SQLite implements DataSource {
     }
 
     @Override
-    public boolean updateEmail(PlayerAuth auth) {
+    public synchronized void updateQuitLoc(List<PlayerAuth> auths) {
+        String sql = "UPDATE " + tableName + " SET " + col.LASTLOC_X + "=?, " + col.LASTLOC_Y + "=?, "
+            + col.LASTLOC_Z + "=?, " + col.LASTLOC_WORLD + "=? WHERE " + col.NAME + "=?;";
+        try {
+            con.setAutoCommit(false);
+            try (PreparedStatement pst = con.prepareStatement(sql)) {
+                for (PlayerAuth auth : auths) {
+                    pst.setDouble(1, auth.getQuitLocX());
+                    pst.setDouble(2, auth.getQuitLocY());
+                    pst.setDouble(3, auth.getQuitLocZ());
+                    pst.setString(4, auth.getWorld());
+                    pst.setString(5, auth.getNickname());
+                    pst.addBatch();
+                }
+                pst.executeBatch();
+                con.commit();
+            } catch (SQLException ex) {
+                con.rollback();
+                throw ex;
+            } finally {
+                con.setAutoCommit(true);
+            }
+        } catch (SQLException ex) {
+            logSqlException(ex);
+        }
+    }
+
+    @Override
+    public synchronized boolean updateEmail(PlayerAuth auth) {
         String sql = "UPDATE " + tableName + " SET " + col.EMAIL + "=? WHERE " + col.NAME + "=?;";
         try (PreparedStatement pst = con.prepareStatement(sql)) {
             pst.setString(1, auth.getEmail());
@@ -365,7 +464,7 @@ public class SQLite implements DataSource {
     }
 
     @Override
-    public void close() {
+    public synchronized void close() {
         try {
             if (con != null && !con.isClosed()) {
                 con.close();
@@ -406,7 +505,7 @@ public class SQLite implements DataSource {
     }
 
     @Override
-    public List<String> getAllAuthsByIp(String ip) {
+    public synchronized List<String> getAllAuthsByIp(String ip) {
         PreparedStatement pst = null;
         ResultSet rs = null;
         List<String> countIp = new ArrayList<>();
@@ -428,7 +527,7 @@ public class SQLite implements DataSource {
     }
 
     @Override
-    public int countAuthsByEmail(String email) {
+    public synchronized int countAuthsByEmail(String email) {
         String sql = "SELECT COUNT(1) FROM " + tableName + " WHERE " + col.EMAIL + " = ? COLLATE NOCASE;";
         try (PreparedStatement pst = con.prepareStatement(sql)) {
             pst.setString(1, email);
@@ -444,16 +543,34 @@ public class SQLite implements DataSource {
     }
 
     @Override
-    public void purgeBanned(Set<String> banned) {
-        String sql = "DELETE FROM " + tableName + " WHERE " + col.NAME + "=?;";
-        try (PreparedStatement pst = con.prepareStatement(sql)) {
-            for (String name : banned) {
-                pst.setString(1, name);
-                pst.executeUpdate();
+    public synchronized int purgeBanned(Set<String> banned) {
+        int deleted = 0;
+        try {
+            con.setAutoCommit(false);
+            try {
+                for (List<String> chunk : SqlDataSourceUtils.toLowercaseChunks(banned)) {
+                    String sql = "DELETE FROM " + tableName + " WHERE " + col.NAME
+                        + " IN (" + SqlDataSourceUtils.createPlaceholders(chunk.size()) + ");";
+                    try (PreparedStatement pst = con.prepareStatement(sql)) {
+                        int index = 1;
+                        for (String name : chunk) {
+                            pst.setString(index++, name);
+                        }
+                        deleted += pst.executeUpdate();
+                    }
+                }
+                con.commit();
+            } catch (SQLException ex) {
+                con.rollback();
+                throw ex;
+            } finally {
+                con.setAutoCommit(true);
             }
         } catch (SQLException ex) {
             logSqlException(ex);
+            return 0;
         }
+        return deleted;
     }
 
     @Override
@@ -462,7 +579,7 @@ public class SQLite implements DataSource {
     }
 
     @Override
-    public boolean isLogged(String user) {
+    public synchronized boolean isLogged(String user) {
         PreparedStatement pst = null;
         ResultSet rs = null;
         try {
@@ -481,7 +598,7 @@ public class SQLite implements DataSource {
     }
 
     @Override
-    public void setLogged(String user) {
+    public synchronized void setLogged(String user) {
         PreparedStatement pst = null;
         try {
             pst = con.prepareStatement("UPDATE " + tableName + " SET " + col.IS_LOGGED + "=? WHERE LOWER(" + col.NAME + ")=?;");
@@ -496,7 +613,7 @@ public class SQLite implements DataSource {
     }
 
     @Override
-    public void setUnlogged(String user) {
+    public synchronized void setUnlogged(String user) {
         PreparedStatement pst = null;
         if (user != null)
             try {
@@ -512,7 +629,25 @@ public class SQLite implements DataSource {
     }
 
     @Override
-    public void purgeLogged() {
+    public synchronized void setUnlogged(Set<String> users) {
+        for (List<String> chunk : SqlDataSourceUtils.toLowercaseChunks(users)) {
+            String sql = "UPDATE " + tableName + " SET " + col.IS_LOGGED + "=? WHERE LOWER(" + col.NAME
+                + ") IN (" + SqlDataSourceUtils.createPlaceholders(chunk.size()) + ");";
+            try (PreparedStatement pst = con.prepareStatement(sql)) {
+                pst.setInt(1, 0);
+                int index = 2;
+                for (String name : chunk) {
+                    pst.setString(index++, name);
+                }
+                pst.executeUpdate();
+            } catch (SQLException ex) {
+                logSqlException(ex);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void purgeLogged() {
         PreparedStatement pst = null;
         try {
             pst = con.prepareStatement("UPDATE " + tableName + " SET " + col.IS_LOGGED + "=? WHERE " + col.IS_LOGGED + "=?;");
@@ -527,7 +662,7 @@ public class SQLite implements DataSource {
     }
 
     @Override
-    public int getAccountsRegistered() {
+    public synchronized int getAccountsRegistered() {
         String sql = "SELECT COUNT(*) FROM " + tableName + ";";
         try (PreparedStatement pst = con.prepareStatement(sql); ResultSet rs = pst.executeQuery()) {
             if (rs.next()) {
@@ -540,7 +675,7 @@ public class SQLite implements DataSource {
     }
 
     @Override
-    public boolean updateRealName(String user, String realName) {
+    public synchronized boolean updateRealName(String user, String realName) {
         String sql = "UPDATE " + tableName + " SET " + col.REAL_NAME + "=? WHERE " + col.NAME + "=?;";
         try (PreparedStatement pst = con.prepareStatement(sql)) {
             pst.setString(1, realName);
@@ -554,7 +689,7 @@ public class SQLite implements DataSource {
     }
 
     @Override
-    public boolean updateIp(String user, String ip) {
+    public synchronized boolean updateIp(String user, String ip) {
         String sql = "UPDATE " + tableName + " SET " + col.IP + "=? WHERE " + col.NAME + "=?;";
         try (PreparedStatement pst = con.prepareStatement(sql)) {
             pst.setString(1, ip);
@@ -568,7 +703,7 @@ public class SQLite implements DataSource {
     }
 
     @Override
-    public List<PlayerAuth> getAllAuths() {
+    public synchronized List<PlayerAuth> getAllAuths() {
         List<PlayerAuth> auths = new ArrayList<>();
         String sql = "SELECT * FROM " + tableName + ";";
         try (PreparedStatement pst = con.prepareStatement(sql); ResultSet rs = pst.executeQuery()) {
@@ -583,7 +718,122 @@ public class SQLite implements DataSource {
     }
 
     @Override
-    public List<PlayerAuth> getLoggedPlayers() {
+    public synchronized boolean importAuths(List<PlayerAuth> auths) {
+        boolean useSalt = !col.SALT.isEmpty();
+        // SQLite has no upsert before 3.24 and INSERT OR REPLACE deletes the row, which loses its rowid and
+        // the columns which are not imported: update the existing players and insert the missing ones instead
+        String update = "UPDATE " + tableName + " SET "
+            + col.REAL_NAME + "=?," + col.PASSWORD + "=?," + col.IP + "=?," + col.LAST_LOGIN + "=?,"
+            + col.LASTLOC_X + "=?," + col.LASTLOC_Y + "=?," + col.LASTLOC_Z + "=?," + col.LASTLOC_WORLD + "=?,"
+            + col.EMAIL + "=?" + (useSalt ? "," + col.SALT + "=?" : "") + " WHERE " + col.NAME + "=?;";
+        String insert = "INSERT INTO " + tableName + "("
+            + col.REAL_NAME + "," + col.PASSWORD + "," + col.IP + "," + col.LAST_LOGIN + ","
+            + col.LASTLOC_X + "," + col.LASTLOC_Y + "," + col.LASTLOC_Z + "," + col.LASTLOC_WORLD + ","
+            + col.EMAIL + (useSalt ? "," + col.SALT : "") + "," + col.NAME
+            + ") SELECT ?,?,?,?,?,?,?,?,?," + (useSalt ? "?," : "") + "?"
+            + " WHERE NOT EXISTS (SELECT 1 FROM " + tableName + " WHERE " + col.NAME + "=?);";
+        try {
+            con.setAutoCommit(false);
+            try (PreparedStatement updatePst = con.prepareStatement(update);
+                 PreparedStatement insertPst = con.prepareStatement(insert)) {
+                for (PlayerAuth auth : auths) {
+                    setImportParameters(updatePst, auth, useSalt);
+                    updatePst.addBatch();
+                    int index = setImportParameters(insertPst, auth, useSalt);
+                    insertPst.setString(index, auth.getNickname());
+                    insertPst.addBatch();
+                }
+                updatePst.executeBatch();
+                insertPst.executeBatch();
+                con.commit();
+            } catch (SQLException ex) {
+                con.rollback();
+                throw ex;
+            } finally {
+                con.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException ex) {
+            logSqlException(ex);
+        }
+        return false;
+    }
+
+    /**
+     * Sets the imported columns of the given player, followed by its name, as parameters of the statement.
+     *
+     * @return the index of the next parameter
+     */
+    private static int setImportParameters(PreparedStatement pst, PlayerAuth auth, boolean useSalt)
+        throws SQLException {
+        int index = 1;
+        pst.setString(index++, auth.getRealName());
+        pst.setString(index++, auth.getPassword().getHash());
+        pst.setString(index++, auth.getIp());
+        pst.setLong(index++, auth.getLastLogin());
+        pst.setDouble(index++, auth.getQuitLocX());
+        pst.setDouble(index++, auth.getQuitLocY());
+        pst.setDouble(index++, auth.getQuitLocZ());
+        pst.setString(index++, auth.getWorld());
+        pst.setString(index++, auth.getEmail());
+        if (useSalt) {
+            pst.setString(index++, auth.getPassword().getSalt());
+        }
+        pst.setString(index++, auth.getNickname());
+        return index;
+    }
+
+    @Override
+    public boolean exportAuths(long since, AuthConsumer consumer) throws IOException {
+        // Not synchronized: the players are read in pages so that the consumer does not hold up other queries
+        List<PlayerAuth> page = new ArrayList<>(EXPORT_PAGE_SIZE);
+        long afterId = Long.MIN_VALUE;
+        do {
+            page.clear();
+            try {
+                afterId = readExportPage(since, afterId, page);
+            } catch (SQLException ex) {
+                logSqlException(ex);
+                return false;
+            }
+            for (PlayerAuth auth : page) {
+                consumer.accept(auth);
+            }
+        } while (page.size() == EXPORT_PAGE_SIZE);
+        return true;
+    }
+
+    /**
+     * Reads the players of the next page of an export.
+     *
+     * @param since the minimum last login, or -1 for all players
+     * @param afterId the rowid of the last player of the previous page
+     * @param page the list to add the players to
+     * @return the rowid of the last player of the page
+     */
+    private synchronized long readExportPage(long since, long afterId, List<PlayerAuth> page) throws SQLException {
+        String sql = "SELECT " + ROWID + ",* FROM " + tableName + " WHERE " + ROWID + ">?"
+            + (since < 0 ? "" : " AND " + col.LAST_LOGIN + ">=?") + " ORDER BY " + ROWID + " LIMIT ?;";
+        try (PreparedStatement pst = con.prepareStatement(sql)) {
+            int index = 1;
+            pst.setLong(index++, afterId);
+            if (since >= 0) {
+                pst.setLong(index++, since);
+            }
+            pst.setInt(index, EXPORT_PAGE_SIZE);
+            long lastId = afterId;
+            try (ResultSet rs = pst.executeQuery()) {
+                while (rs.next()) {
+                    lastId = rs.getLong(1);
+                    page.add(buildAuthFromResultSet(rs));
+                }
+            }
+            return lastId;
+        }
+    }
+
+    @Override
+    public synchronized List<PlayerAuth> getLoggedPlayers() {
         List<PlayerAuth> auths = new ArrayList<>();
         String sql = "SELECT * FROM " + tableName + " WHERE " + col.IS_LOGGED + "=1;";
         try (PreparedStatement pst = con.prepareStatement(sql); ResultSet rs = pst.executeQuery()) {
@@ -0,0 +1,55 @@
+package fr.xephi.authme.datasource;
+
+import fr.xephi.authme.util.CollectionUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Utilities for SQL-based data sources.
+ */
+final class SqlDataSourceUtils {
+
+    /** Maximum number of parameters to put into one {@code IN (...)} clause. */
+    static final int MAX_IN_CLAUSE_SIZE = 500;
+
+    private SqlDataSourceUtils() {
+    }
+
+    /**
+     * Creates a comma-separated list of the given number of placeholders, e.g. "?,?,?" for 3.
+     *
+     * @param count the number of placeholders
+     * @return the placeholders to use in an {@code IN (...)} clause
+     */
+    static String createPlaceholders(int count) {
+        StringBuilder sb = new StringBuilder(count * 2);
+        for (int i = 0; i < count; ++i) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append('?');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Splits the given names into lowercase chunks of at most {@link #MAX_IN_CLAUSE_SIZE} elements.
+     *
+     * @param names the names to split
+     * @return the chunks of names
+     */
+    static List<List<String>> toLowercaseChunks(Collection<String> names) {
+        List<String> lowercaseNames = new ArrayList<>(names.size());
+        for (String name : names) {
+            lowercaseNames.add(name.toLowerCase());
+        }
+
+        List<List<String>> chunks = new ArrayList<>();
+        for (int start = 0; start < lowercaseNames.size(); start += MAX_IN_CLAUSE_SIZE) {
+            chunks.add(CollectionUtils.getRange(lowercaseNames, start, MAX_IN_CLAUSE_SIZE));
+        }
+        return chunks;
+    }
+}
@@ -5,8 +5,10 @@ import com.google.common.io.ByteStreams;
 
 import fr.xephi.authme.AuthMe;
 import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.cache.OnlineIpIndex;
 import fr.xephi.authme.cache.auth.PlayerAuth;
 import fr.xephi.authme.cache.auth.PlayerCache;
+import fr.xephi.authme.cache.auth.SessionManager;
 import fr.xephi.authme.datasource.DataSource;
 import fr.xephi.authme.security.crypts.HashedPassword;
 import fr.xephi.authme.settings.properties.SecuritySettings;
@@ -28,6 +30,12 @@ public class BungeeCordMessage implements PluginMessageListener {
     @Inject
     private PlayerCache playerCache;
 
+    @Inject
+    private SessionManager sessionManager;
+
+    @Inject
+    private OnlineIpIndex onlineIpIndex;
+
     @Inject
     private AuthMe plugin;
 
@@ -56,11 +64,10 @@ public class BungeeCordMessage implements PluginMessageListener {
                     if ("login".equals(act)) {
                         playerCache.updatePlayer(auth);
                         dataSource.setLogged(name);
+                        // Count the player towards the per-IP login limit if he is online on this server
+                        onlineIpIndex.setLogged(name);
                         //START 03062016 sgdc3: should fix #731 but we need to recode this mess
-                        if (plugin.sessions.containsKey(name)) {
-                            plugin.sessions.get(name).cancel();
-                            plugin.sessions.remove(name);
-                        }
+                        sessionManager.cancelSessionExpiry(name);
                         //END
 
                         if (!plugin.getSettings().getProperty(SecuritySettings.REMOVE_SPAM_FROM_CONSOLE)) {
@@ -69,6 +76,7 @@ public class BungeeCordMessage implements PluginMessageListener {
                     } else if ("logout".equals(act)) {
                         playerCache.removePlayer(name);
                         dataSource.setUnlogged(name);
+                        onlineIpIndex.setUnlogged(name);
                         if (!plugin.getSettings().getProperty(SecuritySettings.REMOVE_SPAM_FROM_CONSOLE)) {
                             ConsoleLogger.info("Player " + auth.getNickname() + " has logged out from one of your server!");
                         }
@@ -1,6 +1,8 @@
 package fr.xephi.authme.listener;
 
 import fr.xephi.authme.AntiBot;
+import fr.xephi.authme.cache.auth.JoinContext;
+import fr.xephi.authme.cache.auth.JoinContextCache;
 import fr.xephi.authme.cache.auth.PlayerAuth;
 import fr.xephi.authme.datasource.DataSource;
 import fr.xephi.authme.output.MessageKey;
@@ -73,6 +75,8 @@ public class AuthMePlayerListener implements Listener {
     private OnJoinVerifier onJoinVerifier;
     @Inject
     private ListenerService listenerService;
+    @Inject
+    private JoinContextCache joinContextCache;
 
     @EventHandler(ignoreCancelled = true, priority = EventPriority.LOWEST)
     public void onPlayerCommandPreprocess(PlayerCommandPreprocessEvent event) {
@@ -209,7 +213,10 @@ public class AuthMePlayerListener implements Listener {
     @EventHandler(priority = EventPriority.HIGHEST)
     public void onPreLogin(AsyncPlayerPreLoginEvent event) {
         final String name = event.getName().toLowerCase();
-        final boolean isAuthAvailable = dataSource.isAuthAvailable(event.getName());
+        // Load the player's data once; it is reused by onPlayerLogin and the join and login processes
+        final JoinContext joinContext = joinContextCache.load(name);
+        final PlayerAuth auth = joinContext.getAuth();
+        final boolean isAuthAvailable = (auth != null);
 
         try {
             // Potential performance improvement: make checkAntiBot not require `isAuthAvailable` info and use
@@ -220,6 +227,10 @@ public class AuthMePlayerListener implements Listener {
             // Note #760: Single session must be checked here - checking with PlayerLoginEvent is too late and
             // the first connection will have been kicked. This means this feature doesn't work on CraftBukkit.
             onJoinVerifier.checkSingleSession(name);
+            // Checks requiring the database or GeoIP are done here so that onPlayerLogin can skip them
+            onJoinVerifier.checkNameCasing(event.getName(), auth);
+            onJoinVerifier.checkPlayerCountry(isAuthAvailable, event.getAddress().getHostAddress());
+            joinContext.setPreLoginVerified();
         } catch (FailedVerificationException e) {
             event.setKickMessage(m.retrieveSingle(e.getReason(), e.getArgs()));
             event.setLoginResult(AsyncPlayerPreLoginEvent.Result.KICK_OTHER);
@@ -238,15 +249,19 @@ public class AuthMePlayerListener implements Listener {
         }
 
         final String name = player.getName().toLowerCase();
-        final PlayerAuth auth = dataSource.getAuth(player.getName());
+        final JoinContext joinContext = joinContextCache.getOrLoad(name);
+        final PlayerAuth auth = joinContext.getAuth();
         final boolean isAuthAvailable = (auth != null);
 
         try {
             onJoinVerifier.checkAntibot(name, isAuthAvailable);
             onJoinVerifier.checkKickNonRegistered(isAuthAvailable);
             onJoinVerifier.checkIsValidName(name);
-            onJoinVerifier.checkNameCasing(player, auth);
-            onJoinVerifier.checkPlayerCountry(isAuthAvailable, event);
+            if (!joinContext.isPreLoginVerified()) {
+                // The pre-login event was not fired (e.g. CraftBukkit), so we need to do the remaining checks here
+                onJoinVerifier.checkNameCasing(player.getName(), auth);
+                onJoinVerifier.checkPlayerCountry(isAuthAvailable, event.getAddress().getHostAddress());
+            }
         } catch (FailedVerificationException e) {
             event.setKickMessage(m.retrieveSingle(e.getReason(), e.getArgs()));
             event.setResult(PlayerLoginEvent.Result.KICK_OTHER);
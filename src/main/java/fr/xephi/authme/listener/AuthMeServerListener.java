@@ -16,6 +16,8 @@ import org.bukkit.event.Listener;
 import org.bukkit.event.server.PluginDisableEvent;
 import org.bukkit.event.server.PluginEnableEvent;
 import org.bukkit.event.server.ServerListPingEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 
 import javax.inject.Inject;
 
@@ -65,6 +67,7 @@ public class AuthMeServerListener implements Listener {
             ConsoleLogger.info("Essentials has been disabled: unhooking");
         } else if ("Multiverse-Core".equalsIgnoreCase(pluginName)) {
             pluginHooks.unhookMultiverse();
+            spawnLoader.clearCache();
             ConsoleLogger.info("Multiverse-Core has been disabled: unhooking");
         } else if ("CombatTagPlus".equalsIgnoreCase(pluginName)) {
             pluginHooks.unhookCombatPlus();
@@ -98,6 +101,7 @@ public class AuthMeServerListener implements Listener {
             pluginHooks.tryHookToEssentials();
         } else if ("Multiverse-Core".equalsIgnoreCase(pluginName)) {
             pluginHooks.tryHookToMultiverse();
+            spawnLoader.clearCache();
         } else if ("CombatTagPlus".equalsIgnoreCase(pluginName)) {
             pluginHooks.tryHookToCombatPlus();
         } else if ("EssentialsSpawn".equalsIgnoreCase(pluginName)) {
@@ -108,4 +112,14 @@ public class AuthMeServerListener implements Listener {
             plugin.checkProtocolLib();
         }
     }
+
+    @EventHandler(priority = EventPriority.HIGHEST)
+    public void onWorldLoad(WorldLoadEvent event) {
+        spawnLoader.clearCache(event.getWorld().getName());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.HIGHEST)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        spawnLoader.clearCache(event.getWorld().getName());
+    }
 }
@@ -73,7 +73,7 @@ class OnJoinVerifier implements Reloadable {
      */
     public void checkAntibot(String playerName, boolean isAuthAvailable) throws FailedVerificationException {
         if (antiBot.getAntiBotStatus() == AntiBot.AntiBotStatus.ACTIVE && !isAuthAvailable) {
-            antiBot.antibotKicked.addIfAbsent(playerName);
+            antiBot.antibotKicked.add(playerName);
             throw new FailedVerificationException(MessageKey.KICK_ANTIBOT);
         }
     }
@@ -145,13 +145,12 @@ class OnJoinVerifier implements Reloadable {
     /**
      * Checks that the casing in the username corresponds to the one in the database, if so configured.
      *
-     * @param player the player to verify
+     * @param connectingName the name of the connecting player (with its original casing)
      * @param auth the auth object associated with the player
      */
-    public void checkNameCasing(Player player, PlayerAuth auth) throws FailedVerificationException {
+    public void checkNameCasing(String connectingName, PlayerAuth auth) throws FailedVerificationException {
         if (auth != null && settings.getProperty(RegistrationSettings.PREVENT_OTHER_CASE)) {
             String realName = auth.getRealName(); // might be null or "Player"
-            String connectingName = player.getName();
 
             if (StringUtils.isEmpty(realName) || "Player".equals(realName)) {
                 dataSource.updateRealName(connectingName.toLowerCase(), connectingName);
@@ -165,15 +164,12 @@ class OnJoinVerifier implements Reloadable {
      * Checks that the player's country is admitted if he is not registered.
      *
      * @param isAuthAvailable whether or not the user is registered
-     * @param event the login event of the player
+     * @param playerIp the IP address of the player
      */
-    public void checkPlayerCountry(boolean isAuthAvailable,
-                                    PlayerLoginEvent event) throws FailedVerificationException {
-        if (!isAuthAvailable && settings.getProperty(ProtectionSettings.ENABLE_PROTECTION)) {
-            String playerIp = event.getAddress().getHostAddress();
-            if (!validationService.isCountryAdmitted(playerIp)) {
-                throw new FailedVerificationException(MessageKey.COUNTRY_BANNED_ERROR);
-            }
+    public void checkPlayerCountry(boolean isAuthAvailable, String playerIp) throws FailedVerificationException {
+        if (!isAuthAvailable && settings.getProperty(ProtectionSettings.ENABLE_PROTECTION)
+            && !validationService.isCountryAdmitted(playerIp)) {
+            throw new FailedVerificationException(MessageKey.COUNTRY_BANNED_ERROR);
         }
     }
 
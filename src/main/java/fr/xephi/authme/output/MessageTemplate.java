@@ -0,0 +1,162 @@
+package fr.xephi.authme.output;
+
+import fr.xephi.authme.util.StringUtils;
+import org.bukkit.ChatColor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A message compiled for sending: it is split into lines with the color codes already translated,
+ * and the positions of its tags are resolved, so that rendering it only needs to append the
+ * literal parts and the replacements once.
+ */
+final class MessageTemplate {
+
+    private static final String[] NO_LINES = new String[0];
+
+    /** The lines of the message with the tags as they appear in the file. */
+    private final String[] lines;
+    /** The message as one text, lines separated by "\n". */
+    private final String text;
+    /** Per line, the texts around the tags; a line with n tags has n + 1 parts. */
+    private final String[][] literals;
+    /** Per line, the index of the replacement for each tag of the line. */
+    private final int[][] slots;
+    private final boolean hasSlots;
+    private final int literalLength;
+
+    private MessageTemplate(String[] lines, String[][] literals, int[][] slots, boolean hasSlots) {
+        this.lines = lines;
+        this.text = StringUtils.join("\n", lines);
+        this.literals = literals;
+        this.slots = slots;
+        this.hasSlots = hasSlots;
+        this.literalLength = text.length();
+    }
+
+    /**
+     * Compiles the given message text.
+     *
+     * @param message the message as defined in the messages file, lines separated by "&amp;n"
+     * @param tags the tags of the message key
+     * @return the compiled message
+     */
+    static MessageTemplate compile(String message, String[] tags) {
+        if (message.isEmpty()) {
+            return new MessageTemplate(NO_LINES, new String[0][], new int[0][], false);
+        }
+        String[] lines = message.split("&n");
+        String[][] literals = new String[lines.length][];
+        int[][] slots = new int[lines.length][];
+        boolean hasSlots = false;
+        for (int i = 0; i < lines.length; ++i) {
+            lines[i] = ChatColor.translateAlternateColorCodes('&', lines[i]);
+            List<String> lineLiterals = new ArrayList<>();
+            List<Integer> lineSlots = new ArrayList<>();
+            splitAtTags(lines[i], tags, lineLiterals, lineSlots);
+            literals[i] = lineLiterals.toArray(new String[lineLiterals.size()]);
+            slots[i] = new int[lineSlots.size()];
+            for (int j = 0; j < slots[i].length; ++j) {
+                slots[i][j] = lineSlots.get(j);
+            }
+            hasSlots |= slots[i].length > 0;
+        }
+        return new MessageTemplate(lines, literals, slots, hasSlots);
+    }
+
+    /**
+     * Returns the lines of the message with the tags left in place. The array is shared and must not be modified.
+     *
+     * @return the lines of the message
+     */
+    String[] getLines() {
+        return lines;
+    }
+
+    /**
+     * @return the message with the tags left in place, lines separated by "\n"
+     */
+    String getText() {
+        return text;
+    }
+
+    /**
+     * Returns the lines of the message with the tags replaced. If the message has no tags, the shared
+     * array of {@link #getLines()} is returned.
+     *
+     * @param replacements the replacements, one per tag of the message key
+     * @return the lines of the message
+     */
+    String[] render(String... replacements) {
+        if (!hasSlots) {
+            return lines;
+        }
+        String[] rendered = new String[lines.length];
+        for (int i = 0; i < lines.length; ++i) {
+            if (slots[i].length == 0) {
+                rendered[i] = lines[i];
+            } else {
+                StringBuilder builder = new StringBuilder(lines[i].length() + 16 * slots[i].length);
+                appendLine(builder, i, replacements);
+                rendered[i] = builder.toString();
+            }
+        }
+        return rendered;
+    }
+
+    /**
+     * Returns the message with the tags replaced, lines separated by "\n".
+     *
+     * @param replacements the replacements, one per tag of the message key
+     * @return the message
+     */
+    String renderSingle(String... replacements) {
+        if (!hasSlots) {
+            return text;
+        }
+        StringBuilder builder = new StringBuilder(literalLength + 16 * replacements.length);
+        for (int i = 0; i < lines.length; ++i) {
+            // Skip empty lines like StringUtils#join does for the text without replacements
+            if (!lines[i].isEmpty()) {
+                if (builder.length() > 0) {
+                    builder.append('\n');
+                }
+                appendLine(builder, i, replacements);
+            }
+        }
+        return builder.toString();
+    }
+
+    private void appendLine(StringBuilder builder, int line, String[] replacements) {
+        String[] lineLiterals = literals[line];
+        int[] lineSlots = slots[line];
+        builder.append(lineLiterals[0]);
+        for (int j = 0; j < lineSlots.length; ++j) {
+            builder.append(replacements[lineSlots[j]]).append(lineLiterals[j + 1]);
+        }
+    }
+
+    private static void splitAtTags(String line, String[] tags, List<String> literals, List<Integer> slots) {
+        int start = 0;
+        while (true) {
+            // Find the tag which occurs next; on a tie the tag declared first wins
+            int tagPosition = -1;
+            int tagIndex = -1;
+            for (int i = 0; i < tags.length; ++i) {
+                int position = line.indexOf(tags[i], start);
+                if (position >= 0 && (tagPosition < 0 || position < tagPosition)) {
+                    tagPosition = position;
+                    tagIndex = i;
+                }
+            }
+            if (tagIndex < 0) {
+                literals.add(line.substring(start));
+                return;
+            }
+            literals.add(line.substring(start, tagPosition));
+            slots.add(tagIndex);
+            start = tagPosition + tags[tagIndex].length();
+        }
+    }
+}
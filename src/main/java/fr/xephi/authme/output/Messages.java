@@ -3,8 +3,6 @@ package fr.xephi.authme.output;
 import fr.xephi.authme.ConsoleLogger;
 import fr.xephi.authme.initialization.SettingsDependent;
 import fr.xephi.authme.settings.NewSetting;
-import fr.xephi.authme.util.StringUtils;
-import org.bukkit.ChatColor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
@@ -12,16 +10,20 @@ import org.bukkit.configuration.file.YamlConfiguration;
 import java.io.File;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.EnumMap;
+import java.util.Map;
 
 /**
  * Class for retrieving and sending translatable messages to players.
+ * <p>
+ * All messages are compiled when the messages file is loaded, so sending a message neither looks up
+ * the configuration nor translates color codes, and messages without tags are sent from shared arrays.
  */
 public class Messages implements SettingsDependent {
 
-    private FileConfiguration configuration;
-    private String fileName;
     private final String defaultFile;
     private FileConfiguration defaultConfiguration;
+    private volatile Map<MessageKey, MessageTemplate> templates;
 
     /**
      * Constructor.
@@ -30,8 +32,8 @@ public class Messages implements SettingsDependent {
      * @param defaultFile The file with messages to use as default if missing
      */
     public Messages(File messageFile, String defaultFile) {
-        initializeFile(messageFile);
         this.defaultFile = defaultFile;
+        initializeFile(messageFile);
     }
 
     /**
@@ -41,8 +43,7 @@ public class Messages implements SettingsDependent {
      * @param key The key of the message to send
      */
     public void send(CommandSender sender, MessageKey key) {
-        String[] lines = retrieve(key);
-        for (String line : lines) {
+        for (String line : retrieve(key)) {
             sender.sendMessage(line);
         }
     }
@@ -57,31 +58,22 @@ public class Messages implements SettingsDependent {
      * @param replacements The replacements to apply for the tags
      */
     public void send(CommandSender sender, MessageKey key, String... replacements) {
-        String message = retrieveSingle(key, replacements);
-        for (String line : message.split("\n")) {
+        MessageTemplate template = templates.get(key);
+        String[] lines = hasValidReplacements(key, replacements) ? template.render(replacements) : template.getLines();
+        for (String line : lines) {
             sender.sendMessage(line);
         }
     }
 
     /**
      * Retrieve the message from the text file and return it split by new line as an array.
+     * The returned array is shared and must not be modified.
      *
      * @param key The message key to retrieve
      * @return The message split by new lines
      */
     public String[] retrieve(MessageKey key) {
-        final String code = key.getKey();
-        String message = configuration.getString(code);
-
-        if (message == null) {
-            ConsoleLogger.showError("Error getting message with key '" + code + "'. "
-                + "Please verify your config file at '" + fileName + "'");
-            return formatMessage(getDefault(code));
-        }
-        if(message.isEmpty()) {
-            return new String[0];
-        }
-        return formatMessage(message);
+        return templates.get(key).getLines();
     }
 
     /**
@@ -91,7 +83,7 @@ public class Messages implements SettingsDependent {
      * @return The message from the file
      */
     public String retrieveSingle(MessageKey key) {
-        return StringUtils.join("\n", retrieve(key));
+        return templates.get(key).getText();
     }
 
     /**
@@ -104,16 +96,8 @@ public class Messages implements SettingsDependent {
      * @return The message from the file with replacements
      */
     public String retrieveSingle(MessageKey key, String... replacements) {
-        String message = retrieveSingle(key);
-        String[] tags = key.getTags();
-        if (replacements.length == tags.length) {
-            for (int i = 0; i < tags.length; ++i) {
-                message = message.replace(tags[i], replacements[i]);
-            }
-        } else {
-            ConsoleLogger.showError("Invalid number of replacements for message key '" + key + "'");
-        }
-        return message;
+        MessageTemplate template = templates.get(key);
+        return hasValidReplacements(key, replacements) ? template.renderSingle(replacements) : template.getText();
     }
 
     @Override
@@ -122,8 +106,27 @@ public class Messages implements SettingsDependent {
     }
 
     private void initializeFile(File messageFile) {
-        this.configuration = YamlConfiguration.loadConfiguration(messageFile);
-        this.fileName = messageFile.getName();
+        FileConfiguration configuration = YamlConfiguration.loadConfiguration(messageFile);
+        Map<MessageKey, MessageTemplate> newTemplates = new EnumMap<>(MessageKey.class);
+        for (MessageKey key : MessageKey.values()) {
+            String message = configuration.getString(key.getKey());
+            if (message == null) {
+                ConsoleLogger.showError("Error getting message with key '" + key.getKey() + "'. "
+                    + "Please verify your config file at '" + messageFile.getName() + "'");
+                message = getDefault(key.getKey());
+            }
+            newTemplates.put(key, MessageTemplate.compile(message, key.getTags()));
+        }
+        // Publish the templates at once so that messages sent from other threads never see a partial reload
+        this.templates = newTemplates;
+    }
+
+    private static boolean hasValidReplacements(MessageKey key, String[] replacements) {
+        if (replacements.length == key.getTags().length) {
+            return true;
+        }
+        ConsoleLogger.showError("Invalid number of replacements for message key '" + key + "'");
+        return false;
     }
 
     private String getDefault(String code) {
@@ -143,12 +146,4 @@ public class Messages implements SettingsDependent {
         return "Error retrieving message '" + code + "'";
     }
 
-    private static String[] formatMessage(String message) {
-        String[] lines = message.split("&n");
-        for (int i = 0; i < lines.length; ++i) {
-            lines[i] = ChatColor.translateAlternateColorCodes('&', lines[i]);
-        }
-        return lines;
-    }
-
 }
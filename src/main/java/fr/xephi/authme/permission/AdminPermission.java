@@ -85,6 +85,11 @@ public enum AdminPermission implements PermissionNode {
      */
     PURGE_BANNED_PLAYERS("authme.admin.purgebannedplayers", DefaultPermission.OP_ONLY),
 
+    /**
+     * Administrator command to restore user data from a backup.
+     */
+    RESTORE("authme.admin.restore", DefaultPermission.OP_ONLY),
+
     /**
      * Administrator command to toggle the AntiBot protection status.
      */
@@ -100,6 +105,11 @@ public enum AdminPermission implements PermissionNode {
      */
     RELOAD("authme.admin.reload", DefaultPermission.OP_ONLY),
 
+    /**
+     * Administrator command to show the statistics of the background jobs.
+     */
+    JOB_STATISTICS("authme.admin.jobs", DefaultPermission.OP_ONLY),
+
     /**
      * Permission to see the other accounts of the players that log in.
      */
@@ -6,6 +6,7 @@ import fr.xephi.authme.cache.limbo.LimboPlayer;
 import fr.xephi.authme.settings.NewSetting;
 import fr.xephi.authme.settings.Settings;
 import fr.xephi.authme.settings.properties.PluginSettings;
+import fr.xephi.authme.util.StringUtils;
 import org.bukkit.entity.Player;
 
 import javax.inject.Inject;
@@ -28,15 +29,16 @@ public class AuthGroupHandler {
     AuthGroupHandler() { }
 
     /**
-     * Set the group of a player, by its AuthMe group type.
+     * Set the group of a player, by its AuthMe group type. If the player is in limbo and his real
+     * group is still being resolved, the change is applied once it has been resolved.
      *
      * @param player The player.
      * @param group  The group type.
      *
-     * @return True if succeeded, false otherwise. False is also returned if groups aren't supported
-     * with the current permissions system.
+     * @return True if succeeded or scheduled, false otherwise. False is also returned if groups aren't
+     * supported with the current permissions system.
      */
-    public boolean setGroup(Player player, AuthGroupType group) {
+    public boolean setGroup(final Player player, final AuthGroupType group) {
         // Check whether the permissions check is enabled
         if (!settings.getProperty(PluginSettings.ENABLE_PERMISSION_CHECK)) {
             return false;
@@ -48,6 +50,21 @@ public class AuthGroupHandler {
             return false;
         }
 
+        final LimboPlayer limbo = limboCache.getLimboPlayer(player.getName().toLowerCase());
+        if (limbo != null && !limbo.isCaptured()) {
+            // The real group must be known before any auth group replaces it
+            limbo.whenCaptured(new Runnable() {
+                @Override
+                public void run() {
+                    applyGroup(player, group, limbo);
+                }
+            });
+            return true;
+        }
+        return applyGroup(player, group, limbo);
+    }
+
+    private boolean applyGroup(Player player, AuthGroupType group, LimboPlayer limbo) {
         switch (group) {
             case UNREGISTERED:
                 // Remove the other group type groups, set the current group
@@ -65,8 +82,6 @@ public class AuthGroupHandler {
                 return permissionsManager.addGroup(player, Settings.getUnloggedinGroup);
 
             case LOGGED_IN:
-                // Get the limbo player data
-                LimboPlayer limbo = limboCache.getLimboPlayer(player.getName().toLowerCase());
                 if (limbo == null)
                     return false;
 
@@ -75,7 +90,7 @@ public class AuthGroupHandler {
 
                 // Remove the other group types groups, set the real group
                 permissionsManager.removeGroups(player, Arrays.asList(Settings.unRegisteredGroup, Settings.getRegisteredGroup, Settings.getUnloggedinGroup));
-                return permissionsManager.addGroup(player, realGroup);
+                return StringUtils.isEmpty(realGroup) || permissionsManager.addGroup(player, realGroup);
             default:
                 return false;
         }
@@ -2,8 +2,12 @@ package fr.xephi.authme.process.join;
 
 import fr.xephi.authme.AuthMe;
 import fr.xephi.authme.ConsoleLogger;
-import fr.xephi.authme.cache.auth.PlayerAuth;
+import fr.xephi.authme.cache.OnlineIpIndex;
+import fr.xephi.authme.cache.OnlineStaffCache;
+import fr.xephi.authme.cache.auth.JoinContext;
+import fr.xephi.authme.cache.auth.JoinContextCache;
 import fr.xephi.authme.cache.auth.PlayerCache;
+import fr.xephi.authme.cache.auth.SessionManager;
 import fr.xephi.authme.cache.limbo.LimboCache;
 import fr.xephi.authme.datasource.DataSource;
 import fr.xephi.authme.events.ProtectInventoryEvent;
@@ -22,6 +26,7 @@ import fr.xephi.authme.task.LimboPlayerTaskManager;
 import fr.xephi.authme.util.BukkitService;
 import fr.xephi.authme.util.TeleportationService;
 import fr.xephi.authme.util.Utils;
+import fr.xephi.authme.util.ValidationService;
 import org.apache.commons.lang.reflect.MethodUtils;
 import org.bukkit.GameMode;
 import org.bukkit.entity.LivingEntity;
@@ -67,14 +72,31 @@ public class AsynchronousJoin implements AsynchronousProcess {
     @Inject
     private LimboPlayerTaskManager limboPlayerTaskManager;
 
+    @Inject
+    private JoinContextCache joinContextCache;
+
+    @Inject
+    private OnlineIpIndex onlineIpIndex;
+
+    @Inject
+    private OnlineStaffCache onlineStaffCache;
+
+    @Inject
+    private SessionManager sessionManager;
+
+    @Inject
+    private ValidationService validationService;
+
     AsynchronousJoin() { }
 
 
     public void processJoin(final Player player) {
         final String name = player.getName().toLowerCase();
         final String ip = Utils.getPlayerIp(player);
+        onlineIpIndex.addOnlinePlayer(name, ip);
+        onlineStaffCache.refresh(player);
 
-        if (isPlayerUnrestricted(name)) {
+        if (validationService.isUnrestricted(name)) {
             return;
         }
 
@@ -97,7 +119,7 @@ public class AsynchronousJoin implements AsynchronousProcess {
             pluginHooks.setEssentialsSocialSpyStatus(player, false);
         }
 
-        if (isNameRestricted(name, ip, player.getAddress().getHostName())) {
+        if (validationService.isNameRestricted(name, ip, player.getAddress())) {
             bukkitService.scheduleSyncDelayedTask(new Runnable() {
                 @Override
                 public void run() {
@@ -114,12 +136,14 @@ public class AsynchronousJoin implements AsynchronousProcess {
             return;
         }
 
-        final boolean isAuthAvailable = database.isAuthAvailable(name);
+        final JoinContext joinContext = joinContextCache.getOrLoad(name);
+        final boolean isAuthAvailable = joinContext.isRegistered();
 
         if (isAuthAvailable) {
-            service.setGroup(player, AuthGroupType.NOT_LOGGED_IN);
             teleportationService.teleportOnJoin(player);
             limboCache.updateLimboPlayer(player);
+            // Applied once the limbo player has resolved the player's real group
+            service.setGroup(player, AuthGroupType.NOT_LOGGED_IN);
 
             // Protect inventory
             if (service.getProperty(PROTECT_INVENTORY_BEFORE_LOGIN) && plugin.inventoryProtector != null) {
@@ -134,34 +158,39 @@ public class AsynchronousJoin implements AsynchronousProcess {
             }
 
             // Session logic
-            if (service.getProperty(PluginSettings.SESSIONS_ENABLED) && (playerCache.isAuthenticated(name) || database.isLogged(name))) {
-                if (plugin.sessions.containsKey(name)) {
-                    plugin.sessions.get(name).cancel();
-                    plugin.sessions.remove(name);
-                }
-                PlayerAuth auth = database.getAuth(name);
-                database.setUnlogged(name);
+            if (service.getProperty(PluginSettings.SESSIONS_ENABLED)
+                && (sessionManager.hasSession(name) || playerCache.isAuthenticated(name))) {
+                final boolean isSameIp = sessionManager.hasSession(name)
+                    ? sessionManager.isSessionFromIp(name, ip)
+                    : joinContext.getAuth().getIp().equals(ip);
+                sessionManager.cancelSessionExpiry(name);
                 playerCache.removePlayer(name);
-                if (auth != null && auth.getIp().equals(ip)) {
+                if (isSameIp) {
+                    // No need to set the player as unlogged: the login process marks him as logged in again
                     service.send(player, MessageKey.SESSION_RECONNECTION);
                     plugin.getManagement().performLogin(player, "dontneed", true);
                     return;
-                } else if (service.getProperty(PluginSettings.SESSIONS_EXPIRE_ON_IP_CHANGE)) {
+                }
+                database.setUnlogged(name);
+                if (service.getProperty(PluginSettings.SESSIONS_EXPIRE_ON_IP_CHANGE)) {
                     service.send(player, MessageKey.SESSION_EXPIRED);
                 }
             }
         } else {
             // Not Registered
 
-            // Groups logic
-            service.setGroup(player, AuthGroupType.UNREGISTERED);
-
             // Skip if registration is optional
             if (!service.getProperty(RegistrationSettings.FORCE)) {
+                service.setGroup(player, AuthGroupType.UNREGISTERED);
                 return;
             }
 
             teleportationService.teleportOnJoin(player);
+            if (!limboCache.hasLimboPlayer(name)) {
+                limboCache.addLimboPlayer(player);
+            }
+            // Groups logic: applied once the limbo player has resolved the player's real group
+            service.setGroup(player, AuthGroupType.UNREGISTERED);
         }
         // The user is not logged in
 
@@ -195,40 +224,7 @@ public class AsynchronousJoin implements AsynchronousProcess {
 
         // Timeout and message task
         limboPlayerTaskManager.registerTimeoutTask(player);
-        limboPlayerTaskManager.registerMessageTask(name, isAuthAvailable);
-    }
-
-    private boolean isPlayerUnrestricted(String name) {
-        return service.getProperty(RestrictionSettings.UNRESTRICTED_NAMES).contains(name);
-    }
-
-    /**
-     * Returns whether the name is restricted based on the restriction settings.
-     *
-     * @param name The name to check
-     * @param ip The IP address of the player
-     * @param domain The hostname of the IP address
-     * @return True if the name is restricted (IP/domain is not allowed for the given name),
-     *         false if the restrictions are met or if the name has no restrictions to it
-     */
-    private boolean isNameRestricted(String name, String ip, String domain) {
-        if (!service.getProperty(RestrictionSettings.ENABLE_RESTRICTED_USERS)) {
-            return false;
-        }
-
-        boolean nameFound = false;
-        for (String entry : service.getProperty(RestrictionSettings.ALLOWED_RESTRICTED_USERS)) {
-            String[] args = entry.split(";");
-            String testName = args[0];
-            String testIp = args[1];
-            if (testName.equalsIgnoreCase(name)) {
-                nameFound = true;
-                if ((ip != null && testIp.equals(ip)) || (domain != null && testIp.equalsIgnoreCase(domain))) {
-                    return false;
-                }
-            }
-        }
-        return nameFound;
+        limboPlayerTaskManager.registerMessageTask(player, isAuthAvailable);
     }
 
     /**
@@ -244,7 +240,7 @@ public class AsynchronousJoin implements AsynchronousProcess {
             && !service.hasPermission(player, PlayerStatePermission.ALLOW_MULTIPLE_ACCOUNTS)
             && !"127.0.0.1".equalsIgnoreCase(ip)
             && !"localhost".equalsIgnoreCase(ip)
-            && countOnlinePlayersByIp(ip) > service.getProperty(RestrictionSettings.MAX_JOIN_PER_IP)) {
+            && onlineIpIndex.countOnlinePlayers(ip) > service.getProperty(RestrictionSettings.MAX_JOIN_PER_IP)) {
 
             bukkitService.scheduleSyncDelayedTask(new Runnable() {
                 @Override
@@ -256,14 +252,4 @@ public class AsynchronousJoin implements AsynchronousProcess {
         }
         return true;
     }
-
-    private int countOnlinePlayersByIp(String ip) {
-        int count = 0;
-        for (Player player : bukkitService.getOnlinePlayers()) {
-            if (ip.equalsIgnoreCase(Utils.getPlayerIp(player))) {
-                ++count;
-            }
-        }
-        return count;
-    }
 }
@@ -2,7 +2,10 @@ package fr.xephi.authme.process.login;
 
 import fr.xephi.authme.ConsoleLogger;
 import fr.xephi.authme.cache.CaptchaManager;
+import fr.xephi.authme.cache.OnlineIpIndex;
+import fr.xephi.authme.cache.OnlineStaffCache;
 import fr.xephi.authme.cache.TempbanManager;
+import fr.xephi.authme.cache.auth.JoinContextCache;
 import fr.xephi.authme.cache.auth.PlayerAuth;
 import fr.xephi.authme.cache.auth.PlayerCache;
 import fr.xephi.authme.cache.limbo.LimboCache;
@@ -10,7 +13,6 @@ import fr.xephi.authme.cache.limbo.LimboPlayer;
 import fr.xephi.authme.datasource.DataSource;
 import fr.xephi.authme.events.AuthMeAsyncPreLoginEvent;
 import fr.xephi.authme.output.MessageKey;
-import fr.xephi.authme.permission.AdminPermission;
 import fr.xephi.authme.permission.PermissionsManager;
 import fr.xephi.authme.permission.PlayerPermission;
 import fr.xephi.authme.permission.PlayerStatePermission;
@@ -18,6 +20,7 @@ import fr.xephi.authme.process.AsynchronousProcess;
 import fr.xephi.authme.process.ProcessService;
 import fr.xephi.authme.process.SyncProcessManager;
 import fr.xephi.authme.security.PasswordSecurity;
+import fr.xephi.authme.security.crypts.HashedPassword;
 import fr.xephi.authme.settings.Settings;
 import fr.xephi.authme.settings.properties.DatabaseSettings;
 import fr.xephi.authme.settings.properties.EmailSettings;
@@ -72,6 +75,15 @@ public class AsynchronousLogin implements AsynchronousProcess {
     @Inject
     private LimboPlayerTaskManager limboPlayerTaskManager;
 
+    @Inject
+    private JoinContextCache joinContextCache;
+
+    @Inject
+    private OnlineIpIndex onlineIpIndex;
+
+    @Inject
+    private OnlineStaffCache onlineStaffCache;
+
     AsynchronousLogin() { }
 
 
@@ -89,57 +101,69 @@ public class AsynchronousLogin implements AsynchronousProcess {
     }
 
     /**
-     * Checks the precondition for authentication (like user known) and returns
-     * the playerAuth-State
+     * Checks the precondition for authentication (like user known).
      *
-     * @return PlayerAuth
+     * @param player the player who wants to log in
+     * @param pAuth the auth of the player, or null if the player is not registered
+     * @return true if the player may log in
      */
-    private PlayerAuth preAuth(Player player) {
+    private boolean preAuth(Player player, PlayerAuth pAuth) {
         final String name = player.getName().toLowerCase();
-        if (playerCache.isAuthenticated(name)) {
-            service.send(player, MessageKey.ALREADY_LOGGED_IN_ERROR);
-            return null;
-        }
-
-        PlayerAuth pAuth = database.getAuth(name);
         if (pAuth == null) {
             service.send(player, MessageKey.USER_NOT_REGISTERED);
 
             // TODO ljacqu 20160612: Why is the message task being canceled and added again here?
-            limboPlayerTaskManager.registerMessageTask(name, false);
-            return null;
+            limboPlayerTaskManager.registerMessageTask(player, false);
+            return false;
         }
 
         if (!service.getProperty(DatabaseSettings.MYSQL_COL_GROUP).isEmpty() && pAuth.getGroupId() == Settings.getNonActivatedGroup) {
             service.send(player, MessageKey.ACCOUNT_NOT_ACTIVATED);
-            return null;
+            return false;
         }
 
         final String ip = Utils.getPlayerIp(player);
         if (service.getProperty(RestrictionSettings.MAX_LOGIN_PER_IP) > 0
             && !permissionsManager.hasPermission(player, PlayerStatePermission.ALLOW_MULTIPLE_ACCOUNTS)
             && !"127.0.0.1".equalsIgnoreCase(ip) && !"localhost".equalsIgnoreCase(ip)) {
-            if (isLoggedIp(name, ip)) {
+            int maxLoginPerIp = service.getProperty(RestrictionSettings.MAX_LOGIN_PER_IP);
+            if (onlineIpIndex.countLoggedPlayers(ip, name) >= maxLoginPerIp) {
                 service.send(player, MessageKey.ALREADY_LOGGED_IN_ERROR);
-                return null;
+                return false;
             }
         }
 
         AuthMeAsyncPreLoginEvent event = new AuthMeAsyncPreLoginEvent(player);
         Bukkit.getServer().getPluginManager().callEvent(event);
-        if (!event.canLogin()) {
-            return null;
-        }
-        return pAuth;
+        return event.canLogin();
     }
 
     public void login(final Player player, String password, boolean forceLogin) {
-        PlayerAuth pAuth = preAuth(player);
-        if (pAuth == null) {
+        final String name = player.getName().toLowerCase();
+        if (playerCache.isAuthenticated(name)) {
+            service.send(player, MessageKey.ALREADY_LOGGED_IN_ERROR);
             return;
         }
 
-        final String name = player.getName().toLowerCase();
+        // Reuse the auth loaded when the player joined, if available. The account may have been changed since
+        // (password reset by an admin or by email recovery, unregistration), so its password is read again.
+        // The cached auth may be shared with the data source cache and must not be modified
+        PlayerAuth pAuth = joinContextCache.consumeAuth(name);
+        HashedPassword hashedPassword = null;
+        if (pAuth == null) {
+            pAuth = database.getAuth(name);
+            if (pAuth != null) {
+                hashedPassword = pAuth.getPassword();
+            }
+        } else {
+            hashedPassword = database.getPassword(name);
+            if (hashedPassword == null) {
+                pAuth = null;
+            }
+        }
+        if (!preAuth(player, pAuth)) {
+            return;
+        }
 
         // If Captcha is required send a message to the player and deny to login
         if (needsCaptcha(player)) {
@@ -155,20 +179,19 @@ public class AsynchronousLogin implements AsynchronousProcess {
         tempbanManager.increaseCount(ip);
 
         if ("127.0.0.1".equals(pAuth.getIp()) && !pAuth.getIp().equals(ip)) {
-            pAuth.setIp(ip);
             database.updateIp(pAuth.getNickname(), ip);
         }
 
         String email = pAuth.getEmail();
         boolean passwordVerified = forceLogin || passwordSecurity.comparePassword(
-            password, pAuth.getPassword(), player.getName());
+            password, hashedPassword, player.getName());
         if (passwordVerified && player.isOnline()) {
             PlayerAuth auth = PlayerAuth.builder()
                 .name(name)
                 .realName(player.getName())
                 .ip(ip)
                 .email(email)
-                .password(pAuth.getPassword())
+                .password(hashedPassword)
                 .build();
             database.updateSession(auth);
 
@@ -178,6 +201,7 @@ public class AsynchronousLogin implements AsynchronousProcess {
             if (!forceLogin)
                 service.send(player, MessageKey.LOGIN_SUCCESS);
 
+            onlineStaffCache.refresh(player);
             displayOtherAccounts(auth, player);
 
             if (service.getProperty(EmailSettings.RECALL_PLAYERS)
@@ -192,6 +216,7 @@ public class AsynchronousLogin implements AsynchronousProcess {
             // makes player isLoggedin via API
             playerCache.addPlayer(auth);
             database.setLogged(name);
+            onlineIpIndex.setLogged(name);
 
             // As the scheduling executes the Task most likely after the current
             // task, we schedule it in the end
@@ -260,28 +285,17 @@ public class AsynchronousLogin implements AsynchronousProcess {
             ConsoleLogger.info(message);
         }
 
-        for (Player onlinePlayer : bukkitService.getOnlinePlayers()) {
-            if (onlinePlayer.getName().equalsIgnoreCase(player.getName())
-                && permissionsManager.hasPermission(onlinePlayer, PlayerPermission.SEE_OWN_ACCOUNTS)) {
-                service.send(onlinePlayer, MessageKey.ACCOUNTS_OWNED_SELF, Integer.toString(auths.size()));
-                onlinePlayer.sendMessage(message);
-            } else if (permissionsManager.hasPermission(onlinePlayer, AdminPermission.SEE_OTHER_ACCOUNTS)) {
-                service.send(onlinePlayer, MessageKey.ACCOUNTS_OWNED_OTHER,
-                    player.getName(), Integer.toString(auths.size()));
-                onlinePlayer.sendMessage(message);
-            }
+        boolean seesOwnAccounts = permissionsManager.hasPermission(player, PlayerPermission.SEE_OWN_ACCOUNTS);
+        if (seesOwnAccounts) {
+            service.send(player, MessageKey.ACCOUNTS_OWNED_SELF, Integer.toString(auths.size()));
+            player.sendMessage(message);
         }
-    }
-
-    private boolean isLoggedIp(String name, String ip) {
-        int count = 0;
-        for (Player player : bukkitService.getOnlinePlayers()) {
-            if (ip.equalsIgnoreCase(Utils.getPlayerIp(player))
-                && database.isLogged(player.getName().toLowerCase())
-                && !player.getName().equalsIgnoreCase(name)) {
-                ++count;
+        for (Player staffMember : onlineStaffCache.getOnlineStaff()) {
+            if (!seesOwnAccounts || !staffMember.getName().equalsIgnoreCase(player.getName())) {
+                service.send(staffMember, MessageKey.ACCOUNTS_OWNED_OTHER,
+                    player.getName(), Integer.toString(auths.size()));
+                staffMember.sendMessage(message);
             }
         }
-        return count >= service.getProperty(RestrictionSettings.MAX_LOGIN_PER_IP);
     }
 }
@@ -157,8 +157,23 @@ public class ProcessSyncPlayerLogin implements SynchronousProcess {
         sendTo(player);
     }
 
-    private void restoreOpState(Player player, LimboPlayer limboPlayer) {
-        player.setOp(limboPlayer.isOperator());
+    private void restoreOpState(final Player player, final LimboPlayer limboPlayer) {
+        if (limboPlayer.isCaptured()) {
+            player.setOp(limboPlayer.isOperator());
+            return;
+        }
+        // The stored snapshot may still change the OP status: restore it on the main thread once it is known
+        limboPlayer.whenCaptured(new Runnable() {
+            @Override
+            public void run() {
+                bukkitService.scheduleSyncDelayedTask(new Runnable() {
+                    @Override
+                    public void run() {
+                        player.setOp(limboPlayer.isOperator());
+                    }
+                });
+            }
+        });
     }
 
     private void sendTo(Player player) {
@@ -1,5 +1,6 @@
 package fr.xephi.authme.process.logout;
 
+import fr.xephi.authme.cache.OnlineIpIndex;
 import fr.xephi.authme.cache.auth.PlayerAuth;
 import fr.xephi.authme.cache.auth.PlayerCache;
 import fr.xephi.authme.cache.limbo.LimboCache;
@@ -35,6 +36,9 @@ public class AsynchronousLogout implements AsynchronousProcess {
     @Inject
     private BukkitService bukkitService;
 
+    @Inject
+    private OnlineIpIndex onlineIpIndex;
+
     AsynchronousLogout() { }
 
     public void logout(final Player player) {
@@ -53,6 +57,7 @@ public class AsynchronousLogout implements AsynchronousProcess {
 
         playerCache.removePlayer(name);
         database.setUnlogged(name);
+        onlineIpIndex.setUnlogged(name);
         bukkitService.scheduleSyncDelayedTask(new Runnable() {
             @Override
             public void run() {
@@ -4,6 +4,7 @@ import com.google.common.io.ByteArrayDataOutput;
 import com.google.common.io.ByteStreams;
 import fr.xephi.authme.AuthMe;
 import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.cache.auth.SessionManager;
 import fr.xephi.authme.events.LogoutEvent;
 import fr.xephi.authme.output.MessageKey;
 import fr.xephi.authme.process.ProcessService;
@@ -36,6 +37,9 @@ public class ProcessSynchronousPlayerLogout implements SynchronousProcess {
     @Inject
     private LimboPlayerTaskManager limboPlayerTaskManager;
 
+    @Inject
+    private SessionManager sessionManager;
+
     ProcessSynchronousPlayerLogout() { }
 
 
@@ -57,16 +61,13 @@ public class ProcessSynchronousPlayerLogout implements SynchronousProcess {
 
     public void processSyncLogout(Player player) {
         final String name = player.getName().toLowerCase();
-        if (plugin.sessions.containsKey(name)) {
-            plugin.sessions.get(name).cancel();
-            plugin.sessions.remove(name);
-        }
+        sessionManager.cancelSessionExpiry(name);
         if (service.getProperty(RestrictionSettings.PROTECT_INVENTORY_BEFORE_LOGIN)) {
             plugin.inventoryProtector.sendBlankInventoryPacket(player);
         }
 
         limboPlayerTaskManager.registerTimeoutTask(player);
-        limboPlayerTaskManager.registerMessageTask(name, true);
+        limboPlayerTaskManager.registerMessageTask(player, true);
 
         if (player.isInsideVehicle() && player.getVehicle() != null) {
             player.getVehicle().eject();
@@ -1,8 +1,12 @@
 package fr.xephi.authme.process.quit;
 
 import fr.xephi.authme.AuthMe;
+import fr.xephi.authme.cache.OnlineIpIndex;
+import fr.xephi.authme.cache.OnlineStaffCache;
+import fr.xephi.authme.cache.auth.JoinContextCache;
 import fr.xephi.authme.cache.auth.PlayerAuth;
 import fr.xephi.authme.cache.auth.PlayerCache;
+import fr.xephi.authme.cache.auth.SessionManager;
 import fr.xephi.authme.cache.limbo.LimboCache;
 import fr.xephi.authme.cache.limbo.LimboPlayer;
 import fr.xephi.authme.datasource.CacheDataSource;
@@ -16,12 +20,9 @@ import fr.xephi.authme.util.StringUtils;
 import fr.xephi.authme.util.Utils;
 import org.bukkit.Location;
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitTask;
 
 import javax.inject.Inject;
 
-import static fr.xephi.authme.util.BukkitService.TICKS_PER_MINUTE;
-
 public class AsynchronousQuit implements AsynchronousProcess {
 
     @Inject
@@ -42,14 +43,32 @@ public class AsynchronousQuit implements AsynchronousProcess {
     @Inject
     private SyncProcessManager syncProcessManager;
 
+    @Inject
+    private JoinContextCache joinContextCache;
+
+    @Inject
+    private OnlineIpIndex onlineIpIndex;
+
+    @Inject
+    private OnlineStaffCache onlineStaffCache;
+
+    @Inject
+    private SessionManager sessionManager;
+
     AsynchronousQuit() { }
 
 
-    public void processQuit(Player player, boolean isKick) {
-        if (player == null || Utils.isUnrestricted(player)) {
+    public void processQuit(final Player player, boolean isKick) {
+        if (player == null) {
             return;
         }
         final String name = player.getName().toLowerCase();
+        onlineIpIndex.removeOnlinePlayer(name);
+        onlineStaffCache.remove(name);
+        if (Utils.isUnrestricted(player)) {
+            return;
+        }
+        joinContextCache.invalidate(name);
 
         String ip = Utils.getPlayerIp(player);
 
@@ -70,34 +89,27 @@ public class AsynchronousQuit implements AsynchronousProcess {
             database.updateSession(auth);
         }
 
-        boolean needToChange = false;
-        boolean isOp = false;
-
-        LimboPlayer limbo = limboCache.getLimboPlayer(name);
+        final LimboPlayer limbo = limboCache.getLimboPlayer(name);
         if (limbo != null) {
-            if (!StringUtils.isEmpty(limbo.getGroup())) {
-                Utils.addNormal(player, limbo.getGroup());
-            }
-            needToChange = true;
-            isOp = limbo.isOperator();
+            limbo.whenCaptured(new Runnable() {
+                @Override
+                public void run() {
+                    if (!StringUtils.isEmpty(limbo.getGroup())) {
+                        Utils.addNormal(player, limbo.getGroup());
+                    }
+                }
+            });
             limboCache.deleteLimboPlayer(name);
         }
         if (Settings.isSessionsEnabled && !isKick) {
             if (Settings.getSessionTimeout != 0) {
                 if (plugin.isEnabled()) {
-                    BukkitTask task = plugin.getServer().getScheduler().runTaskLaterAsynchronously(plugin, new Runnable() {
-
-                        @Override
-                        public void run() {
-                            postLogout(name);
-                        }
-
-                    }, Settings.getSessionTimeout * TICKS_PER_MINUTE);
-
-                    plugin.sessions.put(name, task);
+                    sessionManager.scheduleSessionExpiry(name, ip);
                 } else {
-                    //plugin is disabled; we cannot schedule more tasks so run it directly here
-                    postLogout(name);
+                    //plugin is disabled; we cannot schedule more tasks so keep the session for the restart
+                    sessionManager.persistSession(name, ip);
+                    playerCache.removePlayer(name);
+                    database.setUnlogged(name);
                 }
             }
         } else {
@@ -105,18 +117,22 @@ public class AsynchronousQuit implements AsynchronousProcess {
             database.setUnlogged(name);
         }
 
-        if (plugin.isEnabled()) {
-            syncProcessManager.processSyncPlayerQuit(player, isOp, needToChange);
+        if (limbo != null) {
+            // The OP status is only final once the capture has reconciled it with the stored snapshot
+            limbo.whenCaptured(new Runnable() {
+                @Override
+                public void run() {
+                    if (plugin.isEnabled()) {
+                        syncProcessManager.processSyncPlayerQuit(player, limbo.isOperator(), true);
+                    }
+                }
+            });
+        } else if (plugin.isEnabled()) {
+            syncProcessManager.processSyncPlayerQuit(player, false, false);
         }
         // remove player from cache
         if (database instanceof CacheDataSource) {
             ((CacheDataSource) database).getCachedAuths().invalidate(name);
         }
     }
-
-    private void postLogout(String name) {
-        PlayerCache.getInstance().removePlayer(name);
-        database.setUnlogged(name);
-        plugin.sessions.remove(name);
-    }
 }
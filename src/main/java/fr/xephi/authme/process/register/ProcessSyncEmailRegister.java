@@ -26,14 +26,13 @@ public class ProcessSyncEmailRegister implements SynchronousProcess {
 
 
     public void processEmailRegister(Player player) {
-        final String name = player.getName().toLowerCase();
         if (!Settings.getRegisteredGroup.isEmpty()) {
             service.setGroup(player, AuthGroupType.REGISTERED);
         }
         service.send(player, MessageKey.ACCOUNT_NOT_ACTIVATED);
 
         limboPlayerTaskManager.registerTimeoutTask(player);
-        limboPlayerTaskManager.registerMessageTask(name, true);
+        limboPlayerTaskManager.registerMessageTask(player, true);
 
         player.saveData();
         if (!service.getProperty(SecuritySettings.REMOVE_SPAM_FROM_CONSOLE)) {
@@ -81,7 +81,7 @@ public class ProcessSyncPasswordRegister implements SynchronousProcess {
 
         limboCache.updateLimboPlayer(player);
         limboPlayerTaskManager.registerTimeoutTask(player);
-        limboPlayerTaskManager.registerMessageTask(name, true);
+        limboPlayerTaskManager.registerMessageTask(player, true);
 
         if (player.isInsideVehicle() && player.getVehicle() != null) {
             player.getVehicle().eject();
@@ -1,6 +1,8 @@
 package fr.xephi.authme.process.unregister;
 
 import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.cache.OnlineIpIndex;
+import fr.xephi.authme.cache.auth.JoinContextCache;
 import fr.xephi.authme.cache.auth.PlayerAuth;
 import fr.xephi.authme.cache.auth.PlayerCache;
 import fr.xephi.authme.cache.limbo.LimboCache;
@@ -43,6 +45,12 @@ public class AsynchronousUnregister implements AsynchronousProcess {
     @Inject
     private LimboPlayerTaskManager limboPlayerTaskManager;
 
+    @Inject
+    private JoinContextCache joinContextCache;
+
+    @Inject
+    private OnlineIpIndex onlineIpIndex;
+
     AsynchronousUnregister() { }
 
 
@@ -54,17 +62,19 @@ public class AsynchronousUnregister implements AsynchronousProcess {
                 service.send(player, MessageKey.ERROR);
                 return;
             }
+            joinContextCache.invalidate(name);
+            onlineIpIndex.setUnlogged(name);
 
             if (service.getProperty(RegistrationSettings.FORCE)) {
                 Utils.teleportToSpawn(player);
                 player.saveData();
                 playerCache.removePlayer(player.getName().toLowerCase());
+                limboCache.addLimboPlayer(player);
                 if (!Settings.getRegisteredGroup.isEmpty()) {
                     service.setGroup(player, AuthGroupType.UNREGISTERED);
                 }
-                limboCache.addLimboPlayer(player);
                 limboPlayerTaskManager.registerTimeoutTask(player);
-                limboPlayerTaskManager.registerMessageTask(name, false);
+                limboPlayerTaskManager.registerMessageTask(player, false);
 
                 service.send(player, MessageKey.UNREGISTERED_SUCCESS);
                 ConsoleLogger.info(player.getDisplayName() + " unregistered himself");
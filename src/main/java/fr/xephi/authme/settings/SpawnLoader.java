@@ -1,5 +1,6 @@
 package fr.xephi.authme.settings;
 
+import com.google.common.base.Optional;
 import fr.xephi.authme.AuthMe;
 import fr.xephi.authme.ConsoleLogger;
 import fr.xephi.authme.cache.auth.PlayerCache;
@@ -21,6 +22,11 @@ import org.bukkit.entity.Player;
 import javax.inject.Inject;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Manager for spawn points. It loads spawn definitions from AuthMe and third-party plugins
@@ -29,6 +35,11 @@ import java.io.IOException;
  * The spawn priority setting defines from which sources and in which order the spawn point
  * should be taken from. In AuthMe, we can distinguish between the regular spawn and a "first spawn",
  * to which players will be teleported who have joined for the first time.
+ * <p>
+ * Resolved spawn points are cached: the AuthMe spawns once read from the spawn file and the Multiverse
+ * spawn per world. The cache is cleared when a spawn is set, on reload and when a plugin providing
+ * spawn points is enabled or disabled. The entries of a world are dropped when it is loaded or unloaded,
+ * so that no unloaded world is kept referenced.
  */
 public class SpawnLoader implements Reloadable {
 
@@ -37,8 +48,10 @@ public class SpawnLoader implements Reloadable {
     private final PluginHooks pluginHooks;
     private final DataSource dataSource;
     private FileConfiguration authMeConfiguration;
-    private String[] spawnPriority;
+    private List<String> spawnPriority;
     private Location essentialsSpawn;
+    private final Map<String, Location> authMeSpawns = new ConcurrentHashMap<>();
+    private final Map<String, Optional<Location>> multiverseSpawns = new ConcurrentHashMap<>();
 
     /**
      * Constructor.
@@ -66,9 +79,37 @@ public class SpawnLoader implements Reloadable {
      */
     @Override
     public void reload() {
-        spawnPriority = settings.getProperty(RestrictionSettings.SPAWN_PRIORITY).split(",");
+        spawnPriority = new ArrayList<>();
+        for (String priority : settings.getProperty(RestrictionSettings.SPAWN_PRIORITY).split(",")) {
+            spawnPriority.add(priority.toLowerCase().trim());
+        }
         authMeConfiguration = YamlConfiguration.loadConfiguration(authMeConfigurationFile);
         loadEssentialsSpawn();
+        clearCache();
+    }
+
+    /**
+     * Clear the cached spawn points, e.g. because a plugin providing spawn points has been enabled or disabled.
+     */
+    public void clearCache() {
+        authMeSpawns.clear();
+        multiverseSpawns.clear();
+    }
+
+    /**
+     * Clear the cached spawn points of the given world, e.g. because the world has been loaded or unloaded.
+     *
+     * @param worldName The name of the world
+     */
+    public void clearCache(String worldName) {
+        multiverseSpawns.remove(worldName);
+        Iterator<Location> iterator = authMeSpawns.values().iterator();
+        while (iterator.hasNext()) {
+            World world = iterator.next().getWorld();
+            if (world == null || worldName.equals(world.getName())) {
+                iterator.remove();
+            }
+        }
     }
 
     /**
@@ -77,7 +118,7 @@ public class SpawnLoader implements Reloadable {
      * @return The location of the regular AuthMe spawn point
      */
     public Location getSpawn() {
-        return getLocationFromConfiguration(authMeConfiguration, "spawn");
+        return getAuthMeSpawn("spawn");
     }
 
     /**
@@ -96,7 +137,7 @@ public class SpawnLoader implements Reloadable {
      * @return The location of the AuthMe spawn point for first timers
      */
     public Location getFirstSpawn() {
-        return getLocationFromConfiguration(authMeConfiguration, "firstspawn");
+        return getAuthMeSpawn("firstspawn");
     }
 
     /**
@@ -153,7 +194,7 @@ public class SpawnLoader implements Reloadable {
         World world = player.getWorld();
         Location spawnLoc = null;
         for (String priority : spawnPriority) {
-            switch (priority.toLowerCase().trim()) {
+            switch (priority) {
                 case "default":
                     if (world.getSpawnLocation() != null) {
                         spawnLoc = world.getSpawnLocation();
@@ -161,7 +202,7 @@ public class SpawnLoader implements Reloadable {
                     break;
                 case "multiverse":
                     if (settings.getProperty(HooksSettings.MULTIVERSE)) {
-                        spawnLoc = pluginHooks.getMultiverseSpawn(world);
+                        spawnLoc = getMultiverseSpawn(world);
                     }
                     break;
                 case "essentials":
@@ -186,6 +227,42 @@ public class SpawnLoader implements Reloadable {
         return world.getSpawnLocation(); // return default location
     }
 
+    /**
+     * Return the AuthMe spawn point saved under the given prefix, reading it from the spawn file
+     * only if it is not cached yet. A spawn point whose world is not loaded is not cached.
+     *
+     * @param prefix The prefix of the spawn point
+     * @return The spawn point, or null if not available
+     */
+    private Location getAuthMeSpawn(String prefix) {
+        Location location = authMeSpawns.get(prefix);
+        if (location == null) {
+            location = getLocationFromConfiguration(authMeConfiguration, prefix);
+            if (location == null) {
+                return null;
+            }
+            authMeSpawns.put(prefix, location);
+        }
+        // Location is mutable, so don't hand out the cached instance
+        return location.clone();
+    }
+
+    /**
+     * Return the Multiverse spawn point of the given world, querying Multiverse only if the world's
+     * spawn point is not cached yet.
+     *
+     * @param world The world to get the spawn point for
+     * @return The Multiverse spawn point, or null if not available
+     */
+    private Location getMultiverseSpawn(World world) {
+        Optional<Location> location = multiverseSpawns.get(world.getName());
+        if (location == null) {
+            location = Optional.fromNullable(pluginHooks.getMultiverseSpawn(world));
+            multiverseSpawns.put(world.getName(), location);
+        }
+        return location.isPresent() ? location.get().clone() : null;
+    }
+
     /**
      * Save the location under the given prefix.
      *
@@ -201,6 +278,7 @@ public class SpawnLoader implements Reloadable {
             authMeConfiguration.set(prefix + ".z", location.getZ());
             authMeConfiguration.set(prefix + ".yaw", location.getYaw());
             authMeConfiguration.set(prefix + ".pitch", location.getPitch());
+            authMeSpawns.remove(prefix);
             return saveAuthMeConfig();
         }
         return false;
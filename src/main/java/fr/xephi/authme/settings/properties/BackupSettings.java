@@ -16,13 +16,33 @@ public class BackupSettings implements SettingsClass {
     public static final Property<Boolean> ON_SERVER_START =
         newProperty("BackupSystem.OnServerStart", false);
 
-    @Comment("Set backup at every stop of server")
+    @Comment({
+        "Set backup at every stop of server. Only incremental backups are written on stop:",
+        "a due full backup is deferred until the server has started again"})
     public static final Property<Boolean> ON_SERVER_STOP =
         newProperty("BackupSystem.OnServerStop", true);
 
-    @Comment("Windows only mysql installation Path")
-    public static final Property<String> MYSQL_WINDOWS_PATH =
-        newProperty("BackupSystem.MysqlWindowsPath", "C:\\Program Files\\MySQL\\MySQL Server 5.1\\");
+    @Comment({
+        "Only back up the accounts which logged in since the previous backup,",
+        "with a full backup at the interval below"})
+    public static final Property<Boolean> INCREMENTAL =
+        newProperty("BackupSystem.Incremental", true);
+
+    @Comment("Number of hours after which an incremental backup is replaced by a full backup")
+    public static final Property<Integer> FULL_BACKUP_INTERVAL_HOURS =
+        newProperty("BackupSystem.FullBackupIntervalHours", 24);
+
+    @Comment("Maximum speed at which backups are written to disk, in KB per second. 0 to disable the limit")
+    public static final Property<Integer> MAX_KILOBYTES_PER_SECOND =
+        newProperty("BackupSystem.MaxKilobytesPerSecond", 1024);
+
+    @Comment("Number of database connections used in parallel to restore a backup (always 1 for SQLite)")
+    public static final Property<Integer> RESTORE_CONNECTIONS =
+        newProperty("BackupSystem.RestoreConnections", 2);
+
+    @Comment("Number of accounts saved per transaction when restoring a backup")
+    public static final Property<Integer> RESTORE_BATCH_SIZE =
+        newProperty("BackupSystem.RestoreBatchSize", 500);
 
     private BackupSettings() {
     }
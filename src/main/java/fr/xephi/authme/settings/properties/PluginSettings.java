@@ -12,6 +12,20 @@ public class PluginSettings implements SettingsClass {
     public static final Property<String> HELP_HEADER =
         newProperty("settings.helpHeader", "AuthMeReloaded");
 
+    @Comment({
+        "Maximum number of seconds the server waits on shutdown for the",
+        "quit locations of online players to be saved"
+    })
+    public static final Property<Integer> SHUTDOWN_SAVE_TIMEOUT =
+        newProperty("settings.shutdownSaveTimeout", 10);
+
+    @Comment({
+        "Number of threads running AuthMe's background jobs, such as the expiry",
+        "of sessions or the writing of the limbo player file"
+    })
+    public static final Property<Integer> ASYNC_WORKER_THREADS =
+        newProperty("settings.asyncWorkerThreads", 2);
+
     @Comment({
         "Do you want to enable the session feature?",
         "If enabled, when a player authenticates successfully,",
@@ -40,6 +40,18 @@ public class PurgeSettings implements SettingsClass {
     public static final Property<Boolean> REMOVE_PERMISSIONS =
         newProperty("Purge.removePermissions", false);
 
+    @Comment({
+        "Number of accounts to delete from the database in one go during a purge.",
+        "Smaller chunks lock the accounts table for a shorter time"})
+    public static final Property<Integer> DATABASE_CHUNK_SIZE =
+        newProperty("Purge.databaseChunkSize", 200);
+
+    @Comment({
+        "Maximum number of accounts to delete from the database per second during a purge,",
+        "so that players can still log in while old accounts are purged. 0 to disable the limit"})
+    public static final Property<Integer> DATABASE_ROWS_PER_SECOND =
+        newProperty("Purge.databaseRowsPerSecond", 1000);
+
     private PurgeSettings() {
     }
 
@@ -77,10 +77,11 @@ public class RestrictionSettings implements SettingsClass {
 
     @Comment({
         "The restricted user feature will kick players listed below",
-        "if they don't match the defined IP address.",
+        "if they don't match the defined IP address, IP range or host name.",
         "Example:",
         "    AllowedRestrictedUser:",
-        "    - playername;127.0.0.1"})
+        "    - playername;127.0.0.1",
+        "    - playername;192.168.0.0/16"})
     public static final Property<List<String>> ALLOWED_RESTRICTED_USERS =
         newLowercaseListProperty("settings.restrictions.AllowedRestrictedUser");
 
@@ -167,10 +168,29 @@ public class RestrictionSettings implements SettingsClass {
     public static final Property<Integer> MAX_JOIN_PER_IP =
         newProperty("settings.restrictions.maxJoinPerIp", 0);
 
+    @Comment({
+        "Number of leading bits of an IPv4 address which are counted as one network",
+        "for maxLoginPerIp, maxJoinPerIp and the tempban after failed logins.",
+        "32 counts every address on its own, 24 counts all addresses of a /24 together"})
+    public static final Property<Integer> IPV4_NETWORK_PREFIX =
+        newProperty("settings.restrictions.ipv4NetworkPrefix", 32);
+
+    @Comment({
+        "Same as ipv4NetworkPrefix for IPv6 addresses. 64 counts all addresses",
+        "of a /64 together, which is usually assigned to a single connection"})
+    public static final Property<Integer> IPV6_NETWORK_PREFIX =
+        newProperty("settings.restrictions.ipv6NetworkPrefix", 64);
+
     @Comment("AuthMe will NEVER teleport players if set to true!")
     public static final Property<Boolean> NO_TELEPORT =
         newProperty("settings.restrictions.noTeleport", false);
 
+    @Comment({
+        "Maximum number of teleports and of chunk loads for their destinations per tick.",
+        "Further teleports, e.g. when many players join at once, wait for the next ticks."})
+    public static final Property<Integer> MAX_TELEPORTS_PER_TICK =
+        newProperty("settings.restrictions.maxTeleportsPerTick", 5);
+
     @Comment("Regex syntax for allowed chars in passwords")
     public static final Property<String> ALLOWED_PASSWORD_REGEX =
         newProperty("settings.restrictions.allowedPasswordCharacters", "[\\x21-\\x7E]*");
@@ -0,0 +1,50 @@
+package fr.xephi.authme.task;
+
+/**
+ * Groups of background jobs run by the {@link TaskScheduler}. Statistics are kept per group.
+ */
+public enum JobGroup {
+
+    /** Transitions of the AntiBot status. */
+    ANTIBOT("AntiBot"),
+
+    /** Bans of players who failed to log in too many times. */
+    TEMPBAN("Tempban"),
+
+    /** Reminders for logged in players to add an email address. */
+    RECALL_EMAIL("Recall email"),
+
+    /** Removal of the data of purged players. */
+    PURGE("Purge"),
+
+    /** Message and timeout tasks of players in limbo. */
+    LIMBO("Limbo"),
+
+    /** Expiry and storage of sessions. */
+    SESSIONS("Sessions"),
+
+    /** Writes of the limbo player file. */
+    STORAGE("Storage"),
+
+    /** Teleports of joining and logging in players. */
+    TELEPORT("Teleport"),
+
+    /** Backups of the accounts. */
+    BACKUP("Backup"),
+
+    /** Downloads and reloads of the GeoIP database. */
+    GEOIP("GeoIP");
+
+    private final String displayName;
+
+    JobGroup(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * @return the name of the group as shown in the statistics
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+}
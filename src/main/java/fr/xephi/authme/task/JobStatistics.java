@@ -0,0 +1,93 @@
+package fr.xephi.authme.task;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics of the jobs of one {@link JobGroup}. The wait time of a job is the time between the moment
+ * it was due and the moment it started; its run time is the time it took to complete.
+ */
+public class JobStatistics {
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong totalRunNanos = new AtomicLong();
+    private final AtomicLong maxRunNanos = new AtomicLong();
+
+    void recordRun(long waitNanos, long runNanos, boolean failed) {
+        runs.incrementAndGet();
+        if (failed) {
+            failures.incrementAndGet();
+        }
+        totalWaitNanos.addAndGet(waitNanos);
+        totalRunNanos.addAndGet(runNanos);
+        long max = maxRunNanos.get();
+        while (runNanos > max && !maxRunNanos.compareAndSet(max, runNanos)) {
+            max = maxRunNanos.get();
+        }
+    }
+
+    void recordCoalesced() {
+        coalesced.incrementAndGet();
+    }
+
+    /**
+     * @return the number of jobs which have been run
+     */
+    public long getRuns() {
+        return runs.get();
+    }
+
+    /**
+     * @return the number of jobs which have thrown an exception
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * @return the number of jobs which were not scheduled because an identical job was already pending
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return the average time in milliseconds the jobs waited before they were started
+     */
+    public double getAverageWaitMillis() {
+        return average(totalWaitNanos.get());
+    }
+
+    /**
+     * @return the average time in milliseconds the jobs took to run
+     */
+    public double getAverageRunMillis() {
+        return average(totalRunNanos.get());
+    }
+
+    /**
+     * @return the longest time in milliseconds a job took to run
+     */
+    public double getMaxRunMillis() {
+        return toMillis(maxRunNanos.get());
+    }
+
+    private double average(long totalNanos) {
+        long count = runs.get();
+        return count == 0 ? 0 : toMillis(totalNanos) / count;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d runs (%d failed, %d coalesced), avg wait %.2f ms, avg run %.2f ms, max run %.2f ms",
+            getRuns(), getFailures(), getCoalesced(), getAverageWaitMillis(), getAverageRunMillis(),
+            getMaxRunMillis());
+    }
+}
@@ -9,19 +9,21 @@ import fr.xephi.authme.output.Messages;
 import fr.xephi.authme.settings.NewSetting;
 import fr.xephi.authme.settings.properties.RegistrationSettings;
 import fr.xephi.authme.settings.properties.RestrictionSettings;
-import fr.xephi.authme.util.BukkitService;
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitTask;
 
 import javax.inject.Inject;
 
 import static fr.xephi.authme.util.BukkitService.TICKS_PER_SECOND;
 
 /**
- * Registers tasks associated with a LimboPlayer.
+ * Registers tasks associated with a LimboPlayer. All tasks are kept in a single {@link TimingWheel}
+ * which is advanced by one repeating job while there are tasks to run.
  */
 public class LimboPlayerTaskManager {
 
+    /** Number of slots of the timing wheel; one slot corresponds to one second. */
+    private static final int WHEEL_SIZE = 64;
+
     @Inject
     private Messages messages;
 
@@ -29,7 +31,7 @@ public class LimboPlayerTaskManager {
     private NewSetting settings;
 
     @Inject
-    private BukkitService bukkitService;
+    private TaskScheduler taskScheduler;
 
     @Inject
     private LimboCache limboCache;
@@ -37,28 +39,30 @@ public class LimboPlayerTaskManager {
     @Inject
     private PlayerCache playerCache;
 
+    private final TimingWheel timingWheel = new TimingWheel(WHEEL_SIZE);
+    private ScheduledJob wheelTask;
+
     LimboPlayerTaskManager() { }
 
 
     /**
-     * Registers a {@link MessageTask} for the given player name.
+     * Registers a {@link MessageTask} for the given player.
      *
-     * @param name the name of the player to schedule a repeating message task for
+     * @param player the player to schedule a repeating message task for
      * @param isRegistered whether the name is registered or not
      *                     (false shows "please register", true shows "please log in")
      */
-    public void registerMessageTask(String name, boolean isRegistered) {
+    public void registerMessageTask(Player player, boolean isRegistered) {
         final int interval = settings.getProperty(RegistrationSettings.MESSAGE_INTERVAL);
         final MessageKey key = getMessageKey(isRegistered);
         if (interval > 0) {
-            final LimboPlayer limboPlayer = limboCache.getLimboPlayer(name);
+            final LimboPlayer limboPlayer = limboCache.getLimboPlayer(player.getName());
             if (limboPlayer == null) {
-                ConsoleLogger.info("LimboPlayer for '" + name + "' is not available");
+                ConsoleLogger.info("LimboPlayer for '" + player.getName() + "' is not available");
             } else {
-                cancelTask(limboPlayer.getMessageTask());
-                BukkitTask messageTask = bukkitService.runTask(new MessageTask(name, messages.retrieve(key),
-                    interval, bukkitService, limboCache, playerCache));
+                MessageTask messageTask = new MessageTask(player, messages.retrieve(key), interval, playerCache);
                 limboPlayer.setMessageTask(messageTask);
+                schedule(messageTask, 0);
             }
         }
     }
@@ -69,18 +73,54 @@ public class LimboPlayerTaskManager {
      * @param player the player to register a timeout task for
      */
     public void registerTimeoutTask(Player player) {
-        final int timeout = settings.getProperty(RestrictionSettings.TIMEOUT) * TICKS_PER_SECOND;
+        final int timeout = settings.getProperty(RestrictionSettings.TIMEOUT);
         if (timeout > 0) {
             final LimboPlayer limboPlayer = limboCache.getLimboPlayer(player.getName());
             if (limboPlayer == null) {
                 ConsoleLogger.info("LimboPlayer for '" + player.getName() + "' is not available");
             } else {
-                cancelTask(limboPlayer.getTimeoutTask());
                 String message = messages.retrieveSingle(MessageKey.LOGIN_TIMEOUT_ERROR);
-                BukkitTask task = bukkitService.runTaskLater(new TimeoutTask(player, message, playerCache), timeout);
-                limboPlayer.setTimeoutTask(task);
+                TimeoutTask timeoutTask = new TimeoutTask(player, message, playerCache);
+                limboPlayer.setTimeoutTask(timeoutTask);
+                schedule(timeoutTask, timeout);
+            }
+        }
+    }
+
+    /**
+     * Advances the timing wheel by one second and runs all tasks which are due.
+     * Stops the repeating job if no tasks are left.
+     */
+    void tick() {
+        for (LimboTask task : timingWheel.advance()) {
+            if (task.run() && !task.isCancelled()) {
+                timingWheel.schedule(task, task.getInterval());
             }
         }
+        stopTickingIfIdle();
+    }
+
+    private void schedule(LimboTask task, int delay) {
+        timingWheel.schedule(task, delay);
+        startTicking();
+    }
+
+    private synchronized void startTicking() {
+        if (wheelTask == null) {
+            wheelTask = taskScheduler.runSyncRepeating(JobGroup.LIMBO, new Runnable() {
+                @Override
+                public void run() {
+                    tick();
+                }
+            }, TICKS_PER_SECOND, TICKS_PER_SECOND);
+        }
+    }
+
+    private synchronized void stopTickingIfIdle() {
+        if (wheelTask != null && timingWheel.isEmpty()) {
+            wheelTask.cancel();
+            wheelTask = null;
+        }
     }
 
     /**
@@ -98,15 +138,4 @@ public class LimboPlayerTaskManager {
                 : MessageKey.REGISTER_MESSAGE;
         }
     }
-
-    /**
-     * Null-safe method to cancel a potentially existing task.
-     *
-     * @param task the task to cancel (or null)
-     */
-    private static void cancelTask(BukkitTask task) {
-        if (task != null) {
-            task.cancel();
-        }
-    }
 }
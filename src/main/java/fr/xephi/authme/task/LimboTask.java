@@ -0,0 +1,54 @@
+package fr.xephi.authme.task;
+
+/**
+ * Task associated with a player who is not logged in. Limbo tasks are not scheduled with Bukkit
+ * individually; they are run by the {@link TimingWheel} of the {@link LimboPlayerTaskManager}.
+ */
+public abstract class LimboTask {
+
+    private final int interval;
+    private volatile boolean cancelled;
+    private long deadline;
+
+    /**
+     * Constructor.
+     *
+     * @param interval the number of seconds after which the task should run again, or 0 if it runs only once
+     */
+    protected LimboTask(int interval) {
+        this.interval = interval;
+    }
+
+    /**
+     * Runs the task.
+     *
+     * @return true if the task should run again after its interval, false otherwise
+     */
+    protected abstract boolean run();
+
+    /**
+     * Cancels the task so that it will not be run anymore.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return the number of seconds after which the task should run again, or 0 if it runs only once
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    long getDeadline() {
+        return deadline;
+    }
+
+    void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+}
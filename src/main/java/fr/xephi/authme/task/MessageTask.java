@@ -1,55 +1,41 @@
 package fr.xephi.authme.task;
 
 import fr.xephi.authme.cache.auth.PlayerCache;
-import fr.xephi.authme.cache.limbo.LimboCache;
-import fr.xephi.authme.util.BukkitService;
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitTask;
-
-import static fr.xephi.authme.util.BukkitService.TICKS_PER_SECOND;
 
 /**
  * Message shown to a player in a regular interval as long as he is not logged in.
  */
-public class MessageTask implements Runnable {
+public class MessageTask extends LimboTask {
 
-    private final String name;
+    private final Player player;
     private final String[] message;
-    private final int interval;
-    private final BukkitService bukkitService;
-    private final LimboCache limboCache;
     private final PlayerCache playerCache;
 
-    /*
+    /**
      * Constructor.
+     *
+     * @param player the player to send the message to
+     * @param lines the lines of the message
+     * @param interval the interval in seconds in which the message is shown
+     * @param playerCache player cache instance
      */
-    public MessageTask(String name, String[] lines, int interval, BukkitService bukkitService,
-                       LimboCache limboCache, PlayerCache playerCache) {
-        this.name = name;
+    public MessageTask(Player player, String[] lines, int interval, PlayerCache playerCache) {
+        super(interval);
+        this.player = player;
         this.message = lines;
-        this.interval = interval;
-        this.bukkitService = bukkitService;
-        this.limboCache = limboCache;
         this.playerCache = playerCache;
     }
 
     @Override
-    public void run() {
-        if (playerCache.isAuthenticated(name)) {
-            return;
+    protected boolean run() {
+        if (!player.isOnline() || playerCache.isAuthenticated(player.getName())) {
+            return false;
         }
 
-        for (Player player : bukkitService.getOnlinePlayers()) {
-            if (player.getName().equalsIgnoreCase(name)) {
-                for (String ms : message) {
-                    player.sendMessage(ms);
-                }
-                BukkitTask nextTask = bukkitService.runTaskLater(this, interval * TICKS_PER_SECOND);
-                if (limboCache.hasLimboPlayer(name)) {
-                    limboCache.getLimboPlayer(name).setMessageTask(nextTask);
-                }
-                return;
-            }
+        for (String ms : message) {
+            player.sendMessage(ms);
         }
+        return true;
     }
 }
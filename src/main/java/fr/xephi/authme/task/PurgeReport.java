@@ -0,0 +1,114 @@
+package fr.xephi.authme.task;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Number and size of the files removed by a purge, per type of data. For a dry run, the report
+ * holds the files that would have been removed.
+ */
+public class PurgeReport {
+
+    private final boolean isDryRun;
+    private final Map<String, long[]> filesByCategory = new LinkedHashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param isDryRun true if files should only be counted, false if they should be deleted
+     */
+    public PurgeReport(boolean isDryRun) {
+        this.isDryRun = isDryRun;
+    }
+
+    /**
+     * @return true if files are only counted, false if they are deleted
+     */
+    public boolean isDryRun() {
+        return isDryRun;
+    }
+
+    /**
+     * Records a removed file (or one which would be removed in a dry run).
+     *
+     * @param category the type of data the file belongs to
+     * @param bytes the size of the file
+     */
+    public synchronized void addFile(String category, long bytes) {
+        long[] entry = getEntry(category);
+        ++entry[0];
+        entry[1] += bytes;
+    }
+
+    /**
+     * Registers a category, so that it is part of the report even if no file is recorded for it.
+     *
+     * @param category the type of data
+     */
+    public synchronized void addCategory(String category) {
+        getEntry(category);
+    }
+
+    /**
+     * Returns the number of files recorded for the given category.
+     *
+     * @param category the type of data
+     * @return the number of files
+     */
+    public synchronized long getFiles(String category) {
+        long[] entry = filesByCategory.get(category);
+        return entry == null ? 0 : entry[0];
+    }
+
+    /**
+     * Returns the total size of the files recorded for the given category.
+     *
+     * @param category the type of data
+     * @return the size in bytes
+     */
+    public synchronized long getBytes(String category) {
+        long[] entry = filesByCategory.get(category);
+        return entry == null ? 0 : entry[1];
+    }
+
+    /**
+     * Returns one line per category and one with the totals, e.g. to send to the command sender.
+     *
+     * @return the lines of the report
+     */
+    public synchronized List<String> toLines() {
+        List<String> lines = new ArrayList<>(filesByCategory.size() + 1);
+        String verb = isDryRun ? "Would remove " : "Removed ";
+        long totalFiles = 0;
+        long totalBytes = 0;
+        for (Map.Entry<String, long[]> entry : filesByCategory.entrySet()) {
+            long[] counts = entry.getValue();
+            lines.add(verb + counts[0] + " " + entry.getKey() + " files (" + formatBytes(counts[1]) + ")");
+            totalFiles += counts[0];
+            totalBytes += counts[1];
+        }
+        lines.add(verb + totalFiles + " files in total, reclaiming " + formatBytes(totalBytes));
+        return lines;
+    }
+
+    private long[] getEntry(String category) {
+        long[] entry = filesByCategory.get(category);
+        if (entry == null) {
+            entry = new long[2];
+            filesByCategory.put(category, entry);
+        }
+        return entry;
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        int unit = (63 - Long.numberOfLeadingZeros(bytes)) / 10;
+        return String.format(Locale.ROOT, "%.1f %siB",
+            bytes / (double) (1L << (unit * 10)), "KMGTPE".charAt(unit - 1));
+    }
+}
@@ -0,0 +1,318 @@
+package fr.xephi.authme.task;
+
+import fr.xephi.authme.AuthMe;
+import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.DataManager;
+import fr.xephi.authme.datasource.DataSource;
+import fr.xephi.authme.hooks.PluginHooks;
+import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.PurgeSettings;
+import fr.xephi.authme.util.BukkitService;
+import org.bukkit.ChatColor;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.command.CommandSender;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static fr.xephi.authme.util.BukkitService.TICKS_PER_SECOND;
+
+/**
+ * Removes the data of purged accounts from the server and from third-party plugins.
+ * <p>
+ * Inactive accounts are deleted from the database in small chunks, one chunk per job on the task
+ * scheduler's worker threads, with a pause between chunks so that the rate stays below the configured
+ * number of rows per second and logins are never stuck behind a long lock on the accounts table.
+ * <p>
+ * The purged names are resolved to offline players with an index built in a single pass over
+ * the offline players. All files are deleted by one job on the task scheduler's worker threads;
+ * only the removal of permission groups, which must happen on the main thread, is done in batches
+ * by a {@link PurgeTask}. A dry run only reports the files which would be removed.
+ */
+public class PurgeService {
+
+    @Inject
+    private AuthMe plugin;
+
+    @Inject
+    private BukkitService bukkitService;
+
+    @Inject
+    private TaskScheduler taskScheduler;
+
+    @Inject
+    private DataSource dataSource;
+
+    @Inject
+    private DataManager dataManager;
+
+    @Inject
+    private PluginHooks pluginHooks;
+
+    @Inject
+    private NewSetting settings;
+
+    PurgeService() { }
+
+    /**
+     * Deletes the accounts whose last login is older than the given time from the database, then
+     * purges the data of the deleted players.
+     *
+     * @param sender the sender to inform about the progress
+     * @param until the last login before which accounts are purged
+     * @param isAutoPurge whether the purge was started automatically on startup
+     */
+    public void purgeInactiveAccounts(CommandSender sender, long until, boolean isAutoPurge) {
+        int chunkSize = Math.max(1, settings.getProperty(PurgeSettings.DATABASE_CHUNK_SIZE));
+        int rowsPerSecond = settings.getProperty(PurgeSettings.DATABASE_ROWS_PER_SECOND);
+        taskScheduler.runAsync(JobGroup.PURGE,
+            new DatabasePurge(sender, until, isAutoPurge, chunkSize, rowsPerSecond));
+    }
+
+    /**
+     * Purges the data of the given players, looking them up among all players who have ever played.
+     *
+     * @param sender the sender to inform about the progress
+     * @param names the names of the purged accounts
+     * @param isAutoPurge whether the purge was started automatically on startup
+     */
+    public void purgePlayers(CommandSender sender, Set<String> names, boolean isAutoPurge) {
+        purgePlayers(sender, names, bukkitService.getOfflinePlayers(), isAutoPurge);
+    }
+
+    /**
+     * Purges the data of the given players, looking them up among the given offline players.
+     * Names which do not match any offline player are only purged from name-based data.
+     *
+     * @param sender the sender to inform about the progress, or null if nobody is to be informed
+     * @param names the names of the purged accounts
+     * @param offlinePlayers the offline players to look the names up in
+     * @param isAutoPurge whether the purge was started automatically on startup
+     */
+    public void purgePlayers(CommandSender sender, Set<String> names, OfflinePlayer[] offlinePlayers,
+                             boolean isAutoPurge) {
+        startPurge(sender, names, offlinePlayers, isAutoPurge, false);
+    }
+
+    /**
+     * Reports to the sender the number and size of the files which would be removed by purging
+     * the given players, without removing anything.
+     *
+     * @param sender the sender to send the report to
+     * @param names the names of the accounts to purge
+     */
+    public void previewPurge(CommandSender sender, Set<String> names) {
+        startPurge(sender, names, bukkitService.getOfflinePlayers(), false, true);
+    }
+
+    private void startPurge(CommandSender sender, Set<String> names, OfflinePlayer[] offlinePlayers,
+                            boolean isAutoPurge, boolean isDryRun) {
+        Map<String, OfflinePlayer> playersByName = createNameIndex(offlinePlayers);
+        final Set<String> lowerNames = new HashSet<>(names.size());
+        final Set<OfflinePlayer> players = new HashSet<>();
+        for (String name : names) {
+            String lowerName = name.toLowerCase();
+            lowerNames.add(lowerName);
+            OfflinePlayer player = playersByName.get(lowerName);
+            if (player != null) {
+                players.add(player);
+            }
+        }
+        ConsoleLogger.info((isDryRun ? "Previewing the purge of the data of " : "Purging the data of ")
+            + lowerNames.size() + " accounts, of which "
+            + players.size() + " have played on the server");
+
+        final PurgeRun run = new PurgeRun(sender, isAutoPurge, new PurgeReport(isDryRun));
+        taskScheduler.runAsync(JobGroup.PURGE, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    purgeFiles(lowerNames, players, run.report);
+                } finally {
+                    run.completeStage();
+                }
+            }
+        });
+
+        if (!isDryRun && settings.getProperty(PurgeSettings.REMOVE_PERMISSIONS) && !players.isEmpty()) {
+            new PurgeTask(dataManager, new ArrayList<>(players), new Runnable() {
+                @Override
+                public void run() {
+                    run.completeStage();
+                }
+            }).start(taskScheduler);
+        } else {
+            run.completeStage();
+        }
+    }
+
+    private void purgeFiles(Set<String> names, Set<OfflinePlayer> players, PurgeReport report) {
+        if (settings.getProperty(PurgeSettings.REMOVE_ESSENTIALS_FILES) && pluginHooks.isEssentialsAvailable()) {
+            dataManager.purgeEssentials(players, report);
+        }
+        if (settings.getProperty(PurgeSettings.REMOVE_PLAYER_DAT)) {
+            dataManager.purgeDat(players, report);
+        }
+        if (settings.getProperty(PurgeSettings.REMOVE_LIMITED_CREATIVE_INVENTORIES)) {
+            dataManager.purgeLimitedCreative(names, report);
+        }
+        if (settings.getProperty(PurgeSettings.REMOVE_ANTI_XRAY_FILE)) {
+            dataManager.purgeAntiXray(names, report);
+        }
+    }
+
+    private static Map<String, OfflinePlayer> createNameIndex(OfflinePlayer[] offlinePlayers) {
+        Map<String, OfflinePlayer> playersByName = new HashMap<>(offlinePlayers.length * 4 / 3 + 1);
+        for (OfflinePlayer offlinePlayer : offlinePlayers) {
+            String name = offlinePlayer.getName();
+            if (name != null) {
+                playersByName.put(name.toLowerCase(), offlinePlayer);
+            }
+        }
+        return playersByName;
+    }
+
+    /**
+     * Deletes one chunk of inactive accounts per run and schedules itself again for the next chunk
+     * until no account is left to delete. The names of the deleted accounts are then handed to the
+     * purge of the players' data on the main thread.
+     */
+    private final class DatabasePurge implements Runnable {
+
+        private static final int PROGRESS_INTERVAL = 50;
+
+        private final SenderReference sender;
+        private final long until;
+        private final boolean isAutoPurge;
+        private final int chunkSize;
+        private final int rowsPerSecond;
+        private final Set<String> purgedNames = new HashSet<>();
+        private long lastId;
+        private int chunks;
+
+        DatabasePurge(CommandSender sender, long until, boolean isAutoPurge, int chunkSize, int rowsPerSecond) {
+            this.sender = new SenderReference(sender);
+            this.until = until;
+            this.isAutoPurge = isAutoPurge;
+            this.chunkSize = chunkSize;
+            this.rowsPerSecond = rowsPerSecond;
+        }
+
+        @Override
+        public void run() {
+            List<String> chunk = new ArrayList<>(chunkSize);
+            long chunkLastId = dataSource.purgeInactiveChunk(until, lastId, chunkSize, chunk);
+            purgedNames.addAll(chunk);
+            if (chunkLastId < 0) {
+                final boolean isAborted = chunkLastId == DataSource.PURGE_FAILED;
+                taskScheduler.runSync(JobGroup.PURGE, new Runnable() {
+                    @Override
+                    public void run() {
+                        finish(isAborted);
+                    }
+                });
+                return;
+            }
+            lastId = chunkLastId;
+            if (++chunks % PROGRESS_INTERVAL == 0) {
+                ConsoleLogger.info("Purge: deleted " + purgedNames.size() + " accounts so far");
+            }
+            taskScheduler.runAsyncLater(JobGroup.PURGE, this, getDelay(chunk.size()));
+        }
+
+        /**
+         * Returns the ticks to wait before the next chunk so that the deletion rate stays within the limit.
+         */
+        private long getDelay(int deletedRows) {
+            if (rowsPerSecond <= 0) {
+                return 0;
+            }
+            return Math.max(1, (deletedRows * TICKS_PER_SECOND + rowsPerSecond - 1) / rowsPerSecond);
+        }
+
+        /**
+         * Reports the result of the database purge and starts the purge of the deleted accounts' data.
+         *
+         * @param isAborted true if the purge was stopped by a database error, false if all accounts were deleted
+         */
+        private void finish(boolean isAborted) {
+            CommandSender commandSender = sender.get();
+            if (isAborted) {
+                // The accounts deleted so far are gone, so their data is still purged below
+                ConsoleLogger.showError("Purge aborted: could not delete inactive accounts from the database after "
+                    + purgedNames.size() + " accounts");
+                if (commandSender != null) {
+                    commandSender.sendMessage(ChatColor.RED + "The purge was aborted by a database error after "
+                        + "deleting " + purgedNames.size() + " user accounts. Please check the logs");
+                }
+            } else {
+                ConsoleLogger.info("Deleted " + purgedNames.size() + " inactive accounts from the database");
+                if (commandSender != null) {
+                    commandSender.sendMessage(ChatColor.GOLD + "Deleted " + purgedNames.size() + " user accounts");
+                }
+            }
+            if (!purgedNames.isEmpty()) {
+                if (commandSender != null) {
+                    commandSender.sendMessage(ChatColor.GOLD + "Purging user accounts...");
+                }
+                purgePlayers(commandSender, purgedNames, isAutoPurge);
+            } else if (isAutoPurge) {
+                plugin.notifyAutoPurgeEnd();
+            }
+        }
+    }
+
+    /**
+     * Keeps track of the stages of a purge (file deletion and permission removal) and informs the
+     * sender once both have finished.
+     */
+    private final class PurgeRun {
+
+        private final SenderReference sender;
+        private final boolean isAutoPurge;
+        private final PurgeReport report;
+        private final AtomicInteger remainingStages = new AtomicInteger(2);
+
+        PurgeRun(CommandSender sender, boolean isAutoPurge, PurgeReport report) {
+            this.sender = new SenderReference(sender);
+            this.isAutoPurge = isAutoPurge;
+            this.report = report;
+        }
+
+        void completeStage() {
+            if (remainingStages.decrementAndGet() == 0) {
+                taskScheduler.runSync(JobGroup.PURGE, new Runnable() {
+                    @Override
+                    public void run() {
+                        finish();
+                    }
+                });
+            }
+        }
+
+        private void finish() {
+            CommandSender commandSender = sender.get();
+            if (commandSender != null) {
+                for (String line : report.toLines()) {
+                    commandSender.sendMessage(ChatColor.GOLD + "[AuthMe] " + line);
+                }
+                if (!report.isDryRun()) {
+                    commandSender.sendMessage(ChatColor.GREEN + "[AuthMe] Database has been purged correctly");
+                }
+            }
+            if (report.isDryRun()) {
+                return;
+            }
+            ConsoleLogger.info("AutoPurge Finished!");
+            if (isAutoPurge) {
+                plugin.notifyAutoPurgeEnd();
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package fr.xephi.authme.task;
+
+/**
+ * Handle of a job scheduled with the {@link TaskScheduler}.
+ */
+public interface ScheduledJob {
+
+    /**
+     * Cancels the job. A job which is running is allowed to finish; a repeating job is not run again.
+     */
+    void cancel();
+
+}
@@ -0,0 +1,34 @@
+package fr.xephi.authme.task;
+
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.util.UUID;
+
+/**
+ * Refers to the sender of a background task without keeping a reference to the player, who may log out
+ * before the task is finished.
+ */
+public final class SenderReference {
+
+    private final CommandSender consoleSender;
+    private final UUID playerSender;
+
+    /**
+     * Constructor.
+     *
+     * @param sender the sender to refer to, may be null
+     */
+    public SenderReference(CommandSender sender) {
+        this.playerSender = sender instanceof Player ? ((Player) sender).getUniqueId() : null;
+        this.consoleSender = sender instanceof Player ? null : sender;
+    }
+
+    /**
+     * @return the sender, or null if the sender is a player who is no longer online
+     */
+    public CommandSender get() {
+        return playerSender == null ? consoleSender : Bukkit.getPlayer(playerSender);
+    }
+}
@@ -0,0 +1,380 @@
+package fr.xephi.authme.task;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.initialization.SettingsDependent;
+import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.PluginSettings;
+import fr.xephi.authme.util.BukkitService;
+import org.bukkit.scheduler.BukkitTask;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static fr.xephi.authme.util.BukkitService.TICKS_PER_SECOND;
+
+/**
+ * Runs AuthMe's background jobs. Every job belongs to a {@link JobGroup} for which the number of runs,
+ * the time the jobs waited before starting and the time they took to run are recorded.
+ * <p>
+ * Synchronous jobs are run on the main thread by the Bukkit scheduler. Asynchronous jobs are run by a fixed
+ * pool of worker threads instead of one Bukkit thread per task, so that the background load stays bounded.
+ * The few long jobs, which would otherwise occupy a worker for minutes, are run on threads of their own.
+ * As with {@link BukkitService}, all delays and periods are given in server ticks.
+ */
+public class TaskScheduler implements SettingsDependent {
+
+    private static final long NANOS_PER_TICK = TimeUnit.SECONDS.toNanos(1) / TICKS_PER_SECOND;
+    private static final long MILLIS_PER_TICK = TimeUnit.SECONDS.toMillis(1) / TICKS_PER_SECOND;
+
+    private final BukkitService bukkitService;
+    private final ScheduledThreadPoolExecutor workers;
+    private final Map<JobGroup, JobStatistics> statistics = new EnumMap<>(JobGroup.class);
+    private final Set<String> pendingKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Set<Thread> dedicatedThreads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+
+    @Inject
+    TaskScheduler(BukkitService bukkitService, NewSetting settings) {
+        this.bukkitService = bukkitService;
+        this.workers = new ScheduledThreadPoolExecutor(getWorkerThreads(settings), new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("AuthMe-Worker-%d")
+            .build());
+        workers.setRemoveOnCancelPolicy(true);
+        for (JobGroup group : JobGroup.values()) {
+            statistics.put(group, new JobStatistics());
+        }
+    }
+
+    /**
+     * Runs the job on the main thread on the next server tick.
+     *
+     * @param group the group of the job
+     * @param job the job to run
+     * @return the handle of the job
+     */
+    public ScheduledJob runSync(JobGroup group, Runnable job) {
+        return runSyncLater(group, job, 0);
+    }
+
+    /**
+     * Runs the job on the main thread after the given delay.
+     *
+     * @param group the group of the job
+     * @param job the job to run
+     * @param delay the ticks to wait before running the job
+     * @return the handle of the job
+     */
+    public ScheduledJob runSyncLater(JobGroup group, Runnable job, long delay) {
+        MeteredJob meteredJob = new MeteredJob(group, job, delay, 0, false);
+        return wrap(bukkitService.runTaskLater(meteredJob, delay));
+    }
+
+    /**
+     * Runs the job on the main thread repeatedly until it is cancelled.
+     *
+     * @param group the group of the job
+     * @param job the job to run
+     * @param delay the ticks to wait before running the job for the first time
+     * @param period the ticks to wait between runs
+     * @return the handle of the job
+     */
+    public ScheduledJob runSyncRepeating(JobGroup group, Runnable job, long delay, long period) {
+        MeteredJob meteredJob = new MeteredJob(group, job, delay, period, true);
+        return wrap(bukkitService.runTaskTimer(meteredJob, delay, period));
+    }
+
+    /**
+     * Runs the job on a worker thread as soon as one is available.
+     * <p>
+     * <b>Asynchronous jobs should never access any API in Bukkit.</b>
+     *
+     * @param group the group of the job
+     * @param job the job to run
+     * @return the handle of the job
+     */
+    public ScheduledJob runAsync(JobGroup group, Runnable job) {
+        return runAsyncLater(group, job, 0);
+    }
+
+    /**
+     * Runs the job on a worker thread unless a job with the same key is still waiting to be started,
+     * in which case the pending job is trusted to do the work of both. A job with the same key may be
+     * scheduled again as soon as the pending one has started.
+     * <p>
+     * <b>Asynchronous jobs should never access any API in Bukkit.</b>
+     *
+     * @param group the group of the job
+     * @param key the key identifying identical jobs
+     * @param job the job to run
+     * @return true if the job was scheduled, false if it was coalesced with a pending job
+     */
+    public boolean runAsyncCoalesced(JobGroup group, final String key, final Runnable job) {
+        if (!pendingKeys.add(key)) {
+            statistics.get(group).recordCoalesced();
+            return false;
+        }
+        Runnable releasingJob = new Runnable() {
+            @Override
+            public void run() {
+                pendingKeys.remove(key);
+                job.run();
+            }
+        };
+        if (submit(new MeteredJob(group, releasingJob, 0, 0, false), 0, 0) == null) {
+            pendingKeys.remove(key);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Runs the job on a worker thread after the given delay.
+     * <p>
+     * <b>Asynchronous jobs should never access any API in Bukkit.</b>
+     *
+     * @param group the group of the job
+     * @param job the job to run
+     * @param delay the ticks to wait before running the job
+     * @return the handle of the job
+     */
+    public ScheduledJob runAsyncLater(JobGroup group, Runnable job, long delay) {
+        return wrap(submit(new MeteredJob(group, job, delay, 0, false), delay, 0));
+    }
+
+    /**
+     * Runs the job on a worker thread repeatedly until it is cancelled. The period is counted from the end
+     * of one run to the start of the next, so runs never overlap and runs missed because the job was slow
+     * are not caught up on.
+     * <p>
+     * <b>Asynchronous jobs should never access any API in Bukkit.</b>
+     *
+     * @param group the group of the job
+     * @param job the job to run
+     * @param delay the ticks to wait before running the job for the first time
+     * @param period the ticks to wait between runs
+     * @return the handle of the job
+     */
+    public ScheduledJob runAsyncRepeating(JobGroup group, Runnable job, long delay, long period) {
+        return wrap(submit(new MeteredJob(group, job, delay, period, false), delay, period));
+    }
+
+    /**
+     * Runs a long job, such as a backup, on a thread of its own so that it does not keep one of the
+     * workers from running the short jobs for its whole run. The job is recorded in the statistics of
+     * its group and is awaited by {@link #awaitTermination} like the jobs run by the workers.
+     * <p>
+     * <b>Asynchronous jobs should never access any API in Bukkit.</b>
+     *
+     * @param group the group of the job
+     * @param name the name of the thread, without the "AuthMe-" prefix
+     * @param job the job to run
+     * @return true if the job was started, false if the scheduler has been shut down
+     */
+    public boolean runAsyncDedicated(JobGroup group, String name, Runnable job) {
+        final MeteredJob meteredJob = new MeteredJob(group, job, 0, 0, false);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    meteredJob.run();
+                } finally {
+                    dedicatedThreads.remove(Thread.currentThread());
+                }
+            }
+        }, "AuthMe-" + name);
+        thread.setDaemon(true);
+        synchronized (dedicatedThreads) {
+            if (workers.isShutdown()) {
+                ConsoleLogger.showError("Could not start job of group '" + group.getDisplayName()
+                    + "': the scheduler has been shut down");
+                return false;
+            }
+            dedicatedThreads.add(thread);
+        }
+        thread.start();
+        return true;
+    }
+
+    /**
+     * Returns the statistics of the given job group.
+     *
+     * @param group the job group
+     * @return the statistics of the group
+     */
+    public JobStatistics getStatistics(JobGroup group) {
+        return statistics.get(group);
+    }
+
+    /**
+     * Returns a summary line for each job group which has run at least once.
+     *
+     * @return the statistics of the active job groups
+     */
+    public List<String> getStatisticsSummary() {
+        List<String> summary = new ArrayList<>();
+        for (Map.Entry<JobGroup, JobStatistics> entry : statistics.entrySet()) {
+            JobStatistics groupStatistics = entry.getValue();
+            if (groupStatistics.getRuns() > 0 || groupStatistics.getCoalesced() > 0) {
+                summary.add("Jobs '" + entry.getKey().getDisplayName() + "': " + groupStatistics);
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Writes the statistics of all job groups which have run at least once to the log.
+     */
+    public void logStatistics() {
+        for (String line : getStatisticsSummary()) {
+            ConsoleLogger.info(line);
+        }
+    }
+
+    /**
+     * Stops accepting asynchronous jobs. Jobs which are due are still run, whereas delayed and repeating
+     * jobs are dropped.
+     */
+    public void shutdown() {
+        synchronized (dedicatedThreads) {
+            workers.shutdown();
+        }
+        for (Runnable queuedJob : workers.getQueue()) {
+            ScheduledFuture<?> future = (ScheduledFuture<?>) queuedJob;
+            if (future.getDelay(TimeUnit.MILLISECONDS) > 0) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Waits for the running asynchronous jobs to finish after {@link #shutdown()} has been called.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return true if all jobs have finished, false if the timeout elapsed before
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        try {
+            if (!workers.awaitTermination(timeout, unit)) {
+                return false;
+            }
+            for (Thread thread : dedicatedThreads) {
+                TimeUnit.NANOSECONDS.timedJoin(thread, Math.max(1, deadline - System.nanoTime()));
+                if (thread.isAlive()) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public void loadSettings(NewSetting settings) {
+        int threads = getWorkerThreads(settings);
+        if (threads != workers.getCorePoolSize()) {
+            workers.setCorePoolSize(threads);
+        }
+    }
+
+    private Future<?> submit(MeteredJob job, long delay, long period) {
+        try {
+            if (period > 0) {
+                return workers.scheduleWithFixedDelay(job, delay * MILLIS_PER_TICK, period * MILLIS_PER_TICK,
+                    TimeUnit.MILLISECONDS);
+            }
+            return workers.schedule(job, delay * MILLIS_PER_TICK, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            ConsoleLogger.showError("Could not schedule job of group '" + job.group.getDisplayName()
+                + "': the scheduler has been shut down");
+            return null;
+        }
+    }
+
+    private static int getWorkerThreads(NewSetting settings) {
+        return Math.max(1, settings.getProperty(PluginSettings.ASYNC_WORKER_THREADS));
+    }
+
+    private static ScheduledJob wrap(final BukkitTask task) {
+        return new ScheduledJob() {
+            @Override
+            public void cancel() {
+                if (task != null) {
+                    task.cancel();
+                }
+            }
+        };
+    }
+
+    private static ScheduledJob wrap(final Future<?> future) {
+        return new ScheduledJob() {
+            @Override
+            public void cancel() {
+                if (future != null) {
+                    future.cancel(false);
+                }
+            }
+        };
+    }
+
+    /**
+     * Wraps a job to record its statistics and to log any exception it throws.
+     */
+    private final class MeteredJob implements Runnable {
+
+        private final JobGroup group;
+        private final Runnable job;
+        private final long periodNanos;
+        private final boolean isFixedRate;
+        private long dueNanos;
+
+        /**
+         * Constructor.
+         *
+         * @param group the group of the job
+         * @param job the job to run
+         * @param delay the ticks after which the job is first due
+         * @param period the ticks between runs, or 0 if the job does not repeat
+         * @param isFixedRate true if the period is counted from the start of the previous run,
+         *                    false if it is counted from its end
+         */
+        MeteredJob(JobGroup group, Runnable job, long delay, long period, boolean isFixedRate) {
+            this.group = group;
+            this.job = job;
+            this.periodNanos = period * NANOS_PER_TICK;
+            this.isFixedRate = isFixedRate;
+            this.dueNanos = System.nanoTime() + delay * NANOS_PER_TICK;
+        }
+
+        @Override
+        public void run() {
+            final long start = System.nanoTime();
+            boolean failed = false;
+            try {
+                job.run();
+            } catch (RuntimeException e) {
+                failed = true;
+                ConsoleLogger.logException("Job of group '" + group.getDisplayName() + "' failed:", e);
+            } finally {
+                final long end = System.nanoTime();
+                statistics.get(group).recordRun(Math.max(0, start - dueNanos), end - start, failed);
+                dueNanos = (isFixedRate ? dueNanos : end) + periodNanos;
+            }
+        }
+    }
+}
@@ -6,7 +6,7 @@ import org.bukkit.entity.Player;
 /**
  * Kicks a player if he hasn't logged in (scheduled to run after a configured delay).
  */
-public class TimeoutTask implements Runnable {
+public class TimeoutTask extends LimboTask {
 
     private final Player player;
     private final String message;
@@ -20,15 +20,17 @@ public class TimeoutTask implements Runnable {
      * @param playerCache player cache instance
      */
     public TimeoutTask(Player player, String message, PlayerCache playerCache) {
+        super(0);
         this.message = message;
         this.player = player;
         this.playerCache = playerCache;
     }
 
     @Override
-    public void run() {
-        if (!playerCache.isAuthenticated(player.getName())) {
+    protected boolean run() {
+        if (player.isOnline() && !playerCache.isAuthenticated(player.getName())) {
             player.kickPlayer(message);
         }
+        return false;
     }
 }
@@ -0,0 +1,75 @@
+package fr.xephi.authme.task;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Hashed timing wheel for {@link LimboTask} objects. The wheel is advanced by one tick at a time;
+ * tasks whose deadline is further away than the size of the wheel simply stay in their slot until
+ * the wheel has turned enough times.
+ */
+class TimingWheel {
+
+    private final List<List<LimboTask>> slots;
+    private long currentTick;
+    private int size;
+
+    /**
+     * Constructor.
+     *
+     * @param slotCount the number of slots of the wheel
+     */
+    TimingWheel(int slotCount) {
+        slots = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; ++i) {
+            slots.add(new ArrayList<LimboTask>());
+        }
+    }
+
+    /**
+     * Schedules the task to be returned after the given number of ticks. A delay of 0 is treated
+     * as a delay of 1, i.e. the task is returned on the next call to {@link #advance()}.
+     *
+     * @param task the task to schedule
+     * @param delay the number of ticks after which the task is due
+     */
+    synchronized void schedule(LimboTask task, int delay) {
+        long deadline = currentTick + Math.max(1, delay);
+        task.setDeadline(deadline);
+        slots.get((int) (deadline % slots.size())).add(task);
+        ++size;
+    }
+
+    /**
+     * Advances the wheel by one tick and returns the tasks which are due. Cancelled tasks
+     * encountered in the process are dropped.
+     *
+     * @return the tasks to run
+     */
+    synchronized List<LimboTask> advance() {
+        ++currentTick;
+        List<LimboTask> slot = slots.get((int) (currentTick % slots.size()));
+        List<LimboTask> dueTasks = new ArrayList<>();
+        Iterator<LimboTask> iterator = slot.iterator();
+        while (iterator.hasNext()) {
+            LimboTask task = iterator.next();
+            if (task.isCancelled()) {
+                iterator.remove();
+                --size;
+            } else if (task.getDeadline() <= currentTick) {
+                iterator.remove();
+                --size;
+                dueTasks.add(task);
+            }
+        }
+        return dueTasks;
+    }
+
+    /**
+     * @return true if no tasks are scheduled, false otherwise
+     */
+    synchronized boolean isEmpty() {
+        return size == 0;
+    }
+}
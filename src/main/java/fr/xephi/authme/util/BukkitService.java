@@ -91,6 +91,21 @@ public class BukkitService {
         return Bukkit.getScheduler().runTaskLater(authMe, task, delay);
     }
 
+    /**
+     * Returns a task that will repeatedly run until cancelled, starting after the
+     * specified number of server ticks.
+     *
+     * @param task the task to be run
+     * @param delay the ticks to wait before running the task
+     * @param period the ticks to wait between runs
+     * @return a BukkitTask that contains the id number
+     * @throws IllegalArgumentException if plugin is null
+     * @throws IllegalArgumentException if task is null
+     */
+    public BukkitTask runTaskTimer(Runnable task, long delay, long period) {
+        return Bukkit.getScheduler().runTaskTimer(authMe, task, delay, period);
+    }
+
     /**
      * <b>Asynchronous tasks should never access any API in Bukkit. Great care
      * should be taken to assure the thread-safety of asynchronous tasks.</b>
@@ -126,6 +141,15 @@ public class BukkitService {
         return authMe.getServer().getPlayerExact(name);
     }
 
+    /**
+     * Gets every player that has ever played on this server.
+     *
+     * @return an array containing all previous players
+     */
+    public OfflinePlayer[] getOfflinePlayers() {
+        return Bukkit.getOfflinePlayers();
+    }
+
     /**
      * Gets a set containing all banned players.
      *
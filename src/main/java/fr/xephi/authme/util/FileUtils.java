@@ -49,4 +49,25 @@ public class FileUtils {
         }
         return false;
     }
+
+    /**
+     * Delete a given directory and all its content.
+     *
+     * @param directory The directory to purge
+     */
+    public static void purgeDirectory(File directory) {
+        if (!directory.isDirectory()) {
+            return;
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File target : files) {
+            if (target.isDirectory()) {
+                purgeDirectory(target);
+            }
+            target.delete();
+        }
+    }
 }
@@ -0,0 +1,186 @@
+package fr.xephi.authme.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.ByteStreams;
+import com.maxmind.geoip.Country;
+import com.maxmind.geoip.LookupService;
+import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.initialization.DataFolder;
+import fr.xephi.authme.task.JobGroup;
+import fr.xephi.authme.task.TaskScheduler;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Looks up the country of IP addresses in the GeoLite database of MaxMind.
+ * <p>
+ * The database is loaded into memory on a worker thread and published through a volatile field,
+ * so lookups never wait for the database to be downloaded or loaded. The results of recent lookups
+ * are cached, which spares the synchronized lookup of the MaxMind library for players who join
+ * repeatedly. An outdated database is downloaded again in the background and swapped in once loaded.
+ */
+public class GeoIpService {
+
+    private static final String LICENSE =
+        "[LICENSE] This product uses data from the GeoLite API created by MaxMind, available at http://www.maxmind.com";
+    private static final String GEOIP_URL =
+        "http://geolite.maxmind.com/download/geoip/database/GeoLiteCountry/GeoIP.dat.gz";
+    private static final String DATABASE_FILE = "GeoIP.dat";
+    private static final long MAX_DATABASE_AGE = TimeUnit.DAYS.toMillis(30);
+    /** Interval at which the age of the database is checked, in ticks (one day). */
+    private static final long UPDATE_CHECK_PERIOD = 20L * 60 * 60 * 24;
+    /** Number of IP addresses whose country is kept in memory. */
+    private static final int CACHE_SIZE = 4096;
+
+    private final File databaseFile;
+    private final TaskScheduler taskScheduler;
+    private volatile GeoIpDatabase database;
+
+    @Inject
+    GeoIpService(@DataFolder File dataFolder, TaskScheduler taskScheduler) {
+        this.databaseFile = new File(dataFolder, DATABASE_FILE);
+        this.taskScheduler = taskScheduler;
+    }
+
+    @PostConstruct
+    void scheduleUpdates() {
+        taskScheduler.runAsyncRepeating(JobGroup.GEOIP, new Runnable() {
+            @Override
+            public void run() {
+                updateDatabase();
+            }
+        }, 0, UPDATE_CHECK_PERIOD);
+    }
+
+    /**
+     * Get the country code of the given IP address.
+     *
+     * @param ip textual IP address to lookup.
+     *
+     * @return two-character ISO 3166-1 alpha code for the country, or "--" if unknown.
+     */
+    public String getCountryCode(String ip) {
+        Country country = lookup(ip);
+        return country == null ? "--" : country.getCode();
+    }
+
+    /**
+     * Get the country name of the given IP address.
+     *
+     * @param ip textual IP address to lookup.
+     *
+     * @return The name of the country, or "N/A" if unknown.
+     */
+    public String getCountryName(String ip) {
+        Country country = lookup(ip);
+        return country == null ? "N/A" : country.getName();
+    }
+
+    private Country lookup(String ip) {
+        GeoIpDatabase currentDatabase = database;
+        if (currentDatabase == null || "127.0.0.1".equals(ip)) {
+            return null;
+        }
+        return currentDatabase.getCountry(ip);
+    }
+
+    /**
+     * Loads the database file, downloading it first if it is absent or outdated. Only ever run
+     * by the repeating job, so that two updates never overlap.
+     */
+    @VisibleForTesting
+    void updateDatabase() {
+        GeoIpDatabase currentDatabase = database;
+        if (isOutdated()) {
+            try {
+                download();
+            } catch (IOException e) {
+                ConsoleLogger.logException("Could not download GeoLiteAPI database", e);
+                // Keep the current database, or fall back to the outdated file on startup
+                if (currentDatabase != null || !databaseFile.exists()) {
+                    return;
+                }
+            }
+        } else if (currentDatabase != null) {
+            return;
+        }
+
+        try {
+            database = new GeoIpDatabase(new LookupService(databaseFile, LookupService.GEOIP_MEMORY_CACHE));
+        } catch (IOException e) {
+            ConsoleLogger.logException("Failed to load GeoLiteAPI database", e);
+            return;
+        }
+        if (currentDatabase == null) {
+            ConsoleLogger.info(LICENSE);
+        } else {
+            // The database is held in memory, so lookups still running on the old instance are unaffected
+            currentDatabase.close();
+            ConsoleLogger.info("Loaded the updated GeoLiteAPI database");
+        }
+    }
+
+    private boolean isOutdated() {
+        return !databaseFile.exists() || System.currentTimeMillis() - databaseFile.lastModified() > MAX_DATABASE_AGE;
+    }
+
+    private void download() throws IOException {
+        // Download to a temporary file so that a failed download never replaces a working database
+        File partFile = new File(databaseFile.getPath() + ".part");
+        URLConnection conn = new URL(GEOIP_URL).openConnection();
+        conn.setConnectTimeout(10000);
+        conn.setReadTimeout(10000);
+        conn.connect();
+        try (InputStream input = conn.getURL().toString().endsWith(".gz")
+                ? new GZIPInputStream(conn.getInputStream()) : conn.getInputStream();
+             OutputStream output = new FileOutputStream(partFile)) {
+            ByteStreams.copy(input, output);
+        } catch (IOException e) {
+            Files.deleteIfExists(partFile.toPath());
+            throw e;
+        }
+        Files.move(partFile.toPath(), databaseFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * A loaded database along with the results of its recent lookups.
+     */
+    private static final class GeoIpDatabase {
+
+        private final LookupService lookupService;
+        private final Cache<String, Country> countries = CacheBuilder.newBuilder()
+            .maximumSize(CACHE_SIZE)
+            .build();
+
+        GeoIpDatabase(LookupService lookupService) {
+            this.lookupService = lookupService;
+        }
+
+        Country getCountry(String ip) {
+            Country country = countries.getIfPresent(ip);
+            if (country == null) {
+                country = lookupService.getCountry(ip);
+                countries.put(ip, country);
+            }
+            return country;
+        }
+
+        void close() {
+            lookupService.close();
+        }
+    }
+}
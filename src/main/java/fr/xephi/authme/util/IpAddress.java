@@ -0,0 +1,159 @@
+package fr.xephi.authme.util;
+
+import com.google.common.net.InetAddresses;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * An IPv4 or IPv6 address packed into two longs, so that addresses can be compared by their
+ * leading bits without any string handling. An IPv4 address occupies the upper 32 bits of the
+ * first long; IPv4-mapped IPv6 addresses are treated as IPv4 addresses.
+ */
+public final class IpAddress {
+
+    public static final int IPV4_BITS = 32;
+    public static final int IPV6_BITS = 128;
+
+    private final long high;
+    private final long low;
+    private final int bitLength;
+
+    private IpAddress(long high, long low, int bitLength) {
+        this.high = high;
+        this.low = low;
+        this.bitLength = bitLength;
+    }
+
+    /**
+     * Parses the given textual IP address. Host names are never resolved.
+     *
+     * @param text the IP address to parse
+     * @return the address, or null if the text is not an IP address
+     */
+    public static IpAddress parse(String text) {
+        if (text == null || !InetAddresses.isInetAddress(text)) {
+            return null;
+        }
+        return of(InetAddresses.forString(text));
+    }
+
+    /**
+     * Creates the packed representation of the given address.
+     *
+     * @param address the address
+     * @return the packed address
+     */
+    public static IpAddress of(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        if (address instanceof Inet4Address) {
+            return new IpAddress(toLong(bytes, 0, 4) << 32, 0, IPV4_BITS);
+        }
+        return new IpAddress(toLong(bytes, 0, 8), toLong(bytes, 8, 8), IPV6_BITS);
+    }
+
+    /**
+     * Returns the key of the network the given IP address belongs to, e.g. "11.22.33.0/24". Addresses
+     * of the same network share the same key. With the full prefix length the key is the address itself.
+     *
+     * @param ip the textual IP address
+     * @param ipv4Prefix the number of leading bits which identify an IPv4 network
+     * @param ipv6Prefix the number of leading bits which identify an IPv6 network
+     * @return the network key, or the lowercase text if it is not an IP address
+     */
+    public static String toNetworkKey(String ip, int ipv4Prefix, int ipv6Prefix) {
+        IpAddress address = parse(ip);
+        if (address == null) {
+            return ip.toLowerCase();
+        }
+        int prefixLength = address.isIpv4() ? ipv4Prefix : ipv6Prefix;
+        if (prefixLength >= address.bitLength) {
+            return address.toString();
+        }
+        return address.mask(prefixLength) + "/" + Math.max(prefixLength, 0);
+    }
+
+    /**
+     * @return true if this is an IPv4 address, false for IPv6
+     */
+    public boolean isIpv4() {
+        return bitLength == IPV4_BITS;
+    }
+
+    /**
+     * @return the number of bits of the address: 32 for IPv4, 128 for IPv6
+     */
+    public int getBitLength() {
+        return bitLength;
+    }
+
+    /**
+     * Returns the bit at the given index, counting from the most significant bit.
+     *
+     * @param index the index of the bit, smaller than the bit length
+     * @return the bit, 0 or 1
+     */
+    int getBit(int index) {
+        return index < 64
+            ? (int) (high >>> (63 - index)) & 1
+            : (int) (low >>> (127 - index)) & 1;
+    }
+
+    /**
+     * Returns the address with all bits after the given prefix length set to zero.
+     *
+     * @param prefixLength the number of leading bits to keep
+     * @return the network address
+     */
+    public IpAddress mask(int prefixLength) {
+        if (prefixLength >= bitLength) {
+            return this;
+        } else if (prefixLength <= 0) {
+            return new IpAddress(0, 0, bitLength);
+        } else if (prefixLength < 64) {
+            return new IpAddress(high & (-1L << (64 - prefixLength)), 0, bitLength);
+        }
+        long lowMask = prefixLength == 64 ? 0 : -1L << (128 - prefixLength);
+        return new IpAddress(high, low & lowMask, bitLength);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        } else if (!(other instanceof IpAddress)) {
+            return false;
+        }
+        IpAddress address = (IpAddress) other;
+        return high == address.high && low == address.low && bitLength == address.bitLength;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * (int) (high ^ (high >>> 32)) + (int) (low ^ (low >>> 32))) + bitLength;
+    }
+
+    @Override
+    public String toString() {
+        byte[] bytes = new byte[bitLength / 8];
+        for (int i = 0; i < bytes.length; ++i) {
+            long value = i < 8 ? high : low;
+            bytes[i] = (byte) (value >>> (56 - 8 * (i % 8)));
+        }
+        try {
+            return InetAddresses.toAddrString(InetAddress.getByAddress(bytes));
+        } catch (UnknownHostException e) {
+            // Only thrown for an invalid number of bytes
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long toLong(byte[] bytes, int offset, int length) {
+        long value = 0;
+        for (int i = offset; i < offset + length; ++i) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,120 @@
+package fr.xephi.authme.util;
+
+/**
+ * Set of IP address ranges in CIDR notation, such as "10.0.0.0/8" or "2001:db8::/32". The ranges
+ * are stored in two binary prefix tries over the bits of the addresses, one for IPv4 and one for
+ * IPv6, so that looking up an address takes at most one step per bit of the address.
+ * <p>
+ * The set is not thread-safe: it should be filled completely before it is shared with other threads.
+ */
+public final class IpRangeSet {
+
+    private final Node ipv4Root = new Node();
+    private final Node ipv6Root = new Node();
+    private boolean isEmpty = true;
+
+    /**
+     * Adds the given range. A single address without prefix length is added as a range of its own.
+     *
+     * @param range the range to add, e.g. "11.22.33.0/24"
+     * @return true if the range was added, false if the text is not a valid range
+     */
+    public boolean add(String range) {
+        int slash = range.indexOf('/');
+        IpAddress address = IpAddress.parse(slash < 0 ? range : range.substring(0, slash));
+        if (address == null) {
+            return false;
+        }
+        int prefixLength = address.getBitLength();
+        if (slash >= 0) {
+            try {
+                prefixLength = Integer.parseInt(range.substring(slash + 1));
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            if (prefixLength < 0 || prefixLength > address.getBitLength()) {
+                return false;
+            }
+        }
+        add(address, prefixLength);
+        return true;
+    }
+
+    /**
+     * Adds the range of all addresses which share the given number of leading bits with the address.
+     *
+     * @param address the address of the range
+     * @param prefixLength the number of leading bits of the range
+     */
+    public void add(IpAddress address, int prefixLength) {
+        Node node = getRoot(address);
+        for (int i = 0; i < prefixLength && !node.isRangeEnd; ++i) {
+            node = node.getOrCreateChild(address.getBit(i));
+        }
+        node.isRangeEnd = true;
+        // Ranges which are part of this range are redundant
+        node.zero = null;
+        node.one = null;
+        isEmpty = false;
+    }
+
+    /**
+     * Returns whether the given address is part of any range of the set.
+     *
+     * @param ip the textual IP address
+     * @return true if the address is in the set, false if it is not or if the text is no IP address
+     */
+    public boolean contains(String ip) {
+        IpAddress address = IpAddress.parse(ip);
+        return address != null && contains(address);
+    }
+
+    /**
+     * Returns whether the given address is part of any range of the set.
+     *
+     * @param address the address
+     * @return true if the address is in the set, false otherwise
+     */
+    public boolean contains(IpAddress address) {
+        Node node = getRoot(address);
+        for (int i = 0; node != null; ++i) {
+            if (node.isRangeEnd) {
+                return true;
+            } else if (i == address.getBitLength()) {
+                return false;
+            }
+            node = address.getBit(i) == 0 ? node.zero : node.one;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if no range has been added, false otherwise
+     */
+    public boolean isEmpty() {
+        return isEmpty;
+    }
+
+    private Node getRoot(IpAddress address) {
+        return address.isIpv4() ? ipv4Root : ipv6Root;
+    }
+
+    private static final class Node {
+        private Node zero;
+        private Node one;
+        private boolean isRangeEnd;
+
+        Node getOrCreateChild(int bit) {
+            if (bit == 0) {
+                if (zero == null) {
+                    zero = new Node();
+                }
+                return zero;
+            }
+            if (one == null) {
+                one = new Node();
+            }
+            return one;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package fr.xephi.authme.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free counter of events over a sliding time window. The window is divided into buckets
+ * of one second; each bucket stores the second it belongs to together with its count in a
+ * single long so that it can be updated atomically.
+ */
+public class SlidingWindowCounter {
+
+    private static final int COUNT_BITS = 24;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final AtomicLongArray buckets;
+    private final int windowSeconds;
+
+    /**
+     * Constructor.
+     *
+     * @param windowSeconds the length of the window in seconds
+     */
+    public SlidingWindowCounter(int windowSeconds) {
+        if (windowSeconds < 1) {
+            throw new IllegalArgumentException("Window must be at least one second, got " + windowSeconds);
+        }
+        this.windowSeconds = windowSeconds;
+        this.buckets = new AtomicLongArray(windowSeconds);
+    }
+
+    /**
+     * Records an event at the given time.
+     *
+     * @param timeMillis the timestamp of the event in milliseconds
+     * @return the number of events in the window ending at the given time, including this one
+     */
+    public int increment(long timeMillis) {
+        final long second = timeMillis / 1000;
+        final int index = (int) (second % windowSeconds);
+        long bucket;
+        long updated;
+        do {
+            bucket = buckets.get(index);
+            long count = getSecond(bucket) == second ? getCount(bucket) : 0;
+            updated = (second << COUNT_BITS) | Math.min(count + 1, COUNT_MASK);
+        } while (!buckets.compareAndSet(index, bucket, updated));
+        return count(timeMillis);
+    }
+
+    /**
+     * Returns the number of events in the window ending at the given time.
+     *
+     * @param timeMillis the end of the window in milliseconds
+     * @return the number of events in the window
+     */
+    public int count(long timeMillis) {
+        final long second = timeMillis / 1000;
+        int total = 0;
+        for (int i = 0; i < windowSeconds; ++i) {
+            long bucket = buckets.get(i);
+            long age = second - getSecond(bucket);
+            if (age >= 0 && age < windowSeconds) {
+                total += (int) getCount(bucket);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Removes all recorded events.
+     */
+    public void reset() {
+        for (int i = 0; i < windowSeconds; ++i) {
+            buckets.set(i, 0L);
+        }
+    }
+
+    private static long getSecond(long bucket) {
+        return bucket >>> COUNT_BITS;
+    }
+
+    private static long getCount(long bucket) {
+        return bucket & COUNT_MASK;
+    }
+}
@@ -11,19 +11,34 @@ import fr.xephi.authme.initialization.Reloadable;
 import fr.xephi.authme.settings.NewSetting;
 import fr.xephi.authme.settings.SpawnLoader;
 import fr.xephi.authme.settings.properties.RestrictionSettings;
+import fr.xephi.authme.task.JobGroup;
+import fr.xephi.authme.task.ScheduledJob;
+import fr.xephi.authme.task.TaskScheduler;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.entity.Player;
 
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static fr.xephi.authme.settings.properties.RestrictionSettings.TELEPORT_UNAUTHED_TO_SPAWN;
 
 /**
  * Handles teleportation (placement of player to spawn).
+ * <p>
+ * Teleports are queued and performed by a job on the main thread, which teleports at most
+ * {@link RestrictionSettings#MAX_TELEPORTS_PER_TICK} players and loads at most as many destination
+ * chunks per tick. Chunks of upcoming destinations are loaded ahead with the budget left over, so that
+ * a burst of joining players is spread over several ticks instead of stalling a single one.
  */
 public class TeleportationService implements Reloadable {
 
@@ -39,7 +54,15 @@ public class TeleportationService implements Reloadable {
     @Inject
     private PlayerCache playerCache;
 
+    @Inject
+    private TaskScheduler taskScheduler;
+
+    private final Deque<PendingTeleport> queue = new ArrayDeque<>();
+    private final Map<Player, PendingTeleport> pendingByPlayer = new HashMap<>();
+    private ScheduledJob teleportJob;
+
     private Set<String> spawnOnLoginWorlds;
+    private int maxTeleportsPerTick;
 
     TeleportationService() { }
 
@@ -49,6 +72,7 @@ public class TeleportationService implements Reloadable {
     public void reload() {
         // Use a Set for better performance with #contains()
         spawnOnLoginWorlds = new HashSet<>(settings.getProperty(RestrictionSettings.FORCE_SPAWN_ON_WORLDS));
+        maxTeleportsPerTick = Math.max(1, settings.getProperty(RestrictionSettings.MAX_TELEPORTS_PER_TICK));
     }
 
     public void teleportOnJoin(final Player player) {
@@ -118,25 +142,127 @@ public class TeleportationService implements Reloadable {
     }
 
     /**
-     * Emits the teleportation event and performs teleportation according to it (potentially modified
-     * by external listeners). Note that not teleportation is performed if the event's location is empty.
+     * Queues the teleportation of the player. If a teleportation of the same player is still pending,
+     * it is replaced by the new one, which keeps the position of the former in the queue.
      *
      * @param player the player to teleport
      * @param event the event to emit and according to which to teleport
      */
     private void performTeleportation(final Player player, final AbstractTeleportEvent event) {
-        bukkitService.scheduleSyncDelayedTask(new Runnable() {
-            @Override
-            public void run() {
-                bukkitService.callEvent(event);
-                if (player.isOnline() && isEventValid(event)) {
-                    player.teleport(event.getTo());
+        synchronized (queue) {
+            PendingTeleport pending = pendingByPlayer.get(player);
+            if (pending == null) {
+                pending = new PendingTeleport(player, event);
+                pendingByPlayer.put(player, pending);
+                queue.addLast(pending);
+            } else {
+                pending.event = event;
+                pending.isEventCalled = false;
+            }
+            if (teleportJob == null) {
+                teleportJob = taskScheduler.runSyncRepeating(JobGroup.TELEPORT, new Runnable() {
+                    @Override
+                    public void run() {
+                        processQueue();
+                    }
+                }, 0, 1);
+            }
+        }
+    }
+
+    /**
+     * Performs the teleports which are due in this tick and preloads the chunks of the next ones.
+     * Must be run on the main thread.
+     */
+    private void processQueue() {
+        int chunkLoads = 0;
+        List<PendingTeleport> deferred = new ArrayList<>();
+        for (PendingTeleport pending : pollTeleports(maxTeleportsPerTick)) {
+            // The event is emitted right before the teleport so that listeners see the current state
+            if (!pending.isEventCalled) {
+                bukkitService.callEvent(pending.event);
+                pending.isEventCalled = true;
+            }
+            if (!pending.player.isOnline() || !isEventValid(pending.event)) {
+                continue;
+            }
+            Location destination = pending.event.getTo();
+            if (!isChunkLoaded(destination)) {
+                if (chunkLoads >= maxTeleportsPerTick) {
+                    deferred.add(pending);
+                    continue;
                 }
+                loadChunk(destination);
+                ++chunkLoads;
             }
-        });
+            pending.player.teleport(destination);
+        }
+
+        synchronized (queue) {
+            for (int i = deferred.size() - 1; i >= 0; --i) {
+                PendingTeleport pending = deferred.get(i);
+                if (!pendingByPlayer.containsKey(pending.player)) {
+                    pendingByPlayer.put(pending.player, pending);
+                    queue.addFirst(pending);
+                }
+            }
+            if (queue.isEmpty()) {
+                teleportJob.cancel();
+                teleportJob = null;
+                return;
+            }
+        }
+        preloadChunks(maxTeleportsPerTick - chunkLoads);
+    }
+
+    private List<PendingTeleport> pollTeleports(int max) {
+        List<PendingTeleport> teleports = new ArrayList<>(max);
+        synchronized (queue) {
+            while (teleports.size() < max && !queue.isEmpty()) {
+                PendingTeleport pending = queue.pollFirst();
+                pendingByPlayer.remove(pending.player);
+                teleports.add(pending);
+            }
+        }
+        return teleports;
+    }
+
+    private void preloadChunks(int maxChunkLoads) {
+        List<Location> destinations = new ArrayList<>(maxChunkLoads);
+        synchronized (queue) {
+            Iterator<PendingTeleport> it = queue.iterator();
+            while (destinations.size() < maxChunkLoads && it.hasNext()) {
+                Location destination = it.next().event.getTo();
+                if (destination != null && destination.getWorld() != null && !isChunkLoaded(destination)) {
+                    destinations.add(destination);
+                }
+            }
+        }
+        for (Location destination : destinations) {
+            loadChunk(destination);
+        }
+    }
+
+    private static boolean isChunkLoaded(Location location) {
+        return location.getWorld().isChunkLoaded(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+    }
+
+    private static void loadChunk(Location location) {
+        location.getWorld().loadChunk(location.getBlockX() >> 4, location.getBlockZ() >> 4);
     }
 
     private static boolean isEventValid(AbstractTeleportEvent event) {
         return !event.isCancelled() && event.getTo() != null && event.getTo().getWorld() != null;
     }
+
+    private static final class PendingTeleport {
+        private final Player player;
+        private AbstractTeleportEvent event;
+        private boolean isEventCalled;
+
+        PendingTeleport(Player player, AbstractTeleportEvent event) {
+            this.player = player;
+            this.event = event;
+        }
+    }
 }
@@ -1,12 +1,12 @@
 package fr.xephi.authme.util;
 
+import fr.xephi.authme.ConsoleLogger;
 import fr.xephi.authme.datasource.DataSource;
 import fr.xephi.authme.initialization.Reloadable;
 import fr.xephi.authme.output.MessageKey;
 import fr.xephi.authme.permission.PermissionsManager;
 import fr.xephi.authme.permission.PlayerStatePermission;
 import fr.xephi.authme.settings.NewSetting;
-import fr.xephi.authme.settings.domain.Property;
 import fr.xephi.authme.settings.properties.EmailSettings;
 import fr.xephi.authme.settings.properties.ProtectionSettings;
 import fr.xephi.authme.settings.properties.RestrictionSettings;
@@ -14,31 +14,57 @@ import fr.xephi.authme.settings.properties.SecuritySettings;
 import org.bukkit.command.CommandSender;
 
 import javax.inject.Inject;
+import java.net.InetSocketAddress;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 /**
  * Validation service.
+ * <p>
+ * The lists of the configuration which are checked whenever a player joins or registers are
+ * compiled into hash sets on reload, so that each check is a constant-time lookup.
  */
 public class ValidationService implements Reloadable {
 
     private final NewSetting settings;
     private final DataSource dataSource;
     private final PermissionsManager permissionsManager;
+    private final GeoIpService geoIpService;
     private Pattern passwordRegex;
+    private Set<String> unsafePasswords;
+    private Set<String> unrestrictedNames;
+    private Map<String, RestrictedUser> restrictedUsers;
+    private AdmissionList emailDomains;
+    private AdmissionList countries;
 
     @Inject
-    public ValidationService(NewSetting settings, DataSource dataSource, PermissionsManager permissionsManager) {
+    public ValidationService(NewSetting settings, DataSource dataSource, PermissionsManager permissionsManager,
+                             GeoIpService geoIpService) {
         this.settings = settings;
         this.dataSource = dataSource;
         this.permissionsManager = permissionsManager;
+        this.geoIpService = geoIpService;
         reload();
     }
 
     @Override
     public void reload() {
         passwordRegex = Pattern.compile(settings.getProperty(RestrictionSettings.ALLOWED_PASSWORD_REGEX));
+        unsafePasswords = new HashSet<>(settings.getProperty(SecuritySettings.UNSAFE_PASSWORDS));
+        unrestrictedNames = new HashSet<>(settings.getProperty(RestrictionSettings.UNRESTRICTED_NAMES));
+        restrictedUsers = settings.getProperty(RestrictionSettings.ENABLE_RESTRICTED_USERS)
+            ? loadRestrictedUsers(settings.getProperty(RestrictionSettings.ALLOWED_RESTRICTED_USERS))
+            : Collections.<String, RestrictedUser>emptyMap();
+        emailDomains = new AdmissionList(
+            settings.getProperty(EmailSettings.DOMAIN_WHITELIST), settings.getProperty(EmailSettings.DOMAIN_BLACKLIST));
+        countries = new AdmissionList(settings.getProperty(ProtectionSettings.COUNTRIES_WHITELIST),
+            settings.getProperty(ProtectionSettings.COUNTRIES_BLACKLIST));
     }
 
     /**
@@ -57,7 +83,7 @@ public class ValidationService implements Reloadable {
         } else if (password.length() < settings.getProperty(SecuritySettings.MIN_PASSWORD_LENGTH)
             || password.length() > settings.getProperty(SecuritySettings.MAX_PASSWORD_LENGTH)) {
             return new ValidationResult(MessageKey.INVALID_PASSWORD_LENGTH);
-        } else if (settings.getProperty(SecuritySettings.UNSAFE_PASSWORDS).contains(passLow)) {
+        } else if (unsafePasswords.contains(passLow)) {
             return new ValidationResult(MessageKey.PASSWORD_UNSAFE_ERROR);
         }
         return new ValidationResult();
@@ -74,8 +100,7 @@ public class ValidationService implements Reloadable {
             return false;
         }
         final String emailDomain = email.split("@")[1];
-        return validateWhitelistAndBlacklist(
-            emailDomain, EmailSettings.DOMAIN_WHITELIST, EmailSettings.DOMAIN_BLACKLIST);
+        return emailDomains.admits(emailDomain);
     }
 
     /**
@@ -100,44 +125,115 @@ public class ValidationService implements Reloadable {
      */
     public boolean isCountryAdmitted(String hostAddress) {
         // Check if we have restrictions on country, if not return true and avoid the country lookup
-        if (settings.getProperty(ProtectionSettings.COUNTRIES_WHITELIST).isEmpty()
-            && settings.getProperty(ProtectionSettings.COUNTRIES_BLACKLIST).isEmpty()) {
+        if (countries.isEmpty()) {
             return true;
         }
+        return countries.admits(geoIpService.getCountryCode(hostAddress));
+    }
 
-        String countryCode = GeoLiteAPI.getCountryCode(hostAddress);
-        return validateWhitelistAndBlacklist(countryCode,
-            ProtectionSettings.COUNTRIES_WHITELIST,
-            ProtectionSettings.COUNTRIES_BLACKLIST);
+    /**
+     * Returns whether the given name is exempted from authentication (see
+     * {@link RestrictionSettings#UNRESTRICTED_NAMES}).
+     *
+     * @param name the name to verify (lowercase)
+     * @return true if the name is unrestricted, false otherwise
+     */
+    public boolean isUnrestricted(String name) {
+        return unrestrictedNames.contains(name);
     }
 
     /**
-     * Verifies whether the given value is allowed according to the given whitelist and blacklist settings.
-     * Whitelist has precedence over blacklist: if a whitelist is set, the value is rejected if not present
-     * in the whitelist.
+     * Returns whether the name is restricted based on the restriction settings. The host name of
+     * the address is only resolved if the name has restrictions which its IP address does not meet.
      *
-     * @param value the value to verify
-     * @param whitelist the whitelist property
-     * @param blacklist the blacklist property
-     * @return true if the value is admitted by the lists, false otherwise
+     * @param name the name to check (lowercase)
+     * @param ip the IP address of the player
+     * @param address the address of the player, to look up the host name with
+     * @return true if the name is restricted (IP/domain is not allowed for the given name),
+     *         false if the restrictions are met or if the name has no restrictions to it
      */
-    private boolean validateWhitelistAndBlacklist(String value, Property<List<String>> whitelist,
-                                                  Property<List<String>> blacklist) {
-        List<String> whitelistValue = settings.getProperty(whitelist);
-        if (!CollectionUtils.isEmpty(whitelistValue)) {
-            return containsIgnoreCase(whitelistValue, value);
+    public boolean isNameRestricted(String name, String ip, InetSocketAddress address) {
+        RestrictedUser restrictedUser = restrictedUsers.get(name);
+        if (restrictedUser == null || ip != null && restrictedUser.ipRanges.contains(ip)) {
+            return false;
+        } else if (restrictedUser.hostNames.isEmpty()) {
+            return true;
         }
-        List<String> blacklistValue = settings.getProperty(blacklist);
-        return CollectionUtils.isEmpty(blacklistValue) || !containsIgnoreCase(blacklistValue, value);
+        String domain = address == null ? null : address.getHostName();
+        return domain == null || !restrictedUser.hostNames.contains(domain.toLowerCase());
+    }
+
+    private static Map<String, RestrictedUser> loadRestrictedUsers(List<String> entries) {
+        Map<String, RestrictedUser> restrictedUsers = new HashMap<>();
+        for (String entry : entries) {
+            String[] args = entry.split(";");
+            if (args.length < 2) {
+                ConsoleLogger.showError("Ignoring invalid restricted user '" + entry + "': expected 'name;ip'");
+                continue;
+            }
+            RestrictedUser restrictedUser = restrictedUsers.get(args[0]);
+            if (restrictedUser == null) {
+                restrictedUser = new RestrictedUser();
+                restrictedUsers.put(args[0], restrictedUser);
+            }
+            // Anything which is not an IP address or range is taken as host name
+            if (!restrictedUser.ipRanges.add(args[1])) {
+                restrictedUser.hostNames.add(args[1]);
+            }
+        }
+        return restrictedUsers;
+    }
+
+    /**
+     * The IP ranges and host names a restricted user may join from.
+     */
+    private static final class RestrictedUser {
+        private final IpRangeSet ipRanges = new IpRangeSet();
+        private final Set<String> hostNames = new HashSet<>();
     }
 
-    private static boolean containsIgnoreCase(Collection<String> coll, String needle) {
-        for (String entry : coll) {
-            if (entry.equalsIgnoreCase(needle)) {
-                return true;
+    /**
+     * Whitelist and blacklist of case-insensitive values. Whitelist has precedence over blacklist:
+     * if a whitelist is set, a value is rejected if not present in the whitelist.
+     */
+    private static final class AdmissionList {
+
+        private final Set<String> whitelist;
+        private final Set<String> blacklist;
+
+        AdmissionList(List<String> whitelist, List<String> blacklist) {
+            this.whitelist = toUpperCaseSet(whitelist);
+            this.blacklist = toUpperCaseSet(blacklist);
+        }
+
+        boolean isEmpty() {
+            return whitelist.isEmpty() && blacklist.isEmpty();
+        }
+
+        /**
+         * Verifies whether the given value is allowed according to the whitelist and blacklist.
+         *
+         * @param value the value to verify
+         * @return true if the value is admitted by the lists, false otherwise
+         */
+        boolean admits(String value) {
+            // toUpperCase returns the same instance if the value is uppercase already, e.g. country codes
+            String key = value.toUpperCase();
+            if (!whitelist.isEmpty()) {
+                return whitelist.contains(key);
+            }
+            return !blacklist.contains(key);
+        }
+
+        private static Set<String> toUpperCaseSet(Collection<String> values) {
+            Set<String> set = new HashSet<>();
+            if (values != null) {
+                for (String value : values) {
+                    set.add(value.toUpperCase());
+                }
             }
+            return set;
         }
-        return false;
     }
 
     public static final class ValidationResult {
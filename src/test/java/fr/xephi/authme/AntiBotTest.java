@@ -6,7 +6,10 @@ import fr.xephi.authme.permission.PermissionsManager;
 import fr.xephi.authme.permission.PlayerStatePermission;
 import fr.xephi.authme.settings.NewSetting;
 import fr.xephi.authme.settings.properties.ProtectionSettings;
+import fr.xephi.authme.task.JobGroup;
+import fr.xephi.authme.task.TaskScheduler;
 import fr.xephi.authme.util.BukkitService;
+import fr.xephi.authme.util.SlidingWindowCounter;
 import org.bukkit.entity.Player;
 import org.junit.Before;
 import org.junit.Test;
@@ -15,14 +18,9 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
-import java.util.List;
-
 import static fr.xephi.authme.util.BukkitService.TICKS_PER_MINUTE;
-import static fr.xephi.authme.util.BukkitService.TICKS_PER_SECOND;
 import static org.hamcrest.Matchers.contains;
-import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
-import static org.hamcrest.Matchers.hasSize;
 import static org.junit.Assert.assertThat;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Matchers.any;
@@ -48,6 +46,8 @@ public class AntiBotTest {
     private PermissionsManager permissionsManager;
     @Mock
     private BukkitService bukkitService;
+    @Mock
+    private TaskScheduler taskScheduler;
 
     @Before
     public void setDefaultSettingValues() {
@@ -58,18 +58,18 @@ public class AntiBotTest {
     public void shouldKeepAntiBotDisabled() {
         // given / when
         given(settings.getProperty(ProtectionSettings.ENABLE_ANTIBOT)).willReturn(false);
-        AntiBot antiBot = new AntiBot(settings, messages, permissionsManager, bukkitService);
+        AntiBot antiBot = new AntiBot(settings, messages, permissionsManager, bukkitService, taskScheduler);
 
         // then
-        verify(bukkitService, never()).scheduleSyncDelayedTask(any(Runnable.class), anyLong());
+        verify(taskScheduler, never()).runSyncLater(any(JobGroup.class), any(Runnable.class), anyLong());
         assertThat(antiBot.getAntiBotStatus(), equalTo(AntiBot.AntiBotStatus.DISABLED));
     }
 
     @Test
     public void shouldTransitionToListening() {
         // given / when
-        AntiBot antiBot = new AntiBot(settings, messages, permissionsManager, bukkitService);
-        TestHelper.runSyncDelayedTaskWithDelay(bukkitService);
+        AntiBot antiBot = new AntiBot(settings, messages, permissionsManager, bukkitService, taskScheduler);
+        runScheduledJob();
 
         // then
         assertThat(antiBot.getAntiBotStatus(), equalTo(AntiBot.AntiBotStatus.LISTENING));
@@ -103,7 +103,7 @@ public class AntiBotTest {
     public void shouldRemainDisabled() {
         // given
         given(settings.getProperty(ProtectionSettings.ENABLE_ANTIBOT)).willReturn(false);
-        AntiBot antiBot = new AntiBot(settings, messages, permissionsManager, bukkitService);
+        AntiBot antiBot = new AntiBot(settings, messages, permissionsManager, bukkitService, taskScheduler);
 
         // when
         antiBot.overrideAntiBotStatus(true);
@@ -130,7 +130,7 @@ public class AntiBotTest {
         verify(bukkitService, times(2)).broadcastMessage(captor.capture());
         assertThat(captor.getAllValues(), contains("Test line #1", "Test line #2"));
         long expectedTicks = duration * TICKS_PER_MINUTE;
-        verify(bukkitService).scheduleSyncDelayedTask(any(Runnable.class), eq(expectedTicks));
+        verify(taskScheduler).runSyncLater(eq(JobGroup.ANTIBOT), any(Runnable.class), eq(expectedTicks));
     }
 
     @Test
@@ -144,18 +144,18 @@ public class AntiBotTest {
 
         // when
         antiBot.activateAntiBot();
-        TestHelper.runSyncDelayedTaskWithDelay(bukkitService);
+        runScheduledJob();
 
         // then
         assertThat(antiBot.getAntiBotStatus(), equalTo(AntiBot.AntiBotStatus.LISTENING));
-        verify(bukkitService).scheduleSyncDelayedTask(any(Runnable.class), eq((long) 4800));
+        verify(taskScheduler).runSyncLater(eq(JobGroup.ANTIBOT), any(Runnable.class), eq((long) 4800));
         ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
         verify(bukkitService, times(2)).broadcastMessage(captor.capture());
         assertThat(captor.getAllValues(), contains("Disabled...", "Placeholder: 4."));
     }
 
     @Test
-    public void shouldCheckPlayerAndRemoveHimLater() {
+    public void shouldCountJoiningPlayerWithoutSchedulingTask() {
         // given
         Player player = mock(Player.class);
         given(player.getName()).willReturn("Plaer");
@@ -167,22 +167,27 @@ public class AntiBotTest {
         antiBot.handlePlayerJoin(player);
 
         // then
-        @SuppressWarnings("unchecked")
-        List<String> playerList = (List<String>) ReflectionTestUtils
-            .getFieldValue(AntiBot.class, antiBot, "antibotPlayers");
-        assertThat(playerList, hasSize(1));
-        verify(bukkitService).scheduleSyncDelayedTask(any(Runnable.class), eq((long) 15 * TICKS_PER_SECOND));
-
-        // Follow-up: Check that player will be removed from list again by running the Runnable
-        // given (2)
-        // Add another player to the list
-        playerList.add("other_player");
-
-        // when (2)
-        TestHelper.runSyncDelayedTaskWithDelay(bukkitService);
-
-        // then (2)
-        assertThat(playerList, contains("other_player"));
+        assertThat(getJoinCount(antiBot), equalTo(1));
+        assertThat(antiBot.getAntiBotStatus(), equalTo(AntiBot.AntiBotStatus.LISTENING));
+        verify(taskScheduler, never()).runSyncLater(any(JobGroup.class), any(Runnable.class), anyLong());
+    }
+
+    @Test
+    public void shouldActivateAntiBotWhenSensibilityIsExceeded() {
+        // given
+        given(messages.retrieve(MessageKey.ANTIBOT_AUTO_ENABLED_MESSAGE)).willReturn(new String[0]);
+        given(settings.getProperty(ProtectionSettings.ANTIBOT_SENSIBILITY)).willReturn(3);
+        given(settings.getProperty(ProtectionSettings.ANTIBOT_DURATION)).willReturn(10);
+        AntiBot antiBot = createListeningAntiBot();
+
+        // when
+        for (int i = 0; i < 4; ++i) {
+            antiBot.handlePlayerJoin(mock(Player.class));
+        }
+
+        // then
+        assertThat(antiBot.getAntiBotStatus(), equalTo(AntiBot.AntiBotStatus.ACTIVE));
+        verify(taskScheduler).runSyncLater(eq(JobGroup.ANTIBOT), any(Runnable.class), eq((long) 10 * TICKS_PER_MINUTE));
     }
 
     @Test
@@ -197,18 +202,28 @@ public class AntiBotTest {
         antiBot.handlePlayerJoin(player);
 
         // then
-        @SuppressWarnings("rawtypes")
-        List<?> playerList = (List) ReflectionTestUtils.getFieldValue(AntiBot.class, antiBot, "antibotPlayers");
-        assertThat(playerList, empty());
-        verify(bukkitService, never()).scheduleSyncDelayedTask(any(Runnable.class), anyLong());
+        assertThat(getJoinCount(antiBot), equalTo(0));
+        verify(taskScheduler, never()).runSyncLater(any(JobGroup.class), any(Runnable.class), anyLong());
+    }
+
+    private static int getJoinCount(AntiBot antiBot) {
+        SlidingWindowCounter joinCounter = (SlidingWindowCounter) ReflectionTestUtils
+            .getFieldValue(AntiBot.class, antiBot, "joinCounter");
+        return joinCounter.count(System.currentTimeMillis());
     }
 
     private AntiBot createListeningAntiBot() {
-        AntiBot antiBot = new AntiBot(settings, messages, permissionsManager, bukkitService);
-        TestHelper.runSyncDelayedTaskWithDelay(bukkitService);
-        // Make BukkitService forget about all interactions up to here
-        reset(bukkitService);
+        AntiBot antiBot = new AntiBot(settings, messages, permissionsManager, bukkitService, taskScheduler);
+        runScheduledJob();
+        // Make the mocks forget about all interactions up to here
+        reset(bukkitService, taskScheduler);
         return antiBot;
     }
 
+    private void runScheduledJob() {
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(taskScheduler).runSyncLater(eq(JobGroup.ANTIBOT), captor.capture(), anyLong());
+        captor.getValue().run();
+    }
+
 }
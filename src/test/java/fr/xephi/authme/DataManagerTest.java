@@ -0,0 +1,157 @@
+package fr.xephi.authme;
+
+import fr.xephi.authme.hooks.PluginHooks;
+import fr.xephi.authme.task.PurgeReport;
+import org.bukkit.OfflinePlayer;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Test for {@link DataManager}.
+ */
+public class DataManagerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private DataManager dataManager;
+    private PluginHooks pluginHooks;
+    private File pluginsFolder;
+
+    @BeforeClass
+    public static void setUpLogger() {
+        TestHelper.setupLogger();
+    }
+
+    @Before
+    public void setUpDataManager() throws IOException {
+        pluginsFolder = temporaryFolder.newFolder("plugins");
+        File dataFolder = new File(pluginsFolder, "AuthMe");
+        dataFolder.mkdir();
+        pluginHooks = mock(PluginHooks.class);
+        dataManager = new DataManager();
+        ReflectionTestUtils.setField(DataManager.class, dataManager, "dataFolder", dataFolder);
+        ReflectionTestUtils.setField(DataManager.class, dataManager, "pluginHooks", pluginHooks);
+    }
+
+    @Test
+    public void shouldPurgeLimitedCreativeFiles() throws IOException {
+        // given
+        File folder = createFolder(pluginsFolder, "LimitedCreative", "inventories");
+        File bobbyCreative = createFile(folder, "Bobby_creative.yml", 10);
+        File bobbySurvival = createFile(folder, "bobby.yml", 20);
+        File tinaAdventure = createFile(folder, "tina_adventure.yml", 30);
+        File gabe = createFile(folder, "gabe.yml", 40);
+        File other = createFile(folder, "bobby.txt", 50);
+        PurgeReport report = new PurgeReport(false);
+
+        // when
+        dataManager.purgeLimitedCreative(newSet("bobby", "tina"), report);
+
+        // then
+        assertThat(bobbyCreative.exists(), equalTo(false));
+        assertThat(bobbySurvival.exists(), equalTo(false));
+        assertThat(tinaAdventure.exists(), equalTo(false));
+        assertThat(gabe.exists(), equalTo(true));
+        assertThat(other.exists(), equalTo(true));
+        assertThat(report.getFiles("LimitedCreative"), equalTo(3L));
+        assertThat(report.getBytes("LimitedCreative"), equalTo(60L));
+    }
+
+    @Test
+    public void shouldOnlyCountFilesInDryRun() throws IOException {
+        // given
+        File folder = createFolder(pluginsFolder, "AntiXRayData", "PlayerData");
+        File bobby = createFile(folder, "bobby", 100);
+        File gabe = createFile(folder, "gabe", 40);
+        PurgeReport report = new PurgeReport(true);
+
+        // when
+        dataManager.purgeAntiXray(newSet("bobby", "tina"), report);
+
+        // then
+        assertThat(bobby.exists(), equalTo(true));
+        assertThat(gabe.exists(), equalTo(true));
+        assertThat(report.getFiles("AntiXRayData"), equalTo(1L));
+        assertThat(report.getBytes("AntiXRayData"), equalTo(100L));
+    }
+
+    @Test
+    public void shouldPurgeEssentialsFilesByUuid() throws IOException {
+        // given
+        File essentialsFolder = createFolder(pluginsFolder, "Essentials");
+        given(pluginHooks.getEssentialsDataFolder()).willReturn(essentialsFolder);
+        File userdata = createFolder(essentialsFolder, "userdata");
+        UUID bobbyUuid = UUID.fromString("4b8ee1c9-e2e1-4d4b-9a27-48c1a37ad3c9");
+        File bobbyFile = createFile(userdata, bobbyUuid + ".yml", 5);
+        File otherFile = createFile(userdata, UUID.fromString("1d6b1b7c-7a2b-4aa8-8d39-0f6b6f0a9d5e") + ".yml", 5);
+        OfflinePlayer bobby = mock(OfflinePlayer.class);
+        given(bobby.getUniqueId()).willReturn(bobbyUuid);
+        PurgeReport report = new PurgeReport(false);
+
+        // when
+        dataManager.purgeEssentials(new HashSet<>(Arrays.asList(bobby)), report);
+
+        // then
+        assertThat(bobbyFile.exists(), equalTo(false));
+        assertThat(otherFile.exists(), equalTo(true));
+        assertThat(report.getFiles("Essentials"), equalTo(1L));
+    }
+
+    @Test
+    public void shouldCountExistingEssentialsFilesInDryRun() throws IOException {
+        // given
+        File essentialsFolder = createFolder(pluginsFolder, "Essentials");
+        given(pluginHooks.getEssentialsDataFolder()).willReturn(essentialsFolder);
+        File userdata = createFolder(essentialsFolder, "userdata");
+        File bobbyFile = createFile(userdata, "Bobby.yml", 12);
+        OfflinePlayer bobby = mock(OfflinePlayer.class);
+        given(bobby.getName()).willReturn("Bobby");
+        OfflinePlayer tina = mock(OfflinePlayer.class);
+        given(tina.getName()).willReturn("tina");
+        PurgeReport report = new PurgeReport(true);
+
+        // when
+        dataManager.purgeEssentials(new HashSet<>(Arrays.asList(bobby, tina)), report);
+
+        // then
+        assertThat(bobbyFile.exists(), equalTo(true));
+        assertThat(report.getFiles("Essentials"), equalTo(1L));
+        assertThat(report.getBytes("Essentials"), equalTo(12L));
+    }
+
+    private static File createFolder(File parent, String... path) {
+        File folder = parent;
+        for (String element : path) {
+            folder = new File(folder, element);
+        }
+        folder.mkdirs();
+        return folder;
+    }
+
+    private static File createFile(File folder, String name, int size) throws IOException {
+        File file = new File(folder, name);
+        Files.write(file.toPath(), new byte[size]);
+        return file;
+    }
+
+    private static Set<String> newSet(String... elements) {
+        return new HashSet<>(Arrays.asList(elements));
+    }
+}
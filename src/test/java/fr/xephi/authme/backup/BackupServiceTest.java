@@ -0,0 +1,260 @@
+package fr.xephi.authme.backup;
+
+import com.google.common.base.Charsets;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import fr.xephi.authme.TestHelper;
+import fr.xephi.authme.cache.auth.PlayerAuth;
+import fr.xephi.authme.datasource.AuthConsumer;
+import fr.xephi.authme.datasource.DataSource;
+import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.BackupSettings;
+import fr.xephi.authme.task.JobGroup;
+import fr.xephi.authme.task.TaskScheduler;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.emptyArray;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+/**
+ * Test for {@link BackupService}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class BackupServiceTest {
+
+    private static final long NOW = 1466000000000L;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    @Mock
+    private NewSetting settings;
+
+    private BackupService backupService;
+    private File backupFolder;
+
+    @BeforeClass
+    public static void setUpLogger() {
+        TestHelper.setupLogger();
+    }
+
+    @Before
+    public void setUpService() throws IOException {
+        File dataFolder = temporaryFolder.newFolder();
+        backupFolder = new File(dataFolder, BackupService.BACKUP_FOLDER);
+        given(settings.getProperty(BackupSettings.ENABLED)).willReturn(true);
+        given(settings.getProperty(BackupSettings.INCREMENTAL)).willReturn(true);
+        given(settings.getProperty(BackupSettings.FULL_BACKUP_INTERVAL_HOURS)).willReturn(24);
+        given(settings.getProperty(BackupSettings.MAX_KILOBYTES_PER_SECOND)).willReturn(0);
+        backupService = new BackupService(dataFolder, dataSource, taskScheduler, settings);
+    }
+
+    @Test
+    public void shouldWriteFullBackupIfNoneExists() throws IOException {
+        // given
+        PlayerAuth bobby = PlayerAuth.builder().name("bobby").realName("Bobby").password("hash", "salt")
+            .ip("127.0.0.1").lastLogin(1234L).email("bobby@example.org").locWorld("nether").locX(1.5).build();
+        PlayerAuth tina = PlayerAuth.builder().name("tina").realName("Tina").password("hash2", null).build();
+        givenExportedAuths(-1L, bobby, tina);
+
+        // when
+        boolean result = backupService.performBackup(NOW, false);
+
+        // then
+        assertThat(result, equalTo(true));
+        File backup = new File(backupFolder, BackupService.toFileName(NOW, BackupService.FULL_TYPE));
+        List<JsonObject> records = readBackup(backup);
+        assertThat(records, hasSize(2));
+        assertThat(records.get(0).get("name").getAsString(), equalTo("bobby"));
+        assertThat(records.get(0).get("salt").getAsString(), equalTo("salt"));
+        assertThat(records.get(0).get("lastLogin").getAsLong(), equalTo(1234L));
+        assertThat(records.get(0).get("world").getAsString(), equalTo("nether"));
+        assertThat(records.get(1).get("password").getAsString(), equalTo("hash2"));
+        assertThat(backupFolder.listFiles(), arrayWithSize(1));
+    }
+
+    @Test
+    public void shouldWriteIncrementalBackupSincePreviousBackup() throws IOException {
+        // given
+        long fullBackupTime = NOW - TimeUnit.HOURS.toMillis(5);
+        long previousBackupTime = NOW - TimeUnit.HOURS.toMillis(1);
+        createBackupFile(fullBackupTime, BackupService.FULL_TYPE);
+        createBackupFile(previousBackupTime, BackupService.INCREMENTAL_TYPE);
+        PlayerAuth bobby = PlayerAuth.builder().name("bobby").realName("Bobby").password("hash", null).build();
+        givenExportedAuths(previousBackupTime, bobby);
+
+        // when
+        boolean result = backupService.performBackup(NOW, false);
+
+        // then
+        assertThat(result, equalTo(true));
+        File backup = new File(backupFolder, BackupService.toFileName(NOW, BackupService.INCREMENTAL_TYPE));
+        assertThat(readBackup(backup), hasSize(1));
+    }
+
+    @Test
+    public void shouldWriteFullBackupAfterInterval() throws IOException {
+        // given
+        createBackupFile(NOW - TimeUnit.HOURS.toMillis(30), BackupService.FULL_TYPE);
+        givenExportedAuths(-1L);
+
+        // when
+        backupService.performBackup(NOW, false);
+
+        // then
+        assertThat(new File(backupFolder, BackupService.toFileName(NOW, BackupService.FULL_TYPE)).exists(),
+            equalTo(true));
+    }
+
+    @Test
+    public void shouldOnlyWriteIncrementalBackupOnShutdown() throws IOException {
+        // given
+        long fullBackupTime = NOW - TimeUnit.HOURS.toMillis(30);
+        createBackupFile(fullBackupTime, BackupService.FULL_TYPE);
+        givenExportedAuths(fullBackupTime);
+
+        // when
+        backupService.performBackup(NOW, true);
+
+        // then
+        verify(dataSource).exportAuths(eq(fullBackupTime), any(AuthConsumer.class));
+        verify(dataSource, never()).exportAuths(eq(-1L), any(AuthConsumer.class));
+    }
+
+    @Test
+    public void shouldNotKeepBackupIfAccountsCannotBeRead() throws IOException {
+        // given
+        final PlayerAuth bobby = PlayerAuth.builder().name("bobby").realName("Bobby").password("hash", null).build();
+        given(dataSource.exportAuths(eq(-1L), any(AuthConsumer.class))).willAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws IOException {
+                ((AuthConsumer) invocation.getArguments()[1]).accept(bobby);
+                return false;
+            }
+        });
+
+        // when
+        boolean result = backupService.performBackup(NOW, false);
+
+        // then
+        assertThat(result, equalTo(false));
+        assertThat(backupFolder.listFiles(), emptyArray());
+    }
+
+    @Test
+    public void shouldDeferFullBackupOnShutdown() {
+        // given
+        given(settings.getProperty(BackupSettings.ON_SERVER_STOP)).willReturn(true);
+
+        // when
+        backupService.doBackup(BackupCause.STOP);
+
+        // then
+        verifyZeroInteractions(dataSource);
+        assertThat(backupFolder.exists(), equalTo(false));
+    }
+
+    @Test
+    public void shouldSkipShutdownBackupIfIncrementalBackupsAreDisabled() throws IOException {
+        // given
+        given(settings.getProperty(BackupSettings.ON_SERVER_STOP)).willReturn(true);
+        given(settings.getProperty(BackupSettings.INCREMENTAL)).willReturn(false);
+        createBackupFile(NOW - TimeUnit.HOURS.toMillis(2), BackupService.FULL_TYPE);
+
+        // when
+        backupService.doBackup(BackupCause.STOP);
+
+        // then
+        verifyZeroInteractions(dataSource);
+        assertThat(backupFolder.listFiles(), arrayWithSize(1));
+    }
+
+    @Test
+    public void shouldRunStartBackupInBackground() {
+        // given
+        given(settings.getProperty(BackupSettings.ON_SERVER_START)).willReturn(true);
+
+        // when
+        backupService.doBackup(BackupCause.START);
+
+        // then
+        verify(taskScheduler).runAsyncDedicated(eq(JobGroup.BACKUP), eq("Backup"), any(Runnable.class));
+        verifyZeroInteractions(dataSource);
+    }
+
+    @Test
+    public void shouldNotBackupIfDisabled() {
+        // given
+        given(settings.getProperty(BackupSettings.ENABLED)).willReturn(false);
+
+        // when
+        backupService.doBackup(BackupCause.COMMAND);
+
+        // then
+        verifyZeroInteractions(taskScheduler, dataSource);
+    }
+
+    private void givenExportedAuths(long since, final PlayerAuth... auths) throws IOException {
+        given(dataSource.exportAuths(eq(since), any(AuthConsumer.class))).willAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws IOException {
+                AuthConsumer consumer = (AuthConsumer) invocation.getArguments()[1];
+                for (PlayerAuth auth : auths) {
+                    consumer.accept(auth);
+                }
+                return true;
+            }
+        });
+    }
+
+    private void createBackupFile(long time, String type) throws IOException {
+        backupFolder.mkdirs();
+        new File(backupFolder, BackupService.toFileName(time, type)).createNewFile();
+    }
+
+    private static List<JsonObject> readBackup(File file) throws IOException {
+        List<JsonObject> records = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+            new GZIPInputStream(new FileInputStream(file)), Charsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                records.add(new JsonParser().parse(line).getAsJsonObject());
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,222 @@
+package fr.xephi.authme.backup;
+
+import com.google.common.base.Charsets;
+import fr.xephi.authme.TestHelper;
+import fr.xephi.authme.cache.auth.PlayerAuth;
+import fr.xephi.authme.datasource.DataSource;
+import fr.xephi.authme.datasource.DataSourceType;
+import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.BackupSettings;
+import fr.xephi.authme.task.JobGroup;
+import fr.xephi.authme.task.TaskScheduler;
+import org.bukkit.command.CommandSender;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+/**
+ * Test for {@link RestoreService}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class RestoreServiceTest {
+
+    private static final long NOW = 1466000000000L;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    @Mock
+    private NewSetting settings;
+
+    private RestoreService restoreService;
+    private File backupFolder;
+    private List<String> importedNames;
+
+    @BeforeClass
+    public static void setUpLogger() {
+        TestHelper.setupLogger();
+    }
+
+    @Before
+    public void setUpService() throws IOException {
+        File dataFolder = temporaryFolder.newFolder();
+        backupFolder = new File(dataFolder, BackupService.BACKUP_FOLDER);
+        backupFolder.mkdirs();
+        given(dataSource.getType()).willReturn(DataSourceType.MYSQL);
+        given(settings.getProperty(BackupSettings.RESTORE_CONNECTIONS)).willReturn(2);
+        given(settings.getProperty(BackupSettings.RESTORE_BATCH_SIZE)).willReturn(2);
+        importedNames = Collections.synchronizedList(new ArrayList<String>());
+        given(dataSource.importAuths(anyListOf(PlayerAuth.class))).willAnswer(new ImportAnswer(Integer.MAX_VALUE));
+        restoreService = new RestoreService(dataFolder, dataSource, taskScheduler, settings);
+    }
+
+    @Test
+    public void shouldRestoreBackupInBatches() throws IOException {
+        // given
+        File backup = createBackup(NOW, BackupService.FULL_TYPE, "bobby", "tina", "al", "zoe", "max");
+
+        // when
+        long accounts = restoreService.restoreFiles(Collections.singletonList(backup));
+
+        // then
+        assertThat(accounts, equalTo(5L));
+        assertThat(importedNames, containsInAnyOrder("bobby", "tina", "al", "zoe", "max"));
+        verify(dataSource, times(3)).importAuths(anyListOf(PlayerAuth.class));
+        assertThat(checkpointFile(backup).exists(), equalTo(false));
+    }
+
+    @Test
+    public void shouldResumeFromCheckpoint() throws IOException {
+        // given
+        File backup = createBackup(NOW, BackupService.FULL_TYPE, "bobby", "tina", "al", "zoe", "max");
+        Files.write(checkpointFile(backup).toPath(), "4".getBytes(Charsets.UTF_8));
+
+        // when
+        long accounts = restoreService.restoreFiles(Collections.singletonList(backup));
+
+        // then
+        assertThat(accounts, equalTo(1L));
+        assertThat(importedNames, containsInAnyOrder("max"));
+        assertThat(checkpointFile(backup).exists(), equalTo(false));
+    }
+
+    @Test
+    public void shouldKeepCheckpointIfBatchFails() throws IOException {
+        // given
+        given(dataSource.getType()).willReturn(DataSourceType.SQLITE);
+        given(dataSource.importAuths(anyListOf(PlayerAuth.class))).willAnswer(new ImportAnswer(1));
+        File backup = createBackup(NOW, BackupService.FULL_TYPE, "bobby", "tina", "al", "zoe", "max");
+
+        // when
+        try {
+            restoreService.restoreFiles(Collections.singletonList(backup));
+            fail("Expected exception to be thrown");
+        } catch (IOException e) {
+            // then
+            assertThat(e.getMessage(), containsString("after line 2"));
+        }
+        assertThat(importedNames, containsInAnyOrder("bobby", "tina"));
+        String checkpoint = new String(Files.readAllBytes(checkpointFile(backup).toPath()), Charsets.UTF_8);
+        assertThat(checkpoint, equalTo("2"));
+    }
+
+    @Test
+    public void shouldRestoreLatestFullAndIncrementalBackups() {
+        // given
+        createBackup(NOW - TimeUnit.HOURS.toMillis(30), BackupService.FULL_TYPE, "old");
+        createBackup(NOW - TimeUnit.HOURS.toMillis(26), BackupService.INCREMENTAL_TYPE, "older");
+        createBackup(NOW - TimeUnit.HOURS.toMillis(5), BackupService.FULL_TYPE, "bobby", "tina");
+        createBackup(NOW - TimeUnit.HOURS.toMillis(1), BackupService.INCREMENTAL_TYPE, "tina");
+        CommandSender sender = mock(CommandSender.class);
+        given(taskScheduler.runAsyncDedicated(eq(JobGroup.BACKUP), anyString(), any(Runnable.class)))
+            .willReturn(true);
+
+        // when
+        restoreService.restore(sender, RestoreService.LATEST);
+
+        // then
+        ArgumentCaptor<Runnable> restoreCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(taskScheduler).runAsyncDedicated(eq(JobGroup.BACKUP), eq("Restore"), restoreCaptor.capture());
+        restoreCaptor.getValue().run();
+        assertThat(importedNames, containsInAnyOrder("bobby", "tina", "tina"));
+
+        ArgumentCaptor<Runnable> resultCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(taskScheduler).runSync(eq(JobGroup.BACKUP), resultCaptor.capture());
+        resultCaptor.getValue().run();
+        verify(sender).sendMessage(argThat(containsString("Restored 3 accounts")));
+    }
+
+    @Test
+    public void shouldRejectFileOutsideOfBackupFolder() throws IOException {
+        // given
+        temporaryFolder.newFile("secret.ndjson");
+        CommandSender sender = mock(CommandSender.class);
+
+        // when
+        restoreService.restore(sender, "../../secret.ndjson");
+
+        // then
+        verify(sender).sendMessage(argThat(containsString("Could not find the backup")));
+        verifyZeroInteractions(taskScheduler);
+    }
+
+    private File createBackup(long time, String type, String... names) {
+        File file = new File(backupFolder, BackupService.toFileName(time, type));
+        try (BackupWriter writer = new BackupWriter(file, 0)) {
+            for (String name : names) {
+                writer.write(PlayerAuth.builder().name(name).realName(name).password("hash", null).build());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return file;
+    }
+
+    private static File checkpointFile(File backup) {
+        return new File(backup.getPath() + RestoreService.CHECKPOINT_EXTENSION);
+    }
+
+    /**
+     * Records the names of the imported accounts and fails once the given number of batches has been saved.
+     */
+    private final class ImportAnswer implements Answer<Boolean> {
+
+        private final int successfulBatches;
+        private int batches;
+
+        ImportAnswer(int successfulBatches) {
+            this.successfulBatches = successfulBatches;
+        }
+
+        @Override
+        public synchronized Boolean answer(InvocationOnMock invocation) {
+            if (batches++ >= successfulBatches) {
+                return false;
+            }
+            @SuppressWarnings("unchecked")
+            List<PlayerAuth> auths = (List<PlayerAuth>) invocation.getArguments()[0];
+            for (PlayerAuth auth : auths) {
+                importedNames.add(auth.getNickname());
+            }
+            return true;
+        }
+    }
+}
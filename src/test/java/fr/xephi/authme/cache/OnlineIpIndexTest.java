@@ -0,0 +1,134 @@
+package fr.xephi.authme.cache;
+
+import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.RestrictionSettings;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Test for {@link OnlineIpIndex}.
+ */
+public class OnlineIpIndexTest {
+
+    private NewSetting settings;
+
+    @Before
+    public void setUpSettings() {
+        settings = mock(NewSetting.class);
+        given(settings.getProperty(RestrictionSettings.IPV4_NETWORK_PREFIX)).willReturn(32);
+        given(settings.getProperty(RestrictionSettings.IPV6_NETWORK_PREFIX)).willReturn(64);
+    }
+
+    @Test
+    public void shouldCountOnlinePlayersByIp() {
+        // given
+        OnlineIpIndex index = new OnlineIpIndex(settings);
+        index.addOnlinePlayer("Bobby", "11.22.33.44");
+        index.addOnlinePlayer("tina", "11.22.33.44");
+        index.addOnlinePlayer("Gary", "8.8.8.8");
+
+        // when
+        index.removeOnlinePlayer("TINA");
+
+        // then
+        assertThat(index.countOnlinePlayers("11.22.33.44"), equalTo(1));
+        assertThat(index.countOnlinePlayers("8.8.8.8"), equalTo(1));
+        assertThat(index.countOnlinePlayers("127.0.0.1"), equalTo(0));
+    }
+
+    @Test
+    public void shouldCountLoggedPlayersByIp() {
+        // given
+        OnlineIpIndex index = new OnlineIpIndex(settings);
+        index.addOnlinePlayer("Bobby", "11.22.33.44");
+        index.addOnlinePlayer("tina", "11.22.33.44");
+        index.addOnlinePlayer("Gary", "11.22.33.44");
+
+        // when
+        index.setLogged("bobby");
+        index.setLogged("Tina");
+        index.setLogged("Unknown");
+
+        // then
+        assertThat(index.countLoggedPlayers("11.22.33.44", "Gary"), equalTo(2));
+        assertThat(index.countLoggedPlayers("11.22.33.44", "bobby"), equalTo(1));
+        assertThat(index.countOnlinePlayers("11.22.33.44"), equalTo(3));
+    }
+
+    @Test
+    public void shouldRemoveLoggedStatus() {
+        // given
+        OnlineIpIndex index = new OnlineIpIndex(settings);
+        index.addOnlinePlayer("Bobby", "11.22.33.44");
+        index.addOnlinePlayer("tina", "11.22.33.44");
+        index.setLogged("Bobby");
+        index.setLogged("tina");
+
+        // when
+        index.setUnlogged("bobby");
+        index.removeOnlinePlayer("tina");
+
+        // then
+        assertThat(index.countLoggedPlayers("11.22.33.44", "other"), equalTo(0));
+        assertThat(index.countOnlinePlayers("11.22.33.44"), equalTo(1));
+    }
+
+    @Test
+    public void shouldMovePlayerToNewIp() {
+        // given
+        OnlineIpIndex index = new OnlineIpIndex(settings);
+        index.addOnlinePlayer("Bobby", "11.22.33.44");
+        index.setLogged("Bobby");
+
+        // when
+        index.addOnlinePlayer("Bobby", "8.8.8.8");
+
+        // then
+        assertThat(index.countOnlinePlayers("11.22.33.44"), equalTo(0));
+        assertThat(index.countLoggedPlayers("11.22.33.44", "other"), equalTo(0));
+        assertThat(index.countOnlinePlayers("8.8.8.8"), equalTo(1));
+    }
+
+    @Test
+    public void shouldCountPlayersPerNetwork() {
+        // given
+        given(settings.getProperty(RestrictionSettings.IPV4_NETWORK_PREFIX)).willReturn(24);
+        OnlineIpIndex index = new OnlineIpIndex(settings);
+        index.addOnlinePlayer("Bobby", "11.22.33.44");
+        index.addOnlinePlayer("tina", "11.22.33.45");
+        index.addOnlinePlayer("Gary", "2001:db8::1");
+        index.addOnlinePlayer("Lisa", "2001:0db8:0:0:ffff::2");
+        index.setLogged("Bobby");
+
+        // when
+        index.addOnlinePlayer("tina", "11.22.33.99");
+
+        // then
+        assertThat(index.countOnlinePlayers("11.22.33.1"), equalTo(2));
+        assertThat(index.countLoggedPlayers("11.22.33.1", "other"), equalTo(1));
+        assertThat(index.countOnlinePlayers("11.22.34.44"), equalTo(0));
+        assertThat(index.countOnlinePlayers("2001:db8:0:0:1::"), equalTo(2));
+    }
+
+    @Test
+    public void shouldReindexPlayersOnReload() {
+        // given
+        OnlineIpIndex index = new OnlineIpIndex(settings);
+        index.addOnlinePlayer("Bobby", "11.22.33.44");
+        index.addOnlinePlayer("tina", "11.22.33.45");
+        index.setLogged("tina");
+        given(settings.getProperty(RestrictionSettings.IPV4_NETWORK_PREFIX)).willReturn(16);
+
+        // when
+        index.loadSettings(settings);
+
+        // then
+        assertThat(index.countOnlinePlayers("11.22.0.1"), equalTo(2));
+        assertThat(index.countLoggedPlayers("11.22.0.1", "bobby"), equalTo(1));
+    }
+}
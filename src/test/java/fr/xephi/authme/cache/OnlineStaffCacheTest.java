@@ -0,0 +1,86 @@
+package fr.xephi.authme.cache;
+
+import fr.xephi.authme.permission.AdminPermission;
+import fr.xephi.authme.permission.PermissionsManager;
+import fr.xephi.authme.util.BukkitService;
+import org.bukkit.entity.Player;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Test for {@link OnlineStaffCache}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class OnlineStaffCacheTest {
+
+    @InjectMocks
+    private OnlineStaffCache onlineStaffCache;
+
+    @Mock
+    private PermissionsManager permissionsManager;
+
+    @Mock
+    private BukkitService bukkitService;
+
+    @Test
+    public void shouldOnlyKeepStaffMembers() {
+        // given
+        Player admin = mockOnlinePlayer("Admin", true);
+        Player player = mockOnlinePlayer("Bobby", false);
+
+        // when
+        onlineStaffCache.refresh(admin);
+        onlineStaffCache.refresh(player);
+        List<Player> result = onlineStaffCache.getOnlineStaff();
+
+        // then
+        assertThat(result, contains(admin));
+    }
+
+    @Test
+    public void shouldRemovePlayerWhoLostPermission() {
+        // given
+        Player admin = mockOnlinePlayer("Admin", true);
+        onlineStaffCache.refresh(admin);
+        given(permissionsManager.hasPermission(admin, AdminPermission.SEE_OTHER_ACCOUNTS)).willReturn(false);
+
+        // when
+        onlineStaffCache.refresh(admin);
+
+        // then
+        assertThat(onlineStaffCache.getOnlineStaff(), empty());
+    }
+
+    @Test
+    public void shouldRemovePlayer() {
+        // given
+        Player admin = mockOnlinePlayer("Admin", true);
+        onlineStaffCache.refresh(admin);
+
+        // when
+        onlineStaffCache.remove("ADMIN");
+
+        // then
+        assertThat(onlineStaffCache.getOnlineStaff(), empty());
+    }
+
+    private Player mockOnlinePlayer(String name, boolean isStaff) {
+        Player player = mock(Player.class);
+        given(player.getName()).willReturn(name);
+        given(player.isOnline()).willReturn(true);
+        given(permissionsManager.hasPermission(player, AdminPermission.SEE_OTHER_ACCOUNTS)).willReturn(isStaff);
+        given(bukkitService.getPlayerExact(name.toLowerCase())).willReturn(player);
+        return player;
+    }
+}
@@ -5,7 +5,10 @@ import fr.xephi.authme.TestHelper;
 import fr.xephi.authme.output.MessageKey;
 import fr.xephi.authme.output.Messages;
 import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.RestrictionSettings;
 import fr.xephi.authme.settings.properties.SecuritySettings;
+import fr.xephi.authme.task.JobGroup;
+import fr.xephi.authme.task.TaskScheduler;
 import fr.xephi.authme.util.BukkitService;
 import org.bukkit.entity.Player;
 import org.junit.Test;
@@ -38,6 +41,9 @@ public class TempbanManagerTest {
     @Mock
     private BukkitService bukkitService;
 
+    @Mock
+    private TaskScheduler taskScheduler;
+
     @Mock
     private Messages messages;
 
@@ -45,7 +51,7 @@ public class TempbanManagerTest {
     public void shouldAddCounts() {
         // given
         NewSetting settings = mockSettings(3, 60);
-        TempbanManager manager = new TempbanManager(bukkitService, messages, settings);
+        TempbanManager manager = new TempbanManager(bukkitService, taskScheduler, messages, settings);
         String address = "192.168.1.1";
 
         // when
@@ -60,12 +66,29 @@ public class TempbanManagerTest {
         assertThat(manager.shouldTempban("10.0.0.1"), equalTo(false));
     }
 
+    @Test
+    public void shouldCountFailuresPerNetwork() {
+        // given
+        NewSetting settings = mockSettings(3, 60);
+        given(settings.getProperty(RestrictionSettings.IPV4_NETWORK_PREFIX)).willReturn(24);
+        TempbanManager manager = new TempbanManager(bukkitService, taskScheduler, messages, settings);
+
+        // when
+        manager.increaseCount("11.22.33.1");
+        manager.increaseCount("11.22.33.2");
+        manager.increaseCount("11.22.33.3");
+
+        // then
+        assertThat(manager.shouldTempban("11.22.33.200"), equalTo(true));
+        assertThat(manager.shouldTempban("11.22.34.1"), equalTo(false));
+    }
+
     @Test
     public void shouldIncreaseAndResetCount() {
         // given
         String address = "192.168.1.2";
         NewSetting settings = mockSettings(3, 60);
-        TempbanManager manager = new TempbanManager(bukkitService, messages, settings);
+        TempbanManager manager = new TempbanManager(bukkitService, taskScheduler, messages, settings);
 
         // when
         manager.increaseCount(address);
@@ -90,7 +113,7 @@ public class TempbanManagerTest {
         String address = "192.168.1.3";
         NewSetting settings = mockSettings(1, 5);
         given(settings.getProperty(SecuritySettings.TEMPBAN_ON_MAX_LOGINS)).willReturn(false);
-        TempbanManager manager = new TempbanManager(bukkitService, messages, settings);
+        TempbanManager manager = new TempbanManager(bukkitService, taskScheduler, messages, settings);
 
         // when
         manager.increaseCount(address);
@@ -105,7 +128,7 @@ public class TempbanManagerTest {
         // given
         String address = "192.168.1.4";
         NewSetting settings = mockSettings(1, 5);
-        TempbanManager manager = new TempbanManager(bukkitService, messages, settings);
+        TempbanManager manager = new TempbanManager(bukkitService, taskScheduler, messages, settings);
         given(settings.getProperty(SecuritySettings.TEMPBAN_ON_MAX_LOGINS)).willReturn(false);
 
         // when
@@ -127,13 +150,13 @@ public class TempbanManagerTest {
         NewSetting settings = mockSettings(0, 0);
         given(settings.getProperty(SecuritySettings.TEMPBAN_ON_MAX_LOGINS)).willReturn(false);
         Player player = mock(Player.class);
-        TempbanManager manager = new TempbanManager(bukkitService, messages, settings);
+        TempbanManager manager = new TempbanManager(bukkitService, taskScheduler, messages, settings);
 
         // when
         manager.tempbanPlayer(player);
 
         // then
-        verifyZeroInteractions(player, bukkitService);
+        verifyZeroInteractions(player, bukkitService, taskScheduler);
     }
 
     @Test
@@ -145,11 +168,11 @@ public class TempbanManagerTest {
         String banReason = "IP ban too many logins";
         given(messages.retrieveSingle(MessageKey.TEMPBAN_MAX_LOGINS)).willReturn(banReason);
         NewSetting settings = mockSettings(2, 100);
-        TempbanManager manager = new TempbanManager(bukkitService, messages, settings);
+        TempbanManager manager = new TempbanManager(bukkitService, taskScheduler, messages, settings);
 
         // when
         manager.tempbanPlayer(player);
-        TestHelper.runSyncDelayedTask(bukkitService);
+        runScheduledJob();
 
         // then
         verify(player).kickPlayer(banReason);
@@ -172,25 +195,33 @@ public class TempbanManagerTest {
         String banReason = "kick msg";
         given(messages.retrieveSingle(MessageKey.TEMPBAN_MAX_LOGINS)).willReturn(banReason);
         NewSetting settings = mockSettings(10, 60);
-        TempbanManager manager = new TempbanManager(bukkitService, messages, settings);
+        TempbanManager manager = new TempbanManager(bukkitService, taskScheduler, messages, settings);
         manager.increaseCount(ip);
         manager.increaseCount(ip);
         manager.increaseCount(ip);
 
         // when
         manager.tempbanPlayer(player);
-        TestHelper.runSyncDelayedTask(bukkitService);
+        runScheduledJob();
 
         // then
         verify(player).kickPlayer(banReason);
         assertHasCount(manager, ip, null);
     }
 
+    private void runScheduledJob() {
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(taskScheduler).runSync(eq(JobGroup.TEMPBAN), captor.capture());
+        captor.getValue().run();
+    }
+
     private static NewSetting mockSettings(int maxTries, int tempbanLength) {
         NewSetting settings = mock(NewSetting.class);
         given(settings.getProperty(SecuritySettings.TEMPBAN_ON_MAX_LOGINS)).willReturn(true);
         given(settings.getProperty(SecuritySettings.MAX_LOGIN_TEMPBAN)).willReturn(maxTries);
         given(settings.getProperty(SecuritySettings.TEMPBAN_LENGTH)).willReturn(tempbanLength);
+        given(settings.getProperty(RestrictionSettings.IPV4_NETWORK_PREFIX)).willReturn(32);
+        given(settings.getProperty(RestrictionSettings.IPV6_NETWORK_PREFIX)).willReturn(64);
         return settings;
     }
 
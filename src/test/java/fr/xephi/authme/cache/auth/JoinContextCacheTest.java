@@ -0,0 +1,91 @@
+package fr.xephi.authme.cache.auth;
+
+import fr.xephi.authme.datasource.DataSource;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test for {@link JoinContextCache}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class JoinContextCacheTest {
+
+    @InjectMocks
+    private JoinContextCache joinContextCache;
+
+    @Mock
+    private DataSource dataSource;
+
+    @Test
+    public void shouldLoadAuthOnlyOnce() {
+        // given
+        PlayerAuth auth = mock(PlayerAuth.class);
+        given(dataSource.getAuth("bobby")).willReturn(auth);
+
+        // when
+        JoinContext loaded = joinContextCache.load("Bobby");
+        JoinContext retrieved = joinContextCache.getOrLoad("bobby");
+
+        // then
+        assertThat(retrieved, sameInstance(loaded));
+        assertThat(retrieved.getAuth(), equalTo(auth));
+        assertThat(retrieved.isRegistered(), equalTo(true));
+        verify(dataSource, times(1)).getAuth("bobby");
+    }
+
+    @Test
+    public void shouldLoadMissingContext() {
+        // given
+        given(dataSource.getAuth("unknown")).willReturn(null);
+
+        // when
+        JoinContext context = joinContextCache.getOrLoad("unknown");
+
+        // then
+        assertThat(context.getName(), equalTo("unknown"));
+        assertThat(context.isRegistered(), equalTo(false));
+        verify(dataSource).getAuth("unknown");
+    }
+
+    @Test
+    public void shouldConsumeAuthOnlyOnce() {
+        // given
+        PlayerAuth auth = mock(PlayerAuth.class);
+        given(dataSource.getAuth("tester")).willReturn(auth);
+        joinContextCache.load("tester");
+
+        // when
+        PlayerAuth firstResult = joinContextCache.consumeAuth("Tester");
+        PlayerAuth secondResult = joinContextCache.consumeAuth("tester");
+
+        // then
+        assertThat(firstResult, equalTo(auth));
+        assertThat(secondResult, nullValue());
+    }
+
+    @Test
+    public void shouldInvalidateContext() {
+        // given
+        given(dataSource.getAuth("test")).willReturn(mock(PlayerAuth.class));
+        joinContextCache.load("test");
+
+        // when
+        joinContextCache.invalidate("TEST");
+
+        // then
+        assertThat(joinContextCache.get("test"), nullValue());
+        assertThat(joinContextCache.consumeAuth("test"), nullValue());
+    }
+}
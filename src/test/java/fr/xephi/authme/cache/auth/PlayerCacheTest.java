@@ -0,0 +1,57 @@
+package fr.xephi.authme.cache.auth;
+
+import fr.xephi.authme.ReflectionTestUtils;
+import fr.xephi.authme.TestHelper;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link PlayerCache}.
+ */
+public class PlayerCacheTest {
+
+    private PlayerCache playerCache;
+
+    @BeforeClass
+    public static void setUpLogger() {
+        TestHelper.setupLogger();
+    }
+
+    @Before
+    public void resetSingleton() {
+        ReflectionTestUtils.setField(PlayerCache.class, null, "singleton", null);
+        playerCache = PlayerCache.getInstance();
+    }
+
+    @Test
+    public void shouldTrackLoggedInPlayersWithoutEmail() {
+        // given / when
+        playerCache.addPlayer(PlayerAuth.builder().name("bobby").build());
+        playerCache.addPlayer(PlayerAuth.builder().name("tina").email("your@email.com").build());
+        playerCache.addPlayer(PlayerAuth.builder().name("gabe").email("gabe@example.org").build());
+
+        // then
+        assertThat(playerCache.getNamesWithoutEmail(), containsInAnyOrder("bobby", "tina"));
+    }
+
+    @Test
+    public void shouldUpdateIndexOnEmailChangeAndLogout() {
+        // given
+        PlayerAuth bobby = PlayerAuth.builder().name("bobby").build();
+        playerCache.addPlayer(bobby);
+        playerCache.addPlayer(PlayerAuth.builder().name("tina").build());
+
+        // when
+        bobby.setEmail("bobby@example.org");
+        playerCache.updatePlayer(bobby);
+        playerCache.removePlayer("Tina");
+
+        // then
+        assertThat(playerCache.getNamesWithoutEmail(), empty());
+    }
+}
@@ -0,0 +1,162 @@
+package fr.xephi.authme.cache.auth;
+
+import fr.xephi.authme.datasource.DataSource;
+import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.PluginSettings;
+import fr.xephi.authme.task.JobGroup;
+import fr.xephi.authme.task.ScheduledJob;
+import fr.xephi.authme.task.TaskScheduler;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.Set;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anySetOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+/**
+ * Test for {@link SessionManager}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class SessionManagerTest {
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private PlayerCache playerCache;
+
+    @Mock
+    private SessionStore sessionStore;
+
+    @Captor
+    private ArgumentCaptor<Set<String>> namesCaptor;
+
+    @Test
+    public void shouldLogOutExpiredSessionsWithOneUpdate() {
+        // given
+        ScheduledJob reaperTask = mock(ScheduledJob.class);
+        given(taskScheduler.runAsyncRepeating(eq(JobGroup.SESSIONS), any(Runnable.class), anyLong(), anyLong()))
+            .willReturn(reaperTask);
+        SessionManager sessionManager = createSessionManager(0);
+        sessionManager.scheduleSessionExpiry("Bobby", "11.22.33.44");
+        sessionManager.scheduleSessionExpiry("tina", "8.8.8.8");
+
+        // when
+        sessionManager.reapExpiredSessions();
+
+        // then
+        verify(playerCache).removePlayer("bobby");
+        verify(playerCache).removePlayer("tina");
+        verify(dataSource).setUnlogged(namesCaptor.capture());
+        assertThat(namesCaptor.getValue(), containsInAnyOrder("bobby", "tina"));
+        verify(sessionStore).removeAll(namesCaptor.getValue());
+        verify(taskScheduler, times(1))
+            .runAsyncRepeating(eq(JobGroup.SESSIONS), any(Runnable.class), anyLong(), anyLong());
+        verify(reaperTask).cancel();
+        assertThat(sessionManager.hasPendingSession("bobby"), equalTo(false));
+    }
+
+    @Test
+    public void shouldNotLogOutPlayerWithCancelledSession() {
+        // given
+        SessionManager sessionManager = createSessionManager(0);
+        sessionManager.scheduleSessionExpiry("Bobby", "11.22.33.44");
+
+        // when
+        boolean result = sessionManager.cancelSessionExpiry("BOBBY");
+        sessionManager.reapExpiredSessions();
+
+        // then
+        assertThat(result, equalTo(true));
+        verify(sessionStore).remove("BOBBY");
+        verify(playerCache, never()).removePlayer(anyString());
+        verifyZeroInteractions(dataSource);
+    }
+
+    @Test
+    public void shouldKeepSessionUntilTimeout() {
+        // given
+        SessionManager sessionManager = createSessionManager(10);
+        sessionManager.scheduleSessionExpiry("Bobby", "11.22.33.44");
+
+        // when
+        sessionManager.reapExpiredSessions();
+
+        // then
+        assertThat(sessionManager.hasPendingSession("bobby"), equalTo(true));
+        verify(dataSource, never()).setUnlogged(anySetOf(String.class));
+        verify(playerCache, never()).removePlayer(anyString());
+    }
+
+    @Test
+    public void shouldSaveSessionInStore() {
+        // given
+        SessionManager sessionManager = createSessionManager(10);
+        long before = System.currentTimeMillis();
+
+        // when
+        sessionManager.scheduleSessionExpiry("Bobby", "11.22.33.44");
+
+        // then
+        ArgumentCaptor<Long> expiryCaptor = ArgumentCaptor.forClass(Long.class);
+        verify(sessionStore).save(eq("bobby"), eq("11.22.33.44"), expiryCaptor.capture());
+        assertThat(expiryCaptor.getValue(), greaterThanOrEqualTo(before + 10 * 60 * 1000L));
+    }
+
+    @Test
+    public void shouldPersistSessionWithoutExpiryForZeroTimeout() {
+        // given
+        SessionManager sessionManager = createSessionManager(0);
+
+        // when
+        sessionManager.persistSession("Bobby", "11.22.33.44");
+
+        // then
+        verify(sessionStore).save("Bobby", "11.22.33.44", Long.MAX_VALUE);
+        assertThat(sessionManager.hasPendingSession("bobby"), equalTo(false));
+        verifyZeroInteractions(taskScheduler);
+    }
+
+    @Test
+    public void shouldCompactStoreInBackground() {
+        // given
+        SessionManager sessionManager = createSessionManager(10);
+        given(sessionStore.needsCompaction()).willReturn(true);
+
+        // when
+        sessionManager.scheduleSessionExpiry("Bobby", "11.22.33.44");
+
+        // then
+        ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(taskScheduler).runAsyncCoalesced(eq(JobGroup.SESSIONS), anyString(), taskCaptor.capture());
+        taskCaptor.getValue().run();
+        verify(sessionStore).compact();
+    }
+
+    private SessionManager createSessionManager(int timeoutInMinutes) {
+        NewSetting settings = mock(NewSetting.class);
+        given(settings.getProperty(PluginSettings.SESSIONS_TIMEOUT)).willReturn(timeoutInMinutes);
+        return new SessionManager(taskScheduler, dataSource, playerCache, sessionStore, settings);
+    }
+}
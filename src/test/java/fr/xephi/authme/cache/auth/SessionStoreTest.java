@@ -0,0 +1,200 @@
+package fr.xephi.authme.cache.auth;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import fr.xephi.authme.security.HashUtils;
+import fr.xephi.authme.task.JobGroup;
+import fr.xephi.authme.task.TaskScheduler;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+/**
+ * Test for {@link SessionStore}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class SessionStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    private File dataFolder;
+
+    @Before
+    public void setUpDataFolder() throws IOException {
+        dataFolder = temporaryFolder.newFolder();
+    }
+
+    @Test
+    public void shouldKeepSessionsAcrossInstances() {
+        // given
+        long expiry = System.currentTimeMillis() + 60000;
+        SessionStore store = new SessionStore(dataFolder, taskScheduler);
+        store.save("Bobby", "11.22.33.44", expiry);
+        store.save("tina", "8.8.8.8", expiry);
+        store.remove("TINA");
+        store.flush();
+
+        // when
+        SessionStore reloadedStore = new SessionStore(dataFolder, taskScheduler);
+
+        // then
+        assertThat(reloadedStore.hasSession("bobby"), equalTo(true));
+        assertThat(reloadedStore.isSessionFromIp("bobby", "11.22.33.44"), equalTo(true));
+        assertThat(reloadedStore.isSessionFromIp("bobby", "8.8.8.8"), equalTo(false));
+        assertThat(reloadedStore.hasSession("tina"), equalTo(false));
+    }
+
+    @Test
+    public void shouldNotReturnExpiredSession() {
+        // given
+        SessionStore store = new SessionStore(dataFolder, taskScheduler);
+        store.save("Bobby", "11.22.33.44", System.currentTimeMillis() - 1000);
+
+        // when
+        boolean hasSession = store.hasSession("Bobby");
+
+        // then
+        assertThat(hasSession, equalTo(false));
+        store.flush();
+        assertThat(new SessionStore(dataFolder, taskScheduler).hasSession("bobby"), equalTo(false));
+    }
+
+    @Test
+    public void shouldRemoveMultipleSessions() {
+        // given
+        long expiry = System.currentTimeMillis() + 60000;
+        SessionStore store = new SessionStore(dataFolder, taskScheduler);
+        store.save("Bobby", "11.22.33.44", expiry);
+        store.save("tina", "8.8.8.8", expiry);
+        store.save("Gary", "8.8.8.8", expiry);
+
+        // when
+        store.removeAll(Arrays.asList("bobby", "gary", "unknown"));
+        store.flush();
+
+        // then
+        SessionStore reloadedStore = new SessionStore(dataFolder, taskScheduler);
+        assertThat(reloadedStore.hasSession("bobby"), equalTo(false));
+        assertThat(reloadedStore.hasSession("gary"), equalTo(false));
+        assertThat(reloadedStore.hasSession("tina"), equalTo(true));
+    }
+
+    @Test
+    public void shouldCompactFile() throws IOException {
+        // given
+        long expiry = System.currentTimeMillis() + 60000;
+        SessionStore store = new SessionStore(dataFolder, taskScheduler);
+        for (int i = 0; i <= SessionStore.COMPACTION_THRESHOLD; ++i) {
+            store.save("Bobby", "11.22.33.44", expiry + i);
+        }
+        store.save("tina", "8.8.8.8", expiry);
+
+        // when
+        boolean needsCompaction = store.needsCompaction();
+        store.compact();
+
+        // then
+        assertThat(needsCompaction, equalTo(true));
+        assertThat(store.needsCompaction(), equalTo(false));
+        List<String> lines = Files.readLines(new File(dataFolder, SessionStore.FILE_NAME), Charsets.UTF_8);
+        assertThat(lines, hasSize(2));
+        SessionStore reloadedStore = new SessionStore(dataFolder, taskScheduler);
+        assertThat(reloadedStore.isSessionFromIp("bobby", "11.22.33.44"), equalTo(true));
+        assertThat(reloadedStore.isSessionFromIp("tina", "8.8.8.8"), equalTo(true));
+    }
+
+    @Test
+    public void shouldWriteRecordsInBackground() {
+        // given
+        long expiry = System.currentTimeMillis() + 60000;
+        SessionStore store = new SessionStore(dataFolder, taskScheduler);
+        store.save("Bobby", "11.22.33.44", expiry);
+        store.remove("bobby");
+        File file = new File(dataFolder, SessionStore.FILE_NAME);
+        boolean existsBeforeFlush = file.exists();
+
+        // when
+        ArgumentCaptor<Runnable> flushCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(taskScheduler, times(2)).runAsyncCoalesced(eq(JobGroup.SESSIONS), eq("session-flush"),
+            flushCaptor.capture());
+        flushCaptor.getValue().run();
+
+        // then
+        assertThat(existsBeforeFlush, equalTo(false));
+        assertThat(file.exists(), equalTo(true));
+        assertThat(new SessionStore(dataFolder, taskScheduler).hasSession("bobby"), equalTo(false));
+    }
+
+    @Test
+    public void shouldNotScheduleFlushWhenDisabled() {
+        // given
+        SessionStore store = new SessionStore(dataFolder, taskScheduler);
+        store.disableAsyncFlush();
+
+        // when
+        store.save("Bobby", "11.22.33.44", System.currentTimeMillis() + 60000);
+
+        // then
+        verifyZeroInteractions(taskScheduler);
+    }
+
+    @Test
+    public void shouldHashIpWithSecretKey() throws IOException {
+        // given
+        SessionStore store = new SessionStore(dataFolder, taskScheduler);
+        store.save("Bobby", "11.22.33.44", System.currentTimeMillis() + 60000);
+        store.flush();
+        File keyFile = new File(dataFolder, SessionStore.KEY_FILE_NAME);
+
+        // when
+        String content = Files.toString(new File(dataFolder, SessionStore.FILE_NAME), Charsets.UTF_8);
+        boolean hasKeyFile = keyFile.exists();
+        keyFile.delete();
+
+        // then
+        assertThat(hasKeyFile, equalTo(true));
+        assertThat(content, not(containsString(HashUtils.sha256("11.22.33.44"))));
+        // a new key is generated, with which the stored hash no longer matches
+        SessionStore reloadedStore = new SessionStore(dataFolder, taskScheduler);
+        assertThat(reloadedStore.hasSession("bobby"), equalTo(true));
+        assertThat(reloadedStore.isSessionFromIp("bobby", "11.22.33.44"), equalTo(false));
+    }
+
+    @Test
+    public void shouldSkipMalformedRecords() throws IOException {
+        // given
+        File file = new File(dataFolder, SessionStore.FILE_NAME);
+        Files.write("bobby;abc\n;;5\ntina;hash;notANumber\n", file, Charsets.UTF_8);
+        SessionStore store = new SessionStore(dataFolder, taskScheduler);
+
+        // when
+        boolean hasSession = store.hasSession("bobby") || store.hasSession("tina");
+
+        // then
+        assertThat(hasSession, equalTo(false));
+    }
+}
@@ -0,0 +1,172 @@
+package fr.xephi.authme.cache.backup;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import fr.xephi.authme.task.JobGroup;
+import fr.xephi.authme.task.TaskScheduler;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+/**
+ * Test for {@link LimboPlayerStorage}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class LimboPlayerStorageTest {
+
+    private static final UUID BOBBY_UUID = UUID.fromString("4b8ee1c9-e2e1-4d4b-9a27-48c1a37ad3c9");
+    private static final UUID TINA_UUID = UUID.fromString("1d6b1b7c-7a2b-4aa8-8d39-0f6b6f0a9d5e");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    private File dataFolder;
+
+    @Before
+    public void setUpDataFolder() throws IOException {
+        dataFolder = temporaryFolder.newFolder();
+    }
+
+    @Test
+    public void shouldFlushChangesInBackground() {
+        // given
+        LimboPlayerStorage storage = new LimboPlayerStorage(dataFolder, taskScheduler);
+        storage.saveSnapshot(BOBBY_UUID, new PlayerData("admin", true, false));
+        storage.saveSnapshot(TINA_UUID, new PlayerData("", false, true));
+
+        // when
+        ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(taskScheduler, times(2)).runAsyncCoalesced(eq(JobGroup.STORAGE), anyString(), taskCaptor.capture());
+        taskCaptor.getValue().run();
+
+        // then
+        LimboPlayerStorage reloadedStorage = new LimboPlayerStorage(dataFolder, taskScheduler);
+        assertIsEqual(reloadedStorage.getSnapshot(BOBBY_UUID, "Bobby"), new PlayerData("admin", true, false));
+        assertIsEqual(reloadedStorage.getSnapshot(TINA_UUID, "tina"), new PlayerData("", false, true));
+    }
+
+    @Test
+    public void shouldRemoveSnapshot() {
+        // given
+        LimboPlayerStorage storage = new LimboPlayerStorage(dataFolder, taskScheduler);
+        storage.saveSnapshot(BOBBY_UUID, new PlayerData("admin", true, false));
+        storage.saveSnapshot(TINA_UUID, new PlayerData("", false, true));
+        storage.flush();
+
+        // when
+        storage.removeSnapshot(BOBBY_UUID);
+        storage.flush();
+
+        // then
+        LimboPlayerStorage reloadedStorage = new LimboPlayerStorage(dataFolder, taskScheduler);
+        assertThat(reloadedStorage.getSnapshot(BOBBY_UUID, "Bobby"), nullValue());
+        assertIsEqual(reloadedStorage.getSnapshot(TINA_UUID, "tina"), new PlayerData("", false, true));
+    }
+
+    @Test
+    public void shouldCompactFile() {
+        // given
+        LimboPlayerStorage storage = new LimboPlayerStorage(dataFolder, taskScheduler);
+        for (int i = 0; i < LimboPlayerStorage.COMPACTION_THRESHOLD; ++i) {
+            storage.saveSnapshot(BOBBY_UUID, new PlayerData("group" + i, false, false));
+            storage.flush();
+        }
+        File file = new File(dataFolder, LimboPlayerStorage.FILE_NAME);
+        long sizeBeforeCompaction = file.length();
+
+        // when
+        storage.saveSnapshot(BOBBY_UUID, new PlayerData("last", true, true));
+        storage.flush();
+
+        // then
+        assertThat(file.length(), lessThan(sizeBeforeCompaction));
+        assertThat(new File(dataFolder, LimboPlayerStorage.FILE_NAME + ".tmp").exists(), equalTo(false));
+        LimboPlayerStorage reloadedStorage = new LimboPlayerStorage(dataFolder, taskScheduler);
+        assertIsEqual(reloadedStorage.getSnapshot(BOBBY_UUID, "Bobby"), new PlayerData("last", true, true));
+    }
+
+    @Test
+    public void shouldKeepCompleteRecordsOfTruncatedFile() throws IOException {
+        // given
+        LimboPlayerStorage storage = new LimboPlayerStorage(dataFolder, taskScheduler);
+        storage.saveSnapshot(BOBBY_UUID, new PlayerData("admin", true, false));
+        storage.flush();
+        storage.saveSnapshot(TINA_UUID, new PlayerData("", false, true));
+        storage.flush();
+        File file = new File(dataFolder, LimboPlayerStorage.FILE_NAME);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        // when
+        LimboPlayerStorage reloadedStorage = new LimboPlayerStorage(dataFolder, taskScheduler);
+        PlayerData bobbySnapshot = reloadedStorage.getSnapshot(BOBBY_UUID, "Bobby");
+        PlayerData tinaSnapshot = reloadedStorage.getSnapshot(TINA_UUID, "tina");
+
+        // then
+        assertIsEqual(bobbySnapshot, new PlayerData("admin", true, false));
+        assertThat(tinaSnapshot, nullValue());
+    }
+
+    @Test
+    public void shouldMigrateLegacyJsonCache() throws IOException {
+        // given
+        File legacyFolder = new File(dataFolder, "cache" + File.separator + "bobby");
+        legacyFolder.mkdirs();
+        Files.write("{\"group\": \"vip\", \"operator\": true, \"fly\": false}",
+            new File(legacyFolder, "cache.json"), Charsets.UTF_8);
+        LimboPlayerStorage storage = new LimboPlayerStorage(dataFolder, taskScheduler);
+
+        // when
+        PlayerData snapshot = storage.getSnapshot(BOBBY_UUID, "Bobby");
+        storage.flush();
+
+        // then
+        assertIsEqual(snapshot, new PlayerData("vip", true, false));
+        assertThat(legacyFolder.exists(), equalTo(false));
+        LimboPlayerStorage reloadedStorage = new LimboPlayerStorage(dataFolder, taskScheduler);
+        assertIsEqual(reloadedStorage.getSnapshot(BOBBY_UUID, "Bobby"), new PlayerData("vip", true, false));
+    }
+
+    @Test
+    public void shouldNotScheduleFlushWhenDisabled() {
+        // given
+        LimboPlayerStorage storage = new LimboPlayerStorage(dataFolder, taskScheduler);
+        storage.disableAsyncFlush();
+
+        // when
+        storage.saveSnapshot(BOBBY_UUID, new PlayerData("admin", true, false));
+
+        // then
+        verifyZeroInteractions(taskScheduler);
+    }
+
+    private static void assertIsEqual(PlayerData actual, PlayerData expected) {
+        assertThat(actual.getGroup(), equalTo(expected.getGroup()));
+        assertThat(actual.getOperator(), equalTo(expected.getOperator()));
+        assertThat(actual.isFlyEnabled(), equalTo(expected.isFlyEnabled()));
+    }
+}
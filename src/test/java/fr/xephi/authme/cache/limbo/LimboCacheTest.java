@@ -0,0 +1,163 @@
+package fr.xephi.authme.cache.limbo;
+
+import fr.xephi.authme.cache.backup.LimboPlayerStorage;
+import fr.xephi.authme.cache.backup.PlayerData;
+import fr.xephi.authme.permission.PermissionsManager;
+import fr.xephi.authme.settings.SpawnLoader;
+import fr.xephi.authme.task.JobGroup;
+import fr.xephi.authme.task.TaskScheduler;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+/**
+ * Test for {@link LimboCache}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class LimboCacheTest {
+
+    private static final UUID BOBBY_UUID = UUID.fromString("4b8ee1c9-e2e1-4d4b-9a27-48c1a37ad3c9");
+
+    @InjectMocks
+    private LimboCache limboCache;
+
+    @Mock
+    private PermissionsManager permissionsManager;
+
+    @Mock
+    private SpawnLoader spawnLoader;
+
+    @Mock
+    private LimboPlayerStorage limboPlayerStorage;
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    @Test
+    public void shouldAddLimboPlayerBeforeResolvingGroup() {
+        // given
+        Player player = mockPlayer("Bobby", true);
+
+        // when
+        limboCache.addLimboPlayer(player);
+
+        // then
+        assertThat(limboCache.hasLimboPlayer("bobby"), equalTo(true));
+        verifyZeroInteractions(permissionsManager, limboPlayerStorage);
+        ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(taskScheduler).runAsync(eq(JobGroup.LIMBO), taskCaptor.capture());
+
+        // when (2)
+        given(permissionsManager.hasGroupSupport()).willReturn(true);
+        given(permissionsManager.getPrimaryGroup(player)).willReturn("admin");
+        taskCaptor.getValue().run();
+
+        // then (2)
+        LimboPlayer limboPlayer = limboCache.getLimboPlayer("bobby");
+        assertThat(limboPlayer.getGroup(), equalTo("admin"));
+        assertThat(limboPlayer.isOperator(), equalTo(true));
+        ArgumentCaptor<PlayerData> snapshotCaptor = ArgumentCaptor.forClass(PlayerData.class);
+        verify(limboPlayerStorage).saveSnapshot(eq(BOBBY_UUID), snapshotCaptor.capture());
+        assertThat(snapshotCaptor.getValue().getGroup(), equalTo("admin"));
+    }
+
+    @Test
+    public void shouldRestoreStoredSnapshot() {
+        // given
+        Player player = mockPlayer("Bobby", false);
+        given(limboPlayerStorage.getSnapshot(BOBBY_UUID, "bobby")).willReturn(new PlayerData("vip", true, true));
+        limboCache.addLimboPlayer(player);
+        LimboPlayer limboPlayer = limboCache.getLimboPlayer("bobby");
+
+        // when
+        limboCache.completeCapture(player, limboPlayer, false, false);
+
+        // then
+        assertThat(limboPlayer.getGroup(), equalTo("vip"));
+        assertThat(limboPlayer.isOperator(), equalTo(true));
+        assertThat(limboPlayer.isFly(), equalTo(true));
+        verify(limboPlayerStorage, never()).saveSnapshot(any(UUID.class), any(PlayerData.class));
+    }
+
+    @Test
+    public void shouldNotSaveSnapshotOfRemovedLimboPlayer() {
+        // given
+        Player player = mockPlayer("Bobby", false);
+        limboCache.addLimboPlayer(player);
+        LimboPlayer limboPlayer = limboCache.getLimboPlayer("bobby");
+        limboCache.deleteLimboPlayer("Bobby");
+        verify(limboPlayerStorage, never()).removeSnapshot(any(UUID.class));
+
+        // when
+        limboCache.completeCapture(player, limboPlayer, false, false);
+
+        // then
+        InOrder inOrder = inOrder(limboPlayerStorage);
+        inOrder.verify(limboPlayerStorage).getSnapshot(BOBBY_UUID, "bobby");
+        inOrder.verify(limboPlayerStorage).removeSnapshot(BOBBY_UUID);
+        verify(limboPlayerStorage, never()).saveSnapshot(any(UUID.class), any(PlayerData.class));
+    }
+
+    @Test
+    public void shouldRunCallbacksOnceCaptured() {
+        // given
+        Player player = mockPlayer("Bobby", false);
+        given(permissionsManager.hasGroupSupport()).willReturn(true);
+        given(permissionsManager.getPrimaryGroup(player)).willReturn("member");
+        limboCache.addLimboPlayer(player);
+        LimboPlayer limboPlayer = limboCache.getLimboPlayer("bobby");
+        Runnable callback = mock(Runnable.class);
+
+        // when
+        limboPlayer.whenCaptured(callback);
+
+        // then
+        assertThat(limboPlayer.isCaptured(), equalTo(false));
+        assertThat(limboPlayer.getGroup(), nullValue());
+        verifyZeroInteractions(callback);
+
+        // when (2)
+        limboCache.completeCapture(player, limboPlayer, false, false);
+
+        // then (2)
+        assertThat(limboPlayer.isCaptured(), equalTo(true));
+        assertThat(limboPlayer.getGroup(), equalTo("member"));
+        verify(callback).run();
+
+        // when (3)
+        Runnable laterCallback = mock(Runnable.class);
+        limboPlayer.whenCaptured(laterCallback);
+
+        // then (3)
+        verify(laterCallback).run();
+    }
+
+    private static Player mockPlayer(String name, boolean isOp) {
+        Player player = mock(Player.class);
+        given(player.getName()).willReturn(name);
+        given(player.getUniqueId()).willReturn(BOBBY_UUID);
+        given(player.isOp()).willReturn(isOp);
+        given(player.getLocation()).willReturn(mock(Location.class));
+        return player;
+    }
+}
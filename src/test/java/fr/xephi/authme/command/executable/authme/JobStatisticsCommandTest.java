@@ -0,0 +1,58 @@
+package fr.xephi.authme.command.executable.authme;
+
+import fr.xephi.authme.task.TaskScheduler;
+import org.bukkit.command.CommandSender;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test for {@link JobStatisticsCommand}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class JobStatisticsCommandTest {
+
+    @InjectMocks
+    private JobStatisticsCommand command;
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    @Test
+    public void shouldSendStatisticsOfJobGroups() {
+        // given
+        CommandSender sender = mock(CommandSender.class);
+        given(taskScheduler.getStatisticsSummary()).willReturn(Arrays.asList("Jobs 'Purge': 3 runs", "Jobs 'GeoIP': 1 run"));
+
+        // when
+        command.executeCommand(sender, Collections.<String>emptyList());
+
+        // then
+        verify(sender).sendMessage("Jobs 'Purge': 3 runs");
+        verify(sender).sendMessage("Jobs 'GeoIP': 1 run");
+    }
+
+    @Test
+    public void shouldReportThatNoJobsHaveRun() {
+        // given
+        CommandSender sender = mock(CommandSender.class);
+        given(taskScheduler.getStatisticsSummary()).willReturn(Collections.<String>emptyList());
+
+        // when
+        command.executeCommand(sender, Collections.<String>emptyList());
+
+        // then
+        verify(sender, times(1)).sendMessage(anyString());
+    }
+}
@@ -1,9 +1,17 @@
 package fr.xephi.authme.command.executable.authme;
 
+import fr.xephi.authme.cache.OnlineIpIndex;
+import fr.xephi.authme.cache.auth.JoinContextCache;
+import fr.xephi.authme.cache.auth.PlayerCache;
 import fr.xephi.authme.command.CommandService;
 import fr.xephi.authme.datasource.DataSource;
 import fr.xephi.authme.output.MessageKey;
+import fr.xephi.authme.permission.AuthGroupHandler;
+import fr.xephi.authme.permission.AuthGroupType;
+import fr.xephi.authme.settings.properties.RegistrationSettings;
+import fr.xephi.authme.util.BukkitService;
 import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
@@ -34,6 +42,21 @@ public class UnregisterAdminCommandTest {
     @Mock
     private CommandService commandService;
 
+    @Mock
+    private PlayerCache playerCache;
+
+    @Mock
+    private BukkitService bukkitService;
+
+    @Mock
+    private AuthGroupHandler authGroupHandler;
+
+    @Mock
+    private JoinContextCache joinContextCache;
+
+    @Mock
+    private OnlineIpIndex onlineIpIndex;
+
     @Test
     public void shouldHandleUnknownPlayer() {
         // given
@@ -68,4 +91,27 @@ public class UnregisterAdminCommandTest {
         verify(commandService).send(sender, MessageKey.ERROR);
     }
 
+    @Test
+    public void shouldUnregisterOnlinePlayer() {
+        // given
+        String user = "Bobby";
+        given(dataSource.isAuthAvailable("bobby")).willReturn(true);
+        given(dataSource.removeAuth("bobby")).willReturn(true);
+        Player player = mock(Player.class);
+        given(player.isOnline()).willReturn(true);
+        given(bukkitService.getPlayerExact("bobby")).willReturn(player);
+        given(commandService.getProperty(RegistrationSettings.FORCE)).willReturn(false);
+        CommandSender sender = mock(CommandSender.class);
+
+        // when
+        command.executeCommand(sender, Collections.singletonList(user));
+
+        // then
+        verify(playerCache).removePlayer("bobby");
+        verify(joinContextCache).invalidate("bobby");
+        verify(onlineIpIndex).setUnlogged("bobby");
+        verify(authGroupHandler).setGroup(player, AuthGroupType.UNREGISTERED);
+        verify(commandService).send(player, MessageKey.UNREGISTERED_SUCCESS);
+        verify(commandService).send(sender, MessageKey.UNREGISTERED_SUCCESS);
+    }
 }
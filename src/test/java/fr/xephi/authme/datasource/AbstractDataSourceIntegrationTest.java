@@ -4,6 +4,8 @@ import fr.xephi.authme.cache.auth.PlayerAuth;
 import fr.xephi.authme.security.crypts.HashedPassword;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -12,6 +14,7 @@ import static fr.xephi.authme.AuthMeMatchers.hasAuthBasicData;
 import static fr.xephi.authme.AuthMeMatchers.hasAuthLocation;
 import java.util.HashSet;
 import java.util.Set;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasSize;
@@ -219,6 +222,25 @@ public abstract class AbstractDataSourceIntegrationTest {
         assertThat(dataSource.getAuth("user"), hasAuthLocation(143, -42.12, 29.47, "the_end"));
     }
 
+    @Test
+    public void shouldUpdateMultipleLastLocs() {
+        // given
+        DataSource dataSource = getDataSource();
+        PlayerAuth user = PlayerAuth.builder()
+            .name("user").locX(143).locY(-42.12).locZ(29.47)
+            .locWorld("the_end").build();
+        PlayerAuth bobby = PlayerAuth.builder()
+            .name("bobby").locX(-8).locY(64).locZ(12.5)
+            .locWorld("nether").build();
+
+        // when
+        dataSource.updateQuitLoc(Arrays.asList(user, bobby));
+
+        // then
+        assertThat(dataSource.getAuth("user"), hasAuthLocation(143, -42.12, 29.47, "the_end"));
+        assertThat(dataSource.getAuth("bobby"), hasAuthLocation(-8, 64, 12.5, "nether"));
+    }
+
     @Test
     public void shouldDeletePlayers() {
         // given
@@ -227,14 +249,94 @@ public abstract class AbstractDataSourceIntegrationTest {
         assumeThat(dataSource.getAccountsRegistered(), equalTo(2));
 
         // when
-        dataSource.purgeBanned(playersToDelete);
+        int deleted = dataSource.purgeBanned(playersToDelete);
 
         // then
+        assertThat(deleted, equalTo(1));
         assertThat(dataSource.getAccountsRegistered(), equalTo(1));
         assertThat(dataSource.isAuthAvailable("bobby"), equalTo(false));
         assertThat(dataSource.isAuthAvailable("user"), equalTo(true));
     }
 
+    @Test
+    public void shouldPurgeInactiveAccountsInChunks() {
+        // given
+        DataSource dataSource = getDataSource();
+        List<String> purgedNames = new ArrayList<>();
+
+        // when
+        long firstId = dataSource.purgeInactiveChunk(1460000000L, 0, 1, purgedNames);
+        long secondId = dataSource.purgeInactiveChunk(1460000000L, firstId, 1, purgedNames);
+        long thirdId = dataSource.purgeInactiveChunk(1460000000L, secondId, 1, purgedNames);
+
+        // then
+        assertThat(purgedNames, contains("bobby", "user"));
+        assertThat(secondId > firstId, equalTo(true));
+        assertThat(thirdId, equalTo(-1L));
+        assertThat(dataSource.getAccountsRegistered(), equalTo(0));
+    }
+
+    @Test
+    public void shouldOnlyPurgeAccountsWithOldLastLogin() {
+        // given
+        DataSource dataSource = getDataSource();
+        List<String> purgedNames = new ArrayList<>();
+
+        // when
+        long lastId = dataSource.purgeInactiveChunk(1450000000L, 0, 10, purgedNames);
+
+        // then
+        assertThat(purgedNames, contains("bobby"));
+        assertThat(dataSource.purgeInactiveChunk(1450000000L, lastId, 10, purgedNames), equalTo(-1L));
+        assertThat(dataSource.isAuthAvailable("bobby"), equalTo(false));
+        assertThat(dataSource.isAuthAvailable("user"), equalTo(true));
+    }
+
+    @Test
+    public void shouldImportAuths() {
+        // given
+        DataSource dataSource = getDataSource();
+        PlayerAuth bobby = PlayerAuth.builder()
+            .name("bobby").realName("BOBBY").password("new_hash", "new_salt").ip("12.34.56.78")
+            .lastLogin(1460000000L).email("bobby@example.org").locWorld("nether").locX(12.5).build();
+        PlayerAuth tina = PlayerAuth.builder()
+            .name("tina").realName("Tina").password("tina_hash", "tina_salt").build();
+        dataSource.setLogged("bobby");
+
+        // when
+        boolean response = dataSource.importAuths(Arrays.asList(bobby, tina));
+
+        // then
+        assertThat(response, equalTo(true));
+        assertThat(dataSource.getAccountsRegistered(), equalTo(3));
+        // columns which are not imported are kept
+        assertThat(dataSource.isLogged("bobby"), equalTo(true));
+        PlayerAuth result = dataSource.getAuth("bobby");
+        assertThat(result, hasAuthBasicData("bobby", "BOBBY", "bobby@example.org", "12.34.56.78"));
+        assertThat(result.getLastLogin(), equalTo(1460000000L));
+        assertThat(result.getQuitLocX(), equalTo(12.5));
+        assertThat(dataSource.getPassword("tina"), equalToHash("tina_hash", "tina_salt"));
+    }
+
+    @Test
+    public void shouldExportAuthsLoggedInSince() throws IOException {
+        // given
+        DataSource dataSource = getDataSource();
+        List<PlayerAuth> recentAuths = new ArrayList<>();
+        List<PlayerAuth> allAuths = new ArrayList<>();
+
+        // when
+        boolean recentResult = dataSource.exportAuths(1450000000L, collectInto(recentAuths));
+        boolean allResult = dataSource.exportAuths(-1L, collectInto(allAuths));
+
+        // then
+        assertThat(recentResult, equalTo(true));
+        assertThat(recentAuths, hasSize(1));
+        assertThat(recentAuths.get(0).getNickname(), equalTo("user"));
+        assertThat(allResult, equalTo(true));
+        assertThat(allAuths, hasSize(2));
+    }
+
     @Test
     public void shouldUpdateEmail() {
         // given
@@ -321,4 +423,28 @@ public abstract class AbstractDataSourceIntegrationTest {
         assertThat(dataSource.getAuth("bobby"), hasAuthBasicData("bobby", "BOBBY", "your@email.com", "123.45.67.89"));
     }
 
+    @Test
+    public void shouldSetMultiplePlayersUnlogged() {
+        // given
+        DataSource dataSource = getDataSource();
+        dataSource.setLogged("bobby");
+        dataSource.setLogged("user");
+
+        // when
+        dataSource.setUnlogged(new HashSet<>(Arrays.asList("Bobby", "user", "doesNotExist")));
+
+        // then
+        assertThat(dataSource.isLogged("bobby"), equalTo(false));
+        assertThat(dataSource.isLogged("user"), equalTo(false));
+    }
+
+    private static AuthConsumer collectInto(final List<PlayerAuth> auths) {
+        return new AuthConsumer() {
+            @Override
+            public void accept(PlayerAuth auth) {
+                auths.add(auth);
+            }
+        };
+    }
+
 }
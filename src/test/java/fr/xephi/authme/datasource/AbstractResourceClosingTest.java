@@ -238,6 +238,12 @@ public abstract class AbstractResourceClosingTest {
             .put(long.class, 102L)
             .put(PlayerAuth.class, PlayerAuth.builder().name("test").realName("test").password(hash).build())
             .put(HashedPassword.class, hash)
+            .put(AuthConsumer.class, new AuthConsumer() {
+                @Override
+                public void accept(PlayerAuth auth) {
+                    // nothing to do
+                }
+            })
             .build();
     }
 
@@ -267,6 +273,7 @@ public abstract class AbstractResourceClosingTest {
         Connection connection = mock(Connection.class);
         try {
             given(connection.prepareStatement(anyString())).willAnswer(preparedStatementAnswer());
+            given(connection.prepareStatement(anyString(), anyInt(), anyInt())).willAnswer(preparedStatementAnswer());
             given(connection.createStatement()).willAnswer(preparedStatementAnswer());
             given(connection.createBlob()).willReturn(mock(Blob.class));
             return connection;
@@ -10,8 +10,11 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static fr.xephi.authme.AuthMeMatchers.equalToHash;
 import static fr.xephi.authme.AuthMeMatchers.hasAuthBasicData;
@@ -88,6 +91,21 @@ public class FlatFileIntegrationTest {
         assertThat(authList, hasItem(hasAuthBasicData("test", "test", "user@EXAMPLE.org", "123.45.67.77")));
     }
 
+    @Test
+    public void shouldPurgeBannedPlayers() {
+        // given
+        Set<String> banned = new HashSet<>(Arrays.asList("bobby", "twofields", "doesnotexist"));
+
+        // when
+        int deleted = dataSource.purgeBanned(banned);
+
+        // then
+        assertThat(deleted, equalTo(2));
+        assertThat(dataSource.getAllAuths(), hasSize(5));
+        assertThat(dataSource.isAuthAvailable("bobby"), equalTo(false));
+        assertThat(dataSource.isAuthAvailable("user"), equalTo(true));
+    }
+
     private static PlayerAuth getName(String name, Collection<PlayerAuth> auths) {
         for (PlayerAuth auth : auths) {
             if (name.equals(auth.getNickname())) {
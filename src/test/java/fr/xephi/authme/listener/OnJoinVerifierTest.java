@@ -9,6 +9,7 @@ import fr.xephi.authme.output.Messages;
 import fr.xephi.authme.permission.PermissionsManager;
 import fr.xephi.authme.permission.PlayerStatePermission;
 import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.ProtectionSettings;
 import fr.xephi.authme.settings.properties.RegistrationSettings;
 import fr.xephi.authme.settings.properties.RestrictionSettings;
 import fr.xephi.authme.util.BukkitService;
@@ -253,12 +254,12 @@ public class OnJoinVerifierTest {
     @Test
     public void shouldAllowProperlyCasedName() throws FailedVerificationException {
         // given
-        Player player = newPlayerWithName("Bobby");
+        String name = "Bobby";
         PlayerAuth auth = PlayerAuth.builder().name("bobby").realName("Bobby").build();
         given(settings.getProperty(RegistrationSettings.PREVENT_OTHER_CASE)).willReturn(true);
 
         // when
-        onJoinVerifier.checkNameCasing(player, auth);
+        onJoinVerifier.checkNameCasing(name, auth);
 
         // then
         verifyZeroInteractions(dataSource);
@@ -267,7 +268,7 @@ public class OnJoinVerifierTest {
     @Test
     public void shouldRejectNameWithWrongCasing() throws FailedVerificationException {
         // given
-        Player player = newPlayerWithName("Tester");
+        String name = "Tester";
         PlayerAuth auth = PlayerAuth.builder().name("tester").realName("testeR").build();
         given(settings.getProperty(RegistrationSettings.PREVENT_OTHER_CASE)).willReturn(true);
 
@@ -275,19 +276,19 @@ public class OnJoinVerifierTest {
         expectValidationExceptionWith(MessageKey.INVALID_NAME_CASE, "testeR", "Tester");
 
         // when / then
-        onJoinVerifier.checkNameCasing(player, auth);
+        onJoinVerifier.checkNameCasing(name, auth);
         verifyZeroInteractions(dataSource);
     }
 
     @Test
     public void shouldUpdateMissingRealName() throws FailedVerificationException {
         // given
-        Player player = newPlayerWithName("Authme");
+        String name = "Authme";
         PlayerAuth auth = PlayerAuth.builder().name("authme").realName("").build();
         given(settings.getProperty(RegistrationSettings.PREVENT_OTHER_CASE)).willReturn(true);
 
         // when
-        onJoinVerifier.checkNameCasing(player, auth);
+        onJoinVerifier.checkNameCasing(name, auth);
 
         // then
         verify(dataSource).updateRealName("authme", "Authme");
@@ -296,12 +297,12 @@ public class OnJoinVerifierTest {
     @Test
     public void shouldUpdateDefaultRealName() throws FailedVerificationException {
         // given
-        Player player = newPlayerWithName("SOMEONE");
+        String name = "SOMEONE";
         PlayerAuth auth = PlayerAuth.builder().name("someone").realName("Player").build();
         given(settings.getProperty(RegistrationSettings.PREVENT_OTHER_CASE)).willReturn(true);
 
         // when
-        onJoinVerifier.checkNameCasing(player, auth);
+        onJoinVerifier.checkNameCasing(name, auth);
 
         // then
         verify(dataSource).updateRealName("someone", "SOMEONE");
@@ -310,12 +311,12 @@ public class OnJoinVerifierTest {
     @Test
     public void shouldAcceptCasingMismatchForDisabledSetting() throws FailedVerificationException {
         // given
-        Player player = newPlayerWithName("Test");
+        String name = "Test";
         PlayerAuth auth = PlayerAuth.builder().name("test").realName("TEST").build();
         given(settings.getProperty(RegistrationSettings.PREVENT_OTHER_CASE)).willReturn(false);
 
         // when
-        onJoinVerifier.checkNameCasing(player, auth);
+        onJoinVerifier.checkNameCasing(name, auth);
 
         // then
         verifyZeroInteractions(dataSource);
@@ -324,17 +325,43 @@ public class OnJoinVerifierTest {
     @Test
     public void shouldAcceptNameForUnregisteredAccount() throws FailedVerificationException {
         // given
-        Player player = newPlayerWithName("MyPlayer");
+        String name = "MyPlayer";
         PlayerAuth auth = null;
         given(settings.getProperty(RegistrationSettings.PREVENT_OTHER_CASE)).willReturn(true);
 
         // when
-        onJoinVerifier.checkNameCasing(player, auth);
+        onJoinVerifier.checkNameCasing(name, auth);
 
         // then
         verifyZeroInteractions(dataSource);
     }
 
+    @Test
+    public void shouldRejectUnregisteredPlayerFromBannedCountry() throws FailedVerificationException {
+        // given
+        String ip = "192.168.0.1";
+        given(settings.getProperty(ProtectionSettings.ENABLE_PROTECTION)).willReturn(true);
+        given(validationService.isCountryAdmitted(ip)).willReturn(false);
+
+        // expect
+        expectValidationExceptionWith(MessageKey.COUNTRY_BANNED_ERROR);
+
+        // when / then
+        onJoinVerifier.checkPlayerCountry(false, ip);
+    }
+
+    @Test
+    public void shouldNotCheckCountryOfRegisteredPlayer() throws FailedVerificationException {
+        // given
+        given(settings.getProperty(ProtectionSettings.ENABLE_PROTECTION)).willReturn(true);
+
+        // when
+        onJoinVerifier.checkPlayerCountry(true, "192.168.0.1");
+
+        // then
+        verifyZeroInteractions(validationService);
+    }
+
     @Test
     public void shouldAcceptNameThatIsNotOnline() throws FailedVerificationException {
         // given
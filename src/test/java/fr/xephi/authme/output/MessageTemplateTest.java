@@ -0,0 +1,78 @@
+package fr.xephi.authme.output;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.emptyArray;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link MessageTemplate}.
+ */
+public class MessageTemplateTest {
+
+    @Test
+    public void shouldSplitLinesAndTranslateColors() {
+        // given / when
+        MessageTemplate template = MessageTemplate.compile("&cFirst line&n&asecond line", new String[0]);
+
+        // then
+        assertThat(template.getLines(), arrayContaining("§cFirst line", "§asecond line"));
+        assertThat(template.getText(), equalTo("§cFirst line\n§asecond line"));
+    }
+
+    @Test
+    public void shouldReturnSharedLinesForMessageWithoutTags() {
+        // given
+        MessageTemplate template = MessageTemplate.compile("No tags here", new String[]{"%tag"});
+
+        // when
+        String[] lines = template.render("unused");
+
+        // then
+        assertThat(lines, sameInstance(template.getLines()));
+        assertThat(template.renderSingle("unused"), sameInstance(template.getText()));
+    }
+
+    @Test
+    public void shouldReplaceTagsInAllLines() {
+        // given
+        MessageTemplate template = MessageTemplate.compile(
+            "You own %count accounts&n%name, %name and %count again", new String[]{"%name", "%count"});
+
+        // when
+        String[] lines = template.render("Bobby", "3");
+        String text = template.renderSingle("Bobby", "3");
+
+        // then
+        assertThat(lines, arrayContaining("You own 3 accounts", "Bobby, Bobby and 3 again"));
+        assertThat(text, equalTo("You own 3 accounts\nBobby, Bobby and 3 again"));
+        // the template is left untouched
+        assertThat(template.getLines(), arrayContaining("You own %count accounts", "%name, %name and %count again"));
+    }
+
+    @Test
+    public void shouldReplaceTagsAtStartAndEnd() {
+        // given
+        MessageTemplate template = MessageTemplate.compile("%valid%invalid", new String[]{"%valid", "%invalid"});
+
+        // when
+        String text = template.renderSingle("Name", "name");
+
+        // then
+        assertThat(text, equalTo("Namename"));
+    }
+
+    @Test
+    public void shouldHaveNoLinesForEmptyMessage() {
+        // given / when
+        MessageTemplate template = MessageTemplate.compile("", new String[]{"%tag"});
+
+        // then
+        assertThat(template.getLines(), emptyArray());
+        assertThat(template.render("test"), emptyArray());
+        assertThat(template.renderSingle("test"), equalTo(""));
+    }
+}
@@ -1,13 +1,18 @@
 package fr.xephi.authme.settings;
 
 import com.google.common.io.Files;
+import fr.xephi.authme.AuthMe;
+import fr.xephi.authme.ReflectionTestUtils;
 import fr.xephi.authme.TestHelper;
 import fr.xephi.authme.datasource.DataSource;
 import fr.xephi.authme.hooks.PluginHooks;
+import fr.xephi.authme.settings.properties.HooksSettings;
 import fr.xephi.authme.settings.properties.RestrictionSettings;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -20,6 +25,8 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertThat;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 /**
  * Test for {@link SpawnLoader}.
@@ -46,6 +53,11 @@ public class SpawnLoaderTest {
             .willReturn("authme, essentials, multiverse, default");
     }
 
+    @After
+    public void resetPluginInstance() {
+        ReflectionTestUtils.setField(AuthMe.class, null, "plugin", null);
+    }
+
     @Test
     public void shouldSetSpawn() {
         // given
@@ -67,4 +79,62 @@ public class SpawnLoaderTest {
         assertThat(configuration.getString("spawn.world"), equalTo("new_world"));
     }
 
+    @Test
+    public void shouldCacheMultiverseSpawnPerWorld() {
+        // given
+        ReflectionTestUtils.setField(AuthMe.class, null, "plugin", mock(AuthMe.class));
+        given(settings.getProperty(RestrictionSettings.SPAWN_PRIORITY)).willReturn("Multiverse , default");
+        given(settings.getProperty(HooksSettings.MULTIVERSE)).willReturn(true);
+        PluginHooks pluginHooks = mock(PluginHooks.class);
+        World world = mock(World.class);
+        given(world.getName()).willReturn("world");
+        Location multiverseSpawn = new Location(world, 12.0, 64.0, -3.5);
+        given(pluginHooks.getMultiverseSpawn(world)).willReturn(multiverseSpawn);
+        SpawnLoader spawnLoader = new SpawnLoader(testFolder, settings, pluginHooks, mock(DataSource.class));
+        Player player = mock(Player.class);
+        given(player.getWorld()).willReturn(world);
+
+        // when
+        Location firstResult = spawnLoader.getSpawnLocation(player);
+        Location secondResult = spawnLoader.getSpawnLocation(player);
+        spawnLoader.clearCache();
+        spawnLoader.getSpawnLocation(player);
+
+        // then
+        assertThat(firstResult.getX(), equalTo(12.0));
+        assertThat(secondResult.getZ(), equalTo(-3.5));
+        assertThat(secondResult.getWorld(), equalTo(world));
+        verify(pluginHooks, times(2)).getMultiverseSpawn(world);
+    }
+
+    @Test
+    public void shouldClearCachedSpawnsOfWorld() {
+        // given
+        ReflectionTestUtils.setField(AuthMe.class, null, "plugin", mock(AuthMe.class));
+        given(settings.getProperty(RestrictionSettings.SPAWN_PRIORITY)).willReturn("multiverse, default");
+        given(settings.getProperty(HooksSettings.MULTIVERSE)).willReturn(true);
+        PluginHooks pluginHooks = mock(PluginHooks.class);
+        World world = mock(World.class);
+        given(world.getName()).willReturn("world");
+        World otherWorld = mock(World.class);
+        given(otherWorld.getName()).willReturn("other_world");
+        given(pluginHooks.getMultiverseSpawn(world)).willReturn(new Location(world, 12.0, 64.0, -3.5));
+        given(pluginHooks.getMultiverseSpawn(otherWorld)).willReturn(new Location(otherWorld, 1.0, 70.0, 2.0));
+        SpawnLoader spawnLoader = new SpawnLoader(testFolder, settings, pluginHooks, mock(DataSource.class));
+        Player player = mock(Player.class);
+        given(player.getWorld()).willReturn(world);
+        Player otherPlayer = mock(Player.class);
+        given(otherPlayer.getWorld()).willReturn(otherWorld);
+        spawnLoader.getSpawnLocation(player);
+        spawnLoader.getSpawnLocation(otherPlayer);
+
+        // when
+        spawnLoader.clearCache("world");
+        spawnLoader.getSpawnLocation(player);
+        spawnLoader.getSpawnLocation(otherPlayer);
+
+        // then
+        verify(pluginHooks, times(2)).getMultiverseSpawn(world);
+        verify(pluginHooks).getMultiverseSpawn(otherWorld);
+    }
 }
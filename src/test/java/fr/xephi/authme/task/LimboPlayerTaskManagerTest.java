@@ -9,12 +9,11 @@ import fr.xephi.authme.output.Messages;
 import fr.xephi.authme.settings.NewSetting;
 import fr.xephi.authme.settings.properties.RegistrationSettings;
 import fr.xephi.authme.settings.properties.RestrictionSettings;
-import fr.xephi.authme.util.BukkitService;
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitTask;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
@@ -22,8 +21,11 @@ import org.mockito.runners.MockitoJUnitRunner;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 
@@ -43,7 +45,7 @@ public class LimboPlayerTaskManagerTest {
     private NewSetting settings;
 
     @Mock
-    private BukkitService bukkitService;
+    private TaskScheduler taskScheduler;
 
     @Mock
     private LimboCache limboCache;
@@ -59,159 +61,178 @@ public class LimboPlayerTaskManagerTest {
     @Test
     public void shouldRegisterMessageTask() {
         // given
-        String name = "bobby";
+        Player player = mockPlayer("bobby");
         LimboPlayer limboPlayer = mock(LimboPlayer.class);
-        given(limboCache.getLimboPlayer(name)).willReturn(limboPlayer);
+        given(limboCache.getLimboPlayer("bobby")).willReturn(limboPlayer);
         MessageKey key = MessageKey.REGISTER_EMAIL_MESSAGE;
         given(messages.retrieve(key)).willReturn(new String[]{"Please register!"});
-        BukkitTask bukkiTask = mock(BukkitTask.class);
-        given(bukkitService.runTask(any(MessageTask.class))).willReturn(bukkiTask);
         given(settings.getProperty(RegistrationSettings.MESSAGE_INTERVAL)).willReturn(12);
         given(settings.getProperty(RegistrationSettings.USE_EMAIL_REGISTRATION)).willReturn(true);
 
         // when
-        limboPlayerTaskManager.registerMessageTask(name, false);
+        limboPlayerTaskManager.registerMessageTask(player, false);
 
         // then
-        verify(limboPlayer).setMessageTask(bukkiTask);
+        verify(limboPlayer).setMessageTask(any(MessageTask.class));
         verify(messages).retrieve(key);
+        verify(taskScheduler).runSyncRepeating(eq(JobGroup.LIMBO), any(Runnable.class), eq(20L), eq(20L));
     }
 
     @Test
     public void shouldNotScheduleTaskForMissingLimboPlayer() {
         // given
-        String name = "ghost";
-        given(limboCache.getLimboPlayer(name)).willReturn(null);
+        Player player = mockPlayer("ghost");
+        given(limboCache.getLimboPlayer("ghost")).willReturn(null);
         given(settings.getProperty(RegistrationSettings.MESSAGE_INTERVAL)).willReturn(5);
 
         // when
-        limboPlayerTaskManager.registerMessageTask(name, true);
+        limboPlayerTaskManager.registerMessageTask(player, true);
 
         // then
-        verify(limboCache).getLimboPlayer(name);
-        verifyZeroInteractions(bukkitService);
+        verify(limboCache).getLimboPlayer("ghost");
+        verifyZeroInteractions(taskScheduler);
         verifyZeroInteractions(messages);
     }
 
     @Test
     public void shouldNotScheduleTaskForZeroAsInterval() {
         // given
-        String name = "Tester1";
+        Player player = mockPlayer("Tester1");
         LimboPlayer limboPlayer = mock(LimboPlayer.class);
-        given(limboCache.getLimboPlayer(name)).willReturn(limboPlayer);
-        BukkitTask bukkiTask = mock(BukkitTask.class);
-        given(bukkitService.runTask(any(MessageTask.class))).willReturn(bukkiTask);
+        given(limboCache.getLimboPlayer("Tester1")).willReturn(limboPlayer);
         given(settings.getProperty(RegistrationSettings.MESSAGE_INTERVAL)).willReturn(0);
 
         // when
-        limboPlayerTaskManager.registerMessageTask(name, true);
+        limboPlayerTaskManager.registerMessageTask(player, true);
 
         // then
-        verifyZeroInteractions(limboPlayer, bukkitService);
+        verifyZeroInteractions(limboPlayer, taskScheduler);
     }
 
     @Test
-    public void shouldCancelExistingMessageTask() {
+    public void shouldSendMessagesOnTickUntilPlayerIsAuthenticated() {
         // given
-        LimboPlayer limboPlayer = mock(LimboPlayer.class);
-        BukkitTask existingMessageTask = mock(BukkitTask.class);
-        given(limboPlayer.getMessageTask()).willReturn(existingMessageTask);
+        Player player = mockPlayer("bobby");
+        given(player.isOnline()).willReturn(true);
+        given(limboCache.getLimboPlayer("bobby")).willReturn(mock(LimboPlayer.class));
+        given(messages.retrieve(MessageKey.LOGIN_MESSAGE)).willReturn(new String[]{"Please log in", "Use /login"});
+        given(settings.getProperty(RegistrationSettings.MESSAGE_INTERVAL)).willReturn(2);
+        ScheduledJob wheelTask = mock(ScheduledJob.class);
+        given(taskScheduler.runSyncRepeating(any(JobGroup.class), any(Runnable.class), anyLong(), anyLong()))
+            .willReturn(wheelTask);
+        limboPlayerTaskManager.registerMessageTask(player, true);
 
-        String name = "bobby";
-        given(limboCache.getLimboPlayer(name)).willReturn(limboPlayer);
-        given(messages.retrieve(MessageKey.REGISTER_EMAIL_MESSAGE))
-            .willReturn(new String[]{"Please register", "Use /register"});
+        // when
+        limboPlayerTaskManager.tick();
+        limboPlayerTaskManager.tick();
+        limboPlayerTaskManager.tick();
+        given(playerCache.isAuthenticated("bobby")).willReturn(true);
+        limboPlayerTaskManager.tick();
+        limboPlayerTaskManager.tick();
 
-        BukkitTask bukkiTask = mock(BukkitTask.class);
-        given(bukkitService.runTask(any(MessageTask.class))).willReturn(bukkiTask);
-        given(settings.getProperty(RegistrationSettings.MESSAGE_INTERVAL)).willReturn(8);
-        given(settings.getProperty(RegistrationSettings.USE_EMAIL_REGISTRATION)).willReturn(true);
+        // then
+        verify(player, times(2)).sendMessage("Please log in");
+        verify(player, times(2)).sendMessage("Use /login");
+        verify(wheelTask).cancel();
+    }
+
+    @Test
+    public void shouldNotRunCancelledTask() {
+        // given
+        Player player = mockPlayer("bobby");
+        given(player.isOnline()).willReturn(true);
+        LimboPlayer limboPlayer = mock(LimboPlayer.class);
+        given(limboCache.getLimboPlayer("bobby")).willReturn(limboPlayer);
+        given(messages.retrieve(MessageKey.LOGIN_MESSAGE)).willReturn(new String[]{"Please log in"});
+        given(settings.getProperty(RegistrationSettings.MESSAGE_INTERVAL)).willReturn(5);
+        given(taskScheduler.runSyncRepeating(any(JobGroup.class), any(Runnable.class), anyLong(), anyLong()))
+            .willReturn(mock(ScheduledJob.class));
+        limboPlayerTaskManager.registerMessageTask(player, true);
+        ArgumentCaptor<MessageTask> captor = ArgumentCaptor.forClass(MessageTask.class);
+        verify(limboPlayer).setMessageTask(captor.capture());
 
         // when
-        limboPlayerTaskManager.registerMessageTask(name, false);
+        captor.getValue().cancel();
+        limboPlayerTaskManager.tick();
 
         // then
-        verify(limboPlayer).setMessageTask(bukkiTask);
-        verify(messages).retrieve(MessageKey.REGISTER_EMAIL_MESSAGE);
-        verify(existingMessageTask).cancel();
+        verify(player, never()).sendMessage(anyString());
     }
 
     @Test
     public void shouldRegisterTimeoutTask() {
         // given
         String name = "l33tPlayer";
-        Player player = mock(Player.class);
-        given(player.getName()).willReturn(name);
+        Player player = mockPlayer(name);
         LimboPlayer limboPlayer = mock(LimboPlayer.class);
         given(limboCache.getLimboPlayer(name)).willReturn(limboPlayer);
         given(settings.getProperty(RestrictionSettings.TIMEOUT)).willReturn(30);
-        BukkitTask bukkitTask = mock(BukkitTask.class);
-        given(bukkitService.runTaskLater(any(TimeoutTask.class), anyLong())).willReturn(bukkitTask);
 
         // when
         limboPlayerTaskManager.registerTimeoutTask(player);
 
         // then
-        verify(limboPlayer).setTimeoutTask(bukkitTask);
-        verify(bukkitService).runTaskLater(any(TimeoutTask.class), eq(600L)); // 30 * TICKS_PER_SECOND
+        verify(limboPlayer).setTimeoutTask(any(TimeoutTask.class));
+        verify(taskScheduler).runSyncRepeating(eq(JobGroup.LIMBO), any(Runnable.class), eq(20L), eq(20L));
         verify(messages).retrieveSingle(MessageKey.LOGIN_TIMEOUT_ERROR);
     }
 
     @Test
-    public void shouldNotRegisterTimeoutTaskForMissingLimboPlayer() {
+    public void shouldKickPlayerAfterTimeout() {
         // given
-        String name = "Phantom_";
-        Player player = mock(Player.class);
-        given(player.getName()).willReturn(name);
-        given(limboCache.getLimboPlayer(name)).willReturn(null);
-        given(settings.getProperty(RestrictionSettings.TIMEOUT)).willReturn(27);
+        Player player = mockPlayer("snail");
+        given(player.isOnline()).willReturn(true);
+        given(limboCache.getLimboPlayer("snail")).willReturn(mock(LimboPlayer.class));
+        given(settings.getProperty(RestrictionSettings.TIMEOUT)).willReturn(3);
+        given(messages.retrieveSingle(MessageKey.LOGIN_TIMEOUT_ERROR)).willReturn("Login timeout");
+        ScheduledJob wheelTask = mock(ScheduledJob.class);
+        given(taskScheduler.runSyncRepeating(any(JobGroup.class), any(Runnable.class), anyLong(), anyLong()))
+            .willReturn(wheelTask);
+        limboPlayerTaskManager.registerTimeoutTask(player);
 
         // when
-        limboPlayerTaskManager.registerTimeoutTask(player);
+        limboPlayerTaskManager.tick();
+        limboPlayerTaskManager.tick();
+        verify(player, never()).kickPlayer(anyString());
+        limboPlayerTaskManager.tick();
 
         // then
-        verifyZeroInteractions(bukkitService, messages);
+        verify(player).kickPlayer("Login timeout");
+        verify(wheelTask).cancel();
     }
 
     @Test
-    public void shouldNotRegisterTimeoutTaskForZeroTimeout() {
+    public void shouldNotRegisterTimeoutTaskForMissingLimboPlayer() {
         // given
-        String name = "snail";
-        Player player = mock(Player.class);
-        given(player.getName()).willReturn(name);
-        LimboPlayer limboPlayer = mock(LimboPlayer.class);
-        given(limboCache.getLimboPlayer(name)).willReturn(limboPlayer);
-        given(settings.getProperty(RestrictionSettings.TIMEOUT)).willReturn(0);
+        Player player = mockPlayer("Phantom_");
+        given(limboCache.getLimboPlayer("Phantom_")).willReturn(null);
+        given(settings.getProperty(RestrictionSettings.TIMEOUT)).willReturn(27);
 
         // when
         limboPlayerTaskManager.registerTimeoutTask(player);
 
         // then
-        verifyZeroInteractions(limboPlayer, bukkitService);
+        verifyZeroInteractions(taskScheduler, messages);
     }
 
     @Test
-    public void shouldCancelExistingTimeoutTask() {
+    public void shouldNotRegisterTimeoutTaskForZeroTimeout() {
         // given
-        String name = "l33tPlayer";
-        Player player = mock(Player.class);
-        given(player.getName()).willReturn(name);
+        Player player = mockPlayer("snail");
         LimboPlayer limboPlayer = mock(LimboPlayer.class);
-        BukkitTask existingTask = mock(BukkitTask.class);
-        given(limboPlayer.getTimeoutTask()).willReturn(existingTask);
-        given(limboCache.getLimboPlayer(name)).willReturn(limboPlayer);
-        given(settings.getProperty(RestrictionSettings.TIMEOUT)).willReturn(18);
-        BukkitTask bukkitTask = mock(BukkitTask.class);
-        given(bukkitService.runTaskLater(any(TimeoutTask.class), anyLong())).willReturn(bukkitTask);
+        given(limboCache.getLimboPlayer("snail")).willReturn(limboPlayer);
+        given(settings.getProperty(RestrictionSettings.TIMEOUT)).willReturn(0);
 
         // when
         limboPlayerTaskManager.registerTimeoutTask(player);
 
         // then
-        verify(existingTask).cancel();
-        verify(limboPlayer).setTimeoutTask(bukkitTask);
-        verify(bukkitService).runTaskLater(any(TimeoutTask.class), eq(360L)); // 18 * TICKS_PER_SECOND
-        verify(messages).retrieveSingle(MessageKey.LOGIN_TIMEOUT_ERROR);
+        verifyZeroInteractions(limboPlayer, taskScheduler);
     }
 
+    private static Player mockPlayer(String name) {
+        Player player = mock(Player.class);
+        given(player.getName()).willReturn(name);
+        return player;
+    }
 }
@@ -0,0 +1,300 @@
+package fr.xephi.authme.task;
+
+import fr.xephi.authme.AuthMe;
+import fr.xephi.authme.DataManager;
+import fr.xephi.authme.TestHelper;
+import fr.xephi.authme.datasource.DataSource;
+import fr.xephi.authme.hooks.PluginHooks;
+import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.PurgeSettings;
+import fr.xephi.authme.util.BukkitService;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.command.CommandSender;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.contains;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test for {@link PurgeService}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class PurgeServiceTest {
+
+    @InjectMocks
+    private PurgeService purgeService;
+
+    @Mock
+    private AuthMe plugin;
+
+    @Mock
+    private BukkitService bukkitService;
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private DataManager dataManager;
+
+    @Mock
+    private PluginHooks pluginHooks;
+
+    @Mock
+    private NewSetting settings;
+
+    @Captor
+    private ArgumentCaptor<Set<OfflinePlayer>> playersCaptor;
+
+    @BeforeClass
+    public static void setUpLogger() {
+        TestHelper.setupLogger();
+    }
+
+    @Test
+    public void shouldDeleteFilesAsynchronously() {
+        // given
+        given(settings.getProperty(PurgeSettings.REMOVE_PLAYER_DAT)).willReturn(true);
+        given(settings.getProperty(PurgeSettings.REMOVE_ANTI_XRAY_FILE)).willReturn(true);
+        given(settings.getProperty(PurgeSettings.REMOVE_ESSENTIALS_FILES)).willReturn(false);
+        given(settings.getProperty(PurgeSettings.REMOVE_LIMITED_CREATIVE_INVENTORIES)).willReturn(false);
+        given(settings.getProperty(PurgeSettings.REMOVE_PERMISSIONS)).willReturn(false);
+        OfflinePlayer bobby = mockOfflinePlayer("Bobby");
+        OfflinePlayer tina = mockOfflinePlayer("tina");
+        OfflinePlayer[] offlinePlayers = {bobby, mockOfflinePlayer("gabe"), tina};
+        Set<String> names = new HashSet<>(Arrays.asList("bobby", "Tina", "unknown"));
+        CommandSender sender = mock(CommandSender.class);
+
+        // when
+        purgeService.purgePlayers(sender, names, offlinePlayers, true);
+
+        // then
+        verify(dataManager, never()).purgeDat(any(Set.class), any(PurgeReport.class));
+        runAsyncJob();
+        verify(dataManager).purgeDat(playersCaptor.capture(), any(PurgeReport.class));
+        assertThat(playersCaptor.getValue(), containsInAnyOrder(bobby, tina));
+        verify(dataManager).purgeAntiXray(
+            eq(new HashSet<>(Arrays.asList("bobby", "tina", "unknown"))), any(PurgeReport.class));
+        verify(dataManager, never()).purgeLimitedCreative(any(Set.class), any(PurgeReport.class));
+        verify(dataManager, never()).purgePermissions(any(Set.class));
+
+        runSyncJob();
+        verify(sender, atLeastOnce()).sendMessage(anyString());
+        verify(plugin).notifyAutoPurgeEnd();
+    }
+
+    @Test
+    public void shouldRemovePermissionsInBatchesOnMainThread() {
+        // given
+        given(settings.getProperty(PurgeSettings.REMOVE_PERMISSIONS)).willReturn(true);
+        given(settings.getProperty(PurgeSettings.REMOVE_PLAYER_DAT)).willReturn(false);
+        given(settings.getProperty(PurgeSettings.REMOVE_ANTI_XRAY_FILE)).willReturn(false);
+        given(settings.getProperty(PurgeSettings.REMOVE_ESSENTIALS_FILES)).willReturn(false);
+        given(settings.getProperty(PurgeSettings.REMOVE_LIMITED_CREATIVE_INVENTORIES)).willReturn(false);
+        ScheduledJob permissionJob = mock(ScheduledJob.class);
+        given(taskScheduler.runSyncRepeating(eq(JobGroup.PURGE), any(Runnable.class), anyLong(), anyLong()))
+            .willReturn(permissionJob);
+        int total = PurgeTask.BATCH_SIZE + 3;
+        OfflinePlayer[] offlinePlayers = new OfflinePlayer[total];
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < total; ++i) {
+            offlinePlayers[i] = mockOfflinePlayer("player" + i);
+            names.add("player" + i);
+        }
+        CommandSender sender = mock(CommandSender.class);
+
+        // when
+        purgeService.purgePlayers(sender, names, offlinePlayers, false);
+        runAsyncJob();
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(taskScheduler).runSyncRepeating(eq(JobGroup.PURGE), captor.capture(), eq(0L), eq(1L));
+        captor.getValue().run();
+        captor.getValue().run();
+
+        // then
+        verify(dataManager, times(2)).purgePermissions(playersCaptor.capture());
+        assertThat(playersCaptor.getAllValues().get(0), hasSize(PurgeTask.BATCH_SIZE));
+        assertThat(playersCaptor.getAllValues().get(1), hasSize(3));
+        verify(permissionJob).cancel();
+        runSyncJob();
+        verify(sender, atLeastOnce()).sendMessage(anyString());
+        verify(plugin, never()).notifyAutoPurgeEnd();
+    }
+
+    @Test
+    public void shouldOnlyReportFilesInDryRun() {
+        // given
+        given(settings.getProperty(PurgeSettings.REMOVE_PERMISSIONS)).willReturn(true);
+        given(settings.getProperty(PurgeSettings.REMOVE_PLAYER_DAT)).willReturn(true);
+        given(settings.getProperty(PurgeSettings.REMOVE_ANTI_XRAY_FILE)).willReturn(false);
+        given(settings.getProperty(PurgeSettings.REMOVE_ESSENTIALS_FILES)).willReturn(false);
+        given(settings.getProperty(PurgeSettings.REMOVE_LIMITED_CREATIVE_INVENTORIES)).willReturn(false);
+        OfflinePlayer bobby = mockOfflinePlayer("bobby");
+        given(bukkitService.getOfflinePlayers()).willReturn(new OfflinePlayer[]{bobby});
+        CommandSender sender = mock(CommandSender.class);
+
+        // when
+        purgeService.previewPurge(sender, Collections.singleton("bobby"));
+        runAsyncJob();
+        runSyncJob();
+
+        // then
+        ArgumentCaptor<PurgeReport> reportCaptor = ArgumentCaptor.forClass(PurgeReport.class);
+        verify(dataManager).purgeDat(eq(Collections.singleton(bobby)), reportCaptor.capture());
+        assertThat(reportCaptor.getValue().isDryRun(), equalTo(true));
+        verify(taskScheduler, never()).runSyncRepeating(any(JobGroup.class), any(Runnable.class), anyLong(), anyLong());
+        verify(dataManager, never()).purgePermissions(any(Set.class));
+        verify(sender, atLeastOnce()).sendMessage(anyString());
+        verify(plugin, never()).notifyAutoPurgeEnd();
+    }
+
+    @Test
+    public void shouldDeleteAccountsInThrottledChunks() {
+        // given
+        given(settings.getProperty(PurgeSettings.DATABASE_CHUNK_SIZE)).willReturn(2);
+        given(settings.getProperty(PurgeSettings.DATABASE_ROWS_PER_SECOND)).willReturn(10);
+        given(settings.getProperty(PurgeSettings.REMOVE_PERMISSIONS)).willReturn(false);
+        given(dataSource.purgeInactiveChunk(eq(1000L), anyLong(), eq(2), anyList()))
+            .willAnswer(new ChunkAnswer(4L, "bobby", "tina"))
+            .willAnswer(new ChunkAnswer(9L, "gabe"))
+            .willReturn(-1L);
+        given(bukkitService.getOfflinePlayers()).willReturn(new OfflinePlayer[0]);
+        CommandSender sender = mock(CommandSender.class);
+
+        // when
+        purgeService.purgeInactiveAccounts(sender, 1000L, true);
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(taskScheduler).runAsync(eq(JobGroup.PURGE), captor.capture());
+        Runnable chunkJob = captor.getValue();
+        chunkJob.run();
+        chunkJob.run();
+        chunkJob.run();
+
+        // then
+        verify(dataSource).purgeInactiveChunk(eq(1000L), eq(0L), eq(2), anyList());
+        verify(dataSource).purgeInactiveChunk(eq(1000L), eq(4L), eq(2), anyList());
+        verify(dataSource).purgeInactiveChunk(eq(1000L), eq(9L), eq(2), anyList());
+        // 2 rows at 10 rows per second = 4 ticks, 1 row = 2 ticks
+        verify(taskScheduler).runAsyncLater(JobGroup.PURGE, chunkJob, 4L);
+        verify(taskScheduler).runAsyncLater(JobGroup.PURGE, chunkJob, 2L);
+        runSyncJob();
+        verify(sender).sendMessage(contains("Deleted 3 user accounts"));
+        verify(taskScheduler, times(2)).runAsync(eq(JobGroup.PURGE), any(Runnable.class));
+    }
+
+    @Test
+    public void shouldReportAbortedDatabasePurge() {
+        // given
+        given(settings.getProperty(PurgeSettings.DATABASE_CHUNK_SIZE)).willReturn(2);
+        given(settings.getProperty(PurgeSettings.DATABASE_ROWS_PER_SECOND)).willReturn(0);
+        given(settings.getProperty(PurgeSettings.REMOVE_PERMISSIONS)).willReturn(false);
+        given(dataSource.purgeInactiveChunk(eq(1000L), anyLong(), eq(2), anyList()))
+            .willAnswer(new ChunkAnswer(4L, "bobby", "tina"))
+            .willReturn(DataSource.PURGE_FAILED);
+        given(bukkitService.getOfflinePlayers()).willReturn(new OfflinePlayer[0]);
+        CommandSender sender = mock(CommandSender.class);
+
+        // when
+        purgeService.purgeInactiveAccounts(sender, 1000L, false);
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(taskScheduler).runAsync(eq(JobGroup.PURGE), captor.capture());
+        Runnable chunkJob = captor.getValue();
+        chunkJob.run();
+        chunkJob.run();
+
+        // then
+        verify(taskScheduler).runAsyncLater(JobGroup.PURGE, chunkJob, 0L);
+        runSyncJob();
+        verify(sender).sendMessage(contains("aborted by a database error after deleting 2 user accounts"));
+        verify(sender, never()).sendMessage(contains("Deleted 2 user accounts"));
+        // the data of the accounts deleted before the error is purged all the same
+        verify(taskScheduler, times(2)).runAsync(eq(JobGroup.PURGE), any(Runnable.class));
+    }
+
+    @Test
+    public void shouldEndAutoPurgeIfNoAccountIsInactive() {
+        // given
+        given(settings.getProperty(PurgeSettings.DATABASE_CHUNK_SIZE)).willReturn(200);
+        given(settings.getProperty(PurgeSettings.DATABASE_ROWS_PER_SECOND)).willReturn(0);
+        given(dataSource.purgeInactiveChunk(anyLong(), anyLong(), anyInt(), anyList())).willReturn(-1L);
+        CommandSender sender = mock(CommandSender.class);
+
+        // when
+        purgeService.purgeInactiveAccounts(sender, 1000L, true);
+        runAsyncJob();
+        runSyncJob();
+
+        // then
+        verify(plugin).notifyAutoPurgeEnd();
+        verify(dataManager, never()).purgeDat(any(Set.class), any(PurgeReport.class));
+    }
+
+    private void runAsyncJob() {
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(taskScheduler).runAsync(eq(JobGroup.PURGE), captor.capture());
+        captor.getValue().run();
+    }
+
+    private void runSyncJob() {
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(taskScheduler).runSync(eq(JobGroup.PURGE), captor.capture());
+        captor.getValue().run();
+    }
+
+    private static OfflinePlayer mockOfflinePlayer(String name) {
+        OfflinePlayer player = mock(OfflinePlayer.class);
+        given(player.getName()).willReturn(name);
+        return player;
+    }
+
+    /** Answer adding the given names to the list of purged names and returning the given ID. */
+    private static final class ChunkAnswer implements Answer<Long> {
+
+        private final long lastId;
+        private final String[] names;
+
+        ChunkAnswer(long lastId, String... names) {
+            this.lastId = lastId;
+            this.names = names;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Long answer(InvocationOnMock invocation) {
+            ((List<String>) invocation.getArguments()[3]).addAll(Arrays.asList(names));
+            return lastId;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package fr.xephi.authme.task;
+
+import fr.xephi.authme.TestHelper;
+import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.PluginSettings;
+import fr.xephi.authme.util.BukkitService;
+import org.bukkit.scheduler.BukkitTask;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+/**
+ * Test for {@link TaskScheduler}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class TaskSchedulerTest {
+
+    @Mock
+    private BukkitService bukkitService;
+
+    @Mock
+    private NewSetting settings;
+
+    private TaskScheduler taskScheduler;
+
+    @BeforeClass
+    public static void setUpLogger() {
+        TestHelper.setupLogger();
+    }
+
+    @Before
+    public void setUpScheduler() {
+        given(settings.getProperty(PluginSettings.ASYNC_WORKER_THREADS)).willReturn(1);
+        taskScheduler = new TaskScheduler(bukkitService, settings);
+    }
+
+    @After
+    public void shutDownScheduler() {
+        taskScheduler.shutdown();
+        taskScheduler.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void shouldRunSyncJobWithBukkitScheduler() {
+        // given
+        BukkitTask bukkitTask = mock(BukkitTask.class);
+        given(bukkitService.runTaskTimer(any(Runnable.class), eq(20L), eq(40L))).willReturn(bukkitTask);
+        final AtomicInteger runs = new AtomicInteger();
+        Runnable job = new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        };
+
+        // when
+        ScheduledJob scheduledJob = taskScheduler.runSyncRepeating(JobGroup.LIMBO, job, 20L, 40L);
+
+        // then
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(bukkitService).runTaskTimer(captor.capture(), eq(20L), eq(40L));
+        captor.getValue().run();
+        captor.getValue().run();
+        assertThat(runs.get(), equalTo(2));
+        assertThat(taskScheduler.getStatistics(JobGroup.LIMBO).getRuns(), equalTo(2L));
+        scheduledJob.cancel();
+        verify(bukkitTask).cancel();
+    }
+
+    @Test
+    public void shouldSummarizeJobGroupsWhichHaveRun() {
+        // given
+        given(bukkitService.runTaskLater(any(Runnable.class), eq(0L))).willReturn(mock(BukkitTask.class));
+        taskScheduler.runSync(JobGroup.TELEPORT, new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(bukkitService).runTaskLater(captor.capture(), eq(0L));
+        captor.getValue().run();
+
+        // when
+        List<String> summary = taskScheduler.getStatisticsSummary();
+
+        // then
+        assertThat(summary, hasSize(1));
+        assertThat(summary.get(0), startsWith("Jobs '" + JobGroup.TELEPORT.getDisplayName() + "': "));
+    }
+
+    @Test
+    public void shouldRecordFailedJob() {
+        // given
+        Runnable job = new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("Test exception");
+            }
+        };
+        taskScheduler.runSync(JobGroup.TEMPBAN, job);
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(bukkitService).runTaskLater(captor.capture(), eq(0L));
+
+        // when
+        captor.getValue().run();
+
+        // then
+        JobStatistics statistics = taskScheduler.getStatistics(JobGroup.TEMPBAN);
+        assertThat(statistics.getRuns(), equalTo(1L));
+        assertThat(statistics.getFailures(), equalTo(1L));
+    }
+
+    @Test
+    public void shouldRunAsyncJobOnWorker() throws InterruptedException {
+        // given
+        final CountDownLatch latch = new CountDownLatch(1);
+        Runnable job = new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        };
+
+        // when
+        taskScheduler.runAsync(JobGroup.STORAGE, job);
+
+        // then
+        assertThat(latch.await(5, TimeUnit.SECONDS), equalTo(true));
+        taskScheduler.shutdown();
+        taskScheduler.awaitTermination(5, TimeUnit.SECONDS);
+        assertThat(taskScheduler.getStatistics(JobGroup.STORAGE).getRuns(), equalTo(1L));
+    }
+
+    @Test
+    public void shouldRunDedicatedJobOnOwnThread() throws InterruptedException {
+        // given
+        final CountDownLatch latch = new CountDownLatch(1);
+        final String[] threadName = new String[1];
+        Runnable job = new Runnable() {
+            @Override
+            public void run() {
+                threadName[0] = Thread.currentThread().getName();
+                latch.countDown();
+            }
+        };
+
+        // when
+        boolean isStarted = taskScheduler.runAsyncDedicated(JobGroup.BACKUP, "Backup", job);
+
+        // then
+        assertThat(isStarted, equalTo(true));
+        assertThat(latch.await(5, TimeUnit.SECONDS), equalTo(true));
+        taskScheduler.shutdown();
+        assertThat(taskScheduler.awaitTermination(5, TimeUnit.SECONDS), equalTo(true));
+        assertThat(threadName[0], equalTo("AuthMe-Backup"));
+        assertThat(taskScheduler.getStatistics(JobGroup.BACKUP).getRuns(), equalTo(1L));
+    }
+
+    @Test
+    public void shouldNotStartDedicatedJobAfterShutdown() {
+        // given
+        taskScheduler.shutdown();
+        Runnable job = mock(Runnable.class);
+
+        // when
+        boolean isStarted = taskScheduler.runAsyncDedicated(JobGroup.BACKUP, "Backup", job);
+
+        // then
+        assertThat(isStarted, equalTo(false));
+        verifyZeroInteractions(job);
+    }
+
+    @Test
+    public void shouldCoalescePendingJobs() throws InterruptedException {
+        // given
+        final CountDownLatch blockerStarted = new CountDownLatch(1);
+        final CountDownLatch releaseBlocker = new CountDownLatch(1);
+        taskScheduler.runAsync(JobGroup.STORAGE, new Runnable() {
+            @Override
+            public void run() {
+                blockerStarted.countDown();
+                try {
+                    releaseBlocker.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertThat(blockerStarted.await(5, TimeUnit.SECONDS), equalTo(true));
+        final AtomicInteger runs = new AtomicInteger();
+        Runnable job = new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        };
+
+        // when
+        boolean isFirstScheduled = taskScheduler.runAsyncCoalesced(JobGroup.SESSIONS, "key", job);
+        boolean isSecondScheduled = taskScheduler.runAsyncCoalesced(JobGroup.SESSIONS, "key", job);
+        boolean isOtherKeyScheduled = taskScheduler.runAsyncCoalesced(JobGroup.SESSIONS, "other", job);
+        releaseBlocker.countDown();
+        taskScheduler.shutdown();
+        taskScheduler.awaitTermination(5, TimeUnit.SECONDS);
+
+        // then
+        assertThat(isFirstScheduled, equalTo(true));
+        assertThat(isSecondScheduled, equalTo(false));
+        assertThat(isOtherKeyScheduled, equalTo(true));
+        assertThat(runs.get(), equalTo(2));
+        assertThat(taskScheduler.getStatistics(JobGroup.SESSIONS).getCoalesced(), equalTo(1L));
+    }
+}
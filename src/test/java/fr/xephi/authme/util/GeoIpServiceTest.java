@@ -0,0 +1,67 @@
+package fr.xephi.authme.util;
+
+import fr.xephi.authme.TestHelper;
+import fr.xephi.authme.task.JobGroup;
+import fr.xephi.authme.task.TaskScheduler;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.io.IOException;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test for {@link GeoIpService}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class GeoIpServiceTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    private GeoIpService geoIpService;
+
+    @BeforeClass
+    public static void setUpLogger() {
+        TestHelper.setupLogger();
+    }
+
+    @Before
+    public void setUpService() throws IOException {
+        geoIpService = new GeoIpService(temporaryFolder.newFolder(), taskScheduler);
+    }
+
+    @Test
+    public void shouldScheduleDatabaseUpdates() {
+        // given / when
+        geoIpService.scheduleUpdates();
+
+        // then
+        verify(taskScheduler).runAsyncRepeating(eq(JobGroup.GEOIP), any(Runnable.class), eq(0L), anyLong());
+    }
+
+    @Test
+    public void shouldReturnDefaultsWhileDatabaseIsNotLoaded() {
+        // given / when
+        String code = geoIpService.getCountryCode("123.45.67.89");
+        String name = geoIpService.getCountryName("123.45.67.89");
+
+        // then
+        assertThat(code, equalTo("--"));
+        assertThat(name, equalTo("N/A"));
+    }
+}
@@ -0,0 +1,62 @@
+package fr.xephi.authme.util;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link IpAddress}.
+ */
+public class IpAddressTest {
+
+    @Test
+    public void shouldParseAddresses() {
+        // given/when
+        IpAddress ipv4 = IpAddress.parse("11.22.33.44");
+        IpAddress ipv6 = IpAddress.parse("2001:0DB8:0:0:0:0:0:1");
+        IpAddress mapped = IpAddress.parse("::ffff:11.22.33.44");
+
+        // then
+        assertThat(ipv4.isIpv4(), equalTo(true));
+        assertThat(ipv4.toString(), equalTo("11.22.33.44"));
+        assertThat(ipv6.isIpv4(), equalTo(false));
+        assertThat(ipv6.toString(), equalTo("2001:db8::1"));
+        assertThat(mapped, equalTo(ipv4));
+    }
+
+    @Test
+    public void shouldNotParseHostNames() {
+        // given/when/then
+        assertThat(IpAddress.parse("localhost"), nullValue());
+        assertThat(IpAddress.parse("example.org"), nullValue());
+        assertThat(IpAddress.parse("1.2.3"), nullValue());
+        assertThat(IpAddress.parse(null), nullValue());
+    }
+
+    @Test
+    public void shouldMaskAddresses() {
+        // given
+        IpAddress ipv4 = IpAddress.parse("11.22.33.44");
+        IpAddress ipv6 = IpAddress.parse("2001:db8:aaaa:bbbb:cccc:dddd:eeee:ffff");
+
+        // when/then
+        assertThat(ipv4.mask(24).toString(), equalTo("11.22.33.0"));
+        assertThat(ipv4.mask(12).toString(), equalTo("11.16.0.0"));
+        assertThat(ipv4.mask(0).toString(), equalTo("0.0.0.0"));
+        assertThat(ipv6.mask(64).toString(), equalTo("2001:db8:aaaa:bbbb::"));
+        assertThat(ipv6.mask(80).toString(), equalTo("2001:db8:aaaa:bbbb:cccc::"));
+        assertThat(ipv6.mask(32).toString(), equalTo("2001:db8::"));
+    }
+
+    @Test
+    public void shouldReturnNetworkKeys() {
+        // given/when/then
+        assertThat(IpAddress.toNetworkKey("11.22.33.44", 32, 64), equalTo("11.22.33.44"));
+        assertThat(IpAddress.toNetworkKey("11.22.33.44", 24, 64), equalTo("11.22.33.0/24"));
+        assertThat(IpAddress.toNetworkKey("2001:db8::1", 24, 64), equalTo("2001:db8::/64"));
+        assertThat(IpAddress.toNetworkKey("0:0:0:0:0:0:0:1", 32, 128), equalTo("::1"));
+        assertThat(IpAddress.toNetworkKey("Unknown-Host", 24, 64), equalTo("unknown-host"));
+    }
+}
@@ -0,0 +1,75 @@
+package fr.xephi.authme.util;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link IpRangeSet}.
+ */
+public class IpRangeSetTest {
+
+    @Test
+    public void shouldMatchAddressesInRanges() {
+        // given
+        IpRangeSet ranges = new IpRangeSet();
+        ranges.add("10.0.0.0/8");
+        ranges.add("192.168.1.0/24");
+        ranges.add("8.8.8.8");
+        ranges.add("2001:db8::/32");
+
+        // when/then
+        assertThat(ranges.contains("10.200.3.4"), equalTo(true));
+        assertThat(ranges.contains("192.168.1.255"), equalTo(true));
+        assertThat(ranges.contains("192.168.2.1"), equalTo(false));
+        assertThat(ranges.contains("8.8.8.8"), equalTo(true));
+        assertThat(ranges.contains("8.8.8.9"), equalTo(false));
+        assertThat(ranges.contains("2001:db8:1234::1"), equalTo(true));
+        assertThat(ranges.contains("2001:db9::1"), equalTo(false));
+        assertThat(ranges.contains("::ffff:10.1.1.1"), equalTo(true));
+        assertThat(ranges.contains("example.org"), equalTo(false));
+    }
+
+    @Test
+    public void shouldRejectInvalidRanges() {
+        // given
+        IpRangeSet ranges = new IpRangeSet();
+
+        // when/then
+        assertThat(ranges.add("example.org"), equalTo(false));
+        assertThat(ranges.add("10.0.0.0/33"), equalTo(false));
+        assertThat(ranges.add("10.0.0.0/abc"), equalTo(false));
+        assertThat(ranges.add("::1/129"), equalTo(false));
+        assertThat(ranges.isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void shouldMergeNestedRanges() {
+        // given
+        IpRangeSet ranges = new IpRangeSet();
+        ranges.add("10.1.2.0/24");
+
+        // when
+        ranges.add("10.0.0.0/8");
+        ranges.add("10.3.0.0/16");
+
+        // then
+        assertThat(ranges.contains("10.1.2.3"), equalTo(true));
+        assertThat(ranges.contains("10.99.0.1"), equalTo(true));
+        assertThat(ranges.contains("11.0.0.1"), equalTo(false));
+    }
+
+    @Test
+    public void shouldMatchEverythingWithZeroPrefix() {
+        // given
+        IpRangeSet ranges = new IpRangeSet();
+
+        // when
+        ranges.add("0.0.0.0/0");
+
+        // then
+        assertThat(ranges.contains("123.45.67.89"), equalTo(true));
+        assertThat(ranges.contains("2001:db8::1"), equalTo(false));
+    }
+}
@@ -0,0 +1,70 @@
+package fr.xephi.authme.util;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link SlidingWindowCounter}.
+ */
+public class SlidingWindowCounterTest {
+
+    @Test
+    public void shouldCountEventsInWindow() {
+        // given
+        SlidingWindowCounter counter = new SlidingWindowCounter(5);
+        long start = 1000000L;
+
+        // when
+        counter.increment(start);
+        counter.increment(start + 300);
+        counter.increment(start + 2000);
+        int result = counter.increment(start + 4500);
+
+        // then
+        assertThat(result, equalTo(4));
+        assertThat(counter.count(start + 4999), equalTo(4));
+    }
+
+    @Test
+    public void shouldForgetOldEvents() {
+        // given
+        SlidingWindowCounter counter = new SlidingWindowCounter(5);
+        long start = 1000000L;
+        counter.increment(start);
+        counter.increment(start + 1000);
+        counter.increment(start + 3000);
+
+        // when
+        int afterFiveSeconds = counter.count(start + 5000);
+        int result = counter.increment(start + 6000);
+
+        // then
+        assertThat(afterFiveSeconds, equalTo(2));
+        assertThat(result, equalTo(2));
+        assertThat(counter.count(start + 60000), equalTo(0));
+    }
+
+    @Test
+    public void shouldResetCounter() {
+        // given
+        SlidingWindowCounter counter = new SlidingWindowCounter(3);
+        long now = 7250L;
+        counter.increment(now);
+        counter.increment(now);
+
+        // when
+        counter.reset();
+
+        // then
+        assertThat(counter.count(now), equalTo(0));
+        assertThat(counter.increment(now), equalTo(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidWindow() {
+        // given / when / then
+        new SlidingWindowCounter(0);
+    }
+}
@@ -3,11 +3,15 @@ package fr.xephi.authme.util;
 import fr.xephi.authme.cache.auth.PlayerAuth;
 import fr.xephi.authme.cache.auth.PlayerCache;
 import fr.xephi.authme.cache.limbo.LimboPlayer;
+import fr.xephi.authme.events.AuthMeTeleportEvent;
 import fr.xephi.authme.events.FirstSpawnTeleportEvent;
 import fr.xephi.authme.events.SpawnTeleportEvent;
 import fr.xephi.authme.settings.NewSetting;
 import fr.xephi.authme.settings.SpawnLoader;
 import fr.xephi.authme.settings.properties.RestrictionSettings;
+import fr.xephi.authme.task.JobGroup;
+import fr.xephi.authme.task.ScheduledJob;
+import fr.xephi.authme.task.TaskScheduler;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.entity.Player;
@@ -23,15 +27,17 @@ import org.mockito.stubbing.Answer;
 
 import java.util.Arrays;
 
-import static fr.xephi.authme.TestHelper.runSyncDelayedTask;
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertThat;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 
@@ -56,10 +62,19 @@ public class TeleportationServiceTest {
     @Mock
     private PlayerCache playerCache;
 
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    private ScheduledJob teleportJob;
+
     @Before
     public void setUpForcedWorlds() {
         given(settings.getProperty(RestrictionSettings.FORCE_SPAWN_ON_WORLDS))
             .willReturn(Arrays.asList("forced1", "OtherForced"));
+        given(settings.getProperty(RestrictionSettings.MAX_TELEPORTS_PER_TICK)).willReturn(2);
+        teleportJob = mock(ScheduledJob.class);
+        given(taskScheduler.runSyncRepeating(eq(JobGroup.TELEPORT), any(Runnable.class), anyLong(), anyLong()))
+            .willReturn(teleportJob);
         teleportationService.reload();
 
         given(settings.getProperty(RestrictionSettings.NO_TELEPORT)).willReturn(false);
@@ -93,7 +108,7 @@ public class TeleportationServiceTest {
 
         // when
         teleportationService.teleportOnJoin(player);
-        runSyncDelayedTask(bukkitService);
+        runTeleportJob();
 
         // then
         verify(player).teleport(firstSpawn);
@@ -114,7 +129,7 @@ public class TeleportationServiceTest {
 
         // when
         teleportationService.teleportOnJoin(player);
-        runSyncDelayedTask(bukkitService);
+        runTeleportJob();
 
         // then
         verify(player).teleport(spawn);
@@ -162,7 +177,7 @@ public class TeleportationServiceTest {
 
         // when
         teleportationService.teleportOnJoin(player);
-        runSyncDelayedTask(bukkitService);
+        runTeleportJob();
 
         // then
         verify(player).teleport(spawn);
@@ -190,7 +205,7 @@ public class TeleportationServiceTest {
 
         // when
         teleportationService.teleportOnJoin(player);
-        runSyncDelayedTask(bukkitService);
+        runTeleportJob();
 
         // then
         verify(bukkitService).callEvent(any(SpawnTeleportEvent.class));
@@ -217,7 +232,7 @@ public class TeleportationServiceTest {
 
         // when
         teleportationService.teleportOnJoin(player);
-        runSyncDelayedTask(bukkitService);
+        runTeleportJob();
 
         // then
         verify(bukkitService).callEvent(any(SpawnTeleportEvent.class));
@@ -259,7 +274,7 @@ public class TeleportationServiceTest {
 
         // when
         teleportationService.teleportOnLogin(player, auth, limbo);
-        runSyncDelayedTask(bukkitService);
+        runTeleportJob();
 
         // then
         verify(player).teleport(spawn);
@@ -309,7 +324,7 @@ public class TeleportationServiceTest {
 
         // when
         teleportationService.teleportOnLogin(player, auth, limbo);
-        runSyncDelayedTask(bukkitService);
+        runTeleportJob();
 
         // then
         ArgumentCaptor<Location> locationCaptor = ArgumentCaptor.forClass(Location.class);
@@ -338,7 +353,7 @@ public class TeleportationServiceTest {
 
         // when
         teleportationService.teleportOnLogin(player, auth, limbo);
-        runSyncDelayedTask(bukkitService);
+        runTeleportJob();
 
         // then
         ArgumentCaptor<Location> locationCaptor = ArgumentCaptor.forClass(Location.class);
@@ -366,7 +381,7 @@ public class TeleportationServiceTest {
 
         // when
         teleportationService.teleportOnLogin(player, auth, limbo);
-        runSyncDelayedTask(bukkitService);
+        runTeleportJob();
 
         // then
         verify(player).teleport(location);
@@ -391,12 +406,78 @@ public class TeleportationServiceTest {
 
         // when
         teleportationService.teleportOnLogin(player, auth, limbo);
-        runSyncDelayedTask(bukkitService);
+        runTeleportJob();
 
         // then
         verify(player).teleport(location);
     }
 
+    // ---------
+    // QUEUE
+    // ---------
+    @Test
+    public void shouldSpreadTeleportsOverTicks() {
+        // given
+        given(settings.getProperty(RestrictionSettings.TELEPORT_UNAUTHED_TO_SPAWN)).willReturn(true);
+        Player[] players = new Player[3];
+        Location spawn = mockLocation();
+        for (int i = 0; i < players.length; ++i) {
+            players[i] = mock(Player.class);
+            given(players[i].hasPlayedBefore()).willReturn(true);
+            given(players[i].isOnline()).willReturn(true);
+            given(spawnLoader.getSpawnLocation(players[i])).willReturn(spawn);
+            teleportationService.teleportOnJoin(players[i]);
+        }
+
+        // when
+        runTeleportJob();
+
+        // then
+        verify(players[0]).teleport(spawn);
+        verify(players[1]).teleport(spawn);
+        verify(players[2], never()).teleport(any(Location.class));
+        verify(teleportJob, never()).cancel();
+
+        // when - next tick
+        runTeleportJob();
+
+        // then
+        verify(players[2]).teleport(spawn);
+        verify(teleportJob).cancel();
+        verify(taskScheduler).runSyncRepeating(eq(JobGroup.TELEPORT), any(Runnable.class), anyLong(), anyLong());
+    }
+
+    @Test
+    public void shouldReplacePendingTeleportOfSamePlayer() {
+        // given
+        given(settings.getProperty(RestrictionSettings.FORCE_SPAWN_LOCATION_AFTER_LOGIN)).willReturn(false);
+        given(settings.getProperty(RestrictionSettings.TELEPORT_UNAUTHED_TO_SPAWN)).willReturn(true);
+        given(settings.getProperty(RestrictionSettings.SAVE_QUIT_LOCATION)).willReturn(false);
+        Player player = mock(Player.class);
+        given(player.hasPlayedBefore()).willReturn(true);
+        given(player.isOnline()).willReturn(true);
+        Location spawn = mockLocation();
+        given(spawnLoader.getSpawnLocation(player)).willReturn(spawn);
+        LimboPlayer limbo = mock(LimboPlayer.class);
+        Location limboLocation = mockLocation();
+        given(limbo.getLoc()).willReturn(limboLocation);
+
+        // when
+        teleportationService.teleportOnJoin(player);
+        teleportationService.teleportOnLogin(player, createAuthWithLocation(), limbo);
+        runTeleportJob();
+
+        // then
+        verify(player, never()).teleport(spawn);
+        verify(player).teleport(limboLocation);
+        verify(bukkitService, times(1)).callEvent(any(AuthMeTeleportEvent.class));
+    }
+
+    private void runTeleportJob() {
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(taskScheduler).runSyncRepeating(eq(JobGroup.TELEPORT), captor.capture(), anyLong(), anyLong());
+        captor.getValue().run();
+    }
 
     // We check that the World in Location is set, this method creates a mock World in Location for us
     private static Location mockLocation() {
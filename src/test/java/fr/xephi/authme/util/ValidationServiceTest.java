@@ -7,6 +7,7 @@ import fr.xephi.authme.permission.PermissionsManager;
 import fr.xephi.authme.permission.PlayerStatePermission;
 import fr.xephi.authme.settings.NewSetting;
 import fr.xephi.authme.settings.properties.EmailSettings;
+import fr.xephi.authme.settings.properties.ProtectionSettings;
 import fr.xephi.authme.settings.properties.RestrictionSettings;
 import fr.xephi.authme.settings.properties.SecuritySettings;
 import fr.xephi.authme.util.ValidationService.ValidationResult;
@@ -17,6 +18,7 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import java.net.InetSocketAddress;
 import java.util.Arrays;
 import java.util.Collections;
 
@@ -24,6 +26,7 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertThat;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
 
 /**
  * Test for {@link ValidationService}.
@@ -38,6 +41,8 @@ public class ValidationServiceTest {
     private DataSource dataSource;
     @Mock
     private PermissionsManager permissionsManager;
+    @Mock
+    private GeoIpService geoIpService;
 
     @Before
     public void createService() {
@@ -47,7 +52,16 @@ public class ValidationServiceTest {
         given(settings.getProperty(SecuritySettings.UNSAFE_PASSWORDS))
             .willReturn(Arrays.asList("unsafe", "other-unsafe"));
         given(settings.getProperty(EmailSettings.MAX_REG_PER_EMAIL)).willReturn(3);
-        validationService = new ValidationService(settings, dataSource, permissionsManager);
+        given(settings.getProperty(RestrictionSettings.UNRESTRICTED_NAMES)).willReturn(Arrays.asList("npc", "bot"));
+        given(settings.getProperty(RestrictionSettings.ENABLE_RESTRICTED_USERS)).willReturn(true);
+        given(settings.getProperty(RestrictionSettings.ALLOWED_RESTRICTED_USERS))
+            .willReturn(Arrays.asList("admin;127.0.0.1", "admin;home.example.org", "owner;10.0.0.1",
+                "staff;192.168.0.0/16", "staff;2001:db8::/32"));
+        given(settings.getProperty(EmailSettings.DOMAIN_WHITELIST)).willReturn(Collections.<String>emptyList());
+        given(settings.getProperty(EmailSettings.DOMAIN_BLACKLIST)).willReturn(Collections.<String>emptyList());
+        given(settings.getProperty(ProtectionSettings.COUNTRIES_WHITELIST)).willReturn(Collections.<String>emptyList());
+        given(settings.getProperty(ProtectionSettings.COUNTRIES_BLACKLIST)).willReturn(Collections.<String>emptyList());
+        validationService = new ValidationService(settings, dataSource, permissionsManager, geoIpService);
     }
 
     @Test
@@ -110,6 +124,7 @@ public class ValidationServiceTest {
         // given
         given(settings.getProperty(EmailSettings.DOMAIN_WHITELIST)).willReturn(Collections.<String>emptyList());
         given(settings.getProperty(EmailSettings.DOMAIN_BLACKLIST)).willReturn(Collections.<String>emptyList());
+        validationService.reload();
 
         // when
         boolean result = validationService.validateEmail("test@example.org");
@@ -124,6 +139,7 @@ public class ValidationServiceTest {
         given(settings.getProperty(EmailSettings.DOMAIN_WHITELIST))
             .willReturn(Arrays.asList("domain.tld", "example.com"));
         given(settings.getProperty(EmailSettings.DOMAIN_BLACKLIST)).willReturn(Collections.<String>emptyList());
+        validationService.reload();
 
         // when
         boolean result = validationService.validateEmail("TesT@Example.com");
@@ -138,6 +154,7 @@ public class ValidationServiceTest {
         given(settings.getProperty(EmailSettings.DOMAIN_WHITELIST))
             .willReturn(Arrays.asList("domain.tld", "example.com"));
         given(settings.getProperty(EmailSettings.DOMAIN_BLACKLIST)).willReturn(Collections.<String>emptyList());
+        validationService.reload();
 
         // when
         boolean result = validationService.validateEmail("email@other-domain.abc");
@@ -152,6 +169,7 @@ public class ValidationServiceTest {
         given(settings.getProperty(EmailSettings.DOMAIN_WHITELIST)).willReturn(Collections.<String>emptyList());
         given(settings.getProperty(EmailSettings.DOMAIN_BLACKLIST))
             .willReturn(Arrays.asList("Example.org", "a-test-name.tld"));
+        validationService.reload();
 
         // when
         boolean result = validationService.validateEmail("sample@valid-name.tld");
@@ -166,6 +184,7 @@ public class ValidationServiceTest {
         given(settings.getProperty(EmailSettings.DOMAIN_WHITELIST)).willReturn(Collections.<String>emptyList());
         given(settings.getProperty(EmailSettings.DOMAIN_BLACKLIST))
             .willReturn(Arrays.asList("Example.org", "a-test-name.tld"));
+        validationService.reload();
 
         // when
         boolean result = validationService.validateEmail("sample@a-Test-name.tld");
@@ -231,6 +250,110 @@ public class ValidationServiceTest {
         assertThat(result, equalTo(true));
     }
 
+    @Test
+    public void shouldRejectCountryInBlacklist() {
+        // given
+        given(settings.getProperty(ProtectionSettings.COUNTRIES_WHITELIST)).willReturn(Collections.<String>emptyList());
+        given(settings.getProperty(ProtectionSettings.COUNTRIES_BLACKLIST)).willReturn(Arrays.asList("XX", "YY"));
+        given(geoIpService.getCountryCode("123.45.67.89")).willReturn("XX");
+        validationService.reload();
+
+        // when
+        boolean result = validationService.isCountryAdmitted("123.45.67.89");
+
+        // then
+        assertThat(result, equalTo(false));
+    }
+
+    @Test
+    public void shouldNotLookUpCountryWithoutRestrictions() {
+        // given
+
+        // when
+        boolean result = validationService.isCountryAdmitted("123.45.67.89");
+
+        // then
+        assertThat(result, equalTo(true));
+        verifyZeroInteractions(geoIpService);
+    }
+
+    @Test
+    public void shouldAcceptCountryInWhitelist() {
+        // given
+        given(settings.getProperty(ProtectionSettings.COUNTRIES_WHITELIST)).willReturn(Arrays.asList("ch", "XX"));
+        given(geoIpService.getCountryCode("123.45.67.89")).willReturn("CH");
+        validationService.reload();
+
+        // when
+        boolean result = validationService.isCountryAdmitted("123.45.67.89");
+
+        // then
+        assertThat(result, equalTo(true));
+    }
+
+    @Test
+    public void shouldRecognizeUnrestrictedNames() {
+        // given/when/then
+        assertThat(validationService.isUnrestricted("npc"), equalTo(true));
+        assertThat(validationService.isUnrestricted("bobby"), equalTo(false));
+    }
+
+    @Test
+    public void shouldAcceptRestrictedNameFromAllowedIp() {
+        // given/when
+        // no address given: the host name must not be needed if the IP matches
+        boolean result = validationService.isNameRestricted("admin", "127.0.0.1", null);
+
+        // then
+        assertThat(result, equalTo(false));
+    }
+
+    @Test
+    public void shouldAcceptRestrictedNameFromAllowedDomain() {
+        // given
+        InetSocketAddress address = InetSocketAddress.createUnresolved("Home.example.org", 25565);
+
+        // when
+        boolean result = validationService.isNameRestricted("admin", "8.8.8.8", address);
+
+        // then
+        assertThat(result, equalTo(false));
+    }
+
+    @Test
+    public void shouldRejectRestrictedNameFromOtherAddress() {
+        // given
+        InetSocketAddress address = InetSocketAddress.createUnresolved("other.example.org", 25565);
+
+        // when
+        boolean result = validationService.isNameRestricted("owner", "127.0.0.1", address);
+
+        // then
+        assertThat(result, equalTo(true));
+        assertThat(validationService.isNameRestricted("bobby", "127.0.0.1", address), equalTo(false));
+    }
+
+    @Test
+    public void shouldMatchRestrictedNameAgainstIpRanges() {
+        // given/when/then
+        assertThat(validationService.isNameRestricted("staff", "192.168.44.1", null), equalTo(false));
+        assertThat(validationService.isNameRestricted("staff", "2001:db8:1::5", null), equalTo(false));
+        assertThat(validationService.isNameRestricted("staff", "192.169.0.1", null), equalTo(true));
+    }
+
+    @Test
+    public void shouldNotRestrictNamesIfFeatureIsDisabled() {
+        // given
+        given(settings.getProperty(RestrictionSettings.ENABLE_RESTRICTED_USERS)).willReturn(false);
+        validationService.reload();
+
+        // when
+        boolean result = validationService.isNameRestricted("owner", "127.0.0.1", null);
+
+        // then
+        assertThat(result, equalTo(false));
+    }
+
     private static void assertErrorEquals(ValidationResult validationResult, MessageKey messageKey, String... args) {
         assertThat(validationResult.hasError(), equalTo(true));
         assertThat(validationResult.getMessageKey(), equalTo(messageKey));